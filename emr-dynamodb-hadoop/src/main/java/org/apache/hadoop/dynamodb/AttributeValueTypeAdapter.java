@@ -0,0 +1,246 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.dynamodb.type.DynamoDBTypeConstants;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Streams {@link AttributeValue}s to and from JSON without building a JSON tree.
+ *
+ * <p>Values are written as a single field object whose name is the type in the casing of the AWS
+ * SDK v1 field names, e.g. {"s":"text"} or {"nS":["1","2"]}. This is the export format, so the
+ * output must not change. Type names are matched case-insensitively on read. Empty sets, lists
+ * and maps, and objects without a known type, are read as an empty AttributeValue.
+ */
+public class AttributeValueTypeAdapter extends TypeAdapter<AttributeValue> {
+
+  private static final String BINARY = toV1FieldCasingStyle(DynamoDBTypeConstants.BINARY);
+  private static final String BOOLEAN = toV1FieldCasingStyle(DynamoDBTypeConstants.BOOLEAN);
+  private static final String BINARY_SET =
+      toV1FieldCasingStyle(DynamoDBTypeConstants.BINARY_SET);
+  private static final String LIST = toV1FieldCasingStyle(DynamoDBTypeConstants.LIST);
+  private static final String MAP = toV1FieldCasingStyle(DynamoDBTypeConstants.MAP);
+  private static final String NUMBER = toV1FieldCasingStyle(DynamoDBTypeConstants.NUMBER);
+  private static final String NUMBER_SET =
+      toV1FieldCasingStyle(DynamoDBTypeConstants.NUMBER_SET);
+  private static final String NULL = toV1FieldCasingStyle(DynamoDBTypeConstants.NULL);
+  private static final String STRING = toV1FieldCasingStyle(DynamoDBTypeConstants.STRING);
+  private static final String STRING_SET =
+      toV1FieldCasingStyle(DynamoDBTypeConstants.STRING_SET);
+
+  @Override
+  public void write(JsonWriter out, AttributeValue attributeValue) throws IOException {
+    if (attributeValue == null) {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+    switch (attributeValue.type()) {
+      case B:
+        out.name(BINARY);
+        DynamoDBUtil.writeBase64(out, attributeValue.b().asByteArrayUnsafe());
+        break;
+      case BOOL:
+        out.name(BOOLEAN).value(attributeValue.bool());
+        break;
+      case BS:
+        out.name(BINARY_SET).beginArray();
+        for (SdkBytes bytes : attributeValue.bs()) {
+          DynamoDBUtil.writeBase64(out, bytes.asByteArrayUnsafe());
+        }
+        out.endArray();
+        break;
+      case L:
+        out.name(LIST).beginArray();
+        for (AttributeValue element : attributeValue.l()) {
+          write(out, element);
+        }
+        out.endArray();
+        break;
+      case M:
+        out.name(MAP).beginObject();
+        for (Map.Entry<String, AttributeValue> entry : attributeValue.m().entrySet()) {
+          out.name(entry.getKey());
+          write(out, entry.getValue());
+        }
+        out.endObject();
+        break;
+      case N:
+        out.name(NUMBER).value(attributeValue.n());
+        break;
+      case NS:
+        out.name(NUMBER_SET);
+        writeStrings(out, attributeValue.ns());
+        break;
+      case NUL:
+        out.name(NULL).value(attributeValue.nul());
+        break;
+      case S:
+        out.name(STRING).value(attributeValue.s());
+        break;
+      case SS:
+        out.name(STRING_SET);
+        writeStrings(out, attributeValue.ss());
+        break;
+      default:
+        break;
+    }
+    out.endObject();
+  }
+
+  @Override
+  public AttributeValue read(JsonReader in) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    if (token != JsonToken.BEGIN_OBJECT) {
+      in.skipValue();
+      return AttributeValue.builder().build();
+    }
+
+    AttributeValue result = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      String typeName = in.nextName();
+      if (result == null) {
+        result = readTypedValue(in, typeName);
+      } else {
+        in.skipValue();
+      }
+    }
+    in.endObject();
+
+    // Return an empty instance as default value.
+    return result != null ? result : AttributeValue.builder().build();
+  }
+
+  /**
+   * @return the value, or null if the type is unknown or the collection is empty
+   */
+  private AttributeValue readTypedValue(JsonReader in, String typeName) throws IOException {
+    if (DynamoDBTypeConstants.BINARY.equalsIgnoreCase(typeName)) {
+      return AttributeValue.fromB(DynamoDBUtil.readBase64(in));
+    }
+
+    if (DynamoDBTypeConstants.BINARY_SET.equalsIgnoreCase(typeName)) {
+      List<SdkBytes> sdkBytesList = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        sdkBytesList.add(DynamoDBUtil.readBase64(in));
+      }
+      in.endArray();
+      return sdkBytesList.isEmpty() ? null : AttributeValue.fromBs(sdkBytesList);
+    }
+
+    if (DynamoDBTypeConstants.BOOLEAN.equalsIgnoreCase(typeName)) {
+      return AttributeValue.fromBool(readBoolean(in));
+    }
+
+    if (DynamoDBTypeConstants.NULL.equalsIgnoreCase(typeName)) {
+      return AttributeValue.fromNul(readBoolean(in));
+    }
+
+    if (DynamoDBTypeConstants.NUMBER.equalsIgnoreCase(typeName)) {
+      return AttributeValue.fromN(readString(in));
+    }
+
+    if (DynamoDBTypeConstants.NUMBER_SET.equalsIgnoreCase(typeName)) {
+      List<String> numberList = readStrings(in);
+      return numberList.isEmpty() ? null : AttributeValue.fromNs(numberList);
+    }
+
+    if (DynamoDBTypeConstants.LIST.equalsIgnoreCase(typeName)) {
+      List<AttributeValue> avl = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        avl.add(read(in));
+      }
+      in.endArray();
+      return avl.isEmpty() ? null : AttributeValue.fromL(avl);
+    }
+
+    if (DynamoDBTypeConstants.MAP.equalsIgnoreCase(typeName)) {
+      Map<String, AttributeValue> avm = new HashMap<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        avm.put(name, read(in));
+      }
+      in.endObject();
+      return avm.isEmpty() ? null : AttributeValue.fromM(avm);
+    }
+
+    if (DynamoDBTypeConstants.STRING.equalsIgnoreCase(typeName)) {
+      return AttributeValue.fromS(readString(in));
+    }
+
+    if (DynamoDBTypeConstants.STRING_SET.equalsIgnoreCase(typeName)) {
+      List<String> stringList = readStrings(in);
+      return stringList.isEmpty() ? null : AttributeValue.fromSs(stringList);
+    }
+
+    in.skipValue();
+    return null;
+  }
+
+  private static void writeStrings(JsonWriter out, List<String> strings) throws IOException {
+    out.beginArray();
+    for (String string : strings) {
+      out.value(string);
+    }
+    out.endArray();
+  }
+
+  private static List<String> readStrings(JsonReader in) throws IOException {
+    List<String> strings = new ArrayList<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      strings.add(readString(in));
+    }
+    in.endArray();
+    return strings;
+  }
+
+  private static String readString(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.BOOLEAN) {
+      return Boolean.toString(in.nextBoolean());
+    }
+    return in.nextString();
+  }
+
+  private static boolean readBoolean(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.BOOLEAN) {
+      return in.nextBoolean();
+    }
+    return Boolean.parseBoolean(in.nextString());
+  }
+
+  private static String toV1FieldCasingStyle(String typeConstant) {
+    return typeConstant.substring(0, 1).toLowerCase() + typeConstant.substring(1).toUpperCase();
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Base64;
+
+/**
+ * A {@link JsonWriter} that encodes binary values as base64 straight into its output, instead of
+ * building the encoded string first.
+ */
+class Base64JsonWriter extends JsonWriter {
+
+  private final Writer out;
+  private final OutputStream asciiOut;
+
+  Base64JsonWriter(Writer out) {
+    super(out);
+    this.out = out;
+    this.asciiOut = new AsciiOutputStream(out);
+  }
+
+  /**
+   * Writes bytes as a base64 JSON string.
+   */
+  void base64Value(byte[] bytes) throws IOException {
+    // Let the JsonWriter place the separator and open the string, the base64 alphabet needs no
+    // escaping
+    jsonValue("\"");
+    OutputStream encoder = Base64.getEncoder().wrap(asciiOut);
+    encoder.write(bytes);
+    // Writes the padding, closing the ASCII stream does nothing
+    encoder.close();
+    out.write('"');
+  }
+
+  private static class AsciiOutputStream extends OutputStream {
+
+    private final Writer out;
+    private final char[] chars = new char[1024];
+
+    AsciiOutputStream(Writer out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      while (length > 0) {
+        int count = Math.min(length, chars.length);
+        for (int i = 0; i < count; i++) {
+          chars[i] = (char) bytes[offset + i];
+        }
+        out.write(chars, 0, count);
+        offset += count;
+        length -= count;
+      }
+    }
+  }
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb;
+
+/**
+ * Paces the BatchWriteItem requests a {@link DynamoDBClient} sends for
+ * {@link DynamoDBClient#putBatch}, e.g. to the write rate of a task.
+ */
+public interface BatchWritePacer {
+
+  /**
+   * Waits until a batch of the given number of items may be sent. Called before every request,
+   * including the ones resending unprocessed items.
+   */
+  void awaitCapacity(int itemCount) throws InterruptedException;
+}
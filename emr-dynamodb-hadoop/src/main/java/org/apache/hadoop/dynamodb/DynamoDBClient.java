@@ -30,19 +30,21 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.dynamodb.DynamoDBFibonacciRetryer.RetryResult;
+import org.apache.hadoop.dynamodb.filter.DynamoDBExpressionBuilder;
 import org.apache.hadoop.dynamodb.filter.DynamoDBIndexInfo;
 import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
 import org.apache.hadoop.mapred.Reporter;
@@ -57,24 +59,29 @@ import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.http.apache.ProxyConfiguration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClientBuilder;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
-import software.amazon.awssdk.services.dynamodb.model.Capacity;
-import software.amazon.awssdk.services.dynamodb.model.Condition;
 import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
 import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
 import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
 import software.amazon.awssdk.services.dynamodb.model.DescribeTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.Select;
 import software.amazon.awssdk.services.dynamodb.model.TableDescription;
 import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
@@ -82,8 +89,7 @@ public class DynamoDBClient {
 
   private static final Log log = LogFactory.getLog(DynamoDBClient.class);
 
-  private static final int DEFAULT_RETRY_DURATION = 10;
-  private static final long MAX_BACKOFF_IN_MILLISECONDS = 1000 * 3;
+  private static final int ASYNC_NUM_RETRIES = 10;
   private static final CredentialPairName DYNAMODB_CREDENTIAL_PAIR_NAME =
       new CredentialPairName(
           DynamoDBConstants.DYNAMODB_ACCESS_KEY_CONF,
@@ -101,12 +107,20 @@ public class DynamoDBClient {
           DynamoDBConstants.DEFAULT_SECRET_KEY_CONF
       );
   private final Map<String, List<WriteRequest>> writeBatchMap = new HashMap<>();
+  // Position of the write to each key in writeBatchMap, by table
+  private final Map<String, Map<Map<String, AttributeValue>, Integer>> writeBatchKeyPositions =
+      new HashMap<>();
   private final DynamoDbClient dynamoDB;
+  private final String region;
+  private DynamoDbAsyncClient asyncDynamoDB;
   private int writeBatchMapSizeBytes;
   private int batchWriteRetries;
+  private BatchWritePacer batchWritePacer;
   private final Configuration config;
   private final long maxBatchSize;
   private final long maxItemByteSize;
+  // Key attributes of the output table, from dynamodb.table.keyNames, empty if not configured
+  private final Set<String> tableKeyNames;
 
   // For unit testing only
   public DynamoDBClient() {
@@ -114,10 +128,18 @@ public class DynamoDBClient {
   }
 
   public DynamoDBClient(DynamoDbClient amazonDynamoDBClient, Configuration conf) {
+    this(amazonDynamoDBClient, null, conf);
+  }
+
+  public DynamoDBClient(DynamoDbClient amazonDynamoDBClient,
+      DynamoDbAsyncClient amazonDynamoDBAsyncClient, Configuration conf) {
     dynamoDB = amazonDynamoDBClient;
+    asyncDynamoDB = amazonDynamoDBAsyncClient;
+    region = null;
     config = conf;
     maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
     maxItemByteSize = DEFAULT_MAX_ITEM_SIZE;
+    tableKeyNames = parseTableKeyNames(conf);
   }
 
   public DynamoDBClient(Configuration conf) {
@@ -127,16 +149,66 @@ public class DynamoDBClient {
   public DynamoDBClient(Configuration conf, String region) {
     Preconditions.checkNotNull(conf, "conf cannot be null.");
     config = conf;
+    this.region = region;
     dynamoDB = getDynamoDBClient(conf, region);
     maxBatchSize = config.getLong(MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
     maxItemByteSize = config.getLong(MAX_ITEM_SIZE, DEFAULT_MAX_ITEM_SIZE);
+    tableKeyNames = parseTableKeyNames(conf);
+  }
+
+  private static Set<String> parseTableKeyNames(Configuration conf) {
+    String keyNames = conf == null ? null : conf.get(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES);
+    if (keyNames == null || keyNames.isEmpty()) {
+      return Collections.emptySet();
+    }
+    return new LinkedHashSet<>(
+        Arrays.asList(keyNames.split(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES_SEPARATOR)));
   }
 
   public final Map<String, List<WriteRequest>> getWriteBatchMap() {
     return this.writeBatchMap;
   }
 
+  /**
+   * Sets the pacer the batches of {@link #putBatch} and {@link #flushWriteBatch} wait for before
+   * they are sent, or null to send them as soon as they are full.
+   */
+  public void setBatchWritePacer(BatchWritePacer batchWritePacer) {
+    this.batchWritePacer = batchWritePacer;
+  }
+
+  /**
+   * Describes the table, served from the {@link TableDescriptionCache} if a description younger
+   * than {@code dynamodb.describe.table.cache.ttl.ms} is cached.
+   */
   public TableDescription describeTable(String tableName) {
+    return getTableDescription(tableName, getDescribeTableCacheTtl());
+  }
+
+  /**
+   * Describes the table for callers that only look at its key schema, attributes or indexes. These
+   * do not change during a job, so any cached description is good enough.
+   */
+  public TableDescription describeTableSchema(String tableName) {
+    return getTableDescription(tableName, getDescribeTableCacheTtl() > 0 ? Long.MAX_VALUE : 0);
+  }
+
+  /**
+   * Makes the next lookup of the table in this process go to DynamoDB.
+   */
+  public void invalidateTableDescription(String tableName) {
+    TableDescriptionCache.invalidate(getCacheScope(), tableName);
+  }
+
+  private TableDescription getTableDescription(String tableName, long maxAgeMs) {
+    if (maxAgeMs > 0) {
+      TableDescription cached = TableDescriptionCache.get(config, getCacheScope(), tableName,
+          maxAgeMs);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
     final DescribeTableRequest describeTablesRequest = DescribeTableRequest.builder()
         .tableName(tableName)
         .build();
@@ -147,15 +219,119 @@ public class DynamoDBClient {
             log.info("Describe table output: " + response);
             return response;
           }, null, null);
-      return describeResult.result.table();
+      TableDescription description = describeResult.result.table();
+      TableDescriptionCache.put(getCacheScope(), tableName, description);
+      return description;
     } catch (Exception e) {
       throw new RuntimeException("Could not lookup table " + tableName + " in DynamoDB.", e);
     }
   }
 
+  private long getDescribeTableCacheTtl() {
+    return config == null ? 0 : config.getLong(DynamoDBConstants.DESCRIBE_TABLE_CACHE_TTL_MS,
+        DynamoDBConstants.DEFAULT_DESCRIBE_TABLE_CACHE_TTL_MS);
+  }
+
+  /**
+   * Tables are only shared between clients talking to the same endpoint with the same credentials.
+   */
+  private String getCacheScope() {
+    if (config == null) {
+      return "";
+    }
+    return String.join("|",
+        Strings.nullToEmpty(config.get(DynamoDBConstants.ENDPOINT)),
+        Strings.nullToEmpty(region != null ? region : config.get(DynamoDBConstants.REGION)),
+        Strings.nullToEmpty(config.get(DynamoDBConstants.REGION_ID)),
+        Strings.nullToEmpty(config.get(DynamoDBConstants.CUSTOM_CREDENTIALS_PROVIDER_CONF)),
+        Strings.nullToEmpty(config.get(DYNAMODB_SESSION_CREDENTIAL_PAIR_NAME.getAccessKeyName())),
+        Strings.nullToEmpty(config.get(DEFAULT_CREDENTIAL_PAIR_NAME.getAccessKeyName())));
+  }
+
   public RetryResult<ScanResponse> scanTable(
       String tableName, DynamoDBQueryFilter dynamoDBQueryFilter, Integer segment, Integer
       totalSegments, Map<String, AttributeValue> exclusiveStartKey, long limit, Reporter reporter) {
+    final ScanRequest scanRequest = buildScanRequest(tableName, dynamoDBQueryFilter, segment,
+        totalSegments, exclusiveStartKey, limit);
+
+    RetryResult<ScanResponse> retryResult = getRetryDriver().runWithRetry(() -> {
+      log.debug("Executing DynamoDB scan: " + scanRequest);
+      return dynamoDB.scan(scanRequest);
+    }, reporter, PrintCounter.DynamoDBReadThrottle);
+    return retryResult;
+  }
+
+  /**
+   * Non-blocking variant of {@link #scanTable}. Retries are left to the SDK, so the returned
+   * future completes exceptionally once they are exhausted.
+   */
+  public CompletableFuture<ScanResponse> scanTableAsync(
+      String tableName, DynamoDBQueryFilter dynamoDBQueryFilter, Integer segment, Integer
+      totalSegments, Map<String, AttributeValue> exclusiveStartKey, long limit) {
+    ScanRequest scanRequest = buildScanRequest(tableName, dynamoDBQueryFilter, segment,
+        totalSegments, exclusiveStartKey, limit);
+    log.debug("Executing async DynamoDB scan: " + scanRequest);
+    return getAsyncClient().scan(scanRequest);
+  }
+
+  public RetryResult<QueryResponse> queryTable(
+      String tableName, DynamoDBQueryFilter dynamoDBQueryFilter, Map<String, AttributeValue>
+      exclusiveStartKey, long limit, Reporter reporter) {
+    final QueryRequest queryRequest = buildQueryRequest(tableName, dynamoDBQueryFilter,
+        exclusiveStartKey, limit);
+
+    RetryResult<QueryResponse> retryResult = getRetryDriver().runWithRetry(
+        () -> {
+          log.debug("Executing DynamoDB query: " + queryRequest);
+          return dynamoDB.query(queryRequest);
+        }, reporter, PrintCounter.DynamoDBReadThrottle);
+    return retryResult;
+  }
+
+  /**
+   * Non-blocking variant of {@link #queryTable}. Retries are left to the SDK, so the returned
+   * future completes exceptionally once they are exhausted.
+   */
+  public CompletableFuture<QueryResponse> queryTableAsync(
+      String tableName, DynamoDBQueryFilter dynamoDBQueryFilter, Map<String, AttributeValue>
+      exclusiveStartKey, long limit) {
+    QueryRequest queryRequest = buildQueryRequest(tableName, dynamoDBQueryFilter,
+        exclusiveStartKey, limit);
+    log.debug("Executing async DynamoDB query: " + queryRequest);
+    return getAsyncClient().query(queryRequest);
+  }
+
+  /**
+   * Reads items by primary key, up to {@link DynamoDBConstants#MAX_BATCH_GET_KEYS} at a time. Keys
+   * DynamoDB did not process are returned in the response for the caller to retry.
+   */
+  public RetryResult<BatchGetItemResponse> batchGetItems(String tableName,
+      List<Map<String, AttributeValue>> keys, DynamoDBQueryFilter dynamoDBQueryFilter,
+      Reporter reporter) {
+    final BatchGetItemRequest batchGetItemRequest = buildBatchGetItemRequest(tableName, keys,
+        dynamoDBQueryFilter);
+
+    return getRetryDriver().runWithRetry(() -> {
+      log.debug("Executing DynamoDB batch get: " + batchGetItemRequest);
+      return dynamoDB.batchGetItem(batchGetItemRequest);
+    }, reporter, PrintCounter.DynamoDBReadThrottle);
+  }
+
+  /**
+   * Non-blocking variant of {@link #batchGetItems}. Retries are left to the SDK, so the returned
+   * future completes exceptionally once they are exhausted.
+   */
+  public CompletableFuture<BatchGetItemResponse> batchGetItemsAsync(String tableName,
+      List<Map<String, AttributeValue>> keys, DynamoDBQueryFilter dynamoDBQueryFilter) {
+    BatchGetItemRequest batchGetItemRequest = buildBatchGetItemRequest(tableName, keys,
+        dynamoDBQueryFilter);
+    log.debug("Executing async DynamoDB batch get: " + batchGetItemRequest);
+    return getAsyncClient().batchGetItem(batchGetItemRequest);
+  }
+
+  private ScanRequest buildScanRequest(
+      String tableName, DynamoDBQueryFilter dynamoDBQueryFilter, Integer segment, Integer
+      totalSegments, Map<String, AttributeValue> exclusiveStartKey, long limit) {
     final ScanRequest.Builder scanRequestBuilder = ScanRequest.builder().tableName(tableName)
         .exclusiveStartKey(exclusiveStartKey)
         .limit(Ints.checkedCast(limit))
@@ -164,45 +340,102 @@ public class DynamoDBClient {
         .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
 
     if (dynamoDBQueryFilter != null) {
-      Map<String, Condition> scanFilter = dynamoDBQueryFilter.getScanFilter();
-      if (!scanFilter.isEmpty()) {
-        scanRequestBuilder.scanFilter(scanFilter);
+      DynamoDBExpressionBuilder expressionBuilder = new DynamoDBExpressionBuilder();
+      String filterExpression =
+          expressionBuilder.buildConditionExpression(dynamoDBQueryFilter.getScanFilter());
+      if (filterExpression != null) {
+        scanRequestBuilder.filterExpression(filterExpression);
+      }
+      if (dynamoDBQueryFilter.isConsistentRead()) {
+        scanRequestBuilder.consistentRead(true);
+      }
+      if (dynamoDBQueryFilter.isCountOnly()) {
+        scanRequestBuilder.select(Select.COUNT);
+      } else {
+        String projectionExpression =
+            expressionBuilder.buildProjectionExpression(dynamoDBQueryFilter.getProjection());
+        if (projectionExpression != null) {
+          scanRequestBuilder.projectionExpression(projectionExpression);
+        }
+      }
+      // DynamoDB rejects empty placeholder maps
+      if (!expressionBuilder.getExpressionAttributeNames().isEmpty()) {
+        scanRequestBuilder.expressionAttributeNames(
+            expressionBuilder.getExpressionAttributeNames());
+      }
+      if (!expressionBuilder.getExpressionAttributeValues().isEmpty()) {
+        scanRequestBuilder.expressionAttributeValues(
+            expressionBuilder.getExpressionAttributeValues());
       }
     }
 
-    final ScanRequest scanRequest = scanRequestBuilder.build();
-
-    RetryResult<ScanResponse> retryResult = getRetryDriver().runWithRetry(() -> {
-      log.debug("Executing DynamoDB scan: " + scanRequest);
-      return dynamoDB.scan(scanRequest);
-    }, reporter, PrintCounter.DynamoDBReadThrottle);
-    return retryResult;
+    return scanRequestBuilder.build();
   }
 
-  public RetryResult<QueryResponse> queryTable(
+  private QueryRequest buildQueryRequest(
       String tableName, DynamoDBQueryFilter dynamoDBQueryFilter, Map<String, AttributeValue>
-      exclusiveStartKey, long limit, Reporter reporter) {
+      exclusiveStartKey, long limit) {
     final QueryRequest.Builder queryRequestBuilder = QueryRequest.builder()
         .tableName(tableName)
         .exclusiveStartKey(exclusiveStartKey)
-        .keyConditions(dynamoDBQueryFilter.getKeyConditions())
         .limit(Ints.checkedCast(limit))
+        .scanIndexForward(dynamoDBQueryFilter.isScanIndexForward())
         .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
 
+    // Key conditions are sent as an expression so that they can be combined with the other
+    // expression parameters; DynamoDB rejects requests mixing them with legacy parameters.
+    DynamoDBExpressionBuilder expressionBuilder = new DynamoDBExpressionBuilder();
+    queryRequestBuilder.keyConditionExpression(
+        expressionBuilder.buildConditionExpression(dynamoDBQueryFilter.getKeyConditions()));
+    if (dynamoDBQueryFilter.isConsistentRead()) {
+      queryRequestBuilder.consistentRead(true);
+    }
+    if (dynamoDBQueryFilter.isCountOnly()) {
+      queryRequestBuilder.select(Select.COUNT);
+    } else {
+      queryRequestBuilder.projectionExpression(
+          expressionBuilder.buildProjectionExpression(dynamoDBQueryFilter.getProjection()));
+    }
+    queryRequestBuilder
+        .expressionAttributeNames(expressionBuilder.getExpressionAttributeNames())
+        .expressionAttributeValues(expressionBuilder.getExpressionAttributeValues());
+
     DynamoDBIndexInfo index = dynamoDBQueryFilter.getIndex();
     if (index != null) {
       log.debug("Using DynamoDB index: " + index.getIndexName());
       queryRequestBuilder.indexName(index.getIndexName());
     }
 
-    final QueryRequest queryRequest = queryRequestBuilder.build();
+    return queryRequestBuilder.build();
+  }
 
-    RetryResult<QueryResponse> retryResult = getRetryDriver().runWithRetry(
-        () -> {
-          log.debug("Executing DynamoDB query: " + queryRequest);
-          return dynamoDB.query(queryRequest);
-        }, reporter, PrintCounter.DynamoDBReadThrottle);
-    return retryResult;
+  private BatchGetItemRequest buildBatchGetItemRequest(String tableName,
+      List<Map<String, AttributeValue>> keys, DynamoDBQueryFilter dynamoDBQueryFilter) {
+    if (keys.size() > DynamoDBConstants.MAX_BATCH_GET_KEYS) {
+      throw new IllegalArgumentException("Cannot get more than "
+          + DynamoDBConstants.MAX_BATCH_GET_KEYS + " keys in one batch, got " + keys.size());
+    }
+
+    // BatchGetItem takes no filter; conditions on other attributes are applied by the caller
+    KeysAndAttributes.Builder keysAndAttributes = KeysAndAttributes.builder().keys(keys);
+    if (dynamoDBQueryFilter != null) {
+      if (dynamoDBQueryFilter.isConsistentRead()) {
+        keysAndAttributes.consistentRead(true);
+      }
+      DynamoDBExpressionBuilder expressionBuilder = new DynamoDBExpressionBuilder();
+      String projectionExpression =
+          expressionBuilder.buildProjectionExpression(dynamoDBQueryFilter.getProjection());
+      if (projectionExpression != null) {
+        keysAndAttributes
+            .projectionExpression(projectionExpression)
+            .expressionAttributeNames(expressionBuilder.getExpressionAttributeNames());
+      }
+    }
+
+    return BatchGetItemRequest.builder()
+        .requestItems(Collections.singletonMap(tableName, keysAndAttributes.build()))
+        .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+        .build();
   }
 
   public BatchWriteItemResponse putBatch(String tableName, Map<String, AttributeValue> item,
@@ -216,6 +449,11 @@ public class DynamoDBClient {
           + ". Item with size of " + itemSizeBytes + " was given.");
     }
     maxItemsPerBatch = DynamoDBUtil.getBoundedBatchLimit(config, maxItemsPerBatch);
+    Map<String, AttributeValue> itemKey = getPrimaryKey(item);
+    if (replaceQueuedWrite(tableName, itemKey, item, itemSizeBytes, deletionMode)) {
+      return null;
+    }
+
     BatchWriteItemResponse response = null;
     if (writeBatchMap.containsKey(tableName)) {
 
@@ -227,6 +465,15 @@ public class DynamoDBClient {
 
       if (writeRequestsForTableAtLimit || totalSizeOfWriteBatchesOverLimit) {
         response = writeBatch(reporter, itemSizeBytes);
+        // Unprocessed items put back in the batch may include a write to the same key. It is
+        // replaced, or sent again if the batch cannot hold the new item in its place, as the
+        // item must not be added next to it.
+        while (isWriteQueued(tableName, itemKey)) {
+          if (replaceQueuedWrite(tableName, itemKey, item, itemSizeBytes, deletionMode)) {
+            return response;
+          }
+          response = writeBatch(reporter, itemSizeBytes);
+        }
       }
     }
     // writeBatchMap could be cleared from writeBatch()
@@ -240,47 +487,87 @@ public class DynamoDBClient {
 
     log.info("BatchWriteItem deletionMode " + deletionMode);
 
+    if (itemKey != null) {
+      writeBatchKeyPositions.computeIfAbsent(tableName, t -> new HashMap<>())
+          .put(itemKey, writeBatchList.size());
+    }
+    writeBatchList.add(buildWriteRequest(item, deletionMode));
+
+    writeBatchMapSizeBytes += itemSizeBytes;
+
+    return response;
+  }
+
+  /**
+   * Builds the put request for an item, or the delete request for its key in deletion mode.
+   */
+  public WriteRequest buildWriteRequest(Map<String, AttributeValue> item, boolean deletionMode) {
     if (deletionMode) {
-      writeBatchList.add(WriteRequest.builder()
+      return WriteRequest.builder()
           .deleteRequest(DeleteRequest.builder()
               .key(getKeys(item))
               .build())
-          .build());
-    } else {
-      writeBatchList.add(WriteRequest.builder()
-          .putRequest(PutRequest.builder()
-              .item(item)
-              .build())
-          .build());
+          .build();
     }
+    return WriteRequest.builder()
+        .putRequest(PutRequest.builder()
+            .item(item)
+            .build())
+        .build();
+  }
 
-    writeBatchMapSizeBytes += itemSizeBytes;
+  /**
+   * Sends one BatchWriteItem request for a single table. Unlike {@link #putBatch}, nothing is
+   * buffered: unprocessed items are left in the response for the caller to resubmit.
+   */
+  public BatchWriteItemResponse batchWriteItem(String tableName, List<WriteRequest> writeRequests,
+      Reporter reporter) {
+    final BatchWriteItemRequest batchWriteItemRequest = BatchWriteItemRequest.builder()
+        .requestItems(Collections.singletonMap(tableName, writeRequests))
+        .returnConsumedCapacity(ReturnConsumedCapacity.INDEXES)
+        .build();
 
-    return response;
+    return getRetryDriver().runWithRetry(
+        () -> dynamoDB.batchWriteItem(batchWriteItemRequest),
+        reporter, PrintCounter.DynamoDBWriteThrottle).result;
   }
 
-  public void close() {
+  /**
+   * Sends the write requests buffered by {@link #putBatch}, resending unprocessed ones until none
+   * are left.
+   *
+   * @return the responses of the requests sent
+   */
+  public List<BatchWriteItemResponse> flushWriteBatch(Reporter reporter) {
+    List<BatchWriteItemResponse> responses = new ArrayList<>();
     while (!writeBatchMap.isEmpty()) {
-      writeBatch(Reporter.NULL, 0);
+      responses.add(writeBatch(reporter, 0));
     }
+    return responses;
+  }
+
+  public void close() {
+    flushWriteBatch(Reporter.NULL);
 
     if (dynamoDB != null) {
       dynamoDB.close();
     }
+
+    synchronized (this) {
+      if (asyncDynamoDB != null) {
+        asyncDynamoDB.close();
+        asyncDynamoDB = null;
+      }
+    }
   }
 
   private Map<String, AttributeValue> getKeys(final Map<String, AttributeValue> item) {
-    final String tableKeyNames = config.get(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES);
-
-    if (tableKeyNames == null || tableKeyNames.isEmpty()) {
+    if (tableKeyNames.isEmpty()) {
       return item;
     }
 
-    final Set<String> keySet = new HashSet<>(
-        Arrays.asList(tableKeyNames.split(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES_SEPARATOR)));
-
     final Map<String, AttributeValue> keys = item.entrySet().stream()
-        .filter(entry -> keySet.contains(entry.getKey()))
+        .filter(entry -> tableKeyNames.contains(entry.getKey()))
         .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
 
     if (keys.isEmpty()) {
@@ -291,6 +578,42 @@ public class DynamoDBClient {
     return keys;
   }
 
+  /**
+   * @return the primary key of the item, or null if the key names of the table are not configured
+   */
+  private Map<String, AttributeValue> getPrimaryKey(Map<String, AttributeValue> item) {
+    return DynamoDBUtil.getPrimaryKey(item, tableKeyNames);
+  }
+
+  /**
+   * Replaces the queued write to the same key, as BatchWriteItem rejects a request with two
+   * operations on one key. The last write wins, as it would have if both had been sent.
+   *
+   * @return false if no write to the key is queued, or the batch cannot hold the new item
+   */
+  private boolean replaceQueuedWrite(String tableName, Map<String, AttributeValue> itemKey,
+      Map<String, AttributeValue> item, int itemSizeBytes, boolean deletionMode) {
+    if (!isWriteQueued(tableName, itemKey)) {
+      return false;
+    }
+    Integer position = writeBatchKeyPositions.get(tableName).get(itemKey);
+
+    List<WriteRequest> writeBatchList = writeBatchMap.get(tableName);
+    int queuedSizeBytes =
+        DynamoDBUtil.getItemSizeBytes(getItemFromRequest(writeBatchList.get(position)));
+    if (writeBatchMapSizeBytes - queuedSizeBytes + itemSizeBytes > maxBatchSize) {
+      return false;
+    }
+    writeBatchList.set(position, buildWriteRequest(item, deletionMode));
+    writeBatchMapSizeBytes += itemSizeBytes - queuedSizeBytes;
+    return true;
+  }
+
+  private boolean isWriteQueued(String tableName, Map<String, AttributeValue> itemKey) {
+    return itemKey != null && writeBatchKeyPositions.containsKey(tableName)
+        && writeBatchKeyPositions.get(tableName).containsKey(itemKey);
+  }
+
   private static Map<String, AttributeValue> getItemFromRequest(WriteRequest request) {
     if (request.putRequest() != null) {
       return request.putRequest().item();
@@ -313,7 +636,14 @@ public class DynamoDBClient {
           public BatchWriteItemResponse call() throws
               UnsupportedEncodingException,
               InterruptedException {
-            pauseExponentially(batchWriteRetries);
+            DynamoDBUtil.pauseExponentially(batchWriteRetries);
+            if (batchWritePacer != null) {
+              int itemCount = 0;
+              for (List<WriteRequest> requests : batchWriteItemRequest.requestItems().values()) {
+                itemCount += requests.size();
+              }
+              batchWritePacer.awaitCapacity(itemCount);
+            }
             BatchWriteItemResponse result = dynamoDB.batchWriteItem(batchWriteItemRequest);
 
             Map<String, List<WriteRequest>> unprocessedItems = result.unprocessedItems();
@@ -343,14 +673,11 @@ public class DynamoDBClient {
                 }
               }
 
+              // The total includes the table and all of its local and global secondary indexes
               double consumed = 0.0;
               for (ConsumedCapacity consumedCapacity : result.consumedCapacity()) {
-                consumed = consumedCapacity.table().capacityUnits();
-                if (consumedCapacity.localSecondaryIndexes() != null) {
-                  for (Capacity lsiConsumedCapacity :
-                      consumedCapacity.localSecondaryIndexes().values()) {
-                    consumed += lsiConsumedCapacity.capacityUnits();
-                  }
+                if (consumedCapacity.capacityUnits() != null) {
+                  consumed += consumedCapacity.capacityUnits();
                 }
               }
 
@@ -374,30 +701,28 @@ public class DynamoDBClient {
 
     // If some items failed to go through, add them back to the writeBatchMap
     Map<String, List<WriteRequest>> unprocessedItems = retryResult.result.unprocessedItems();
+    writeBatchKeyPositions.clear();
     for (Entry<String, List<WriteRequest>> entry : unprocessedItems.entrySet()) {
       String key = entry.getKey();
       List<WriteRequest> requests = entry.getValue();
-      for (WriteRequest request : requests) {
-        writeBatchMapSizeBytes += DynamoDBUtil.getItemSizeBytes(getItemFromRequest(request));
+      Map<Map<String, AttributeValue>, Integer> positions = new HashMap<>();
+      for (int i = 0; i < requests.size(); i++) {
+        Map<String, AttributeValue> item = getItemFromRequest(requests.get(i));
+        writeBatchMapSizeBytes += DynamoDBUtil.getItemSizeBytes(item);
+        Map<String, AttributeValue> itemKey = getPrimaryKey(item);
+        if (itemKey != null) {
+          positions.put(itemKey, i);
+        }
       }
       writeBatchMap.put(key, new ArrayList<>(requests));
+      writeBatchKeyPositions.put(key, positions);
     }
     return retryResult.result;
   }
 
   private DynamoDBFibonacciRetryer getRetryDriver() {
-    return new DynamoDBFibonacciRetryer(Duration.standardMinutes(DEFAULT_RETRY_DURATION));
-  }
-
-  private void pauseExponentially(int retries) throws InterruptedException {
-    if (retries == 0) {
-      return;
-    }
-    long scaleFactor = 500 + new Random().nextInt(100);
-    long delay = (long) (Math.pow(2, retries) * scaleFactor) / 4;
-    delay = Math.min(delay, MAX_BACKOFF_IN_MILLISECONDS);
-    log.info("Pausing " + delay + " ms at retry " + retries);
-    Thread.sleep(delay);
+    return new DynamoDBFibonacciRetryer(Duration.standardMinutes(
+        DynamoDBConstants.DEFAULT_RETRY_DURATION_MINUTES));
   }
 
   private DynamoDbClient getDynamoDBClient(Configuration conf, String region) {
@@ -420,6 +745,61 @@ public class DynamoDBClient {
         .build();
   }
 
+  /**
+   * The asynchronous client is only needed by the non-blocking read engine, so it is created on
+   * first use.
+   */
+  private synchronized DynamoDbAsyncClient getAsyncClient() {
+    if (asyncDynamoDB == null) {
+      Preconditions.checkNotNull(config, "conf cannot be null.");
+      asyncDynamoDB = getDynamoDBAsyncClient(config, region);
+    }
+    return asyncDynamoDB;
+  }
+
+  private DynamoDbAsyncClient getDynamoDBAsyncClient(Configuration conf, String region) {
+    final DynamoDbAsyncClientBuilder dynamoDbAsyncClientBuilder = DynamoDbAsyncClient.builder();
+
+    dynamoDbAsyncClientBuilder.region(Region.of(getDynamoDBRegion(conf, region)));
+
+    String customEndpoint = getDynamoDBEndpoint(conf, region);
+    if (!Strings.isNullOrEmpty(customEndpoint)) {
+      dynamoDbAsyncClientBuilder.endpointOverride(URI.create(customEndpoint));
+    }
+
+    // Requests are not wrapped by the Fibonacci retryer here, so let the SDK back off on
+    // throttles without holding a thread.
+    return dynamoDbAsyncClientBuilder.httpClient(NettyNioAsyncHttpClient.builder()
+            .maxConcurrency(conf.getInt(DynamoDBConstants.ASYNC_READ_MAX_CONCURRENCY,
+                DynamoDBConstants.DEFAULT_ASYNC_READ_MAX_CONCURRENCY))
+            .proxyConfiguration(applyNettyProxyConfiguration(conf))
+            .build())
+        .credentialsProvider(getAwsCredentialsProvider(conf))
+        .overrideConfiguration(ClientOverrideConfiguration.builder()
+            .retryPolicy(builder -> builder.numRetries(ASYNC_NUM_RETRIES))
+            .build())
+        .build();
+  }
+
+  private software.amazon.awssdk.http.nio.netty.ProxyConfiguration applyNettyProxyConfiguration(
+      Configuration conf) {
+    // Validates the proxy settings the same way as for the synchronous client
+    applyProxyConfiguration(conf);
+
+    software.amazon.awssdk.http.nio.netty.ProxyConfiguration.Builder builder =
+        software.amazon.awssdk.http.nio.netty.ProxyConfiguration.builder();
+
+    final String proxyHost = conf.get(DynamoDBConstants.PROXY_HOST);
+    final int proxyPort = conf.getInt(DynamoDBConstants.PROXY_PORT, 0);
+    if (!Strings.isNullOrEmpty(proxyHost) && proxyPort > 0) {
+      builder.host(proxyHost)
+          .port(proxyPort)
+          .username(conf.get(DynamoDBConstants.PROXY_USERNAME))
+          .password(conf.get(DynamoDBConstants.PROXY_PASSWORD));
+    }
+    return builder.build();
+  }
+
   @VisibleForTesting
   ProxyConfiguration applyProxyConfiguration(Configuration conf) {
     ProxyConfiguration.Builder builder = ProxyConfiguration.builder();
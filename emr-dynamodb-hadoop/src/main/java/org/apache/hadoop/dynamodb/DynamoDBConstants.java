@@ -90,12 +90,19 @@ public interface DynamoDBConstants {
   long DEFAULT_MAX_ITEM_SIZE = 400 * 1024;
   long DEFAULT_MAX_BATCH_SIZE = 16 * 1024 * 1024;
   long DEFAULT_MAX_ITEMS_PER_BATCH = 25;
+  int MAX_BATCH_GET_KEYS = 100;
 
   double READ_EVENTUALLY_TO_STRONGLY_CONSISTENT_FACTOR = 2;
 
   String SCAN_SEGMENTS = "dynamodb.scan.segments";
   int MAX_SCAN_SEGMENTS = 1000000;
   int MIN_SCAN_SEGMENTS = 1;
+  // Number of range key sub-ranges a query on a single item collection is split into
+  String QUERY_RANGE_SPLITS = "dynamodb.query.range.splits";
+  int DEFAULT_QUERY_RANGE_SPLITS = 1;
+  // Most values of a hash key IN list read with one Query each, longer lists are scanned instead
+  String QUERY_MAX_HASH_KEYS = "dynamodb.query.max.hash.keys";
+  int DEFAULT_QUERY_MAX_HASH_KEYS = 1000;
   double BYTES_PER_READ_CAPACITY_UNIT = 4096;
   double BYTES_PER_WRITE_CAPACITY_UNIT = 1024;
 
@@ -104,7 +111,72 @@ public interface DynamoDBConstants {
 
   int PSCAN_SEGMENT_BATCH_SIZE = 50;
   int PSCAN_MULTIPLEXER_CAPACITY = 600;
+  String READ_BUFFER_MAX_BYTES = "dynamodb.read.buffer.max.bytes";
+  long DEFAULT_READ_BUFFER_MAX_BYTES = 64L * 1024 * 1024;
   int RATE_CONTROLLER_WINDOW_SIZE_SEC = 5;
+  String READ_MAX_WORKERS = "dynamodb.read.max.workers";
+  int DEFAULT_READ_MAX_WORKERS = 30;
+  // Reads with Select=COUNT, returning an empty item for each matching item
+  String READ_COUNT_ONLY = "dynamodb.read.count.only";
+  // Most items read by each query, and by each task of a scan. Ignored when items are filtered
+  // further after they are read, e.g. by Hive
+  String READ_LIMIT = "dynamodb.read.limit";
+  // Whether queries return items in ascending order of the range key
+  String QUERY_SCAN_INDEX_FORWARD = "dynamodb.query.scan.index.forward";
+  // Strongly consistent scans and queries, at twice the read capacity per item
+  String READ_CONSISTENT = "dynamodb.read.consistent";
+
+  // Non-blocking read engine on the asynchronous DynamoDB client
+  String ASYNC_READ_ENABLED = "dynamodb.read.async.enabled";
+  boolean DEFAULT_ASYNC_READ_ENABLED = false;
+  String ASYNC_READ_MAX_CONCURRENCY = "dynamodb.read.async.max.concurrency";
+  int DEFAULT_ASYNC_READ_MAX_CONCURRENCY = 128;
+
+  // Writes are paced by a token bucket holding up to this many seconds of the write rate
+  String WRITE_BURST_SECONDS = "dynamodb.throughput.write.burst.seconds";
+  double DEFAULT_WRITE_BURST_SECONDS = 1.0;
+
+  // Minutes spent resending a throttled request or its unprocessed items before giving up
+  int DEFAULT_RETRY_DURATION_MINUTES = 10;
+
+  // Pipelined writer keeping several BatchWriteItem requests in flight per task
+  String WRITE_PIPELINE_ENABLED = "dynamodb.write.pipeline.enabled";
+  boolean DEFAULT_WRITE_PIPELINE_ENABLED = false;
+  String WRITE_PIPELINE_MAX_IN_FLIGHT = "dynamodb.write.pipeline.max.inflight";
+  int DEFAULT_WRITE_PIPELINE_MAX_IN_FLIGHT = 4;
+  String WRITE_PIPELINE_QUEUE_SIZE = "dynamodb.write.pipeline.queue.size";
+  int DEFAULT_WRITE_PIPELINE_QUEUE_SIZE = 2;
+
+  // Job-wide capacity broker handing the throughput of finished tasks to the running ones
+  String CAPACITY_BROKER_ENABLED = "dynamodb.capacity.broker.enabled";
+  boolean DEFAULT_CAPACITY_BROKER_ENABLED = false;
+  String CAPACITY_COORDINATOR_CLASS = "dynamodb.capacity.coordinator.class";
+  String CAPACITY_COORDINATOR_DIR = "dynamodb.capacity.coordinator.dir";
+  String DEFAULT_CAPACITY_COORDINATOR_DIR = "${hadoop.tmp.dir}/dynamodb-capacity";
+  String CAPACITY_LEASE_INTERVAL_MS = "dynamodb.capacity.lease.interval.ms";
+  long DEFAULT_CAPACITY_LEASE_INTERVAL_MS = 30 * 1000;
+
+  // Cache of DescribeTable results, in the process and in the job configuration
+  String DESCRIBE_TABLE_CACHE_TTL_MS = "dynamodb.describe.table.cache.ttl.ms";
+  long DEFAULT_DESCRIBE_TABLE_CACHE_TTL_MS = 5 * 60 * 1000;
+  String TABLE_DESCRIPTION_PREFIX = "dynamodb.table.description.";
+
+  // Scans in many more segments than tasks, which claim them from a queue shared by the job
+  String SCAN_SEGMENT_CLAIMS_ENABLED = "dynamodb.scan.segment.claims.enabled";
+  boolean DEFAULT_SCAN_SEGMENT_CLAIMS_ENABLED = false;
+  String SCAN_SEGMENTS_PER_MAPPER = "dynamodb.scan.segments.per.mapper";
+  int DEFAULT_SCAN_SEGMENTS_PER_MAPPER = 16;
+  String SCAN_SEGMENT_QUEUE_CLASS = "dynamodb.scan.segment.queue.class";
+  String SCAN_SEGMENT_QUEUE_DIR = "dynamodb.scan.segment.queue.dir";
+  String DEFAULT_SCAN_SEGMENT_QUEUE_DIR = "${hadoop.tmp.dir}/dynamodb-segments";
+
+  // Checkpoints of scan progress, letting a new attempt of a task resume where a failed one stopped
+  String READ_CHECKPOINT_ENABLED = "dynamodb.read.checkpoint.enabled";
+  boolean DEFAULT_READ_CHECKPOINT_ENABLED = false;
+  String READ_CHECKPOINT_DIR = "dynamodb.read.checkpoint.dir";
+  String DEFAULT_READ_CHECKPOINT_DIR = "${hadoop.tmp.dir}/dynamodb-checkpoints";
+  String READ_CHECKPOINT_INTERVAL_MS = "dynamodb.read.checkpoint.interval.ms";
+  long DEFAULT_READ_CHECKPOINT_INTERVAL_MS = 60 * 1000;
 
   String EXPORT_FORMAT_VERSION = "dynamodb.export.format.version";
   String DEFAULT_AWS_REGION = Region.US_EAST_1.toString();
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Binary encoding of DynamoDB items used by {@link DynamoDBItemWritable}.
+ *
+ * <p>Every attribute value starts with a one byte type tag. Lengths and counts are unsigned
+ * varints, strings are UTF-8 and binary values are written as raw bytes. Maps and lists store
+ * their size plus one, so that zero can stand for a null reference. The encoding is prefixed by a
+ * version byte; bump {@link #VERSION} and keep reading the old versions when changing it.
+ */
+final class DynamoDBItemBinaryFormat {
+
+  static final byte VERSION = 1;
+
+  private static final byte TAG_NULL_REFERENCE = 0;
+  private static final byte TAG_S = 1;
+  private static final byte TAG_N = 2;
+  private static final byte TAG_B = 3;
+  private static final byte TAG_SS = 4;
+  private static final byte TAG_NS = 5;
+  private static final byte TAG_BS = 6;
+  private static final byte TAG_M = 7;
+  private static final byte TAG_L = 8;
+  private static final byte TAG_NUL = 9;
+  private static final byte TAG_BOOL = 10;
+  // An AttributeValue without any type set
+  private static final byte TAG_EMPTY = 11;
+
+  private DynamoDBItemBinaryFormat() {
+  }
+
+  static void write(DataOutput out, Map<String, AttributeValue> item) throws IOException {
+    out.writeByte(VERSION);
+    writeMap(out, item);
+  }
+
+  static Map<String, AttributeValue> read(DataInput in) throws IOException {
+    byte version = in.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported DynamoDB item format version " + version);
+    }
+    return readMap(in);
+  }
+
+  private static void writeMap(DataOutput out, Map<String, AttributeValue> map)
+      throws IOException {
+    if (map == null) {
+      writeVarInt(out, 0);
+      return;
+    }
+    writeVarInt(out, map.size() + 1);
+    for (Map.Entry<String, AttributeValue> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      writeValue(out, entry.getValue());
+    }
+  }
+
+  private static Map<String, AttributeValue> readMap(DataInput in) throws IOException {
+    int size = readVarInt(in) - 1;
+    if (size < 0) {
+      return null;
+    }
+    Map<String, AttributeValue> map = new HashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+    for (int i = 0; i < size; i++) {
+      map.put(readString(in), readValue(in));
+    }
+    return map;
+  }
+
+  private static void writeValue(DataOutput out, AttributeValue value) throws IOException {
+    if (value == null) {
+      out.writeByte(TAG_NULL_REFERENCE);
+      return;
+    }
+
+    switch (value.type()) {
+      case S:
+        out.writeByte(TAG_S);
+        writeString(out, value.s());
+        break;
+      case N:
+        out.writeByte(TAG_N);
+        writeString(out, value.n());
+        break;
+      case B:
+        out.writeByte(TAG_B);
+        writeBytes(out, value.b());
+        break;
+      case SS:
+        out.writeByte(TAG_SS);
+        writeStrings(out, value.ss());
+        break;
+      case NS:
+        out.writeByte(TAG_NS);
+        writeStrings(out, value.ns());
+        break;
+      case BS:
+        out.writeByte(TAG_BS);
+        writeVarInt(out, value.bs().size());
+        for (SdkBytes bytes : value.bs()) {
+          writeBytes(out, bytes);
+        }
+        break;
+      case M:
+        out.writeByte(TAG_M);
+        writeMap(out, value.m());
+        break;
+      case L:
+        out.writeByte(TAG_L);
+        writeVarInt(out, value.l().size());
+        for (AttributeValue element : value.l()) {
+          writeValue(out, element);
+        }
+        break;
+      case NUL:
+        out.writeByte(TAG_NUL);
+        out.writeBoolean(value.nul());
+        break;
+      case BOOL:
+        out.writeByte(TAG_BOOL);
+        out.writeBoolean(value.bool());
+        break;
+      default:
+        out.writeByte(TAG_EMPTY);
+        break;
+    }
+  }
+
+  private static AttributeValue readValue(DataInput in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case TAG_NULL_REFERENCE:
+        return null;
+      case TAG_S:
+        return AttributeValue.fromS(readString(in));
+      case TAG_N:
+        return AttributeValue.fromN(readString(in));
+      case TAG_B:
+        return AttributeValue.fromB(readBytes(in));
+      case TAG_SS:
+        return AttributeValue.fromSs(readStrings(in));
+      case TAG_NS:
+        return AttributeValue.fromNs(readStrings(in));
+      case TAG_BS:
+        int binaryCount = readVarInt(in);
+        List<SdkBytes> binaries = new ArrayList<>(binaryCount);
+        for (int i = 0; i < binaryCount; i++) {
+          binaries.add(readBytes(in));
+        }
+        return AttributeValue.fromBs(binaries);
+      case TAG_M:
+        return AttributeValue.fromM(readMap(in));
+      case TAG_L:
+        int elementCount = readVarInt(in);
+        List<AttributeValue> elements = new ArrayList<>(elementCount);
+        for (int i = 0; i < elementCount; i++) {
+          elements.add(readValue(in));
+        }
+        return AttributeValue.fromL(elements);
+      case TAG_NUL:
+        return AttributeValue.fromNul(in.readBoolean());
+      case TAG_BOOL:
+        return AttributeValue.fromBool(in.readBoolean());
+      case TAG_EMPTY:
+        return AttributeValue.builder().build();
+      default:
+        throw new IOException("Unknown attribute value type tag " + tag);
+    }
+  }
+
+  private static void writeStrings(DataOutput out, List<String> strings) throws IOException {
+    writeVarInt(out, strings.size());
+    for (String string : strings) {
+      writeString(out, string);
+    }
+  }
+
+  private static List<String> readStrings(DataInput in) throws IOException {
+    int count = readVarInt(in);
+    List<String> strings = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      strings.add(readString(in));
+    }
+    return strings;
+  }
+
+  private static void writeString(DataOutput out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    byte[] bytes = new byte[readVarInt(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeBytes(DataOutput out, SdkBytes bytes) throws IOException {
+    byte[] array = bytes.asByteArrayUnsafe();
+    writeVarInt(out, array.length);
+    out.write(array);
+  }
+
+  private static SdkBytes readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[readVarInt(in)];
+    in.readFully(bytes);
+    return SdkBytes.fromByteArrayUnsafe(bytes);
+  }
+
+  static void writeVarInt(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = in.readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (value < 0) {
+          throw new IOException("Malformed varint, negative length " + value);
+        }
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint, more than 5 bytes");
+  }
+}
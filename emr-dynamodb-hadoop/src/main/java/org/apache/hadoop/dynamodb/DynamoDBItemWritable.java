@@ -21,7 +21,6 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
-import java.lang.Math;
 import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.Map;
@@ -36,7 +35,10 @@ public class DynamoDBItemWritable implements Writable, Serializable {
   static final String START_OF_TEXT = Character.toString((char) 02);
   // ^C, a.k.a ETX
   static final String END_OF_TEXT = Character.toString((char) 03);
+  private static final char START_OF_TEXT_CHAR = START_OF_TEXT.charAt(0);
+  private static final char END_OF_TEXT_CHAR = END_OF_TEXT.charAt(0);
   private static final char FIRST_MAGIC_BYTES = 0x0001;
+  private static final char BINARY_MAGIC_BYTES = 0x0002;
   private static final byte NEXT_MAGIC_BYTE = 0x00;
 
   private Map<String, AttributeValue> dynamoDBItem;
@@ -55,7 +57,22 @@ public class DynamoDBItemWritable implements Writable, Serializable {
   // format itself and make sure that's backward compatible.
   @Override
   public void readFields(DataInput in) throws IOException {
-    readFieldsStream(readStringFromDataInput(in));
+    char firstBytes = in.readChar();
+
+    if (firstBytes == BINARY_MAGIC_BYTES) {
+      byte nextByte = in.readByte();
+      if (nextByte == NEXT_MAGIC_BYTE) {
+        dynamoDBItem = DynamoDBItemBinaryFormat.read(in);
+      } else {
+        // A two byte string written by DataOutput.writeUTF(), e.g. an empty item
+        byte[] data = new byte[]{(byte) (firstBytes >> 8), (byte) firstBytes, nextByte,
+            in.readByte()};
+        readFieldsStream(new DataInputStream(new ByteArrayInputStream(data)).readUTF());
+      }
+      return;
+    }
+
+    readFieldsStream(readStringFromDataInput(firstBytes, in));
   }
 
   // Reads what might be either the result of a single call to
@@ -65,10 +82,10 @@ public class DynamoDBItemWritable implements Writable, Serializable {
   // string.  Crucially, in that modified UTF8 format the null character
   // '\u0000' is always written with two bytes.  Thus the sequence 00000000
   // 00000001 00000000 will not occur as a result of DataOutput.writeUTF and so
-  // we use it as a magic sequence signifying the chunked format.
-  private String readStringFromDataInput(DataInput in) throws IOException {
+  // we use it as a magic sequence signifying the chunked format. For the same
+  // reason 00000000 00000010 00000000 signifies the binary format.
+  private String readStringFromDataInput(char firstBytes, DataInput in) throws IOException {
     byte[] data;
-    char firstBytes = in.readChar();
 
     if (firstBytes == FIRST_MAGIC_BYTES) {
       byte nextByte = in.readByte();
@@ -105,21 +122,9 @@ public class DynamoDBItemWritable implements Writable, Serializable {
 
   @Override
   public void write(DataOutput out) throws IOException {
-    String whole = writeStream();
-    int chunkSize = 1 << 14;
-    int chunks = whole.length() / chunkSize;
-    if (whole.length() % chunkSize != 0) {
-      chunks += 1;
-    }
-
-    out.writeChar(FIRST_MAGIC_BYTES);
-    out.write(new byte[]{NEXT_MAGIC_BYTE});
-
-    out.writeInt(chunks);
-    for (int c = 0; c < chunks; c++) {
-      String chunk = whole.substring(c * chunkSize, Math.min((c + 1) * chunkSize, whole.length()));
-      out.writeUTF(chunk);
-    }
+    out.writeChar(BINARY_MAGIC_BYTES);
+    out.writeByte(NEXT_MAGIC_BYTE);
+    DynamoDBItemBinaryFormat.write(out, dynamoDBItem);
   }
 
   public void readFieldsStream(String string) {
@@ -129,8 +134,7 @@ public class DynamoDBItemWritable implements Writable, Serializable {
   }
 
   public String writeStream() {
-    Gson gson = DynamoDBUtil.getGson();
-    return gson.toJson(dynamoDBItem, type);
+    return DynamoDBUtil.toJson(dynamoDBItem, type);
   }
 
   public Map<String, AttributeValue> getItem() {
@@ -156,8 +160,8 @@ public class DynamoDBItemWritable implements Writable, Serializable {
     string = string.trim();
     if (!string.startsWith("{")) {
       string = "{" + string + "}";
-      string = string.replaceAll(START_OF_TEXT, ",");
-      string = string.replaceAll(END_OF_TEXT, ":");
+      string = string.replace(START_OF_TEXT_CHAR, ',');
+      string = string.replace(END_OF_TEXT_CHAR, ':');
     }
     return string;
   }
@@ -20,22 +20,23 @@ import static org.apache.hadoop.dynamodb.DynamoDBConstants.MAX_ITEMS_PER_BATCH;
 import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -48,8 +49,6 @@ import org.apache.hadoop.dynamodb.util.TaskCalculator;
 import org.apache.hadoop.dynamodb.util.YarnContainerAllocator;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.regions.internal.util.EC2MetadataUtils;
@@ -60,17 +59,15 @@ public final class DynamoDBUtil {
 
   public static final String CHARACTER_ENCODING = "UTF-8";
   private static final Log log = LogFactory.getLog(DynamoDBUtil.class);
+  private static final long MAX_BACKOFF_IN_MILLISECONDS = 1000 * 3;
   private static final Gson gson;
 
   static {
     GsonBuilder gsonBuilder = new GsonBuilder();
     /* We hand serialize/deserialize ByteBuffer objects. */
-    gsonBuilder.registerTypeAdapter(ByteBuffer.class, new ByteBufferSerializer());
-    gsonBuilder.registerTypeAdapter(ByteBuffer.class, new ByteBufferDeserializer());
-    gsonBuilder.registerTypeAdapter(SdkBytes.class, new SdkBytesSerializer());
-    gsonBuilder.registerTypeAdapter(SdkBytes.class, new SdkBytesDeserializer());
-    gsonBuilder.registerTypeAdapter(AttributeValue.class, new AttributeValueSerializer());
-    gsonBuilder.registerTypeAdapter(AttributeValue.class, new AttributeValueDeserializer());
+    gsonBuilder.registerTypeAdapter(ByteBuffer.class, new ByteBufferTypeAdapter());
+    gsonBuilder.registerTypeAdapter(SdkBytes.class, new SdkBytesTypeAdapter());
+    gsonBuilder.registerTypeAdapter(AttributeValue.class, new AttributeValueTypeAdapter());
 
     gson = gsonBuilder.disableHtmlEscaping().create();
   }
@@ -144,7 +141,7 @@ public final class DynamoDBUtil {
     return gson;
   }
 
-  static int getItemSizeBytes(Map<String, AttributeValue> item) {
+  public static int getItemSizeBytes(Map<String, AttributeValue> item) {
     try {
       int itemSize = 0;
       for (Entry<String, AttributeValue> entry : item.entrySet()) {
@@ -157,16 +154,24 @@ public final class DynamoDBUtil {
     }
   }
 
-  public static void verifyInterval(long intervalBeginTime, long intervalLength) {
-    long interval = intervalBeginTime + intervalLength;
-    long currentDateTime = new DateTime(DateTimeZone.UTC).getMillis();
-    if (currentDateTime < interval) {
-      try {
-        Thread.sleep(interval - currentDateTime);
-      } catch (InterruptedException e) {
-        throw new RuntimeException("Interrupted while waiting ", e);
+  /**
+   * @return the key attributes of the item, or null if no key names are given or the item lacks
+   *     one of them
+   */
+  public static Map<String, AttributeValue> getPrimaryKey(Map<String, AttributeValue> item,
+      Collection<String> keyNames) {
+    if (keyNames == null || keyNames.isEmpty()) {
+      return null;
+    }
+    Map<String, AttributeValue> key = new HashMap<>();
+    for (String keyName : keyNames) {
+      AttributeValue value = item.get(keyName);
+      if (value == null) {
+        return null;
       }
+      key.put(keyName, value);
     }
+    return key;
   }
 
   private static int getAttributeSizeBytes(AttributeValue att) throws UnsupportedEncodingException {
@@ -202,11 +207,26 @@ public final class DynamoDBUtil {
     return byteSize;
   }
 
-  static long getBoundedBatchLimit(Configuration config, long batchSize) {
+  public static long getBoundedBatchLimit(Configuration config, long batchSize) {
     long maxItemsPerBatch = config.getLong(MAX_ITEMS_PER_BATCH, DEFAULT_MAX_ITEMS_PER_BATCH);
     return Math.min(Math.max(batchSize, 1), maxItemsPerBatch);
   }
 
+  /**
+   * Sleeps before resending the unprocessed items of a batch, doubling the pause with every retry
+   * up to a few seconds.
+   */
+  public static void pauseExponentially(int retries) throws InterruptedException {
+    if (retries == 0) {
+      return;
+    }
+    long scaleFactor = 500 + new Random().nextInt(100);
+    long delay = (long) (Math.pow(2, retries) * scaleFactor) / 4;
+    delay = Math.min(delay, MAX_BACKOFF_IN_MILLISECONDS);
+    log.info("Pausing " + delay + " ms at retry " + retries);
+    Thread.sleep(delay);
+  }
+
   public static String getValueFromConf(Configuration conf, String confKey, String defaultValue) {
     if (conf == null) {
       return defaultValue;
@@ -324,6 +344,24 @@ public final class DynamoDBUtil {
     return taskCalculator.getMaxMapTasks();
   }
 
+  /**
+   * @return true if the tasks run on MapReduce, rather than e.g. on Tez through the MapReduce API
+   */
+  public static boolean isMapReduceFramework(Configuration conf) {
+    return !"yarn-tez".equals(conf.get("mapreduce.framework.name"))
+        && "mr".equals(conf.get("hive.execution.engine", "mr"));
+  }
+
+  /**
+   * @return true if several attempts of a map task may run at once, through any of the keys
+   *     enabling speculative execution
+   */
+  public static boolean isMapSpeculationEnabled(Configuration conf) {
+    // JobConf resolves the deprecated mapred.map.tasks.speculative.execution
+    return new JobConf(conf).getMapSpeculativeExecution()
+        || conf.getBoolean("tez.am.speculation.enabled", false);
+  }
+
   /**
    * Check whether current resource manager is Yarn. (JobConf)
    * @param jobConf the configuration used by Hadoop MapReduce.
@@ -360,53 +398,75 @@ public final class DynamoDBUtil {
   }
 
   /**
-   * Since ByteBuffer does not have a no-arg constructor we hand serialize/deserialize them.
+   * Serializes a value to JSON with {@link #getGson()}, encoding binary values straight into the
+   * output.
    */
-  private static class ByteBufferSerializer implements JsonSerializer<ByteBuffer> {
-
-    @Override
-    public JsonElement serialize(ByteBuffer byteBuffer, Type type, JsonSerializationContext
-        context) {
+  public static String toJson(Object value, Type type) {
+    StringWriter json = new StringWriter();
+    gson.toJson(value, type, new Base64JsonWriter(json));
+    return json.toString();
+  }
 
-      String base64String = DynamoDBUtil.base64EncodeByteArray(byteBuffer.array());
-      return new JsonPrimitive(base64String);
+  /**
+   * Writes bytes as a base64 JSON string, as the export format expects.
+   */
+  static void writeBase64(JsonWriter out, byte[] bytes) throws IOException {
+    if (out instanceof Base64JsonWriter) {
+      ((Base64JsonWriter) out).base64Value(bytes);
+    } else {
+      out.value(java.util.Base64.getEncoder().encodeToString(bytes));
     }
+  }
 
+  /**
+   * Reads a base64 JSON string. Decoding stays lenient, as it was for previously exported data.
+   */
+  static SdkBytes readBase64(JsonReader in) throws IOException {
+    return SdkBytes.fromByteArrayUnsafe(Base64.decodeBase64(in.nextString()));
   }
 
   /**
    * Since ByteBuffer does not have a no-arg constructor we hand serialize/deserialize them.
    */
-  private static class ByteBufferDeserializer implements JsonDeserializer<ByteBuffer> {
+  private static class ByteBufferTypeAdapter extends TypeAdapter<ByteBuffer> {
 
     @Override
-    public ByteBuffer deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext
-        context) throws JsonParseException {
-
-      String base64String = jsonElement.getAsJsonPrimitive().getAsString();
-      return DynamoDBUtil.base64StringToByteBuffer(base64String);
+    public void write(JsonWriter out, ByteBuffer byteBuffer) throws IOException {
+      if (byteBuffer == null) {
+        out.nullValue();
+        return;
+      }
+      writeBase64(out, byteBuffer.array());
     }
-  }
-
-  private static class SdkBytesSerializer implements JsonSerializer<SdkBytes> {
 
     @Override
-    public JsonElement serialize(SdkBytes sdkBytes, Type type, JsonSerializationContext
-        context) {
-
-      String base64String = DynamoDBUtil.base64EncodeByteArray(sdkBytes.asByteArray());
-      return new JsonPrimitive(base64String);
+    public ByteBuffer read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      return ByteBuffer.wrap(Base64.decodeBase64(in.nextString()));
     }
   }
 
-  private static class SdkBytesDeserializer implements JsonDeserializer<SdkBytes> {
+  private static class SdkBytesTypeAdapter extends TypeAdapter<SdkBytes> {
 
     @Override
-    public SdkBytes deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext
-        context) throws JsonParseException {
+    public void write(JsonWriter out, SdkBytes sdkBytes) throws IOException {
+      if (sdkBytes == null) {
+        out.nullValue();
+        return;
+      }
+      writeBase64(out, sdkBytes.asByteArrayUnsafe());
+    }
 
-      String base64String = jsonElement.getAsJsonPrimitive().getAsString();
-      return SdkBytes.fromByteBuffer(DynamoDBUtil.base64StringToByteBuffer(base64String));
+    @Override
+    public SdkBytes read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      return readBase64(in);
     }
   }
 
@@ -31,10 +31,17 @@ public class IopsController {
 
   public IopsController(IopsCalculator iopsCalculator, double averageItemSizeInBytes,
       DynamoDBOperationType operationType) {
+    this(iopsCalculator, averageItemSizeInBytes, operationType, getUpdateDuration());
+  }
+
+  /**
+   * @param iopsUpdateDuration how often to recalculate the target IOPS
+   */
+  public IopsController(IopsCalculator iopsCalculator, double averageItemSizeInBytes,
+      DynamoDBOperationType operationType, Duration iopsUpdateDuration) {
     this.iopsCalculator = iopsCalculator;
     this.operationType = operationType;
-
-    iopsUpdateDuration = getUpdateDuration();
+    this.iopsUpdateDuration = iopsUpdateDuration;
     lastUpdateTime = getCurrentTime();
     targetIops = iopsCalculator.calculateTargetIops();
 
@@ -82,7 +89,7 @@ public class IopsController {
    * This method generates a random duration between 5 and 10 minutes. This is the duration used
    * to get the updated capacity unit information from the table.
    */
-  private Duration getUpdateDuration() {
+  private static Duration getUpdateDuration() {
     Random random = new Random(System.currentTimeMillis());
     long randomDuration = random.nextInt(5 * 60 * 1000);
     return Duration.standardMinutes(5).plus(randomDuration);
@@ -0,0 +1,285 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import software.amazon.awssdk.core.SdkField;
+import software.amazon.awssdk.core.SdkPojo;
+import software.amazon.awssdk.core.protocol.MarshallingType;
+import software.amazon.awssdk.core.traits.ListTrait;
+import software.amazon.awssdk.core.traits.MapTrait;
+import software.amazon.awssdk.core.util.SdkAutoConstructList;
+import software.amazon.awssdk.core.util.SdkAutoConstructMap;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
+import software.amazon.awssdk.utils.builder.SdkBuilder;
+
+/**
+ * Caches DescribeTable results at two levels, so that planning and thousands of tasks do not all
+ * go to the control plane for the same table.
+ *
+ * <ul>
+ * <li>In the process, shared by every client of the JVM, e.g. across HiveServer2 sessions. Entries
+ * are keyed by the endpoint, region and credentials of the client as well as the table name.</li>
+ * <li>In the job configuration, where the planner stores the description it fetched so that
+ * tasks start without a DescribeTable call.</li>
+ * </ul>
+ *
+ * <p>Callers pass the age they can accept. Capacity lookups use the configured TTL, while the key
+ * schema and indexes of a table are taken from any cached copy. In the configuration, the
+ * description is stored as JSON built from the field metadata of the SDK model.
+ */
+public final class TableDescriptionCache {
+
+  private static final Log log = LogFactory.getLog(TableDescriptionCache.class);
+  private static final String TIME_SEPARATOR = ":";
+  private static final Map<String, CachedDescription> cache = new ConcurrentHashMap<>();
+
+  private TableDescriptionCache() {
+  }
+
+  /**
+   * @param conf     job configuration that may hold a description stored by the planner
+   * @param scope    identifies the endpoint and account the table belongs to
+   * @param maxAgeMs oldest description the caller accepts
+   * @return the cached description, or null if there is none recent enough
+   */
+  static TableDescription get(Configuration conf, String scope, String tableName, long maxAgeMs) {
+    long now = System.currentTimeMillis();
+    CachedDescription cached = cache.get(getKey(scope, tableName));
+    if (cached != null && now - cached.fetchTimeMs <= maxAgeMs) {
+      return cached.description;
+    }
+
+    CachedDescription stored = conf == null ? null : readFromConf(conf, tableName);
+    if (stored != null && now - stored.fetchTimeMs <= maxAgeMs) {
+      return stored.description;
+    }
+    return null;
+  }
+
+  static void put(String scope, String tableName, TableDescription description) {
+    cache.put(getKey(scope, tableName), new CachedDescription(description,
+        System.currentTimeMillis()));
+  }
+
+  /**
+   * Drops the description of a table from the process cache, e.g. after the table was changed.
+   */
+  static void invalidate(String scope, String tableName) {
+    cache.remove(getKey(scope, tableName));
+  }
+
+  /**
+   * Drops every description from the process cache.
+   */
+  public static void invalidateAll() {
+    cache.clear();
+  }
+
+  /**
+   * Stores the description in job properties, for the tasks of the job to read.
+   */
+  public static void writeToJobProperties(Map<String, String> jobProperties, String tableName,
+      TableDescription description) {
+    String value = serialize(description);
+    if (value != null) {
+      jobProperties.put(DynamoDBConstants.TABLE_DESCRIPTION_PREFIX + tableName, value);
+    }
+  }
+
+  /**
+   * Stores the description in the job configuration, for the tasks of the job to read.
+   */
+  public static void writeToConf(Configuration conf, String tableName,
+      TableDescription description) {
+    String value = serialize(description);
+    if (value != null) {
+      conf.set(DynamoDBConstants.TABLE_DESCRIPTION_PREFIX + tableName, value);
+    }
+  }
+
+  private static CachedDescription readFromConf(Configuration conf, String tableName) {
+    String value = conf.get(DynamoDBConstants.TABLE_DESCRIPTION_PREFIX + tableName);
+    if (value == null) {
+      return null;
+    }
+    int separator = value.indexOf(TIME_SEPARATOR);
+    try (JsonReader in = new JsonReader(new StringReader(value.substring(separator + 1)))) {
+      TableDescription description =
+          (TableDescription) readPojo(in, () -> (SdkPojo) TableDescription.builder());
+      return new CachedDescription(description, Long.parseLong(value.substring(0, separator)));
+    } catch (IOException | RuntimeException e) {
+      log.warn("Ignoring unreadable description of table " + tableName + " in the configuration",
+          e);
+      return null;
+    }
+  }
+
+  private static String serialize(TableDescription description) {
+    StringWriter json = new StringWriter();
+    try (JsonWriter out = new JsonWriter(json)) {
+      writePojo(out, description);
+    } catch (IOException e) {
+      log.warn("Unable to store the description of table " + description.tableName(), e);
+      return null;
+    }
+    return System.currentTimeMillis() + TIME_SEPARATOR + json;
+  }
+
+  private static void writePojo(JsonWriter out, SdkPojo pojo) throws IOException {
+    out.beginObject();
+    for (SdkField<?> field : pojo.sdkFields()) {
+      Object value = field.getValueOrDefault(pojo);
+      // Unset collections are skipped, so that they read back as unset
+      if (value != null && !(value instanceof SdkAutoConstructList)
+          && !(value instanceof SdkAutoConstructMap)) {
+        out.name(field.memberName());
+        writeValue(out, field, value);
+      }
+    }
+    out.endObject();
+  }
+
+  private static void writeValue(JsonWriter out, SdkField<?> field, Object value)
+      throws IOException {
+    MarshallingType<?> type = field.marshallingType();
+    if (value == null) {
+      out.nullValue();
+    } else if (type == MarshallingType.SDK_POJO) {
+      writePojo(out, (SdkPojo) value);
+    } else if (type == MarshallingType.LIST) {
+      SdkField<?> memberField = field.getRequiredTrait(ListTrait.class).memberFieldInfo();
+      out.beginArray();
+      for (Object member : (List<?>) value) {
+        writeValue(out, memberField, member);
+      }
+      out.endArray();
+    } else if (type == MarshallingType.MAP) {
+      SdkField<?> valueField = field.getRequiredTrait(MapTrait.class).valueFieldInfo();
+      out.beginObject();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        out.name((String) entry.getKey());
+        writeValue(out, valueField, entry.getValue());
+      }
+      out.endObject();
+    } else if (value instanceof Boolean) {
+      out.value((Boolean) value);
+    } else if (value instanceof Number) {
+      out.value((Number) value);
+    } else {
+      // Strings, enums and timestamps
+      out.value(value.toString());
+    }
+  }
+
+  private static Object readPojo(JsonReader in, Supplier<SdkPojo> constructor)
+      throws IOException {
+    SdkPojo builder = constructor.get();
+    Map<String, SdkField<?>> fields = new HashMap<>();
+    for (SdkField<?> field : builder.sdkFields()) {
+      fields.put(field.memberName(), field);
+    }
+
+    in.beginObject();
+    while (in.hasNext()) {
+      SdkField<?> field = fields.get(in.nextName());
+      if (field == null) {
+        in.skipValue();
+      } else {
+        field.set(builder, readValue(in, field));
+      }
+    }
+    in.endObject();
+    return ((SdkBuilder<?, ?>) builder).build();
+  }
+
+  private static Object readValue(JsonReader in, SdkField<?> field) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    MarshallingType<?> type = field.marshallingType();
+    if (type == MarshallingType.SDK_POJO) {
+      return readPojo(in, field.constructor());
+    } else if (type == MarshallingType.LIST) {
+      SdkField<?> memberField = field.getRequiredTrait(ListTrait.class).memberFieldInfo();
+      List<Object> list = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        list.add(readValue(in, memberField));
+      }
+      in.endArray();
+      return list;
+    } else if (type == MarshallingType.MAP) {
+      SdkField<?> valueField = field.getRequiredTrait(MapTrait.class).valueFieldInfo();
+      Map<String, Object> map = new LinkedHashMap<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        map.put(in.nextName(), readValue(in, valueField));
+      }
+      in.endObject();
+      return map;
+    } else if (type == MarshallingType.BOOLEAN) {
+      return in.nextBoolean();
+    } else if (type == MarshallingType.LONG) {
+      return in.nextLong();
+    } else if (type == MarshallingType.INTEGER) {
+      return in.nextInt();
+    } else if (type == MarshallingType.DOUBLE) {
+      return in.nextDouble();
+    } else if (type == MarshallingType.FLOAT) {
+      return (float) in.nextDouble();
+    } else if (type == MarshallingType.BIG_DECIMAL) {
+      return new BigDecimal(in.nextString());
+    } else if (type == MarshallingType.INSTANT) {
+      return Instant.parse(in.nextString());
+    } else if (type == MarshallingType.STRING) {
+      return in.nextString();
+    }
+    throw new IOException("Unsupported field " + field.memberName() + " of type " + type);
+  }
+
+  private static String getKey(String scope, String tableName) {
+    return scope + "/" + tableName;
+  }
+
+  private static class CachedDescription {
+
+    private final TableDescription description;
+    private final long fetchTimeMs;
+
+    CachedDescription(TableDescription description, long fetchTimeMs) {
+      this.description = description;
+      this.fetchTimeMs = fetchTimeMs;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.capacity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
+import org.apache.hadoop.dynamodb.util.DynamoDBReflectionUtils;
+import org.apache.hadoop.dynamodb.util.TimeSource;
+
+/**
+ * Gives a task its share of the job's table capacity, based on the tasks that are still running.
+ *
+ * <p>Without the broker every task gets a fixed slice of the capacity for its whole life, and the
+ * slices of finished tasks are left unused. With it, the capacity is divided between the tasks
+ * that hold a lease in the {@link CapacityCoordinator}, so the last running tasks of a job get the
+ * full table throughput. A task never gets less than its fixed slice. Until a task has held its
+ * lease for one renewal interval it also keeps to its fixed slice, so that tasks starting at the
+ * same time can register before anyone claims their capacity.
+ */
+public class CapacityBroker implements Closeable {
+
+  private static final Log log = LogFactory.getLog(CapacityBroker.class);
+
+  private final CapacityCoordinator coordinator;
+  private final double weight;
+  private final long leaseIntervalMs;
+  private final AbstractTimeSource time;
+  private final long startTimeNano;
+  private long lastRenewalNano;
+  private double totalWeight;
+
+  CapacityBroker(CapacityCoordinator coordinator, double weight, long leaseIntervalMs,
+      AbstractTimeSource time) throws IOException {
+    this.coordinator = coordinator;
+    this.weight = weight;
+    this.leaseIntervalMs = leaseIntervalMs;
+    this.time = time;
+    this.startTimeNano = time.getNanoTime();
+    this.lastRenewalNano = startTimeNano;
+    this.totalWeight = coordinator.renewLease();
+  }
+
+  /**
+   * @param conf     job configuration
+   * @param poolName name of the capacity pool, e.g. reads of one table
+   * @param weight   share of the pool this task asks for, relative to the other tasks
+   * @return a broker holding a lease for this task, or null if the broker is disabled or cannot
+   *     be used, in which case the task should keep to its fixed slice
+   */
+  public static CapacityBroker create(Configuration conf, String poolName, double weight) {
+    if (!conf.getBoolean(DynamoDBConstants.CAPACITY_BROKER_ENABLED,
+        DynamoDBConstants.DEFAULT_CAPACITY_BROKER_ENABLED)) {
+      return null;
+    }
+
+    String jobId = conf.get("mapreduce.job.id");
+    String taskId = conf.get("mapreduce.task.attempt.id");
+    if (jobId == null || taskId == null) {
+      log.info("No job or task attempt id, capacity broker disabled");
+      return null;
+    }
+
+    CapacityCoordinator coordinator = DynamoDBReflectionUtils.createInstanceOf(
+        conf.get(DynamoDBConstants.CAPACITY_COORDINATOR_CLASS,
+            HdfsCapacityCoordinator.class.getName()), conf);
+    try {
+      coordinator.initialize(conf, jobId, poolName, taskId, weight);
+      return new CapacityBroker(coordinator, weight, conf.getLong(
+          DynamoDBConstants.CAPACITY_LEASE_INTERVAL_MS,
+          DynamoDBConstants.DEFAULT_CAPACITY_LEASE_INTERVAL_MS), new TimeSource());
+    } catch (IOException e) {
+      log.warn("Unable to take a capacity lease, keeping to the fixed share of this task", e);
+      try {
+        coordinator.close();
+      } catch (IOException ce) {
+        log.debug("Unable to release the capacity lease", ce);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Returns the fraction of the pool this task may use, renewing its lease if it is due.
+   *
+   * @param fixedFraction the fraction the task would get without the broker
+   */
+  public synchronized double getShareFraction(double fixedFraction) {
+    if (time.getTimeSinceMs(lastRenewalNano) >= leaseIntervalMs) {
+      lastRenewalNano = time.getNanoTime();
+      try {
+        totalWeight = coordinator.renewLease();
+      } catch (IOException e) {
+        log.warn("Unable to renew the capacity lease, keeping the previous share", e);
+      }
+    }
+
+    if (time.getTimeSinceMs(startTimeNano) < leaseIntervalMs || totalWeight <= 0) {
+      return fixedFraction;
+    }
+    return Math.min(1.0, Math.max(fixedFraction, weight / totalWeight));
+  }
+
+  @Override
+  public void close() throws IOException {
+    coordinator.close();
+  }
+}
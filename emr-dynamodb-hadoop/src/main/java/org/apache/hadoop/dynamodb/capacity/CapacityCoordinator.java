@@ -0,0 +1,52 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.capacity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Keeps track of the tasks of a job that are currently using a pool of table capacity. Each task
+ * holds a lease with a weight, and the capacity is divided between live leases in proportion to
+ * their weight. Implementations are loaded from {@code dynamodb.capacity.coordinator.class} and
+ * need a public no-arg constructor.
+ */
+public interface CapacityCoordinator extends Closeable {
+
+  /**
+   * Takes a lease for this task.
+   *
+   * @param conf          job configuration
+   * @param jobId         id of the job the pool belongs to
+   * @param poolName      name of the capacity pool, e.g. reads of one table
+   * @param participantId unique id of this task attempt
+   * @param weight        share of the pool this task asks for, relative to the others
+   */
+  void initialize(Configuration conf, String jobId, String poolName, String participantId,
+      double weight) throws IOException;
+
+  /**
+   * Renews the lease of this task.
+   *
+   * @return sum of the weights of all live leases in the pool, this one included
+   */
+  double renewLease() throws IOException;
+
+  /**
+   * Gives up the lease, so that its capacity goes to the remaining tasks.
+   */
+  @Override
+  void close() throws IOException;
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.capacity;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Coordinates capacity through lease files in a shared file system, by default HDFS.
+ *
+ * <p>Every task owns an empty file named after its attempt id and weight in a directory per job
+ * and pool. The file is rewritten on every renewal, so its modification time, set by the file
+ * system, tells whether the task is still alive. Leases older than three renewal intervals
+ * relative to our own belong to tasks that died without closing and are ignored. The last task
+ * to close removes the pool directory, and the job directory once no other pool is left in it.
+ */
+public class HdfsCapacityCoordinator implements CapacityCoordinator {
+
+  private static final Log log = LogFactory.getLog(HdfsCapacityCoordinator.class);
+  private static final String WEIGHT_SEPARATOR = "@";
+  private static final int LEASE_TIMEOUT_INTERVALS = 3;
+
+  private FileSystem fs;
+  private Path leaseDir;
+  private Path leaseFile;
+  private long leaseTimeoutMs;
+
+  @Override
+  public void initialize(Configuration conf, String jobId, String poolName, String participantId,
+      double weight) throws IOException {
+    Path root = new Path(conf.get(DynamoDBConstants.CAPACITY_COORDINATOR_DIR,
+        DynamoDBConstants.DEFAULT_CAPACITY_COORDINATOR_DIR));
+    leaseDir = new Path(new Path(root, jobId), poolName);
+    leaseFile = new Path(leaseDir, participantId + WEIGHT_SEPARATOR + weight);
+    leaseTimeoutMs = LEASE_TIMEOUT_INTERVALS * conf.getLong(
+        DynamoDBConstants.CAPACITY_LEASE_INTERVAL_MS,
+        DynamoDBConstants.DEFAULT_CAPACITY_LEASE_INTERVAL_MS);
+    fs = leaseDir.getFileSystem(conf);
+    fs.mkdirs(leaseDir);
+    log.info("Capacity lease file: " + leaseFile);
+  }
+
+  @Override
+  public double renewLease() throws IOException {
+    try {
+      return renewAndCountLeases();
+    } catch (FileNotFoundException e) {
+      // Removed by a task closing at the same time. Put our lease back and count again, should
+      // that fail too the caller keeps its previous share.
+      log.info("Capacity lease directory was removed, recreating " + leaseDir);
+      fs.mkdirs(leaseDir);
+      return renewAndCountLeases();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (fs != null) {
+      fs.delete(leaseFile, false);
+      removeIfEmpty(leaseDir);
+      removeIfEmpty(leaseDir.getParent());
+    }
+  }
+
+  private double renewAndCountLeases() throws IOException {
+    fs.create(leaseFile, true).close();
+    // Skip hidden files such as the checksums of the local file system
+    FileStatus[] leases = fs.listStatus(leaseDir, path -> !path.getName().startsWith("."));
+
+    long renewedAt = Long.MAX_VALUE;
+    for (FileStatus lease : leases) {
+      if (lease.getPath().getName().equals(leaseFile.getName())) {
+        renewedAt = lease.getModificationTime();
+      }
+    }
+
+    double totalWeight = 0;
+    for (FileStatus lease : leases) {
+      boolean own = lease.getPath().getName().equals(leaseFile.getName());
+      if (own || renewedAt - lease.getModificationTime() <= leaseTimeoutMs) {
+        totalWeight += parseWeight(lease.getPath());
+      }
+    }
+    return totalWeight;
+  }
+
+  private void removeIfEmpty(Path dir) {
+    try {
+      if (fs.listStatus(dir).length == 0) {
+        fs.delete(dir, false);
+      }
+    } catch (IOException e) {
+      // Already removed by another task, or another task has just added a lease to it
+      log.debug("Not removing " + dir, e);
+    }
+  }
+
+  private static double parseWeight(Path lease) {
+    String name = lease.getName();
+    int separator = name.lastIndexOf(WEIGHT_SEPARATOR);
+    if (separator < 0) {
+      return 0;
+    }
+    try {
+      return Double.parseDouble(name.substring(separator + 1));
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring unexpected file in the capacity lease directory: " + lease);
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.Condition;
+
+/**
+ * Translates {@link Condition} maps and attribute lists into DynamoDB expression strings.
+ * Attribute names and values are always referenced through placeholders, so reserved words and
+ * special characters in attribute names are safe. A single builder should be used per request so
+ * that the key condition, filter and projection expressions share the same placeholder maps.
+ */
+public class DynamoDBExpressionBuilder {
+
+  private static final String NAME_PLACEHOLDER_PREFIX = "#n";
+  private static final String VALUE_PLACEHOLDER_PREFIX = ":v";
+
+  private final Map<String, String> expressionAttributeNames = new HashMap<>();
+  private final Map<String, String> namePlaceholders = new HashMap<>();
+  private final Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+
+  /**
+   * Builds an expression that is the conjunction of all given conditions.
+   *
+   * @param conditions attribute name to condition map
+   * @return the expression, or null if there are no conditions
+   */
+  public String buildConditionExpression(Map<String, Condition> conditions) {
+    if (conditions == null || conditions.isEmpty()) {
+      return null;
+    }
+
+    // Sort by attribute name so the same filter always renders the same expression
+    List<String> clauses = new ArrayList<>(conditions.size());
+    for (Map.Entry<String, Condition> entry : new TreeMap<>(conditions).entrySet()) {
+      clauses.add(buildClause(entry.getKey(), entry.getValue()));
+    }
+    return String.join(" AND ", clauses);
+  }
+
+  /**
+   * Builds a projection expression that returns only the given top-level attributes.
+   *
+   * @param attributeNames attributes to return
+   * @return the expression, or null if all attributes should be returned
+   */
+  public String buildProjectionExpression(Collection<String> attributeNames) {
+    if (attributeNames == null || attributeNames.isEmpty()) {
+      return null;
+    }
+
+    Set<String> placeholders = new LinkedHashSet<>();
+    for (String attributeName : attributeNames) {
+      placeholders.add(nameFor(attributeName));
+    }
+    return String.join(", ", placeholders);
+  }
+
+  public Map<String, String> getExpressionAttributeNames() {
+    return expressionAttributeNames;
+  }
+
+  public Map<String, AttributeValue> getExpressionAttributeValues() {
+    return expressionAttributeValues;
+  }
+
+  private String buildClause(String attributeName, Condition condition) {
+    String name = nameFor(attributeName);
+    List<AttributeValue> values = condition.attributeValueList();
+
+    switch (condition.comparisonOperator()) {
+      case EQ:
+        return name + " = " + valueFor(values, 0);
+      case NE:
+        return name + " <> " + valueFor(values, 0);
+      case LE:
+        return name + " <= " + valueFor(values, 0);
+      case LT:
+        return name + " < " + valueFor(values, 0);
+      case GE:
+        return name + " >= " + valueFor(values, 0);
+      case GT:
+        return name + " > " + valueFor(values, 0);
+      case BETWEEN:
+        return name + " BETWEEN " + valueFor(values, 0) + " AND " + valueFor(values, 1);
+      case IN:
+        List<String> placeholders = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+          placeholders.add(valueFor(values, i));
+        }
+        return name + " IN (" + String.join(", ", placeholders) + ")";
+      case BEGINS_WITH:
+        return "begins_with(" + name + ", " + valueFor(values, 0) + ")";
+      case CONTAINS:
+        return "contains(" + name + ", " + valueFor(values, 0) + ")";
+      case NOT_CONTAINS:
+        return "NOT contains(" + name + ", " + valueFor(values, 0) + ")";
+      case NOT_NULL:
+        return "attribute_exists(" + name + ")";
+      case NULL:
+        return "attribute_not_exists(" + name + ")";
+      default:
+        throw new IllegalArgumentException("Unsupported comparison operator "
+            + condition.comparisonOperatorAsString() + " on attribute " + attributeName);
+    }
+  }
+
+  private String nameFor(String attributeName) {
+    String placeholder = namePlaceholders.get(attributeName);
+    if (placeholder == null) {
+      placeholder = NAME_PLACEHOLDER_PREFIX + namePlaceholders.size();
+      namePlaceholders.put(attributeName, placeholder);
+      expressionAttributeNames.put(placeholder, attributeName);
+    }
+    return placeholder;
+  }
+
+  private String valueFor(List<AttributeValue> values, int index) {
+    if (values == null || values.size() <= index) {
+      throw new IllegalArgumentException("Condition is missing attribute value " + index);
+    }
+    String placeholder = VALUE_PLACEHOLDER_PREFIX + expressionAttributeValues.size();
+    expressionAttributeValues.put(placeholder, values.get(index));
+    return placeholder;
+  }
+}
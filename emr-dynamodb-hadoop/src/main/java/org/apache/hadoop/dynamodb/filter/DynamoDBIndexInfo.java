@@ -10,13 +10,22 @@ public class DynamoDBIndexInfo {
 
   private List<KeySchemaElement> indexSchema;
   private Projection indexProjection;
+  private boolean global;
 
   public DynamoDBIndexInfo(String indexName,
       List<KeySchemaElement> indexSchema,
       Projection indexProjection) {
+    this(indexName, indexSchema, indexProjection, false);
+  }
+
+  public DynamoDBIndexInfo(String indexName,
+      List<KeySchemaElement> indexSchema,
+      Projection indexProjection,
+      boolean global) {
     this.indexName = indexName;
     this.indexSchema = indexSchema;
     this.indexProjection = indexProjection;
+    this.global = global;
   }
 
   public String getIndexName() {
@@ -43,4 +52,15 @@ public class DynamoDBIndexInfo {
   public void setIndexProjection(Projection indexProjection) {
     this.indexProjection = indexProjection;
   }
+
+  /**
+   * Whether this is a global secondary index, which only supports eventually consistent reads.
+   */
+  public boolean isGlobal() {
+    return global;
+  }
+
+  public void setGlobal(boolean global) {
+    this.global = global;
+  }
 }
@@ -13,16 +13,51 @@
 
 package org.apache.hadoop.dynamodb.filter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.DynamoDBUtil;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ComparisonOperator;
 import software.amazon.awssdk.services.dynamodb.model.Condition;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.Projection;
 
-public class DynamoDBQueryFilter {
+/**
+ * Key conditions and scan filter pushed down to DynamoDB. The filter is {@link Writable} so that
+ * it can be computed once when splits are generated and shipped to the tasks with the splits.
+ */
+public class DynamoDBQueryFilter implements Writable {
 
   private final Map<String, Condition> keyConditions = new HashMap<>();
   private final Map<String, Condition> scanFilter = new HashMap<>();
+  private final List<String> projection = new ArrayList<>();
+
+  private final List<Condition> rangeKeySubRanges = new ArrayList<>();
 
   private DynamoDBIndexInfo index;
+  private boolean keyLookup;
+  private boolean scanIndexForward = true;
+  private boolean countOnly;
+  private boolean consistentRead;
+  private long limit;
+  private String rangeKeyName;
+  // Only used when planning the read, not shipped in the splits
+  private boolean exact = true;
+
+  // Distinct values of the hash key IN list, computed once per list
+  private Condition hashKeyValuesCondition;
+  private List<AttributeValue> hashKeyValues;
 
   public DynamoDBIndexInfo getIndex() {
     return index;
@@ -32,6 +67,99 @@ public class DynamoDBQueryFilter {
     this.index = index;
   }
 
+  /**
+   * Whether the key conditions are equalities on the full primary key of the table, possibly with
+   * an IN list on the hash key, so that the items can be read with BatchGetItem.
+   */
+  public boolean isKeyLookup() {
+    return keyLookup;
+  }
+
+  public void setKeyLookup(boolean keyLookup) {
+    this.keyLookup = keyLookup;
+  }
+
+  /**
+   * Whether items are returned in ascending order of the range key. Only applies to queries.
+   */
+  public boolean isScanIndexForward() {
+    return scanIndexForward;
+  }
+
+  public void setScanIndexForward(boolean scanIndexForward) {
+    this.scanIndexForward = scanIndexForward;
+  }
+
+  /**
+   * Whether scans and queries only count the matching items, with Select=COUNT. Each page then
+   * holds one empty item per item counted, so that readers count them as usual without any
+   * attribute being transferred.
+   */
+  public boolean isCountOnly() {
+    return countOnly;
+  }
+
+  public void setCountOnly(boolean countOnly) {
+    this.countOnly = countOnly;
+  }
+
+  /**
+   * Whether scans, queries and batch gets read with ConsistentRead. Strongly consistent reads
+   * consume twice the read capacity of eventually consistent ones.
+   */
+  public boolean isConsistentRead() {
+    return consistentRead;
+  }
+
+  public void setConsistentRead(boolean consistentRead) {
+    this.consistentRead = consistentRead;
+  }
+
+  /**
+   * Most items each query returns, or each task of a scan, 0 if unlimited. Reading stops once
+   * they have been returned, so only the first items of a query in range key order are read.
+   */
+  public long getLimit() {
+    return limit;
+  }
+
+  public void setLimit(long limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Whether the items the filter reads are exactly the items the reader wants, i.e. no condition
+   * was left for the reader of the items to apply. A {@link #getLimit() limit} only applies to
+   * exact filters, as the reader would otherwise get fewer items than it asked for.
+   */
+  public boolean isExact() {
+    return exact;
+  }
+
+  public void setExact(boolean exact) {
+    this.exact = exact;
+  }
+
+  public String getRangeKeyName() {
+    return rangeKeyName;
+  }
+
+  /**
+   * Disjoint conditions on the range key that together cover its condition, if any. Each of them
+   * is read by its own Query, so that a large item collection is read in parallel.
+   */
+  public List<Condition> getRangeKeySubRanges() {
+    return rangeKeySubRanges;
+  }
+
+  public void setRangeKeySubRanges(String rangeKeyName, List<Condition> subRanges) {
+    this.rangeKeyName = rangeKeyName;
+    this.rangeKeySubRanges.clear();
+    if (subRanges != null) {
+      this.rangeKeySubRanges.addAll(subRanges);
+    }
+  }
+
   public Map<String, Condition> getKeyConditions() {
     return keyConditions;
   }
@@ -47,4 +175,290 @@ public class DynamoDBQueryFilter {
   public void addScanFilter(DynamoDBFilter filter) {
     this.scanFilter.put(filter.getColumnName(), filter.getDynamoDBCondition());
   }
+
+  /**
+   * Attributes to fetch from DynamoDB. An empty list means whole items are returned.
+   */
+  public List<String> getProjection() {
+    return projection;
+  }
+
+  public void setProjection(Collection<String> attributeNames) {
+    this.projection.clear();
+    if (attributeNames != null) {
+      this.projection.addAll(attributeNames);
+    }
+  }
+
+  /**
+   * Number of Query requests needed to read the matching items. A hash key condition can be an IN
+   * list, e.g. from {@code WHERE id IN (...)}, which takes one Query per distinct value, and the
+   * range key condition can be split into {@link #getRangeKeySubRanges() sub-ranges}.
+   */
+  public int getQueryCount() {
+    int keyCount = getHashKeyCount();
+    if (keyLookup) {
+      // Key lookups are batched, each BatchGetItem counts as one query
+      return (keyCount + DynamoDBConstants.MAX_BATCH_GET_KEYS - 1)
+          / DynamoDBConstants.MAX_BATCH_GET_KEYS;
+    }
+    return keyCount * Math.max(1, rangeKeySubRanges.size());
+  }
+
+  /**
+   * Number of distinct hash key values the key conditions read, more than one for an IN list.
+   */
+  public int getHashKeyCount() {
+    Map.Entry<String, Condition> hashKeyList = getHashKeyList();
+    return hashKeyList == null ? 1 : getDistinctValues(hashKeyList.getValue()).size();
+  }
+
+  /**
+   * Reads the matching items with a Scan instead of queries. The key conditions become scan
+   * filters, except for an IN list on the hash key, which the reader of the items has to apply.
+   */
+  public void convertToScan() {
+    for (Map.Entry<String, Condition> entry : keyConditions.entrySet()) {
+      if (entry.getValue().comparisonOperator() != ComparisonOperator.IN) {
+        scanFilter.put(entry.getKey(), entry.getValue());
+      } else {
+        exact = false;
+      }
+    }
+    keyConditions.clear();
+    rangeKeySubRanges.clear();
+    rangeKeyName = null;
+    index = null;
+    keyLookup = false;
+  }
+
+  /**
+   * Returns the primary keys read by one of the {@link #getQueryCount()} BatchGetItem requests of
+   * a key lookup.
+   *
+   * @param query index of the request, from 0 to {@code getQueryCount() - 1}
+   */
+  public List<Map<String, AttributeValue>> getLookupKeys(int query) {
+    Map.Entry<String, Condition> hashKeyList = getHashKeyList();
+    List<AttributeValue> values = hashKeyList == null ? Collections.singletonList(null)
+        : getDistinctValues(hashKeyList.getValue());
+    int from = query * DynamoDBConstants.MAX_BATCH_GET_KEYS;
+    int to = Math.min(values.size(), from + DynamoDBConstants.MAX_BATCH_GET_KEYS);
+
+    List<Map<String, AttributeValue>> keys = new ArrayList<>(to - from);
+    for (AttributeValue hashKeyValue : values.subList(from, to)) {
+      Map<String, AttributeValue> key = new HashMap<>();
+      for (Map.Entry<String, Condition> entry : keyConditions.entrySet()) {
+        key.put(entry.getKey(), entry.getValue().attributeValueList().get(0));
+      }
+      if (hashKeyList != null) {
+        key.put(hashKeyList.getKey(), hashKeyValue);
+      }
+      keys.add(key);
+    }
+    return keys;
+  }
+
+  /**
+   * Returns the filter of one of the {@link #getQueryCount()} Query requests, whose hash key
+   * condition is an equality on one value of the IN list and whose range key condition is one of
+   * the sub-ranges. Not used for key lookups.
+   *
+   * @param query index of the query, from 0 to {@code getQueryCount() - 1}
+   */
+  public DynamoDBQueryFilter getFilterForQuery(int query) {
+    Map.Entry<String, Condition> hashKeyList = getHashKeyList();
+    if (hashKeyList == null && rangeKeySubRanges.isEmpty()) {
+      return this;
+    }
+
+    int subRangeCount = Math.max(1, rangeKeySubRanges.size());
+    DynamoDBQueryFilter queryFilter = copy();
+    if (hashKeyList != null) {
+      queryFilter.keyConditions.put(hashKeyList.getKey(), Condition.builder()
+          .comparisonOperator(ComparisonOperator.EQ)
+          .attributeValueList(getDistinctValues(hashKeyList.getValue()).get(query / subRangeCount))
+          .build());
+    }
+    if (!rangeKeySubRanges.isEmpty()) {
+      queryFilter.keyConditions.put(rangeKeyName, rangeKeySubRanges.get(query % subRangeCount));
+    }
+    return queryFilter;
+  }
+
+  /**
+   * Returns a copy of this filter without its range key sub-ranges.
+   */
+  DynamoDBQueryFilter copy() {
+    DynamoDBQueryFilter queryFilter = new DynamoDBQueryFilter();
+    queryFilter.keyConditions.putAll(keyConditions);
+    queryFilter.scanFilter.putAll(scanFilter);
+    queryFilter.projection.addAll(projection);
+    queryFilter.index = index;
+    queryFilter.keyLookup = keyLookup;
+    queryFilter.scanIndexForward = scanIndexForward;
+    queryFilter.countOnly = countOnly;
+    queryFilter.consistentRead = consistentRead;
+    queryFilter.limit = limit;
+    queryFilter.exact = exact;
+    return queryFilter;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    writeConditions(out, keyConditions);
+    writeConditions(out, scanFilter);
+
+    out.writeBoolean(index != null);
+    if (index != null) {
+      Text.writeString(out, index.getIndexName());
+      List<KeySchemaElement> indexSchema = index.getIndexSchema();
+      out.writeInt(indexSchema.size());
+      for (KeySchemaElement element : indexSchema) {
+        Text.writeString(out, element.attributeName());
+        Text.writeString(out, element.keyTypeAsString());
+      }
+      Projection indexProjection = index.getIndexProjection();
+      out.writeBoolean(indexProjection != null);
+      if (indexProjection != null) {
+        Text.writeString(out, indexProjection.projectionTypeAsString());
+        out.writeInt(indexProjection.nonKeyAttributes().size());
+        for (String nonKeyAttribute : indexProjection.nonKeyAttributes()) {
+          Text.writeString(out, nonKeyAttribute);
+        }
+      }
+      out.writeBoolean(index.isGlobal());
+    }
+
+    out.writeInt(projection.size());
+    for (String attributeName : projection) {
+      Text.writeString(out, attributeName);
+    }
+    out.writeBoolean(keyLookup);
+    out.writeBoolean(scanIndexForward);
+    out.writeBoolean(countOnly);
+    out.writeBoolean(consistentRead);
+    out.writeLong(limit);
+
+    out.writeInt(rangeKeySubRanges.size());
+    if (!rangeKeySubRanges.isEmpty()) {
+      Text.writeString(out, rangeKeyName);
+      for (Condition subRange : rangeKeySubRanges) {
+        writeCondition(out, subRange);
+      }
+    }
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    readConditions(in, keyConditions);
+    readConditions(in, scanFilter);
+
+    index = null;
+    if (in.readBoolean()) {
+      String indexName = Text.readString(in);
+      int schemaSize = in.readInt();
+      List<KeySchemaElement> indexSchema = new ArrayList<>(schemaSize);
+      for (int i = 0; i < schemaSize; i++) {
+        indexSchema.add(KeySchemaElement.builder()
+            .attributeName(Text.readString(in))
+            .keyType(Text.readString(in))
+            .build());
+      }
+      Projection indexProjection = null;
+      if (in.readBoolean()) {
+        String projectionType = Text.readString(in);
+        int nonKeyAttributeCount = in.readInt();
+        List<String> nonKeyAttributes = new ArrayList<>(nonKeyAttributeCount);
+        for (int i = 0; i < nonKeyAttributeCount; i++) {
+          nonKeyAttributes.add(Text.readString(in));
+        }
+        indexProjection = Projection.builder()
+            .projectionType(projectionType)
+            .nonKeyAttributes(nonKeyAttributes.isEmpty() ? null : nonKeyAttributes)
+            .build();
+      }
+      index = new DynamoDBIndexInfo(indexName, indexSchema, indexProjection, in.readBoolean());
+    }
+
+    projection.clear();
+    int projectionSize = in.readInt();
+    for (int i = 0; i < projectionSize; i++) {
+      projection.add(Text.readString(in));
+    }
+    keyLookup = in.readBoolean();
+    scanIndexForward = in.readBoolean();
+    countOnly = in.readBoolean();
+    consistentRead = in.readBoolean();
+    limit = in.readLong();
+
+    rangeKeySubRanges.clear();
+    rangeKeyName = null;
+    int subRangeCount = in.readInt();
+    if (subRangeCount > 0) {
+      rangeKeyName = Text.readString(in);
+      for (int i = 0; i < subRangeCount; i++) {
+        rangeKeySubRanges.add(readCondition(in));
+      }
+    }
+  }
+
+  private Map.Entry<String, Condition> getHashKeyList() {
+    // Range key conditions are never IN lists, as Query doesn't support them
+    for (Map.Entry<String, Condition> entry : keyConditions.entrySet()) {
+      if (entry.getValue().comparisonOperator() == ComparisonOperator.IN) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private List<AttributeValue> getDistinctValues(Condition condition) {
+    if (condition != hashKeyValuesCondition) {
+      hashKeyValues = new ArrayList<>(new LinkedHashSet<>(condition.attributeValueList()));
+      hashKeyValuesCondition = condition;
+    }
+    return hashKeyValues;
+  }
+
+  private static void writeConditions(DataOutput out, Map<String, Condition> conditions)
+      throws IOException {
+    out.writeInt(conditions.size());
+    for (Map.Entry<String, Condition> entry : conditions.entrySet()) {
+      Text.writeString(out, entry.getKey());
+      writeCondition(out, entry.getValue());
+    }
+  }
+
+  private static void writeCondition(DataOutput out, Condition condition) throws IOException {
+    Text.writeString(out, condition.comparisonOperatorAsString());
+    List<AttributeValue> values = condition.attributeValueList();
+    out.writeInt(values.size());
+    for (AttributeValue value : values) {
+      Text.writeString(out, DynamoDBUtil.getGson().toJson(value, AttributeValue.class));
+    }
+  }
+
+  private static void readConditions(DataInput in, Map<String, Condition> conditions)
+      throws IOException {
+    conditions.clear();
+    int conditionCount = in.readInt();
+    for (int i = 0; i < conditionCount; i++) {
+      String attributeName = Text.readString(in);
+      conditions.put(attributeName, readCondition(in));
+    }
+  }
+
+  private static Condition readCondition(DataInput in) throws IOException {
+    String comparisonOperator = Text.readString(in);
+    int valueCount = in.readInt();
+    List<AttributeValue> values = new ArrayList<>(valueCount);
+    for (int i = 0; i < valueCount; i++) {
+      values.add(DynamoDBUtil.getGson().fromJson(Text.readString(in), AttributeValue.class));
+    }
+    return Condition.builder()
+        .comparisonOperator(comparisonOperator)
+        .attributeValueList(values)
+        .build();
+  }
 }
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.filter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.mapred.Reporter;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ComparisonOperator;
+import software.amazon.awssdk.services.dynamodb.model.Condition;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+
+/**
+ * Splits the range key condition of a query on a single item collection into disjoint sub-ranges,
+ * so that a large collection is read by several Query requests at once instead of one sequential
+ * chain of pages.
+ *
+ * <p>Only numeric range keys are split. The bounds are taken from the range key condition where
+ * the user gave them, and otherwise from the smallest and largest range key of the collection,
+ * read with two single-item queries. The sub-ranges have the same width; the first and the last
+ * one stay open where the condition was, so that items written after sampling are still read.
+ */
+public final class DynamoDBRangeKeySplitter {
+
+  private static final Log log = LogFactory.getLog(DynamoDBRangeKeySplitter.class);
+
+  // DynamoDB numbers have up to 38 significant digits and a magnitude down to 1E-130
+  private static final int NUMBER_PRECISION = 38;
+  private static final MathContext NUMBER_CONTEXT = new MathContext(NUMBER_PRECISION);
+  private static final BigDecimal LARGEST_NEGATIVE = new BigDecimal("-1E-130");
+
+  private DynamoDBRangeKeySplitter() {
+  }
+
+  /**
+   * Sets range key sub-ranges on the filter if its query can be split.
+   *
+   * @param keySchema            key schema of the table, used unless the filter reads an index
+   * @param attributeDefinitions attribute definitions of the table, giving the key types
+   * @param subRangeCount        number of sub-ranges wanted
+   */
+  public static void split(DynamoDBClient client, String tableName,
+      List<KeySchemaElement> keySchema, List<AttributeDefinition> attributeDefinitions,
+      DynamoDBQueryFilter filter, int subRangeCount, Reporter reporter) {
+    if (subRangeCount < 2 || filter.isKeyLookup()) {
+      return;
+    }
+
+    if (filter.getIndex() != null) {
+      keySchema = filter.getIndex().getIndexSchema();
+    }
+    String hashKeyName = null;
+    String rangeKeyName = null;
+    for (KeySchemaElement element : keySchema) {
+      if (element.keyType() == KeyType.HASH) {
+        hashKeyName = element.attributeName();
+      } else if (element.keyType() == KeyType.RANGE) {
+        rangeKeyName = element.attributeName();
+      }
+    }
+
+    Condition hashKeyCondition = filter.getKeyConditions().get(hashKeyName);
+    if (rangeKeyName == null || hashKeyCondition == null
+        || hashKeyCondition.comparisonOperator() != ComparisonOperator.EQ
+        || !isNumber(rangeKeyName, attributeDefinitions)) {
+      return;
+    }
+
+    Condition rangeKeyCondition = filter.getKeyConditions().get(rangeKeyName);
+    ComparisonOperator operator = rangeKeyCondition == null ? null
+        : rangeKeyCondition.comparisonOperator();
+    if (operator != null && operator != ComparisonOperator.BETWEEN
+        && operator != ComparisonOperator.GE && operator != ComparisonOperator.GT
+        && operator != ComparisonOperator.LE && operator != ComparisonOperator.LT) {
+      return;
+    }
+
+    BigDecimal lower = null;
+    BigDecimal upper = null;
+    if (operator == ComparisonOperator.BETWEEN || operator == ComparisonOperator.GE) {
+      lower = getValue(rangeKeyCondition, 0);
+    }
+    if (operator == ComparisonOperator.BETWEEN) {
+      upper = getValue(rangeKeyCondition, 1);
+    } else if (operator == ComparisonOperator.LE) {
+      upper = getValue(rangeKeyCondition, 0);
+    }
+    if (lower == null) {
+      lower = sampleRangeKey(client, tableName, filter, rangeKeyName, true, reporter);
+    }
+    if (upper == null) {
+      upper = sampleRangeKey(client, tableName, filter, rangeKeyName, false, reporter);
+    }
+    if (lower == null || upper == null || lower.compareTo(upper) >= 0) {
+      return;
+    }
+
+    // Without a bound the outer sub-ranges are left open. GT and LT are closed at the sampled
+    // bounds instead, as one condition cannot hold both the user's bound and a boundary.
+    boolean lowerOpen = operator == null || operator == ComparisonOperator.LE
+        || operator == ComparisonOperator.LT;
+    boolean upperOpen = operator == null || operator == ComparisonOperator.GE
+        || operator == ComparisonOperator.GT;
+    List<Condition> subRanges = getSubRanges(lower, upper, lowerOpen, upperOpen, subRangeCount);
+    if (subRanges.size() > 1) {
+      log.info("Splitting the query on " + rangeKeyName + " into " + subRanges.size()
+          + " range key sub-ranges");
+      filter.setRangeKeySubRanges(rangeKeyName, subRanges);
+    }
+  }
+
+  /**
+   * Divides {@code [lower, upper]} into sub-ranges of the same width. An open end extends the
+   * first or last sub-range to everything below or above it.
+   */
+  static List<Condition> getSubRanges(BigDecimal lower, BigDecimal upper, boolean lowerOpen,
+      boolean upperOpen, int subRangeCount) {
+    BigDecimal width = upper.subtract(lower);
+    TreeSet<BigDecimal> boundaries = new TreeSet<>();
+    for (int i = 1; i < subRangeCount; i++) {
+      BigDecimal boundary = lower.add(width.multiply(BigDecimal.valueOf(i))
+          .divide(BigDecimal.valueOf(subRangeCount), NUMBER_CONTEXT), NUMBER_CONTEXT);
+      if (boundary.compareTo(lower) > 0 && boundary.compareTo(upper) < 0) {
+        boundaries.add(boundary);
+      }
+    }
+    if (boundaries.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<BigDecimal> starts = new ArrayList<>(boundaries);
+    List<Condition> subRanges = new ArrayList<>(starts.size() + 1);
+    subRanges.add(lowerOpen ? condition(ComparisonOperator.LT, starts.get(0))
+        : condition(ComparisonOperator.BETWEEN, lower, predecessor(starts.get(0))));
+    for (int i = 1; i < starts.size(); i++) {
+      subRanges.add(condition(ComparisonOperator.BETWEEN, starts.get(i - 1),
+          predecessor(starts.get(i))));
+    }
+    BigDecimal lastStart = starts.get(starts.size() - 1);
+    subRanges.add(upperOpen ? condition(ComparisonOperator.GE, lastStart)
+        : condition(ComparisonOperator.BETWEEN, lastStart, upper));
+    return subRanges;
+  }
+
+  /**
+   * Returns the largest DynamoDB number below the value, i.e. the value minus one unit in its
+   * 38th significant digit.
+   */
+  static BigDecimal predecessor(BigDecimal value) {
+    if (value.signum() == 0) {
+      return LARGEST_NEGATIVE;
+    }
+    BigDecimal stripped = value.stripTrailingZeros();
+    int exponent = stripped.precision() - stripped.scale() - 1;
+    if (stripped.signum() > 0 && stripped.unscaledValue().equals(BigInteger.ONE)) {
+      // Below a power of ten the digits are one order of magnitude smaller
+      exponent--;
+    }
+    return value.subtract(BigDecimal.ONE.scaleByPowerOfTen(exponent - NUMBER_PRECISION + 1));
+  }
+
+  private static BigDecimal sampleRangeKey(DynamoDBClient client, String tableName,
+      DynamoDBQueryFilter filter, String rangeKeyName, boolean smallest, Reporter reporter) {
+    DynamoDBQueryFilter sampleFilter = filter.copy();
+    // Only the key conditions decide which items are in range
+    sampleFilter.getScanFilter().clear();
+    sampleFilter.setProjection(Collections.singletonList(rangeKeyName));
+    sampleFilter.setScanIndexForward(smallest);
+
+    QueryResponse response = client.queryTable(tableName, sampleFilter, null, 1, reporter).result;
+    if (!response.hasItems() || response.items().isEmpty()) {
+      return null;
+    }
+    AttributeValue value = response.items().get(0).get(rangeKeyName);
+    return value == null || value.n() == null ? null : new BigDecimal(value.n());
+  }
+
+  private static boolean isNumber(String attributeName,
+      List<AttributeDefinition> attributeDefinitions) {
+    for (AttributeDefinition definition : attributeDefinitions) {
+      if (definition.attributeName().equals(attributeName)) {
+        return definition.attributeType() == ScalarAttributeType.N;
+      }
+    }
+    return false;
+  }
+
+  private static BigDecimal getValue(Condition condition, int index) {
+    return new BigDecimal(condition.attributeValueList().get(index).n());
+  }
+
+  private static Condition condition(ComparisonOperator operator, BigDecimal... values) {
+    List<AttributeValue> attributeValues = new ArrayList<>(values.length);
+    for (BigDecimal value : values) {
+      attributeValues.add(AttributeValue.fromN(value.toPlainString()));
+    }
+    return Condition.builder()
+        .comparisonOperator(operator)
+        .attributeValueList(attributeValues)
+        .build();
+  }
+}
@@ -13,17 +13,21 @@
 
 package org.apache.hadoop.dynamodb.preader;
 
-import java.util.ArrayList;
 import java.util.Deque;
-import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.IopsCalculator;
+import org.apache.hadoop.dynamodb.split.DynamoDBSplit;
 import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
@@ -31,6 +35,11 @@ import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
  * The ReadManager is responsible for deciding the required number of ReadWorkers to achieve the
  * target throughput rate. It will keep track of RCUs achieved and increase or decrease the worker
  * count as necessary.
+ *
+ * <p>When the target rate is not met, the worker count is set from Little's law: the number of
+ * requests in flight needed is the required request rate times the observed request latency. The
+ * count jumps to that target instead of growing one worker per evaluation, and is halved when
+ * requests get throttled.
  */
 public abstract class AbstractReadManager {
 
@@ -42,29 +51,55 @@ public abstract class AbstractReadManager {
   private static final int MIN_RCU_PER_REQ = 2;
 
   private static final int MIN_WORKER_COUNT = 1;
-  private static final int MAX_WORKER_COUNT = 30;
   private static final int INITIAL_WORKER_COUNT = MIN_WORKER_COUNT;
   private static final int EVALUATION_FREQ_MS = DynamoDBConstants.RATE_CONTROLLER_WINDOW_SIZE_SEC
       * 1000;
+  // Extra concurrency on top of the Little's law estimate, to absorb latency jitter
+  private static final double CONCURRENCY_HEADROOM = 1.2;
+  // A segment still being read never counts as more than this much of a segment
+  private static final double MAX_IN_FLIGHT_SEGMENT_PROGRESS = 0.9;
   protected final DynamoDBRecordReaderContext context;
   protected final RateController rateController;
   protected final AbstractTimeSource time;
   // In the query case, there is only one read quest.
   protected final Deque<AbstractRecordReadRequest> readRequestQueue = new ConcurrentLinkedDeque<>();
   protected final AtomicInteger segmentsRemaining = new AtomicInteger(0);
-  protected final Queue<ReadWorker> workers = new ArrayBlockingQueue<>(MAX_WORKER_COUNT);
-  private final List<Report> reportedStats = new ArrayList<>();
-  private final Object reportStatsLock = new Object();
+  // Segments read to the end, including by earlier attempts of the task
+  protected final AtomicInteger segmentsCompleted = new AtomicInteger(0);
+  // Items scanned so far in each segment being read
+  private final Map<Integer, Long> segmentScannedItems = new ConcurrentHashMap<>();
+  protected final Queue<ReadWorker> workers;
+  // A single non-blocking worker replaces the worker pool when asynchronous reads are enabled
+  protected final boolean asyncRead;
+  private final int maxWorkerCount;
+  // Statistics since the last evaluation. Workers only add to them, the evaluating thread drains.
+  private final LongAdder reportCount = new LongAdder();
+  private final DoubleAdder reportedReadUnits = new DoubleAdder();
+  private final LongAdder reportedRetries = new LongAdder();
+  private final LongAdder reportedLatencyNanos = new LongAdder();
+  private final LongAdder latencySampleCount = new LongAdder();
   private final PageResultMultiplexer<Map<String, AttributeValue>> pageMux;
-  private long lastEvaluatedTimeNano;
+  private final AtomicLong lastEvaluatedTimeNano;
+  private final AtomicLong lastRateRefreshTimeNano;
 
   public AbstractReadManager(RateController rateController, AbstractTimeSource time,
       DynamoDBRecordReaderContext context) {
     this.context = context;
     this.rateController = rateController;
     this.time = time;
-    this.lastEvaluatedTimeNano = time.getNanoTime();
+    this.lastEvaluatedTimeNano = new AtomicLong(time.getNanoTime());
+    this.lastRateRefreshTimeNano = new AtomicLong(time.getNanoTime());
     this.pageMux = context.getPageResultMultiplexer();
+    this.asyncRead = context.getConf() != null && context.getConf().getBoolean(
+        DynamoDBConstants.ASYNC_READ_ENABLED, DynamoDBConstants.DEFAULT_ASYNC_READ_ENABLED);
+    this.maxWorkerCount = context.getConf() == null ? DynamoDBConstants.DEFAULT_READ_MAX_WORKERS
+        : context.getConf().getInt(DynamoDBConstants.READ_MAX_WORKERS,
+            DynamoDBConstants.DEFAULT_READ_MAX_WORKERS);
+    if (maxWorkerCount < MIN_WORKER_COUNT) {
+      throw new IllegalArgumentException(DynamoDBConstants.READ_MAX_WORKERS + " must be at least "
+          + MIN_WORKER_COUNT + ", got " + maxWorkerCount);
+    }
+    this.workers = new ArrayBlockingQueue<>(maxWorkerCount);
 
     initializeReadRequests();
 
@@ -88,57 +123,159 @@ public abstract class AbstractReadManager {
   /**
    * @param permittedReadUnits How many RCU the worker was allocated by the rate controller
    * @param consumedReadUnits  How many RCU the worker actually consumed
-   * @param items              Items returned
+   * @param items              Items scanned, including those a filter expression dropped
    * @param retries            Number of throttles
    */
   public void report(double permittedReadUnits, double consumedReadUnits, int items, int retries) {
+    report(permittedReadUnits, consumedReadUnits, items, retries, 0);
+  }
+
+  /**
+   * @param permittedReadUnits How many RCU the worker was allocated by the rate controller
+   * @param consumedReadUnits  How many RCU the worker actually consumed
+   * @param items              Items scanned, including those a filter expression dropped
+   * @param retries            Number of throttles
+   * @param latencyNanos       Time the request took including retries, or 0 if unknown
+   */
+  public void report(double permittedReadUnits, double consumedReadUnits, int items, int retries,
+      long latencyNanos) {
     rateController.adjust(permittedReadUnits, consumedReadUnits, items);
+    refreshTargetRate();
+    if (asyncRead) {
+      // Concurrency of the asynchronous worker is bounded by the rate controller alone
+      return;
+    }
 
-    boolean addWorker = false;
-    boolean removeWorker = false;
+    reportCount.increment();
+    reportedReadUnits.add(consumedReadUnits);
+    if (retries > 0) {
+      reportedRetries.add(retries);
+    }
+    if (latencyNanos > 0) {
+      reportedLatencyNanos.add(latencyNanos);
+      latencySampleCount.increment();
+    }
 
-    synchronized (reportStatsLock) {
-      reportedStats.add(new Report(consumedReadUnits, items, retries));
+    long lastEvaluated = lastEvaluatedTimeNano.get();
+    long deltaMs = time.getTimeSinceMs(lastEvaluated);
+    if (deltaMs < EVALUATION_FREQ_MS
+        || !lastEvaluatedTimeNano.compareAndSet(lastEvaluated, time.getNanoTime())) {
+      return;
+    }
 
-      long deltaMs = time.getTimeSinceMs(lastEvaluatedTimeNano);
-      if (deltaMs < EVALUATION_FREQ_MS) {
-        return;
-      }
-      int reportCount = reportedStats.size();
-      if (reportCount == 0) {
-        return;
+    // Only the thread that won the race above gets here. A report racing with the drain may be
+    // counted in the next window, which does not matter at this granularity.
+    long count = reportCount.sumThenReset();
+    double readUnits = reportedReadUnits.sumThenReset();
+    long retryCount = reportedRetries.sumThenReset();
+    long latencyNanosSum = reportedLatencyNanos.sumThenReset();
+    long latencySamples = latencySampleCount.sumThenReset();
+    if (count == 0) {
+      return;
+    }
+
+    // Compute statistics
+    double rcuPerRequest = readUnits / count;
+    double rcuPerSecond = (readUnits * 1000) / deltaMs;
+    long avgLatencyNanos = latencySamples == 0 ? 0 : latencyNanosSum / latencySamples;
+    recordEvaluationStats((int) count, rcuPerRequest, rcuPerSecond);
+    rateController.updateMaxRequestSize(avgLatencyNanos, maxWorkerCount,
+        pageMux == null ? 0 : pageMux.getOccupancy());
+
+    int workerCount = workers.size();
+    int targetWorkerCount = workerCount;
+    // Remove a worker if we're achieving our throughput with very low
+    // iops requests. There's benefit in doing slightly larger requests.
+    if (rcuPerRequest < MIN_RCU_PER_REQ && rcuPerSecond * 1.1 > rateController.getTargetRate()) {
+      targetWorkerCount = workerCount - 1;
+    } else if (rcuPerSecond * 1.1 <= rateController.getTargetRate()) {
+      if (retryCount > 0) {
+        log.warn("Not achieving throughput, but not adding workers due to retries (throttles or"
+            + " 500s) (cnt=" + retryCount + ")");
+      } else {
+        targetWorkerCount = getTargetWorkerCount(workerCount, rcuPerRequest, avgLatencyNanos);
       }
+    }
+    targetWorkerCount = Math.max(MIN_WORKER_COUNT, Math.min(maxWorkerCount, targetWorkerCount));
 
-      // Compute statistics
-      Report sum = getReportedSum();
-      double rcuPerRequest = sum.readUnits / reportCount;
-      double rcuPerSecond = (sum.readUnits * 1000) / deltaMs;
-      recordEvaluationStats(reportCount, rcuPerRequest, rcuPerSecond);
-
-      // Remove a worker if we're achieving our throughput with very low
-      // iops requests. There's benefit in doing slightly larger requests.
-      if (rcuPerRequest < MIN_RCU_PER_REQ && rcuPerSecond * 1.1 > rateController.getTargetRate()) {
-        removeWorker = true;
-      } else if (rcuPerSecond * 1.1 <= rateController.getTargetRate()) {
-        if (sum.retries > 0) {
-          log.warn("Not achieving throughput, but not adding workers due to retries (throttles or"
-              + " 500s) (cnt=" + sum.retries + ")");
-          // Add a worker if we're not achieving our throughput and getting no throttles/retries.
-        } else {
-          addWorker = true;
-        }
+    if (targetWorkerCount < workerCount) {
+      log.info("Reducing workers from " + workerCount + " to " + targetWorkerCount);
+      for (int i = targetWorkerCount; i < workerCount; i++) {
+        removeWorker();
+      }
+    } else if (targetWorkerCount > workerCount) {
+      log.info("Increasing workers from " + workerCount + " to " + targetWorkerCount);
+      for (int i = workerCount; i < targetWorkerCount; i++) {
+        addWorker();
       }
-      reportedStats.clear();
-      lastEvaluatedTimeNano = time.getNanoTime();
     }
+  }
 
-    if (removeWorker) {
-      log.info("Removing a worker");
-      removeWorker();
-    } else if (addWorker) {
-      log.info("Adding a worker");
-      addWorker();
+  /**
+   * Picks up changes of this task's share of the table capacity, e.g. when other tasks of the job
+   * have finished and their capacity has been handed to the running ones.
+   */
+  private void refreshTargetRate() {
+    IopsCalculator iopsCalculator = context.getIopsCalculator();
+    if (iopsCalculator == null) {
+      return;
+    }
+    long lastRefresh = lastRateRefreshTimeNano.get();
+    if (time.getTimeSinceMs(lastRefresh) < EVALUATION_FREQ_MS
+        || !lastRateRefreshTimeNano.compareAndSet(lastRefresh, time.getNanoTime())) {
+      return;
+    }
+    rateController.setTargetRate(iopsCalculator.calculateTargetIops());
+  }
+
+  /**
+   * Applies Little's law to find how many requests must be in flight to read at the target rate.
+   * Falls back to adding a single worker when there is nothing to base the estimate on.
+   */
+  private int getTargetWorkerCount(int workerCount, double rcuPerRequest, long avgLatencyNanos) {
+    if (avgLatencyNanos <= 0 || rcuPerRequest <= 0) {
+      return workerCount + 1;
+    }
+    double requestsPerSecond = rateController.getTargetRate() / rcuPerRequest;
+    double inFlight = requestsPerSecond * avgLatencyNanos / 1e9 * CONCURRENCY_HEADROOM;
+    // We're short of the target rate, so never settle for fewer workers than we have
+    return (int) Math.max(workerCount + 1, Math.min(Math.ceil(inFlight), maxWorkerCount));
+  }
+
+  /**
+   * Returns how much of the segments owned by the task has been read, from the segments read to
+   * the end and the items scanned in the others. The task owns the segments it has completed and
+   * those it has left to read, which with segment claims include the segments it has claimed
+   * beyond those of its split. Completed segments count in full. A segment still being read
+   * counts in proportion to the items it is expected to hold, from the approximate item count of
+   * the table, so a stale item count only skews the segments in flight.
+   */
+  public float getProgress() {
+    int segmentCount = segmentsCompleted.get() + segmentsRemaining.get();
+    DynamoDBSplit split = context.getSplit();
+    if (segmentCount == 0 || split.getSegments().isEmpty()) {
+      return 0.0f;
     }
+
+    double expectedItemsPerSegment =
+        (double) split.getApproxItemCount() / split.getSegments().size();
+    double progress = segmentsCompleted.get();
+    if (expectedItemsPerSegment > 0) {
+      for (long scannedItems : segmentScannedItems.values()) {
+        progress += Math.min(scannedItems / expectedItemsPerSegment,
+            MAX_IN_FLIGHT_SEGMENT_PROGRESS);
+      }
+    }
+    return (float) Math.min(progress / segmentCount, 1.0);
+  }
+
+  /**
+   * Called by read requests for every page read.
+   *
+   * @param scannedItems items DynamoDB read for the page, including those a filter dropped
+   */
+  void reportSegmentProgress(int segment, int scannedItems) {
+    segmentScannedItems.merge(segment, (long) scannedItems, Long::sum);
   }
 
   /**
@@ -147,19 +284,29 @@ public abstract class AbstractReadManager {
    * @param segment the segment to be marked as completed
    */
   void markSegmentComplete(int segment) {
+    segmentScannedItems.remove(segment);
+    segmentsCompleted.incrementAndGet();
     int remaining = segmentsRemaining.decrementAndGet();
 
     log.info("Segment " + segment + " complete. Remaining segments: " + remaining);
 
     if (remaining == 0) {
-      // signal the multiplexer that it should start draining pages.
-      pageMux.setDraining(true);
-
-      // signal read manager that we're done
-      shutdown();
+      endScan();
     }
   }
 
+  /**
+   * Called once no segment remains to be read.
+   */
+  protected void endScan() {
+    // signal read manager that we're done. This comes first, as the consumer closes the record
+    // reader once it sees the end of the pages and must not find workers still reading.
+    shutdown();
+
+    // signal the multiplexer that it should start draining pages.
+    pageMux.setDraining(true);
+  }
+
   /**
    * Signal workers to stop work. Note that this does not block and wait for them to complete. If
    * they have pending work they may still push work to the multiplexer.
@@ -184,7 +331,14 @@ public abstract class AbstractReadManager {
   }
 
   protected void addWorker() {
-    ReadWorker worker = new ReadWorker(this, context.getReporter());
+    ReadWorker worker;
+    if (asyncRead) {
+      worker = new AsyncReadWorker(this, context.getReporter(), context.getConf().getInt(
+          DynamoDBConstants.ASYNC_READ_MAX_CONCURRENCY,
+          DynamoDBConstants.DEFAULT_ASYNC_READ_MAX_CONCURRENCY));
+    } else {
+      worker = new ReadWorker(this, context.getReporter());
+    }
     if (workers.offer(worker)) {
       worker.start();
     } else {
@@ -207,30 +361,4 @@ public abstract class AbstractReadManager {
     }
   }
 
-  private Report getReportedSum() {
-    double readUnits = 0;
-    int items = 0;
-    int retries = 0;
-
-    for (Report r : reportedStats) {
-      readUnits += r.readUnits;
-      items += r.items;
-      retries += r.retries;
-    }
-    return new Report(readUnits, items, retries);
-  }
-
-  private static class Report {
-
-    public final double readUnits;
-    public final int items;
-    public final int retries;
-
-    public Report(double readUnits, int items, int retries) {
-      this.readUnits = readUnits;
-      this.items = items;
-      this.retries = retries;
-    }
-  }
-
 }
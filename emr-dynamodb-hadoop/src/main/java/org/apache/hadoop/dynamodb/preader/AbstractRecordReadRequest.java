@@ -13,8 +13,13 @@
 
 package org.apache.hadoop.dynamodb.preader;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
 import org.apache.hadoop.dynamodb.preader.RateController.RequestLimit;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
@@ -27,6 +32,10 @@ public abstract class AbstractRecordReadRequest {
   protected final int segment;
   protected final String tableName;
 
+  private long issuedNanoTime;
+  // Items returned by the previous pages of the segment
+  private long segmentItemCount;
+
   public AbstractRecordReadRequest(AbstractReadManager readMgr, DynamoDBRecordReaderContext
       context, int segment, Map<String, AttributeValue> lastEvaluatedKey) {
     this.readMgr = readMgr;
@@ -38,17 +47,38 @@ public abstract class AbstractRecordReadRequest {
 
   public void read(RequestLimit lim) {
     signalProgress();
-    PageResults<Map<String, AttributeValue>> pageResults = readNextPage(lim);
-    addPageToMultiplexer(pageResults);
-    reportMetrics(lim, pageResults);
+    issuedNanoTime = readMgr.time.getNanoTime();
+    complete(lim, readNextPage(lim));
+  }
+
+  /**
+   * Issues the request without blocking. The returned future never completes exceptionally;
+   * failures are carried by the page results, and the caller is expected to hand them to
+   * {@link #complete}.
+   */
+  CompletableFuture<PageResults<Map<String, AttributeValue>>> readAsync(RequestLimit lim) {
+    signalProgress();
+    issuedNanoTime = readMgr.time.getNanoTime();
+    try {
+      return fetchPageAsync(lim).exceptionally(e -> new PageResults<>(unwrap(e)));
+    } catch (Exception e) {
+      return CompletableFuture.completedFuture(new PageResults<>(e));
+    }
+  }
+
+  void complete(RequestLimit lim, PageResults<Map<String, AttributeValue>> pageResults) {
+    // Measured before adding the page, which blocks while the multiplexer is full
+    long latencyNanos = readMgr.time.getNanoTime() - issuedNanoTime;
+    addPageToMultiplexer(trimToLimit(pageResults));
+    reportMetrics(lim, pageResults, latencyNanos);
     enqueueNextPageOrCompleteSegment(pageResults);
   }
 
   private void reportMetrics(RequestLimit lim,
-      PageResults<Map<String, AttributeValue>> pageResults) {
+      PageResults<Map<String, AttributeValue>> pageResults, long latencyNanos) {
     if (!pageResults.isFailed()) {
-      readMgr.report(lim.readCapacityUnits, pageResults.consumedRcu, pageResults.items.size(),
-          pageResults.retries);
+      readMgr.report(lim.readCapacityUnits, pageResults.consumedRcu, pageResults.scannedCount,
+          pageResults.retries, latencyNanos);
     }
   }
 
@@ -56,11 +86,83 @@ public abstract class AbstractRecordReadRequest {
     context.getReporter().progress();
   }
 
+  /**
+   * Whether the segment has more to read after this page.
+   */
+  protected boolean hasNextPage(PageResults<Map<String, AttributeValue>> pageResults) {
+    return !isLimitReached(pageResults) && pageResults.lastEvaluatedKey != null;
+  }
+
+  /**
+   * Whether the segment has returned as many items as the read limit allows with this page.
+   */
+  protected boolean isLimitReached(PageResults<Map<String, AttributeValue>> pageResults) {
+    return !pageResults.isFailed() && pageResults.items.size() >= getRemainingItems();
+  }
+
+  /**
+   * Returns the number of items to ask for, which is no more than the segment still needs to
+   * reach the read limit. DynamoDB applies Limit before a filter expression, so a filtered
+   * request asks for a full page instead, and the items past the limit are dropped.
+   */
+  protected int getItemLimit(RequestLimit lim) {
+    DynamoDBQueryFilter filter = context.getSplit().getFilterPushdown();
+    if (filter != null && filter.getLimit() > 0 && filter.getScanFilter().isEmpty()) {
+      return (int) Math.max(1, Math.min(lim.items, getRemainingItems()));
+    }
+    return lim.items;
+  }
+
+  /**
+   * Returns the number of items the segment may still return before reaching the read limit.
+   */
+  protected long getRemainingItems() {
+    DynamoDBQueryFilter filter = context.getSplit().getFilterPushdown();
+    if (filter == null || filter.getLimit() <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0, filter.getLimit() - segmentItemCount);
+  }
+
+  private PageResults<Map<String, AttributeValue>> trimToLimit(
+      PageResults<Map<String, AttributeValue>> pageResults) {
+    if (pageResults.isFailed() || pageResults.items.size() <= getRemainingItems()) {
+      return pageResults;
+    }
+    return new PageResults<>(pageResults.items.subList(0, (int) getRemainingItems()),
+        pageResults.lastEvaluatedKey, pageResults.consumedRcu, pageResults.retries,
+        pageResults.scannedCount);
+  }
+
+  /**
+   * Returns the number of items DynamoDB read for a page, which is what its consumed capacity and
+   * its request limit are measured in.
+   */
+  protected static int getScannedCount(List<Map<String, AttributeValue>> items,
+      Integer scannedCount) {
+    return scannedCount == null ? items.size() : scannedCount;
+  }
+
+  /**
+   * Returns the items of a page. A count-only request returns no items, only their count, and
+   * every item counted is then represented by the same empty item.
+   */
+  protected static List<Map<String, AttributeValue>> getItems(DynamoDBQueryFilter filter,
+      List<Map<String, AttributeValue>> items, Integer count) {
+    if (filter != null && filter.isCountOnly() && count != null) {
+      return Collections.nCopies(count, Collections.emptyMap());
+    }
+    return items;
+  }
+
   protected abstract AbstractRecordReadRequest buildNextReadRequest(
       PageResults<Map<String, AttributeValue>> pageResults);
 
   protected abstract PageResults<Map<String, AttributeValue>> fetchPage(RequestLimit lim);
 
+  protected abstract CompletableFuture<PageResults<Map<String, AttributeValue>>> fetchPageAsync(
+      RequestLimit lim);
+
   private PageResults<Map<String, AttributeValue>> readNextPage(RequestLimit lim) {
     try {
       return fetchPage(lim);
@@ -69,6 +171,11 @@ public abstract class AbstractRecordReadRequest {
     }
   }
 
+  private static Exception unwrap(Throwable t) {
+    Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+  }
+
   private void addPageToMultiplexer(PageResults<Map<String, AttributeValue>> pageResults) {
     if (!context.getPageResultMultiplexer().addPageResults(pageResults)) {
       throw new RuntimeException("Interrupted while adding to the page mux. Aborting.");
@@ -77,9 +184,12 @@ public abstract class AbstractRecordReadRequest {
 
   private void enqueueNextPageOrCompleteSegment(
       PageResults<Map<String, AttributeValue>> pageResults) {
-    if (pageResults.lastEvaluatedKey != null) {
+    readMgr.reportSegmentProgress(segment, pageResults.scannedCount);
+    if (hasNextPage(pageResults)) {
       // Schedule the next page read for this segment
-      readMgr.enqueueReadRequestToTail(buildNextReadRequest(pageResults));
+      AbstractRecordReadRequest nextRequest = buildNextReadRequest(pageResults);
+      nextRequest.segmentItemCount = segmentItemCount + pageResults.items.size();
+      readMgr.enqueueReadRequestToTail(nextRequest);
     } else {
       // Or mark it as complete
       readMgr.markSegmentComplete(segment);
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.preader;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.dynamodb.preader.RateController.RequestLimit;
+import org.apache.hadoop.mapred.Reporter;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * A single worker thread that keeps many read requests in flight on the asynchronous DynamoDB
+ * client. Requests are issued as soon as the rate controller hands out a token, up to
+ * maxConcurrency outstanding requests. Completed pages are processed on this thread, so a full
+ * page multiplexer throttles issuing new requests the same way it blocks a synchronous worker.
+ */
+public class AsyncReadWorker extends ReadWorker {
+
+  private static final Log log = LogFactory.getLog(AsyncReadWorker.class);
+
+  private final Reporter reporter;
+  private final int maxConcurrency;
+  private final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+  private int inFlight;
+
+  public AsyncReadWorker(AbstractReadManager mgr, Reporter reporter, int maxConcurrency) {
+    super(mgr, reporter);
+    if (maxConcurrency <= 0) {
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+    }
+    setName("Async" + getName());
+    this.reporter = reporter;
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  @Override
+  public void run() {
+    while (alive) {
+      try {
+        runInternal();
+      } catch (InterruptedException e) {
+        Thread.interrupted();
+      } catch (Throwable e) {
+        log.error("Unknown exception thrown!", e);
+      }
+    }
+
+    if (inFlight > 0) {
+      log.info("Worker shutting down with " + inFlight + " requests in flight");
+    }
+    log.info("Worker shutting down, no longer alive");
+  }
+
+  int getInFlight() {
+    return inFlight;
+  }
+
+  private void runInternal() throws InterruptedException {
+    if (reporter != null) {
+      reporter.progress();
+    }
+
+    // Hand back finished pages first so their follow-up requests are available below
+    Completion completion;
+    while ((completion = completions.poll()) != null) {
+      inFlight--;
+      completion.request.complete(completion.limit, completion.page);
+    }
+
+    if (inFlight < maxConcurrency && issueNextRequest()) {
+      return;
+    }
+
+    // Nothing could be issued; wait for an outstanding request or for a token to free up
+    completion = completions.poll(getSleepTime(), TimeUnit.MILLISECONDS);
+    if (completion != null) {
+      inFlight--;
+      completion.request.complete(completion.limit, completion.page);
+    }
+  }
+
+  private boolean issueNextRequest() {
+    AbstractRecordReadRequest req = readMgr.dequeueReadRequest();
+    if (req == null) {
+      return false;
+    }
+
+    RequestLimit lim = readMgr.rateController.getNextRequestLimit();
+    if (lim == RequestLimit.ZERO) {
+      readMgr.enqueueReadRequestToHead(req);
+      return false;
+    }
+
+    inFlight++;
+    req.readAsync(lim).thenAccept(page -> completions.add(new Completion(req, lim, page)));
+    return true;
+  }
+
+  private static class Completion {
+
+    final AbstractRecordReadRequest request;
+    final RequestLimit limit;
+    final PageResults<Map<String, AttributeValue>> page;
+
+    Completion(AbstractRecordReadRequest request, RequestLimit limit,
+        PageResults<Map<String, AttributeValue>> page) {
+      this.request = request;
+      this.limit = limit;
+      this.page = page;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ * <p>
+ *     http://aws.amazon.com/apache2.0/
+ * <p>
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.preader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.hadoop.dynamodb.DynamoDBFibonacciRetryer.RetryResult;
+import org.apache.hadoop.dynamodb.preader.RateController.RequestLimit;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+/**
+ * Reads items by primary key with BatchGetItem, for predicates that pin the full primary key.
+ * Each request gets as many keys as the rate controller allows, up to the BatchGetItem limit.
+ * Keys left over, including those DynamoDB returned unprocessed, go to the next request of the
+ * segment, until the segment has returned as many items as the read limit allows.
+ */
+public class BatchGetRecordReadRequest extends AbstractRecordReadRequest {
+
+  private final List<Map<String, AttributeValue>> keys;
+  // Keys still to read once this request completes
+  private volatile List<Map<String, AttributeValue>> remainingKeys = Collections.emptyList();
+
+  public BatchGetRecordReadRequest(AbstractReadManager readMgr,
+      DynamoDBRecordReaderContext context, int segment, List<Map<String, AttributeValue>> keys) {
+    super(readMgr, context, segment, null /* lastEvaluatedKey */);
+    this.keys = keys;
+  }
+
+  @Override
+  protected boolean hasNextPage(PageResults<Map<String, AttributeValue>> pageResults) {
+    return !isLimitReached(pageResults) && !remainingKeys.isEmpty();
+  }
+
+  @Override
+  protected AbstractRecordReadRequest buildNextReadRequest(
+      PageResults<Map<String, AttributeValue>> pageResults) {
+    return new BatchGetRecordReadRequest(readMgr, context, segment, remainingKeys);
+  }
+
+  @Override
+  protected PageResults<Map<String, AttributeValue>> fetchPage(RequestLimit lim) {
+    List<Map<String, AttributeValue>> batch = getBatch(lim);
+    RetryResult<BatchGetItemResponse> retryResult = context.getClient().batchGetItems(tableName,
+        batch, context.getSplit().getFilterPushdown(), context.getReporter());
+
+    return toPageResults(batch, retryResult.result, retryResult.retries);
+  }
+
+  @Override
+  protected CompletableFuture<PageResults<Map<String, AttributeValue>>> fetchPageAsync(
+      RequestLimit lim) {
+    List<Map<String, AttributeValue>> batch = getBatch(lim);
+    return context.getClient()
+        .batchGetItemsAsync(tableName, batch, context.getSplit().getFilterPushdown())
+        .thenApply(response -> toPageResults(batch, response, 0 /* retries are done by the SDK */));
+  }
+
+  private List<Map<String, AttributeValue>> getBatch(RequestLimit lim) {
+    // Each key returns at most one item, so there is no need to ask for more than the limit allows
+    int batchSize = (int) Math.min(Math.min(keys.size(), Math.max(1, lim.items)),
+        Math.max(1, getRemainingItems()));
+    return keys.subList(0, batchSize);
+  }
+
+  private PageResults<Map<String, AttributeValue>> toPageResults(
+      List<Map<String, AttributeValue>> batch, BatchGetItemResponse response, int retries) {
+    List<Map<String, AttributeValue>> remaining =
+        new ArrayList<>(keys.subList(batch.size(), keys.size()));
+    KeysAndAttributes unprocessed = response.unprocessedKeys().get(tableName);
+    if (unprocessed != null && unprocessed.hasKeys() && !unprocessed.keys().isEmpty()) {
+      remaining.addAll(unprocessed.keys());
+      // Unprocessed keys mean the table is short of capacity, like a throttled request
+      retries++;
+    }
+    remainingKeys = remaining;
+
+    List<Map<String, AttributeValue>> items = response.responses().get(tableName);
+    double consumedRcu = 0;
+    for (ConsumedCapacity capacity : response.consumedCapacity()) {
+      if (capacity.capacityUnits() != null) {
+        consumedRcu += capacity.capacityUnits();
+      }
+    }
+    return new PageResults<>(items == null ? Collections.emptyList() : items,
+        null /* lastEvaluatedKey */, consumedRcu, retries);
+  }
+}
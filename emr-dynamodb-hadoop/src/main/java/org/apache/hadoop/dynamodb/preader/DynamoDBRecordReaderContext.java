@@ -16,7 +16,9 @@ package org.apache.hadoop.dynamodb.preader;
 import java.util.Collection;
 import java.util.Map;
 import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.dynamodb.IopsCalculator;
 import org.apache.hadoop.dynamodb.split.DynamoDBSplit;
+import org.apache.hadoop.dynamodb.split.SegmentClaimer;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
@@ -31,6 +33,9 @@ public class DynamoDBRecordReaderContext {
   private Collection<String> attributes;
   private double averageItemSize;
   private PageResultMultiplexer<Map<String, AttributeValue>> pageMux;
+  private IopsCalculator iopsCalculator;
+  private SegmentCheckpointer checkpointer;
+  private SegmentClaimer segmentClaimer;
 
   public PageResultMultiplexer<Map<String, AttributeValue>> getPageResultMultiplexer() {
     return pageMux;
@@ -80,6 +85,40 @@ public class DynamoDBRecordReaderContext {
     this.client = client;
   }
 
+  /**
+   * @return calculator to refresh the target rate from while reading, or null if the rate is
+   *     fixed for the life of the task
+   */
+  public IopsCalculator getIopsCalculator() {
+    return iopsCalculator;
+  }
+
+  public void setIopsCalculator(IopsCalculator iopsCalculator) {
+    this.iopsCalculator = iopsCalculator;
+  }
+
+  /**
+   * @return checkpoints of the scan progress of this task, or null if they are disabled
+   */
+  public SegmentCheckpointer getCheckpointer() {
+    return checkpointer;
+  }
+
+  public void setCheckpointer(SegmentCheckpointer checkpointer) {
+    this.checkpointer = checkpointer;
+  }
+
+  /**
+   * @return claimer of the segments this task scans, or null if it scans those of its split
+   */
+  public SegmentClaimer getSegmentClaimer() {
+    return segmentClaimer;
+  }
+
+  public void setSegmentClaimer(SegmentClaimer segmentClaimer) {
+    this.segmentClaimer = segmentClaimer;
+  }
+
   public Collection<String> getAttributes() {
     return attributes;
   }
@@ -4,7 +4,7 @@
  * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
  * except in compliance with the License. A copy of the License is located at
  *
- *     http://aws.amazon.com/apache2.0/
+ *     http://aws.amazon.com/apache2.0/
  *
  * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
  * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
@@ -14,19 +14,23 @@
 package org.apache.hadoop.dynamodb.preader;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
  * A multiplexer that interleaves items from multiple scan/query page results.
  *
- * The next() method will walk through pages in the buffer and return a single item a time. next()
- * will block if the number of pages is smaller than batchSize.
+ * The next() method will walk through pages in the buffer round-robin and return a single item a
+ * time. next() will block if the number of pages is smaller than batchSize, unless a producer is
+ * blocked because the buffer is full. addPageResults() blocks while the buffer holds capacity
+ * pages or the estimated size of the buffered pages would exceed maxBufferedBytes. A single page
+ * larger than maxBufferedBytes is still admitted into an empty buffer.
  */
 public class PageResultMultiplexer<V> {
 
@@ -34,99 +38,153 @@ public class PageResultMultiplexer<V> {
 
   private final int batchSize;
   private final int capacity;
-  private final BlockingQueue<PageResults<V>> pages;
-  private final AtomicInteger pageCount = new AtomicInteger();
-  private final Object removeItemLock = new Object();
-
+  private final long maxBufferedBytes;
+  private final ToLongFunction<PageResults<V>> pageSizeEstimator;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  // Signalled when a page is added, a producer starts waiting or draining starts
+  private final Condition readable = lock.newCondition();
+  // Signalled when a page leaves the buffer
+  private final Condition notFull = lock.newCondition();
+
+  // Guarded by lock. The head is the next page to read from; pages with items left go to the tail
+  private final Deque<PageResults<V>> pages = new ArrayDeque<>();
+  private long bufferedBytes;
+  private int waitingProducers;
+  private boolean draining = false;
   private long itemsReturned = 0;
-  private volatile boolean draining = false;
-  private volatile Iterator<PageResults<V>> pageIterator;
+  private long pagesAdded = 0;
 
   public PageResultMultiplexer(int batchSize, int capacity) {
+    this(batchSize, capacity, Long.MAX_VALUE, page -> 0L);
+  }
+
+  public PageResultMultiplexer(int batchSize, int capacity, long maxBufferedBytes,
+      ToLongFunction<PageResults<V>> pageSizeEstimator) {
     this.batchSize = batchSize;
     this.capacity = capacity;
-    this.pages = new LinkedBlockingQueue<>(capacity);
-    this.pageIterator = pages.iterator();
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.pageSizeEstimator = pageSizeEstimator;
   }
 
   public boolean addPageResults(PageResults<V> page) {
-    // Order: add page, increment counter
-    boolean admitted = pages.offer(page);
-    if (!admitted) {
-      try {
-        log.info("Blocking on page add, mux full.");
-        pages.put(page);
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        log.error("Page add was interrupted");
-        return false;
+    long pageBytes = page.isFailed() ? 0 : pageSizeEstimator.applyAsLong(page);
+
+    lock.lock();
+    try {
+      if (isFull(pageBytes)) {
+        log.info("Blocking on page add, mux full. Pages: " + pages.size() + ", bytes: "
+            + bufferedBytes);
+        waitingProducers++;
+        try {
+          // Let the consumer read even if it is short of batchSize pages
+          readable.signal();
+          while (isFull(pageBytes)) {
+            notFull.await();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          log.error("Page add was interrupted");
+          return false;
+        } finally {
+          waitingProducers--;
+        }
       }
-    }
 
-    pageCount.incrementAndGet();
-    log.info("Added a page. Page count: " + pageCount.get());
+      page.sizeBytes = pageBytes;
+      pages.addLast(page);
+      bufferedBytes += pageBytes;
+      pagesAdded++;
+      readable.signal();
+    } finally {
+      lock.unlock();
+    }
 
+    log.debug("Added a page. Pages added: " + pagesAdded);
     return true;
   }
 
   public V next() throws IOException {
-    if (itemsReturned % 10000 == 0) {
-      log.info("Pagemux stats: items=" + itemsReturned + ", pages=" + pageCount.get() + ", cap="
-          + capacity);
-    }
-
-    synchronized (removeItemLock) {
-      // Now, this could block for a while as we wait for enough pages to
-      // multiplex. As long as we're really doing work in the background (
-      // scans/queries), then the dynamodb client/retrier will tick the
-      // reporter to signal liveness.
-      waitForMuxCondition();
+    lock.lock();
+    try {
+      if (itemsReturned % 10000 == 0) {
+        log.info("Pagemux stats: items=" + itemsReturned + ", pages=" + pages.size() + ", bytes="
+            + bufferedBytes + ", cap=" + capacity);
+      }
 
-      // Loop until we find the queue in draining mode and empty
-      while (!(draining && pageCount.get() == 0)) {
-        PageResults<V> nextPage;
-        try {
-          nextPage = pageIterator.next();
-        } catch (NoSuchElementException e) {
-          pageIterator = pages.iterator();
+      while (true) {
+        if (pages.isEmpty()) {
+          if (draining) {
+            return null;
+          }
+        } else if (draining || pages.size() >= batchSize || waitingProducers > 0) {
+          PageResults<V> page = pages.peekFirst();
+          if (page.exception != null) {
+            throw new IOException(page.exception);
+          }
+
+          pages.pollFirst();
+          V nextItem = page.next();
+          if (page.hasMore()) {
+            pages.addLast(page);
+          } else {
+            bufferedBytes -= page.sizeBytes;
+            notFull.signalAll();
+            if (page.onRead != null) {
+              page.onRead.run();
+            }
+          }
+
+          if (nextItem != null) {
+            itemsReturned++;
+            if (!pages.isEmpty()) {
+              // Hand over to another waiting consumer, if any
+              readable.signal();
+            }
+            return nextItem;
+          }
           continue;
         }
 
-        if (nextPage.exception != null) {
-          throw new IOException(nextPage.exception);
-        }
-
-        V nextItem = nextPage.next();
-
-        // Remove the page if we've emptied it
-        if (!nextPage.hasMore()) {
-          // Order: lower counter, remove page
-          pageCount.decrementAndGet();
-          pageIterator.remove();
-        }
-
-        if (nextItem != null) {
-          itemsReturned++;
-          return nextItem;
-        }
+        // As long as we're really doing work in the background (scans/queries), then the
+        // dynamodb client/retrier will tick the reporter to signal liveness.
+        readable.await();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for pages");
+    } finally {
+      lock.unlock();
     }
-
-    return null;
   }
 
   public void setDraining(boolean draining) {
-    this.draining = draining;
+    lock.lock();
+    try {
+      this.draining = draining;
+      readable.signalAll();
+    } finally {
+      lock.unlock();
+    }
   }
 
-  private void waitForMuxCondition() {
-    while (pageCount.get() < batchSize && !draining) {
-      try {
-        log.info("Sleeping on consumption condition, pagecount = " + pageCount.get());
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-      }
+  /**
+   * @return how full the buffer is, from 0 when empty to 1 when producers would block, by page
+   *     count or by size, whichever is closer to its limit
+   */
+  public double getOccupancy() {
+    lock.lock();
+    try {
+      double byPages = (double) pages.size() / capacity;
+      double byBytes = (double) bufferedBytes / maxBufferedBytes;
+      return Math.min(1.0, Math.max(byPages, byBytes));
+    } finally {
+      lock.unlock();
     }
   }
+
+  private boolean isFull(long pageBytes) {
+    return pages.size() >= capacity
+        || (!pages.isEmpty() && bufferedBytes + pageBytes > maxBufferedBytes);
+  }
 }
@@ -24,11 +24,18 @@ public class PageResults<V> {
   public final V lastEvaluatedKey;
   public final double consumedRcu;
   public final int retries;
+  // Items DynamoDB read for the page, before a filter expression dropped some of them
+  public final int scannedCount;
   public final Exception exception;
 
   private volatile int pos;
+  // Estimated size, set by the multiplexer while the page is buffered
+  long sizeBytes;
+  // Called by the multiplexer once every item of the page has been handed out
+  Runnable onRead;
 
-  public PageResults(List<V> items, V lastEvaluatedKey, double consumedRcu, int retries) {
+  public PageResults(List<V> items, V lastEvaluatedKey, double consumedRcu, int retries,
+      int scannedCount) {
     if (items == null) {
       throw new IllegalArgumentException("Items must not be null");
     }
@@ -36,9 +43,14 @@ public class PageResults<V> {
     this.lastEvaluatedKey = lastEvaluatedKey;
     this.consumedRcu = consumedRcu;
     this.retries = retries;
+    this.scannedCount = scannedCount;
     this.exception = null;
   }
 
+  public PageResults(List<V> items, V lastEvaluatedKey, double consumedRcu, int retries) {
+    this(items, lastEvaluatedKey, consumedRcu, retries, items == null ? 0 : items.size());
+  }
+
   public PageResults(List<V> items, V lastEvaluatedKey) {
     this(items, lastEvaluatedKey, 0.0, 0);
   }
@@ -51,6 +63,7 @@ public class PageResults<V> {
     this.lastEvaluatedKey = null;
     this.consumedRcu = 0;
     this.retries = 0;
+    this.scannedCount = 0;
     this.exception = exception;
   }
 
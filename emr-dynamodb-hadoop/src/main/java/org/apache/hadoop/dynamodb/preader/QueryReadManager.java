@@ -13,6 +13,8 @@
 
 package org.apache.hadoop.dynamodb.preader;
 
+import java.util.List;
+import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
 import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
 
 public class QueryReadManager extends AbstractReadManager {
@@ -22,18 +24,32 @@ public class QueryReadManager extends AbstractReadManager {
     super(rateController, time, context);
   }
 
+  /**
+   * Each segment of a query split is one of the Query requests of its filter, e.g. one value of a
+   * hash key IN list, or a batch of keys for a key lookup. All of them are read concurrently by
+   * the workers.
+   */
   @Override
   protected void initializeReadRequests() {
+    DynamoDBQueryFilter filter = context.getSplit().getFilterPushdown();
     int totalSegments = context.getSplit().getTotalSegments();
-    if (totalSegments != 1) {
-      String errorMsg = "Expect 1 segment for query (received " + context.getSplit()
-          .getTotalSegments() + ")";
+    if (totalSegments != filter.getQueryCount()) {
+      String errorMsg = "Expect " + filter.getQueryCount() + " segments for query (received "
+          + totalSegments + ")";
       log.error(errorMsg);
       throw new RuntimeException(errorMsg);
     }
-    segmentsRemaining.set(totalSegments);
 
-    enqueueReadRequestToTail(new QueryRecordReadRequest(this, context, null /* lastEvaluatedKey
-    */));
+    List<Integer> segments = context.getSplit().getSegments();
+    segmentsRemaining.set(segments.size());
+    for (Integer segment : segments) {
+      if (filter.isKeyLookup()) {
+        enqueueReadRequestToTail(new BatchGetRecordReadRequest(this, context, segment,
+            filter.getLookupKeys(segment)));
+      } else {
+        enqueueReadRequestToTail(new QueryRecordReadRequest(this, context, segment,
+            filter.getFilterForQuery(segment), null /* lastEvaluatedKey */));
+      }
+    }
   }
 }
@@ -13,40 +13,70 @@
 
 package org.apache.hadoop.dynamodb.preader;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.hadoop.dynamodb.DynamoDBFibonacciRetryer.RetryResult;
+import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
 import org.apache.hadoop.dynamodb.preader.RateController.RequestLimit;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 
 public class QueryRecordReadRequest extends AbstractRecordReadRequest {
 
+  private final DynamoDBQueryFilter queryFilter;
+
   public QueryRecordReadRequest(AbstractReadManager readMgr, DynamoDBRecordReaderContext context,
                                 Map<String, AttributeValue> lastEvaluatedKey) {
-    super(readMgr, context, 0 /* segment */, lastEvaluatedKey);
+    this(readMgr, context, 0 /* segment */, context.getSplit().getFilterPushdown(),
+        lastEvaluatedKey);
+  }
+
+  /**
+   * @param segment     index of the query among those of the split's filter
+   * @param queryFilter filter of this query, with a single hash key value
+   */
+  public QueryRecordReadRequest(AbstractReadManager readMgr, DynamoDBRecordReaderContext context,
+      int segment, DynamoDBQueryFilter queryFilter, Map<String, AttributeValue> lastEvaluatedKey) {
+    super(readMgr, context, segment, lastEvaluatedKey);
+    this.queryFilter = queryFilter;
   }
 
   @Override
   protected AbstractRecordReadRequest buildNextReadRequest(PageResults<Map<String,
           AttributeValue>> pageResults) {
-    return new QueryRecordReadRequest(readMgr, context, pageResults.lastEvaluatedKey);
+    return new QueryRecordReadRequest(readMgr, context, segment, queryFilter,
+        pageResults.lastEvaluatedKey);
   }
 
   @Override
   protected PageResults<Map<String, AttributeValue>> fetchPage(RequestLimit lim) {
     // Read from DynamoDB
-    RetryResult<QueryResponse> retryResult = context.getClient().queryTable(tableName, context
-            .getSplit().getFilterPushdown(), lastEvaluatedKey, lim.items, context.getReporter());
+    RetryResult<QueryResponse> retryResult = context.getClient().queryTable(tableName,
+        queryFilter, lastEvaluatedKey, getItemLimit(lim), context.getReporter());
 
-    QueryResponse response = retryResult.result;
-    int retries = retryResult.retries;
+    return toPageResults(retryResult.result, retryResult.retries);
+  }
+
+  @Override
+  protected CompletableFuture<PageResults<Map<String, AttributeValue>>> fetchPageAsync(
+      RequestLimit lim) {
+    return context.getClient()
+        .queryTableAsync(tableName, queryFilter, lastEvaluatedKey, getItemLimit(lim))
+        .thenApply(response -> toPageResults(response, 0 /* retries are done by the SDK */));
+  }
 
-    return new PageResults<>(response.items(),
+  private PageResults<Map<String, AttributeValue>> toPageResults(QueryResponse response,
+      int retries) {
+    List<Map<String, AttributeValue>> items =
+        getItems(queryFilter, response.items(), response.count());
+    return new PageResults<>(items,
         // Default value of QueryResponse.lastEvaluatedKey is changed from NULL to
         // SdkAutoConstructMap in AWS SDK 2.x.
         // Translate the default value to NULL here, to keep this assumption in other classes.
         response.hasLastEvaluatedKey() ? response.lastEvaluatedKey() : null,
         response.consumedCapacity().capacityUnits(),
-        retries);
+        retries,
+        getScannedCount(items, response.scannedCount()));
   }
 }
@@ -17,11 +17,19 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
+import org.apache.hadoop.dynamodb.util.TokenBucket;
 
 public class RateController {
 
   static final double MIN_RCU_PER_REQ = 1;
-  private static final double MAX_RCU_PER_REQ = 25;
+  // Largest request while nothing calls for more, and always on tables with little capacity
+  static final double DEFAULT_MAX_RCU_PER_REQ = 25;
+  // DynamoDB returns at most 1 MB per page, i.e. 128 RCU of eventually consistent reads
+  static final double MAX_RCU_PER_PAGE = 128;
+  // A single request may take up to this many seconds of the target rate
+  private static final double MAX_REQUEST_SECONDS_OF_RATE = 0.25;
+  // Above this occupancy the read buffer is backed up and larger pages would only wait in it
+  private static final double BUFFER_BACKED_UP_OCCUPANCY = 0.5;
   private static final Log log = LogFactory.getLog(RateController.class);
   private static final double ITEM_SIZE_SMOOTH_FACTOR = 0.7;
 
@@ -29,24 +37,41 @@ public class RateController {
   private static final double MIN_ITEM_SIZE = 1.0;
   private static final double MAX_ITEM_SIZE = 400 * 1024;
 
-  private final double targetRate;
+  private final int windowSize;
   private final TokenBucket bucket;
+  // Item bytes one RCU reads, half as many for strongly consistent reads
+  private final double bytesPerRcu;
+  private final double maxRcuPerPage;
+  private volatile double targetRate;
+  private volatile double maxRcuPerRequest;
   private double avgItemSizeBytes;
 
   public RateController(AbstractTimeSource time, double targetRate, int windowSize, double
       avgItemSizeBytes) {
+    this(time, targetRate, windowSize, avgItemSizeBytes, false);
+  }
+
+  public RateController(AbstractTimeSource time, double targetRate, int windowSize, double
+      avgItemSizeBytes, boolean consistentRead) {
     this.targetRate = targetRate;
+    this.windowSize = windowSize;
+    double consistencyFactor = consistentRead ? 1
+        : DynamoDBConstants.READ_EVENTUALLY_TO_STRONGLY_CONSISTENT_FACTOR;
+    this.bytesPerRcu = DynamoDBConstants.BYTES_PER_READ_CAPACITY_UNIT * consistencyFactor;
+    this.maxRcuPerPage = MAX_RCU_PER_PAGE
+        * DynamoDBConstants.READ_EVENTUALLY_TO_STRONGLY_CONSISTENT_FACTOR / consistencyFactor;
     this.avgItemSizeBytes = Math.min(Math.max(avgItemSizeBytes, MIN_ITEM_SIZE), MAX_ITEM_SIZE);;
 
     double capacity = Math.max(targetRate * windowSize, MIN_RCU_PER_REQ);
     this.bucket = new TokenBucket(targetRate, capacity, time);
+    this.maxRcuPerRequest = getMaxRcuForRate(targetRate);
 
     log.info("Rate controller initialized. target rate=" + targetRate + ", bucket capacity="
-        + capacity);
+        + capacity + ", consistent read=" + consistentRead);
   }
 
   RequestLimit getNextRequestLimit() {
-    double rcu = bucket.acquire(MIN_RCU_PER_REQ, MAX_RCU_PER_REQ);
+    double rcu = bucket.acquire(MIN_RCU_PER_REQ, maxRcuPerRequest);
     if (rcu < MIN_RCU_PER_REQ) {
       return RequestLimit.ZERO;
     }
@@ -59,17 +84,23 @@ public class RateController {
     return new RequestLimit((int) items, rcu);
   }
 
-  void adjust(double permittedReadUnits, double consumedReadUnits, int items) {
+  /**
+   * @param scannedItems items read by the request, including those its filter expression dropped.
+   *                     The consumed capacity, like the Limit of the next request, covers them
+   *                     all, so a selective filter doesn't shrink the pages.
+   */
+  void adjust(double permittedReadUnits, double consumedReadUnits, int scannedItems) {
     // Update average item size
     double oldAvg = avgItemSizeBytes;
-    if (items > 0) {
+    if (scannedItems > 0) {
       avgItemSizeBytes = (avgItemSizeBytes * ITEM_SIZE_SMOOTH_FACTOR)
-          + estimateAvgItemSize(consumedReadUnits, items) * (1.0 - ITEM_SIZE_SMOOTH_FACTOR);
+          + estimateAvgItemSize(consumedReadUnits, scannedItems)
+          * (1.0 - ITEM_SIZE_SMOOTH_FACTOR);
       avgItemSizeBytes = Math.min(Math.max(avgItemSizeBytes, MIN_ITEM_SIZE), MAX_ITEM_SIZE);
     }
 
     log.debug("report: permitted=" + permittedReadUnits + ", consumed=" + consumedReadUnits + ", "
-        + "items=" + items + ", avg from= " + oldAvg + " to " + avgItemSizeBytes);
+        + "scannedItems=" + scannedItems + ", avg from= " + oldAvg + " to " + avgItemSizeBytes);
 
     // Adjust token bucket, if we ended up consuming more/less than
     // permitted
@@ -86,17 +117,61 @@ public class RateController {
     return targetRate;
   }
 
+  void setTargetRate(double targetRate) {
+    if (targetRate == this.targetRate) {
+      return;
+    }
+    double capacity = Math.max(targetRate * windowSize, MIN_RCU_PER_REQ);
+    bucket.setRate(targetRate, capacity);
+    log.info("Rate controller target rate changed from " + this.targetRate + " to " + targetRate);
+    this.targetRate = targetRate;
+    this.maxRcuPerRequest = getMaxRcuForRate(targetRate);
+  }
+
+  /**
+   * Sizes requests between {@link #DEFAULT_MAX_RCU_PER_REQ} and a full 1 MB page. Requests grow
+   * with the target rate, and further when the workers cannot reach it with the observed latency
+   * unless each request reads more. They shrink back while the read buffer is backed up.
+   *
+   * @param avgLatencyNanos average latency of recent requests, or 0 if unknown
+   * @param maxInFlight     most requests the reader can have in flight
+   * @param bufferOccupancy how full the read buffer is, from 0 to 1
+   */
+  void updateMaxRequestSize(long avgLatencyNanos, int maxInFlight, double bufferOccupancy) {
+    double maxRcu = getMaxRcuForRate(targetRate);
+    if (avgLatencyNanos > 0 && maxInFlight > 0) {
+      // Little's law: the request size that reaches the target rate with every request in flight
+      maxRcu = Math.max(maxRcu, targetRate * avgLatencyNanos / 1e9 / maxInFlight);
+    }
+    if (bufferOccupancy > BUFFER_BACKED_UP_OCCUPANCY) {
+      maxRcu = DEFAULT_MAX_RCU_PER_REQ;
+    }
+    maxRcu = Math.min(Math.max(maxRcu, DEFAULT_MAX_RCU_PER_REQ), maxRcuPerPage);
+    if (Math.abs(maxRcu - maxRcuPerRequest) >= 1) {
+      log.info("Max read capacity per request changed from " + maxRcuPerRequest + " to " + maxRcu);
+      maxRcuPerRequest = maxRcu;
+    }
+  }
+
+  double getMaxRcuPerRequest() {
+    return maxRcuPerRequest;
+  }
+
   double getAvgItemSize() {
     return avgItemSizeBytes;
   }
 
+  private double getMaxRcuForRate(double targetRate) {
+    return Math.min(Math.max(targetRate * MAX_REQUEST_SECONDS_OF_RATE, DEFAULT_MAX_RCU_PER_REQ),
+        maxRcuPerPage);
+  }
+
   private double estimateAvgItemSize(double consumedReadUnits, int items) {
     return getBytesFromRcu(consumedReadUnits) / items;
   }
 
   private double getBytesFromRcu(double rcu) {
-    return DynamoDBConstants.BYTES_PER_READ_CAPACITY_UNIT * DynamoDBConstants
-        .READ_EVENTUALLY_TO_STRONGLY_CONSISTENT_FACTOR * rcu;
+    return bytesPerRcu * rcu;
   }
 
   static class RequestLimit {
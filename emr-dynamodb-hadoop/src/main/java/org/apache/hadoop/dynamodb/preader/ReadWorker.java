@@ -83,7 +83,7 @@ public class ReadWorker extends Thread {
     req.read(lim);
   }
 
-  private long getSleepTime() {
+  protected long getSleepTime() {
     int base = SLEEP_TIME_MS - SLEEP_JITTER_MS;
     int jitter = rnd.nextInt(SLEEP_JITTER_MS * 2);
     return base + jitter;
@@ -13,14 +13,24 @@
 
 package org.apache.hadoop.dynamodb.preader;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.hadoop.dynamodb.split.SegmentClaimer;
 import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
 public class ScanReadManager extends AbstractReadManager {
 
+  // Claims segments off the read workers, as claims take blocking I/O on the segment queue. Set
+  // by initializeReadRequests, which runs before the fields of this class are initialized.
+  private ExecutorService claimExecutor;
+
   public ScanReadManager(RateController rateController, AbstractTimeSource time,
       DynamoDBRecordReaderContext context) {
     super(rateController, time, context);
@@ -28,14 +38,40 @@ public class ScanReadManager extends AbstractReadManager {
 
   @Override
   protected void initializeReadRequests() {
-    // Create a temporary copy of the segments, as we're about to shuffle it
-    List<Integer> shuffleSgments = new ArrayList<>(context.getSplit().getSegments());
-    if (shuffleSgments.isEmpty()) {
+    List<Integer> splitSegments = context.getSplit().getSegments();
+    if (splitSegments.isEmpty()) {
       String errorMsg = "0 segment. Need at least one segment to work with.";
       log.error(errorMsg);
       throw new RuntimeException(errorMsg);
     }
 
+    // Skip the segments an earlier attempt of this task has read to the end
+    SegmentCheckpointer checkpointer = context.getCheckpointer();
+    List<Integer> shuffleSgments;
+    if (context.getSegmentClaimer() == null) {
+      // Create a temporary copy of the segments, as we're about to shuffle it
+      shuffleSgments = new ArrayList<>(splitSegments);
+      if (checkpointer != null) {
+        shuffleSgments.removeIf(checkpointer::isComplete);
+        segmentsCompleted.set(splitSegments.size() - shuffleSgments.size());
+      }
+    } else {
+      // As many segments in flight as the split has, any further ones are claimed one by one
+      // as segments complete
+      shuffleSgments = claimInitialSegments(splitSegments.size());
+      claimExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SegmentClaimer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    if (shuffleSgments.isEmpty()) {
+      log.info("All segments were read by an earlier attempt or other tasks");
+      context.getPageResultMultiplexer().setDraining(true);
+      return;
+    }
+
     // Shuffle the segments.
     Collections.shuffle(shuffleSgments, new Random());
 
@@ -44,10 +80,81 @@ public class ScanReadManager extends AbstractReadManager {
     // scanned.
     segmentsRemaining.set(shuffleSgments.size());
 
-    // Queue up segment scan requests
+    // Queue up segment scan requests, from where an earlier attempt stopped if any
     for (Integer segment : shuffleSgments) {
-      enqueueReadRequestToTail(new ScanRecordReadRequest(this, context, segment, null /*
-      lastEvaluatedKey */));
+      Map<String, AttributeValue> lastEvaluatedKey =
+          checkpointer == null ? null : checkpointer.getResumeKey(segment);
+      enqueueReadRequestToTail(new ScanRecordReadRequest(this, context, segment,
+          lastEvaluatedKey));
+    }
+  }
+
+  @Override
+  void markSegmentComplete(int segment) {
+    if (claimExecutor != null) {
+      // The segment being claimed counts as remaining, so that the scan doesn't end meanwhile
+      segmentsRemaining.incrementAndGet();
+      claimExecutor.execute(this::claimNextSegment);
+    }
+    super.markSegmentComplete(segment);
+  }
+
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    if (claimExecutor != null) {
+      // Segments claimed from now on would never be read
+      claimExecutor.shutdownNow();
+    }
+  }
+
+  private void claimNextSegment() {
+    try {
+      Integer nextSegment = context.getSegmentClaimer().claimNext();
+      if (nextSegment != null) {
+        enqueueReadRequestToTail(new ScanRecordReadRequest(this, context, nextSegment,
+            null /* lastEvaluatedKey */));
+        return;
+      }
+    } catch (IOException e) {
+      // Fail the task, as no other task would read the segments it has left unclaimed
+      context.getPageResultMultiplexer().addPageResults(new PageResults<>(e));
+      return;
+    }
+
+    // Every segment has been claimed
+    if (segmentsRemaining.decrementAndGet() == 0) {
+      endScan();
+    }
+  }
+
+  /**
+   * Returns the segments earlier attempts of this task claimed and did not finish, topped up
+   * with newly claimed segments.
+   */
+  private List<Integer> claimInitialSegments(int count) {
+    SegmentClaimer claimer = context.getSegmentClaimer();
+    SegmentCheckpointer checkpointer = context.getCheckpointer();
+    try {
+      List<Integer> segments = claimer.getSegmentsOfEarlierAttempts();
+      if (!segments.isEmpty()) {
+        log.info("Segments claimed by earlier attempts: " + segments);
+      }
+      if (checkpointer != null) {
+        int recoveredCount = segments.size();
+        segments.removeIf(checkpointer::isComplete);
+        segmentsCompleted.set(recoveredCount - segments.size());
+      }
+      while (segments.size() < count) {
+        Integer segment = claimer.claimNext();
+        if (segment == null) {
+          break;
+        }
+        segments.add(segment);
+      }
+      return segments;
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to claim segments", e);
     }
   }
 }
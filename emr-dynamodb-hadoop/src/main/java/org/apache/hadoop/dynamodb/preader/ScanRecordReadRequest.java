@@ -13,45 +13,81 @@
 
 package org.apache.hadoop.dynamodb.preader;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.hadoop.dynamodb.DynamoDBFibonacciRetryer.RetryResult;
 import org.apache.hadoop.dynamodb.preader.RateController.RequestLimit;
+import org.apache.hadoop.dynamodb.split.DynamoDBSplit;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
 
 public class ScanRecordReadRequest extends AbstractRecordReadRequest {
 
+  // Position of the page in the segment, counted from where this task attempt started it
+  private final long pageIndex;
+
   public ScanRecordReadRequest(AbstractReadManager readMgr, DynamoDBRecordReaderContext context,
       int segment, Map<String, AttributeValue> lastEvaluatedKey) {
+    this(readMgr, context, segment, lastEvaluatedKey, 0);
+  }
+
+  private ScanRecordReadRequest(AbstractReadManager readMgr, DynamoDBRecordReaderContext context,
+      int segment, Map<String, AttributeValue> lastEvaluatedKey, long pageIndex) {
     super(readMgr, context, segment, lastEvaluatedKey);
+    this.pageIndex = pageIndex;
   }
 
   @Override
   protected AbstractRecordReadRequest buildNextReadRequest(PageResults<Map<String,
       AttributeValue>> pageResults) {
-    return new ScanRecordReadRequest(readMgr, context, segment, pageResults.lastEvaluatedKey);
+    return new ScanRecordReadRequest(readMgr, context, segment, pageResults.lastEvaluatedKey,
+        pageIndex + 1);
   }
 
   @Override
   protected PageResults<Map<String, AttributeValue>> fetchPage(RequestLimit lim) {
     // Read from DynamoDB
+    DynamoDBSplit split = context.getSplit();
     RetryResult<ScanResponse> retryResult = context.getClient()
-            .scanTable(tableName, null, segment, context.getSplit().getTotalSegments(),
-                    lastEvaluatedKey, lim.items, context.getReporter());
+            .scanTable(tableName, split.getFilterPushdown(), segment, split.getTotalSegments(),
+                    lastEvaluatedKey, getItemLimit(lim), context.getReporter());
 
-    ScanResponse response = retryResult.result;
-    int retries = retryResult.retries;
+    return toPageResults(retryResult.result, retryResult.retries);
+  }
 
+  @Override
+  protected CompletableFuture<PageResults<Map<String, AttributeValue>>> fetchPageAsync(
+      RequestLimit lim) {
+    DynamoDBSplit split = context.getSplit();
+    return context.getClient()
+        .scanTableAsync(tableName, split.getFilterPushdown(), segment, split.getTotalSegments(),
+            lastEvaluatedKey, getItemLimit(lim))
+        .thenApply(response -> toPageResults(response, 0 /* retries are done by the SDK */));
+  }
+
+  private PageResults<Map<String, AttributeValue>> toPageResults(ScanResponse response,
+      int retries) {
     double consumedCapacityUnits = 0.0;
     if (response.consumedCapacity() != null) {
       consumedCapacityUnits = response.consumedCapacity().capacityUnits();
     }
-    return new PageResults<>(response.items(),
+    List<Map<String, AttributeValue>> items =
+        getItems(context.getSplit().getFilterPushdown(), response.items(), response.count());
+    PageResults<Map<String, AttributeValue>> pageResults = new PageResults<>(items,
         // Default value of ScanResponse.lastEvaluatedKey is changed from NULL to
         // SdkAutoConstructMap in AWS SDK 2.x.
         // Translate the default value to NULL here, to keep this assumption in other classes.
         response.hasLastEvaluatedKey() ? response.lastEvaluatedKey() : null,
         consumedCapacityUnits,
-        retries);
+        retries,
+        getScannedCount(items, response.scannedCount()));
+
+    SegmentCheckpointer checkpointer = context.getCheckpointer();
+    if (checkpointer != null) {
+      pageResults.onRead = () -> checkpointer.pageRead(segment, pageIndex,
+          pageResults.lastEvaluatedKey);
+    }
+    return pageResults;
   }
 }
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.preader;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.DynamoDBItemWritable;
+import org.apache.hadoop.dynamodb.DynamoDBUtil;
+import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
+import org.apache.hadoop.dynamodb.write.AbstractDynamoDBOutputFormat;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.TaskAttemptID;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Records how far the segments of a scan task have been handed to the mapper, so that a new
+ * attempt of the task resumes where a failed one stopped instead of scanning its segments again.
+ *
+ * <p>Every attempt writes its checkpoint to a file named after the attempt, in a directory per
+ * job and task. A new attempt starts from the most recent file of the earlier attempts. A page
+ * counts as read once the mapper has asked for the item after its last one, and pages of a
+ * segment are only counted in the order they were scanned, so a checkpoint never skips items
+ * the mapper has not seen. The outputs the task attempt {@link #registerOutput registered}, i.e.
+ * its DynamoDB record writers, are flushed after a checkpoint is taken and before it is written,
+ * so everything the mapper wrote for the items it covers is in DynamoDB. No checkpoint is written
+ * before an output has been registered.
+ *
+ * <p>Resuming only avoids lost items when the output of a failed attempt is kept. Checkpoints are
+ * therefore only used by map-only MapReduce jobs writing to DynamoDB, where the items read again
+ * after the checkpoint overwrite themselves, and only without speculative execution, so that no
+ * other attempt of the task is running. Any other job, e.g. an export to files, reads all
+ * segments again on a retry.
+ */
+public class SegmentCheckpointer {
+
+  private static final Log log = LogFactory.getLog(SegmentCheckpointer.class);
+  private static final int FORMAT_VERSION = 1;
+  private static final String TEMP_PREFIX = ".";
+  private static final String TASK_ATTEMPT_ID = "mapreduce.task.attempt.id";
+
+  // Outputs of the task attempts running in this JVM, by attempt id
+  private static final Map<String, Set<Flushable>> attemptOutputs = new ConcurrentHashMap<>();
+
+  private final FileSystem fs;
+  private final Path checkpointDir;
+  private final Path checkpointFile;
+  private final String attemptId;
+  private final int totalSegments;
+  private final long intervalMs;
+  private final AbstractTimeSource time;
+
+  // Guarded by this. Last evaluated key of the last page read of each started segment.
+  private final Map<Integer, Map<String, AttributeValue>> positions = new HashMap<>();
+  private final Set<Integer> completedSegments = new HashSet<>();
+  private final Map<Integer, Long> nextPageIndexes = new HashMap<>();
+  // Pages read ahead of an earlier page of the same segment, by segment and page index
+  private final Map<Integer, TreeMap<Long, Map<String, AttributeValue>>> pagesReadAhead =
+      new HashMap<>();
+  private long lastSaveNano;
+
+  SegmentCheckpointer(FileSystem fs, Path checkpointDir, String attemptId, int totalSegments,
+      long intervalMs, AbstractTimeSource time) {
+    this.fs = fs;
+    this.checkpointDir = checkpointDir;
+    this.checkpointFile = new Path(checkpointDir, attemptId);
+    this.attemptId = attemptId;
+    this.totalSegments = totalSegments;
+    this.intervalMs = intervalMs;
+    this.time = time;
+    this.lastSaveNano = time.getNanoTime();
+  }
+
+  /**
+   * @param conf          job configuration
+   * @param totalSegments segments the table is scanned in
+   * @return a checkpointer holding the progress of earlier attempts of this task, or null if
+   *     checkpoints are disabled or cannot be used
+   */
+  public static SegmentCheckpointer create(Configuration conf, int totalSegments,
+      AbstractTimeSource time) {
+    if (!conf.getBoolean(DynamoDBConstants.READ_CHECKPOINT_ENABLED,
+        DynamoDBConstants.DEFAULT_READ_CHECKPOINT_ENABLED)) {
+      return null;
+    }
+    if (!DynamoDBUtil.isMapReduceFramework(conf) || DynamoDBUtil.isMapSpeculationEnabled(conf)) {
+      log.warn("Read checkpoints need MapReduce without speculative execution of map tasks, "
+          + "retries read all segments again");
+      return null;
+    }
+    if (!isOutputKeptOnFailure(conf)) {
+      log.warn("Read checkpoints need a map-only job writing to DynamoDB, as other outputs of a "
+          + "failed attempt are discarded. Retries read all segments again");
+      return null;
+    }
+
+    String jobId = conf.get("mapreduce.job.id");
+    String attemptId = conf.get(TASK_ATTEMPT_ID);
+    if (jobId == null || attemptId == null) {
+      log.info("No job or task attempt id, read checkpoints disabled");
+      return null;
+    }
+
+    try {
+      String taskId = TaskAttemptID.forName(attemptId).getTaskID().toString();
+      Path root = new Path(conf.get(DynamoDBConstants.READ_CHECKPOINT_DIR,
+          DynamoDBConstants.DEFAULT_READ_CHECKPOINT_DIR));
+      Path checkpointDir = new Path(new Path(root, jobId), taskId);
+      SegmentCheckpointer checkpointer = new SegmentCheckpointer(
+          checkpointDir.getFileSystem(conf), checkpointDir, attemptId, totalSegments,
+          conf.getLong(DynamoDBConstants.READ_CHECKPOINT_INTERVAL_MS,
+              DynamoDBConstants.DEFAULT_READ_CHECKPOINT_INTERVAL_MS), time);
+      checkpointer.load();
+      return checkpointer;
+    } catch (IOException | IllegalArgumentException e) {
+      log.warn("Unable to use read checkpoints, scanning all segments from the start", e);
+      return null;
+    }
+  }
+
+  /**
+   * Registers an output of the task attempt the configuration belongs to. Checkpoints of the
+   * attempt flush it before they are written, from the thread the mapper writes its output with.
+   *
+   * @return closed once the output is closed, which unregisters it
+   */
+  public static Closeable registerOutput(Configuration conf, Flushable output) {
+    String attemptId = conf.get(TASK_ATTEMPT_ID);
+    if (attemptId == null) {
+      return () -> { };
+    }
+    attemptOutputs.compute(attemptId, (id, outputs) -> {
+      Set<Flushable> registered = outputs == null ? ConcurrentHashMap.newKeySet() : outputs;
+      registered.add(output);
+      return registered;
+    });
+    return () -> attemptOutputs.computeIfPresent(attemptId, (id, outputs) -> {
+      outputs.remove(output);
+      return outputs.isEmpty() ? null : outputs;
+    });
+  }
+
+  /**
+   * Whether the output of a failed attempt survives it. Output committers discard the files of a
+   * failed attempt, and map output of a job with reducers is never shuffled, but items written
+   * to DynamoDB stay there.
+   */
+  private static boolean isOutputKeptOnFailure(Configuration conf) {
+    if (new JobConf(conf).getNumReduceTasks() != 0) {
+      return false;
+    }
+    String outputFormat = conf.get("mapred.output.format.class");
+    Class<?> outputFormatClass = outputFormat == null ? null
+        : conf.getClassByNameOrNull(outputFormat);
+    return outputFormatClass != null
+        && AbstractDynamoDBOutputFormat.class.isAssignableFrom(outputFormatClass);
+  }
+
+  /**
+   * Loads the most recent checkpoint of an earlier attempt, if any.
+   */
+  synchronized void load() throws IOException {
+    FileStatus[] checkpoints;
+    try {
+      // Skip checkpoints being written and the checksums of the local file system
+      checkpoints = fs.listStatus(checkpointDir, path -> !path.getName().startsWith(TEMP_PREFIX));
+    } catch (FileNotFoundException e) {
+      log.info("No earlier checkpoint in " + checkpointDir);
+      return;
+    }
+
+    FileStatus latest = null;
+    for (FileStatus checkpoint : checkpoints) {
+      if (!checkpoint.getPath().equals(checkpointFile)
+          && (latest == null || checkpoint.getModificationTime() > latest.getModificationTime())) {
+        latest = checkpoint;
+      }
+    }
+    if (latest == null) {
+      log.info("No earlier checkpoint in " + checkpointDir);
+      return;
+    }
+
+    try (DataInputStream in = fs.open(latest.getPath())) {
+      if (in.readInt() != FORMAT_VERSION || in.readInt() != totalSegments) {
+        log.warn("Ignoring incompatible checkpoint " + latest.getPath());
+        return;
+      }
+      int segmentCount = in.readInt();
+      for (int i = 0; i < segmentCount; i++) {
+        int segment = in.readInt();
+        if (in.readBoolean()) {
+          completedSegments.add(segment);
+        } else {
+          DynamoDBItemWritable key = new DynamoDBItemWritable();
+          key.readFields(in);
+          positions.put(segment, key.getItem());
+        }
+      }
+    }
+    log.info("Resuming from checkpoint " + latest.getPath() + ", completed segments: "
+        + completedSegments + ", started segments: " + positions.keySet());
+  }
+
+  synchronized boolean isComplete(int segment) {
+    return completedSegments.contains(segment);
+  }
+
+  /**
+   * @return the key to continue the segment from, or null to scan it from the start
+   */
+  synchronized Map<String, AttributeValue> getResumeKey(int segment) {
+    return positions.get(segment);
+  }
+
+  /**
+   * Called once every item of a page has been handed out.
+   *
+   * @param pageIndex        position of the page in the segment, starting from 0 with this attempt
+   * @param lastEvaluatedKey key following the page, or null if it was the last page
+   */
+  synchronized void pageRead(int segment, long pageIndex,
+      Map<String, AttributeValue> lastEvaluatedKey) {
+    TreeMap<Long, Map<String, AttributeValue>> readAhead =
+        pagesReadAhead.computeIfAbsent(segment, s -> new TreeMap<>());
+    readAhead.put(pageIndex, lastEvaluatedKey);
+
+    long nextPageIndex = nextPageIndexes.getOrDefault(segment, 0L);
+    while (!readAhead.isEmpty() && readAhead.firstKey() == nextPageIndex) {
+      Map<String, AttributeValue> key = readAhead.pollFirstEntry().getValue();
+      if (key == null) {
+        positions.remove(segment);
+        completedSegments.add(segment);
+      } else {
+        positions.put(segment, key);
+      }
+      nextPageIndex++;
+    }
+    nextPageIndexes.put(segment, nextPageIndex);
+  }
+
+  /**
+   * Takes a checkpoint, flushes the output and writes the checkpoint, if the interval has
+   * passed. Must be called from the thread the mapper writes its output with, once the mapper is
+   * done with every item handed out so far. Failures are logged, as the scan does not depend on
+   * its checkpoints.
+   */
+  public void maybeSave() {
+    Checkpoint checkpoint;
+    synchronized (this) {
+      if (time.getTimeSinceMs(lastSaveNano) < intervalMs) {
+        return;
+      }
+      lastSaveNano = time.getNanoTime();
+      checkpoint = new Checkpoint(new HashMap<>(positions), new HashSet<>(completedSegments));
+    }
+
+    Set<Flushable> outputs = attemptOutputs.get(attemptId);
+    if (outputs == null || outputs.isEmpty()) {
+      log.info("No output registered by " + attemptId + " yet, not writing a checkpoint");
+      return;
+    }
+    try {
+      // Output written for items read after the checkpoint was taken may be flushed as well,
+      // those items are read and written again after a failure
+      for (Flushable output : outputs) {
+        output.flush();
+      }
+      save(checkpoint);
+    } catch (IOException e) {
+      log.warn("Unable to write checkpoint " + checkpointFile, e);
+    }
+  }
+
+  /**
+   * Removes the checkpoints of this task once it has read all its segments, along with the
+   * directory of the job if no other task has checkpoints left.
+   */
+  public void delete() {
+    try {
+      fs.delete(checkpointDir, true);
+      Path jobDir = checkpointDir.getParent();
+      FileStatus[] tasks = fs.listStatus(jobDir);
+      if (tasks.length == 0) {
+        fs.delete(jobDir, false);
+      }
+    } catch (FileNotFoundException e) {
+      // Removed by another task
+    } catch (IOException e) {
+      log.warn("Unable to remove checkpoints in " + checkpointDir, e);
+    }
+  }
+
+  private void save(Checkpoint checkpoint) throws IOException {
+    Path tempFile = new Path(checkpointDir, TEMP_PREFIX + checkpointFile.getName());
+    try (DataOutputStream out = fs.create(tempFile, true)) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(totalSegments);
+      out.writeInt(checkpoint.completedSegments.size() + checkpoint.positions.size());
+      for (Integer segment : checkpoint.completedSegments) {
+        out.writeInt(segment);
+        out.writeBoolean(true);
+      }
+      for (Map.Entry<Integer, Map<String, AttributeValue>> position
+          : checkpoint.positions.entrySet()) {
+        out.writeInt(position.getKey());
+        out.writeBoolean(false);
+        new DynamoDBItemWritable(position.getValue()).write(out);
+      }
+    }
+
+    // Replace the previous checkpoint of this attempt, which rename does not overwrite
+    fs.delete(checkpointFile, false);
+    if (!fs.rename(tempFile, checkpointFile)) {
+      throw new IOException("Unable to rename " + tempFile + " to " + checkpointFile);
+    }
+    log.info("Checkpoint written, completed segments: " + checkpoint.completedSegments.size()
+        + ", started segments: " + checkpoint.positions.size());
+  }
+
+  private static class Checkpoint {
+
+    final Map<Integer, Map<String, AttributeValue>> positions;
+    final Set<Integer> completedSegments;
+
+    Checkpoint(Map<Integer, Map<String, AttributeValue>> positions,
+        Set<Integer> completedSegments) {
+      this.positions = positions;
+      this.completedSegments = completedSegments;
+    }
+  }
+}
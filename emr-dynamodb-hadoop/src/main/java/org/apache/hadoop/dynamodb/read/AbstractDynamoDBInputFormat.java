@@ -19,8 +19,11 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.DynamoDBUtil;
+import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
 import org.apache.hadoop.dynamodb.preader.DynamoDBRecordReaderContext;
+import org.apache.hadoop.dynamodb.split.DynamoDBSplit;
 import org.apache.hadoop.dynamodb.split.DynamoDBSplitGenerator;
+import org.apache.hadoop.dynamodb.split.SegmentClaimer;
 import org.apache.hadoop.mapred.InputFormat;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobClient;
@@ -64,14 +67,73 @@ public abstract class AbstractDynamoDBInputFormat<K, V> implements InputFormat<K
       configuredReadThroughput = 1;
     }
 
-    long tableSizeBytes = conf.getLong(DynamoDBConstants.TABLE_SIZE_BYTES, 1);
-    int numSegments = getNumSegments(configuredReadThroughput, (int)
-        maxWriteThroughputAllocated, tableSizeBytes, conf);
-    int numMappers = getNumMappers(configuredReadThroughput, conf);
+    // Computed once here and shipped in the splits, so tasks don't need to rebuild it
+    DynamoDBQueryFilter queryFilter = getQueryFilter(conf);
+    int maxHashKeys = conf.getInt(DynamoDBConstants.QUERY_MAX_HASH_KEYS,
+        DynamoDBConstants.DEFAULT_QUERY_MAX_HASH_KEYS);
+    if (queryFilter != null && !queryFilter.isKeyLookup()
+        && queryFilter.getHashKeyCount() > maxHashKeys) {
+      log.info("Scanning instead of querying " + queryFilter.getHashKeyCount() + " hash keys, "
+          + "more than " + DynamoDBConstants.QUERY_MAX_HASH_KEYS + "=" + maxHashKeys);
+      queryFilter.convertToScan();
+    }
+    boolean countOnly = conf.getBoolean(DynamoDBConstants.READ_COUNT_ONLY, false);
+    long limit = conf.getLong(DynamoDBConstants.READ_LIMIT, 0);
+    if (limit > 0 && queryFilter != null && !queryFilter.isExact()) {
+      log.info("Ignoring " + DynamoDBConstants.READ_LIMIT + "=" + limit + " because the items "
+          + "read are filtered further after they are read");
+      limit = 0;
+    }
+    boolean scanIndexForward = conf.getBoolean(DynamoDBConstants.QUERY_SCAN_INDEX_FORWARD, true);
+    boolean consistentRead = conf.getBoolean(DynamoDBConstants.READ_CONSISTENT, false);
+    if (queryFilter == null && (countOnly || limit > 0 || !scanIndexForward || consistentRead)) {
+      queryFilter = new DynamoDBQueryFilter();
+    }
+    if (queryFilter != null) {
+      queryFilter.setCountOnly(countOnly);
+      queryFilter.setLimit(limit);
+      queryFilter.setScanIndexForward(scanIndexForward);
+      if (consistentRead && queryFilter.getIndex() != null && queryFilter.getIndex().isGlobal()) {
+        log.warn("Global secondary index " + queryFilter.getIndex().getIndexName()
+            + " only supports eventually consistent reads, ignoring "
+            + DynamoDBConstants.READ_CONSISTENT);
+      } else {
+        queryFilter.setConsistentRead(consistentRead);
+      }
+    }
+
+    int numSegments;
+    int numMappers;
+    if (queryFilter != null && !queryFilter.getKeyConditions().isEmpty()) {
+      // One segment per Query request, e.g. per value of a hash key IN list
+      numSegments = queryFilter.getQueryCount();
+      numMappers = numSegments == 1 ? 1 : getNumMappers(configuredReadThroughput, conf);
+      log.info("Using " + numSegments + " queries because there are key conditions");
+    } else {
+      long tableSizeBytes = conf.getLong(DynamoDBConstants.TABLE_SIZE_BYTES, 1);
+      numSegments = getNumSegments(configuredReadThroughput, (int) maxWriteThroughputAllocated,
+          tableSizeBytes, conf);
+      numMappers = getNumMappers(configuredReadThroughput, conf);
+      if (SegmentClaimer.isEnabled(conf) && conf.getInt(DynamoDBConstants.SCAN_SEGMENTS, -1) < 1) {
+        // Many small segments, so that tasks finishing early can take over those of slow ones
+        long segmentsForClaims = (long) numMappers * conf.getInt(
+            DynamoDBConstants.SCAN_SEGMENTS_PER_MAPPER,
+            DynamoDBConstants.DEFAULT_SCAN_SEGMENTS_PER_MAPPER);
+        numSegments = (int) Math.max(numSegments,
+            Math.min(segmentsForClaims, DynamoDBConstants.MAX_SCAN_SEGMENTS));
+        log.info("Using " + numSegments + " segments to be claimed by the mappers");
+      }
+    }
 
     log.info("Using " + numSegments + " segments across " + numMappers + " mappers");
 
-    return getSplitGenerator().generateSplits(numMappers, numSegments, conf);
+    InputSplit[] splits = getSplitGenerator().generateSplits(numMappers, numSegments, conf);
+    if (queryFilter != null) {
+      for (InputSplit split : splits) {
+        ((DynamoDBSplit) split).setDynamoDBFilterPushdown(queryFilter);
+      }
+    }
+    return splits;
   }
 
   protected DynamoDBRecordReaderContext buildDynamoDBRecordReaderContext(InputSplit split,
@@ -150,6 +212,15 @@ public abstract class AbstractDynamoDBInputFormat<K, V> implements InputFormat<K
     return numMappers;
   }
 
+  /**
+   * Returns the key conditions, filter and index pushed down for this job, or null to read the
+   * whole table. It is called once when planning the job, and its result is serialized into every
+   * split.
+   */
+  protected DynamoDBQueryFilter getQueryFilter(JobConf conf) throws IOException {
+    return null;
+  }
+
   protected DynamoDBSplitGenerator getSplitGenerator() {
     return new DynamoDBSplitGenerator();
   }
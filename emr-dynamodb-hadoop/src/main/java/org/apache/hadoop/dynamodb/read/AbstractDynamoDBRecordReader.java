@@ -23,13 +23,16 @@ import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.DynamoDBItemWritable;
 import org.apache.hadoop.dynamodb.IopsCalculator;
+import org.apache.hadoop.dynamodb.capacity.CapacityBroker;
 import org.apache.hadoop.dynamodb.preader.AbstractReadManager;
 import org.apache.hadoop.dynamodb.preader.DynamoDBRecordReaderContext;
 import org.apache.hadoop.dynamodb.preader.PageResultMultiplexer;
 import org.apache.hadoop.dynamodb.preader.QueryReadManager;
 import org.apache.hadoop.dynamodb.preader.RateController;
 import org.apache.hadoop.dynamodb.preader.ScanReadManager;
+import org.apache.hadoop.dynamodb.preader.SegmentCheckpointer;
 import org.apache.hadoop.dynamodb.split.DynamoDBSplit;
+import org.apache.hadoop.dynamodb.split.SegmentClaimer;
 import org.apache.hadoop.dynamodb.util.TimeSource;
 import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapred.Reporter;
@@ -59,7 +62,12 @@ public abstract class AbstractDynamoDBRecordReader<K, V> implements RecordReader
   private final PageResultMultiplexer<Map<String, AttributeValue>> pageMux;
   private final AbstractReadManager readMgr;
   private final DynamoDBRecordReaderContext context;
+  private final SegmentCheckpointer checkpointer;
+  private final SegmentClaimer segmentClaimer;
+  private CapacityBroker capacityBroker;
   protected volatile long readItemCount;
+  // Whether every segment has been read to the end
+  private boolean scanComplete;
 
   public AbstractDynamoDBRecordReader(DynamoDBRecordReaderContext context) {
     this.context = context;
@@ -75,40 +83,78 @@ public abstract class AbstractDynamoDBRecordReader<K, V> implements RecordReader
       throw new IllegalArgumentException("Query should always result in one segment");
     }
 
+    // Bound the buffered pages by their size, estimated from the table's average item size.
+    // Count-only pages hold no attributes.
+    double averageItemSize = split.getFilterPushdown().isCountOnly() ? 0
+        : context.getAverageItemSize() > 0 ? context.getAverageItemSize()
+        : DynamoDBConstants.DEFAULT_AVERAGE_ITEM_SIZE_IN_BYTES;
     this.pageMux = new PageResultMultiplexer<>(DynamoDBConstants.PSCAN_SEGMENT_BATCH_SIZE,
-        DynamoDBConstants.PSCAN_MULTIPLEXER_CAPACITY);
+        DynamoDBConstants.PSCAN_MULTIPLEXER_CAPACITY,
+        context.getConf().getLong(DynamoDBConstants.READ_BUFFER_MAX_BYTES,
+            DynamoDBConstants.DEFAULT_READ_BUFFER_MAX_BYTES),
+        page -> (long) (page.items.size() * averageItemSize));
     this.context.setPageResultMultiplexer(this.pageMux);
 
+    // A scan up to a read limit restarts from scratch, as its checkpoint could not tell how many
+    // items were read
+    if (!isQuery() && split.getFilterPushdown().getLimit() == 0) {
+      this.checkpointer = SegmentCheckpointer.create(context.getConf(), split.getTotalSegments(),
+          new TimeSource());
+      this.context.setCheckpointer(this.checkpointer);
+    } else {
+      this.checkpointer = null;
+    }
+    if (!isQuery()) {
+      this.segmentClaimer = SegmentClaimer.create(context.getConf(), split,
+          SegmentClaimer.getPoolName(tableName, split));
+      this.context.setSegmentClaimer(this.segmentClaimer);
+    } else {
+      this.segmentClaimer = null;
+    }
+
     this.readMgr = initReadManager();
 
     printInitInfo();
   }
 
+  /**
+   * Returns the number of items handed to the mapper so far.
+   */
   @Override
   public long getPos() throws IOException {
-    return 0;
+    return readItemCount;
   }
 
   @Override
   public float getProgress() throws IOException {
-    if (approxTotalItemCount == 0) {
-      return 0.0f;
-    } else {
-      float progress = (float) readItemCount / (float) approxTotalItemCount;
-      return Math.min(progress, 0.9f);
-    }
+    return readMgr.getProgress();
   }
 
   @Override
   public boolean next(K key, V value) throws IOException {
     reporter.progress();
 
+    // A scan task stops at the read limit. Queries are limited one by one instead, as each of
+    // them returns the first items of its range key order.
+    long limit = split.getFilterPushdown().getLimit();
+    if (limit > 0 && !isQuery() && readItemCount >= limit) {
+      scanComplete = true;
+      return false;
+    }
+
+    // The mapper is done with every item handed out so far
+    if (checkpointer != null) {
+      checkpointer.maybeSave();
+    }
+
     Map<String, AttributeValue> item = pageMux.next();
     if (item != null) {
+      readItemCount++;
       convertDynamoDBItemToValue(item, value);
       return true;
     }
 
+    scanComplete = true;
     return false;
   }
 
@@ -117,7 +163,23 @@ public abstract class AbstractDynamoDBRecordReader<K, V> implements RecordReader
     log.info("Closing down record reader");
 
     readMgr.shutdown();
-    client.close();
+    if (checkpointer != null && scanComplete) {
+      // Later attempts of the task, if any, start over
+      checkpointer.delete();
+    }
+    try {
+      if (capacityBroker != null) {
+        capacityBroker.close();
+      }
+      if (segmentClaimer != null) {
+        if (scanComplete) {
+          segmentClaimer.complete();
+        }
+        segmentClaimer.close();
+      }
+    } finally {
+      client.close();
+    }
 
     // Note that there is no guarantee that the read workers have pushed all
     // their data to the mux - we're making the assumption that this is fine
@@ -142,18 +204,24 @@ public abstract class AbstractDynamoDBRecordReader<K, V> implements RecordReader
   protected abstract void convertDynamoDBItemToValue(DynamoDBItemWritable item, V toValue);
 
   private AbstractReadManager initReadManager() {
-    // Calculate target rate. Currently this is only done at task startup
-    // time, but we could have this refresh every x minutes so that changes
-    // in table provisioning could be reflected.
+    // Calculate target rate. Without a capacity broker this is only done at
+    // task startup time. With one, the read manager refreshes it as tasks of
+    // the job come and go.
+    capacityBroker = CapacityBroker.create(context.getConf(), "read-" + tableName,
+        split.getSegments().size());
     IopsCalculator iopsCalculator = new ReadIopsCalculator(createJobClient(context.getConf()),
-        client, tableName, split.getTotalSegments(), split.getSegments().size());
+        client, tableName, split.getTotalSegments(), split.getSegments().size(), capacityBroker);
     double targetRate = iopsCalculator.calculateTargetIops();
+    if (capacityBroker != null) {
+      context.setIopsCalculator(iopsCalculator);
+    }
 
     // Set up the read manager, which will read from input segments and into
     // the output page multiplexer
     TimeSource time = new TimeSource();
     RateController rateController = new RateController(time, targetRate, DynamoDBConstants
-        .RATE_CONTROLLER_WINDOW_SIZE_SEC, context.getAverageItemSize());
+        .RATE_CONTROLLER_WINDOW_SIZE_SEC, context.getAverageItemSize(),
+        split.getFilterPushdown().isConsistentRead());
 
     if (isQuery()) {
       return new QueryReadManager(rateController, time, context);
@@ -18,6 +18,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.IopsCalculator;
+import org.apache.hadoop.dynamodb.capacity.CapacityBroker;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import software.amazon.awssdk.services.dynamodb.model.BillingMode;
@@ -27,6 +28,7 @@ import software.amazon.awssdk.services.dynamodb.model.TableDescription;
 public class ReadIopsCalculator implements IopsCalculator {
 
   private static final Log log = LogFactory.getLog(ReadIopsCalculator.class);
+  private static final long THROUGHPUT_REFRESH_MS = 5 * 60 * 1000;
 
   private final DynamoDBClient dynamoDBClient;
   private final JobClient jobClient;
@@ -36,9 +38,21 @@ public class ReadIopsCalculator implements IopsCalculator {
   private final double throughputPercent;
   private final int totalSegments;
   private final int localSegments;
+  private final CapacityBroker capacityBroker;
+  private double cachedThroughput;
+  private long throughputFetchTimeMs;
 
   public ReadIopsCalculator(JobClient jobClient, DynamoDBClient dynamoDBClient, String tableName,
       int totalSegments, int localSegments) {
+    this(jobClient, dynamoDBClient, tableName, totalSegments, localSegments, null);
+  }
+
+  /**
+   * @param capacityBroker broker sharing the read capacity between the running tasks, or null to
+   *                       give this task a fixed share for its segments
+   */
+  public ReadIopsCalculator(JobClient jobClient, DynamoDBClient dynamoDBClient, String tableName,
+      int totalSegments, int localSegments, CapacityBroker capacityBroker) {
     this.jobConf = (JobConf) jobClient.getConf();
     this.jobClient = jobClient;
 
@@ -46,6 +60,7 @@ public class ReadIopsCalculator implements IopsCalculator {
     this.tableName = tableName;
     this.totalSegments = totalSegments;
     this.localSegments = localSegments;
+    this.capacityBroker = capacityBroker;
 
     this.throughputPercent = Double.parseDouble(jobConf.get(DynamoDBConstants
         .THROUGHPUT_READ_PERCENT, DynamoDBConstants.DEFAULT_THROUGHPUT_PERCENTAGE));
@@ -55,6 +70,30 @@ public class ReadIopsCalculator implements IopsCalculator {
   }
 
   public long calculateTargetIops() {
+    double calculatedThroughput = Math.floor(getConfiguredThroughput() * throughputPercent);
+
+    long throughputPerTask;
+    if (capacityBroker == null) {
+      throughputPerTask = Math.max((long) (calculatedThroughput / totalSegments
+          * localSegments), 1);
+    } else {
+      throughputPerTask = Math.max((long) (calculatedThroughput
+          * capacityBroker.getShareFraction((double) localSegments / totalSegments)), 1);
+    }
+
+    log.info("Throughput per task for table " + tableName + " : " + throughputPerTask);
+    return throughputPerTask;
+  }
+
+  private double getConfiguredThroughput() {
+    // With a broker the share is recalculated on every lease renewal, but the provisioned
+    // throughput of the table rarely changes
+    long now = System.currentTimeMillis();
+    if (capacityBroker != null && throughputFetchTimeMs > 0
+        && now - throughputFetchTimeMs < THROUGHPUT_REFRESH_MS) {
+      return cachedThroughput;
+    }
+
     double configuredThroughput;
     // Always fetch throughput from DDB if auto-scaling is enabled or not specified
     if (Boolean.parseBoolean(jobConf.get(DynamoDBConstants.READ_THROUGHPUT_AUTOSCALING))
@@ -63,13 +102,9 @@ public class ReadIopsCalculator implements IopsCalculator {
     } else {
       configuredThroughput = Double.parseDouble(jobConf.get(DynamoDBConstants.READ_THROUGHPUT));
     }
-    double calculatedThroughput = Math.floor(configuredThroughput * throughputPercent);
-
-    long throughputPerTask = Math.max((long) (calculatedThroughput / totalSegments
-        * localSegments), 1);
-
-    log.info("Throughput per task for table " + tableName + " : " + throughputPerTask);
-    return throughputPerTask;
+    cachedThroughput = configuredThroughput;
+    throughputFetchTimeMs = now;
+    return configuredThroughput;
   }
 
   protected double getThroughput() {
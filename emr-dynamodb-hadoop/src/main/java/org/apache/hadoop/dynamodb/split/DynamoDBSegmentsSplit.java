@@ -28,6 +28,7 @@ public class DynamoDBSegmentsSplit implements DynamoDBSplit {
   private int splitId;
   private List<Integer> segments;
   private int totalSegments;
+  private int numSplits;
   private long estimateLength;
   private DynamoDBQueryFilter filterPushdown;
 
@@ -60,8 +61,12 @@ public class DynamoDBSegmentsSplit implements DynamoDBSplit {
       this.segments.add(in.readInt());
     }
     totalSegments = in.readInt();
-    filterPushdown = new DynamoDBQueryFilter();
+    numSplits = in.readInt();
     estimateLength = in.readLong();
+    filterPushdown = new DynamoDBQueryFilter();
+    if (in.readBoolean()) {
+      filterPushdown.readFields(in);
+    }
   }
 
   @Override
@@ -73,7 +78,12 @@ public class DynamoDBSegmentsSplit implements DynamoDBSplit {
       out.writeInt(segment);
     }
     out.writeInt(totalSegments);
+    out.writeInt(numSplits);
     out.writeLong(estimateLength);
+    out.writeBoolean(filterPushdown != null);
+    if (filterPushdown != null) {
+      filterPushdown.write(out);
+    }
   }
 
   @Override
@@ -101,6 +111,16 @@ public class DynamoDBSegmentsSplit implements DynamoDBSplit {
     return totalSegments;
   }
 
+  @Override
+  public int getNumSplits() {
+    return numSplits;
+  }
+
+  @Override
+  public void setNumSplits(int numSplits) {
+    this.numSplits = numSplits;
+  }
+
   @Override
   public DynamoDBQueryFilter getFilterPushdown() {
     return filterPushdown;
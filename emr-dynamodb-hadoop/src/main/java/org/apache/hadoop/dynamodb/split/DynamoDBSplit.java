@@ -26,6 +26,13 @@ public interface DynamoDBSplit extends InputSplit {
 
   int getTotalSegments();
 
+  /**
+   * Number of splits of the input the split belongs to, 0 if unknown.
+   */
+  int getNumSplits();
+
+  void setNumSplits(int numSplits);
+
   DynamoDBQueryFilter getFilterPushdown();
 
   void setDynamoDBFilterPushdown(DynamoDBQueryFilter filterPushdown);
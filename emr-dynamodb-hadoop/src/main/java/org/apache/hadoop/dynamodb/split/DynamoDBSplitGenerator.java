@@ -52,8 +52,10 @@ public class DynamoDBSplitGenerator {
     for (int i = 0; i < numMappers; i++) {
       log.info("Assigning " + segmentsPerSplit.get(i).size() + " segments to mapper " + i + ": "
           + segmentsPerSplit.get(i));
-      splits[i] = createDynamoDBSplit(getInputPath(conf), approxItemCountPerSplit, i,
+      DynamoDBSplit split = createDynamoDBSplit(getInputPath(conf), approxItemCountPerSplit, i,
           segmentsPerSplit.get(i), numSegments, estimateLength);
+      split.setNumSplits(numMappers);
+      splits[i] = split;
     }
 
     return splits;
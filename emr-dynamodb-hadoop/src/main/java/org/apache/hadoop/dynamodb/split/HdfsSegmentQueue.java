@@ -0,0 +1,164 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package org.apache.hadoop.dynamodb.split;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Keeps the claimed segments as files in a shared file system, by default HDFS.
+ *
+ * <p>Every claimed segment has a file named after it in a directory per job and pool, holding
+ * the id of the task that claimed it. A claim is written to a hidden file first and then renamed
+ * to the segment, which fails if another task got there first. The claims are kept until every
+ * task sharing the queue is done reading, so that a new attempt of a task finds the segments of
+ * its failed attempts. Each task then leaves a file named after it in a hidden directory, and the
+ * last one removes the claims, along with the job directory once no other pool is left in it.
+ */
+public class HdfsSegmentQueue implements SegmentQueue {
+
+  private static final Log log = LogFactory.getLog(HdfsSegmentQueue.class);
+  private static final String TEMP_PREFIX = ".";
+  private static final String DONE_DIR = TEMP_PREFIX + "done";
+
+  private FileContext fc;
+  private Path claimDir;
+  private String taskId;
+  private int totalSegments;
+
+  @Override
+  public void initialize(Configuration conf, String jobId, String poolName, String taskId,
+      int totalSegments) throws IOException {
+    Path root = new Path(conf.get(DynamoDBConstants.SCAN_SEGMENT_QUEUE_DIR,
+        DynamoDBConstants.DEFAULT_SCAN_SEGMENT_QUEUE_DIR));
+    this.claimDir = new Path(new Path(root, jobId), poolName);
+    this.taskId = taskId;
+    this.totalSegments = totalSegments;
+    this.fc = FileContext.getFileContext(claimDir.toUri(), conf);
+    fc.mkdir(claimDir, null, true);
+    log.info("Segment claim directory: " + claimDir);
+  }
+
+  @Override
+  public boolean claim(int segment) throws IOException {
+    Path claim = new Path(claimDir, Integer.toString(segment));
+    Path tempClaim = new Path(claimDir, TEMP_PREFIX + segment + "-" + taskId);
+    try (DataOutputStream out = fc.create(tempClaim,
+        EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE))) {
+      out.writeUTF(taskId);
+    }
+
+    try {
+      fc.rename(tempClaim, claim, Options.Rename.NONE);
+      return true;
+    } catch (FileAlreadyExistsException e) {
+      fc.delete(tempClaim, false);
+      return false;
+    }
+  }
+
+  @Override
+  public Set<Integer> getClaimedSegments() throws IOException {
+    Set<Integer> segments = new HashSet<>();
+    for (FileStatus claim : listClaims()) {
+      Integer segment = parseSegment(claim.getPath());
+      if (segment != null) {
+        segments.add(segment);
+      }
+    }
+    return segments;
+  }
+
+  @Override
+  public Set<Integer> getSegmentsOfTask() throws IOException {
+    Set<Integer> segments = new HashSet<>();
+    for (FileStatus claim : listClaims()) {
+      Integer segment = parseSegment(claim.getPath());
+      if (segment != null) {
+        try (DataInputStream in = fc.open(claim.getPath())) {
+          if (taskId.equals(in.readUTF())) {
+            segments.add(segment);
+          }
+        }
+      }
+    }
+    return segments;
+  }
+
+  @Override
+  public void complete(int totalTasks) throws IOException {
+    Path doneDir = new Path(claimDir, DONE_DIR);
+    fc.create(new Path(doneDir, taskId), EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+        Options.CreateOpts.createParent()).close();
+    if (totalTasks <= 0 || fc.util().listStatus(doneDir).length < totalTasks) {
+      return;
+    }
+
+    log.info("Every task is done reading, removing " + claimDir);
+    try {
+      fc.delete(claimDir, true);
+      Path jobDir = claimDir.getParent();
+      if (fc.util().listStatus(jobDir).length == 0) {
+        fc.delete(jobDir, false);
+      }
+    } catch (FileNotFoundException e) {
+      // Removed by another task finishing at the same time
+    } catch (IOException e) {
+      log.warn("Unable to remove " + claimDir, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    // Claims outlive the task, for its later attempts, until every task is complete
+  }
+
+  private FileStatus[] listClaims() throws IOException {
+    try {
+      // Skip claims being written and the checksums of the local file system
+      return fc.util().listStatus(claimDir, path -> !path.getName().startsWith(TEMP_PREFIX));
+    } catch (FileNotFoundException e) {
+      return new FileStatus[0];
+    }
+  }
+
+  private Integer parseSegment(Path claim) {
+    try {
+      int segment = Integer.parseInt(claim.getName());
+      if (segment >= 0 && segment < totalSegments) {
+        return segment;
+      }
+    } catch (NumberFormatException e) {
+      // Not a claim
+    }
+    log.warn("Ignoring unexpected file in the segment claim directory: " + claim);
+    return null;
+  }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package org.apache.hadoop.dynamodb.split;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.DynamoDBUtil;
+import org.apache.hadoop.dynamodb.util.DynamoDBReflectionUtils;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.TaskAttemptID;
+
+/**
+ * Hands out scan segments to a task from the {@link SegmentQueue} shared by the tasks of a job.
+ *
+ * <p>With segment claims, the table is scanned in many more segments than there are tasks, and
+ * the segments of a split are only where the task starts. Once those are claimed, the task
+ * claims segments of the other splits that have not been claimed yet, so tasks that finish
+ * early take over the work of slow ones. A new attempt of a task first reads again the segments
+ * its earlier attempts claimed.
+ */
+public class SegmentClaimer implements Closeable {
+
+  private static final Log log = LogFactory.getLog(SegmentClaimer.class);
+
+  private final SegmentQueue queue;
+  private final int totalSegments;
+  private final int numSplits;
+  private final int firstSegment;
+  // Segments of the split that have not been claimed yet, claimed before any other
+  private final Deque<Integer> ownSegments;
+  // Unclaimed segments of other splits as of the last look at the queue
+  private final Deque<Integer> candidates = new ArrayDeque<>();
+  private boolean exhausted;
+
+  SegmentClaimer(SegmentQueue queue, DynamoDBSplit split) {
+    this.queue = queue;
+    this.totalSegments = split.getTotalSegments();
+    this.numSplits = split.getNumSplits();
+    this.firstSegment = split.getSegments().isEmpty() ? 0 : split.getSegments().get(0);
+    this.ownSegments = new ArrayDeque<>(split.getSegments());
+  }
+
+  /**
+   * @param conf     job configuration
+   * @param split    split of this task
+   * @param poolName name of the segment pool, see {@link #getPoolName}
+   * @return a claimer for this task, or null if segments are assigned to the splits statically
+   */
+  public static SegmentClaimer create(Configuration conf, DynamoDBSplit split, String poolName) {
+    if (!isEnabled(conf)) {
+      return null;
+    }
+
+    // All tasks see the same configuration, so either all of them claim segments or none does.
+    // Task ids only identify the reader of a split in MapReduce.
+    if (!DynamoDBUtil.isMapReduceFramework(conf)) {
+      log.warn("Segment claims need the MapReduce framework, using the segments of the split");
+      return null;
+    }
+    if (DynamoDBUtil.isMapSpeculationEnabled(conf)) {
+      log.warn("Segment claims need speculative execution of map tasks to be disabled, using the "
+          + "segments of the split");
+      return null;
+    }
+    String jobId = conf.get("mapreduce.job.id");
+    String attemptId = conf.get("mapreduce.task.attempt.id");
+    if (jobId == null || attemptId == null) {
+      log.warn("No job or task attempt id, using the segments of the split");
+      return null;
+    }
+
+    String taskId = TaskAttemptID.forName(attemptId).getTaskID().toString();
+    SegmentQueue queue = DynamoDBReflectionUtils.createInstanceOf(
+        conf.get(DynamoDBConstants.SCAN_SEGMENT_QUEUE_CLASS, HdfsSegmentQueue.class.getName()),
+        conf);
+    try {
+      // Other tasks may already have claimed segments of this split, so there is no safe
+      // fallback once the queue is in use
+      queue.initialize(conf, jobId, poolName, taskId, split.getTotalSegments());
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to open the segment queue", e);
+    }
+    return new SegmentClaimer(queue, split);
+  }
+
+  /**
+   * Returns the name of the segment pool of the input a split belongs to. A job can read the same
+   * table more than once, e.g. both sides of a self-join, so the pool is named after the input
+   * path, the segment count and the serialized filter of the split as well as the table.
+   */
+  public static String getPoolName(String tableName, DynamoDBSplit split) {
+    DataOutputBuffer input = new DataOutputBuffer();
+    try {
+      if (split instanceof FileSplit && ((FileSplit) split).getPath() != null) {
+        input.writeUTF(((FileSplit) split).getPath().toString());
+      }
+      input.writeInt(split.getTotalSegments());
+      if (split.getFilterPushdown() != null) {
+        split.getFilterPushdown().write(input);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to serialize the split", e);
+    }
+    return "scan-" + tableName + "-" + MD5Hash.digest(input.getData(), 0, input.getLength());
+  }
+
+  public static boolean isEnabled(Configuration conf) {
+    return conf.getBoolean(DynamoDBConstants.SCAN_SEGMENT_CLAIMS_ENABLED,
+        DynamoDBConstants.DEFAULT_SCAN_SEGMENT_CLAIMS_ENABLED);
+  }
+
+  /**
+   * @return the segments claimed by earlier attempts of this task, which it has to read again
+   */
+  public List<Integer> getSegmentsOfEarlierAttempts() throws IOException {
+    List<Integer> segments = new ArrayList<>(queue.getSegmentsOfTask());
+    ownSegments.removeAll(segments);
+    return segments;
+  }
+
+  /**
+   * Claims the next segment, preferring those of the split.
+   *
+   * @return the claimed segment, or null if every segment has been claimed
+   */
+  public synchronized Integer claimNext() throws IOException {
+    while (!ownSegments.isEmpty()) {
+      int segment = ownSegments.poll();
+      if (queue.claim(segment)) {
+        return segment;
+      }
+    }
+
+    while (!exhausted) {
+      if (candidates.isEmpty()) {
+        refreshCandidates();
+        continue;
+      }
+      int segment = candidates.poll();
+      if (queue.claim(segment)) {
+        log.info("Claimed segment " + segment + " of another split");
+        return segment;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Records that this task is done reading. The claims are removed once every task of the input
+   * is, after which a failed task can no longer tell which segments it read.
+   */
+  public void complete() throws IOException {
+    queue.complete(numSplits);
+  }
+
+  @Override
+  public void close() throws IOException {
+    queue.close();
+  }
+
+  private void refreshCandidates() throws IOException {
+    Set<Integer> claimed = queue.getClaimedSegments();
+    // Start after our own segments, so that tasks spread out over the remaining ones
+    for (int i = 0; i < totalSegments; i++) {
+      int segment = (firstSegment + i) % totalSegments;
+      if (!claimed.contains(segment)) {
+        candidates.add(segment);
+      }
+    }
+    exhausted = candidates.isEmpty();
+  }
+}
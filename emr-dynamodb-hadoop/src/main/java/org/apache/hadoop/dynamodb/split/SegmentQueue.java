@@ -0,0 +1,61 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package org.apache.hadoop.dynamodb.split;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * A queue of scan segments shared by the tasks of a job, from which every task claims the
+ * segments it reads. A segment belongs to the first task claiming it, including every later
+ * attempt of that task. Implementations are loaded from {@code dynamodb.scan.segment.queue.class}
+ * and need a public no-arg constructor.
+ */
+public interface SegmentQueue extends Closeable {
+
+  /**
+   * @param conf          job configuration
+   * @param jobId         id of the job the segments belong to
+   * @param poolName      name of the segment pool, e.g. scans of one input of the job
+   * @param taskId        id of this task, the same for all its attempts
+   * @param totalSegments segments the table is scanned in
+   */
+  void initialize(Configuration conf, String jobId, String poolName, String taskId,
+      int totalSegments) throws IOException;
+
+  /**
+   * @return true if the segment was unclaimed and now belongs to this task
+   */
+  boolean claim(int segment) throws IOException;
+
+  /**
+   * @return the segments claimed so far by any task
+   */
+  Set<Integer> getClaimedSegments() throws IOException;
+
+  /**
+   * @return the segments claimed by this task, including by its earlier attempts
+   */
+  Set<Integer> getSegmentsOfTask() throws IOException;
+
+  /**
+   * Records that this task is done reading. The last of the tasks sharing the queue removes it.
+   *
+   * @param totalTasks tasks sharing the queue, 0 if unknown, in which case the queue is kept
+   */
+  void complete(int totalTasks) throws IOException;
+}
@@ -11,20 +11,22 @@
  * License for the specific language governing permissions and limitations under the License.
  */
 
-package org.apache.hadoop.dynamodb.preader;
+package org.apache.hadoop.dynamodb.util;
 
-import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
-
-class TokenBucket {
+/**
+ * Token bucket refilled continuously at a fixed rate, up to its capacity. Used to pace both the
+ * read capacity of parallel reads and the items of writes.
+ */
+public class TokenBucket {
 
-  private final double rate; // refill rate in milliseconds
-  private final double capacity;
+  private double rate; // refill rate in milliseconds
+  private double capacity;
   private final AbstractTimeSource time;
 
   private double tokens;
   private long lastRefill; // in nanoseconds
 
-  TokenBucket(double refillRateInSeconds, double capacity, AbstractTimeSource time) {
+  public TokenBucket(double refillRateInSeconds, double capacity, AbstractTimeSource time) {
     this.rate = refillRateInSeconds / 1000.0;
     this.capacity = capacity;
     this.time = time;
@@ -38,7 +40,7 @@ class TokenBucket {
    * @return Amount of tokens acquired between `min` and `max` if tokens are available, 0 if less
    * than `min` are available.
    */
-  synchronized double acquire(double minTokens, double maxTokens) {
+  public synchronized double acquire(double minTokens, double maxTokens) {
     refill();
     double avail = Math.floor(Math.min(maxTokens, tokens));
     if (avail >= minTokens) {
@@ -48,6 +50,21 @@ class TokenBucket {
     return 0.0f;
   }
 
+  /**
+   * Refills and takes the given number of tokens if they are available.
+   *
+   * @return 0 if the tokens were taken, otherwise the milliseconds until they are expected to be
+   *     available at the current rate
+   */
+  public synchronized long tryAcquire(double requiredTokens) {
+    refill();
+    if (tokens >= requiredTokens) {
+      tokens -= requiredTokens;
+      return 0;
+    }
+    return Math.max((long) Math.ceil((requiredTokens - tokens) / rate), 1);
+  }
+
   /**
    * Update the number of tokens in the bucket based. Caps at the bucket capacity, but allows
    * taking the bucket into deficit.
@@ -59,18 +76,30 @@ class TokenBucket {
     return tokens;
   }
 
+  /**
+   * Changes the refill rate and capacity. Tokens already in the bucket are kept, up to the new
+   * capacity.
+   */
+  public synchronized void setRate(double refillRateInSeconds, double capacity) {
+    refill();
+    this.rate = refillRateInSeconds / 1000.0;
+    this.capacity = capacity;
+    tokens = Math.min(tokens, capacity);
+  }
+
   /**
    * Refill the bucket based on current time. Caps at the bucket capacity.
    */
   private void refill() {
     long nowNano = time.getNanoTime();
-    long deltaMs = time.getTimeDeltaMs(lastRefill, nowNano);
-    if (deltaMs < 0) {
+    long deltaNano = nowNano - lastRefill;
+    if (deltaNano < 0) {
       return;
     }
 
+    // Keep fractions of a millisecond, the bucket may be refilled many times per millisecond
+    double deltaMs = (double) deltaNano / AbstractTimeSource.NANOSECONDS_IN_MILLISECOND;
     tokens = Math.min(tokens + deltaMs * rate, capacity);
     lastRefill = nowNano;
-
   }
 }
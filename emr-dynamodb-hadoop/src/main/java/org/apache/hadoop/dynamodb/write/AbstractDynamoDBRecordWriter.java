@@ -16,7 +16,11 @@ package org.apache.hadoop.dynamodb.write;
 import static org.apache.hadoop.dynamodb.DynamoDBConstants.DEFAULT_AVERAGE_ITEM_SIZE_IN_BYTES;
 import static org.apache.hadoop.dynamodb.DynamoDBUtil.createJobClient;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -24,18 +28,20 @@ import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.DynamoDBItemWritable;
 import org.apache.hadoop.dynamodb.DynamoDBOperationType;
-import org.apache.hadoop.dynamodb.DynamoDBUtil;
 import org.apache.hadoop.dynamodb.IopsCalculator;
 import org.apache.hadoop.dynamodb.IopsController;
+import org.apache.hadoop.dynamodb.capacity.CapacityBroker;
+import org.apache.hadoop.dynamodb.preader.SegmentCheckpointer;
+import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
+import org.apache.hadoop.dynamodb.util.TimeSource;
+import org.apache.hadoop.dynamodb.util.TokenBucket;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordWriter;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.util.Progressable;
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
+import org.joda.time.Duration;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
-import software.amazon.awssdk.services.dynamodb.model.Capacity;
-import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
 import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
@@ -53,26 +59,45 @@ public abstract class AbstractDynamoDBRecordWriter<K, V> implements RecordWriter
 
   private static final Log log = LogFactory.getLog(AbstractDynamoDBRecordWriter.class);
   private static final long PRINT_COUNT_INCREMENT = 1000;
+  private static final long RATE_UPDATE_INTERVAL_MS = 1000;
+  // Batches sent by this writer hold up to this many seconds of the write rate
+  private static final double MAX_BATCH_SECONDS = 0.1;
 
   private final DynamoDBClient client;
   private final Progressable progressable;
   private final String tableName;
+  private final PipelinedBatchWriter pipelinedWriter;
+  private final CapacityBroker capacityBroker;
+  private final WriteCapacityTracker capacityTracker = new WriteCapacityTracker();
+  private final AbstractTimeSource time;
+  private final TokenBucket writeTokens;
+  private final double burstSeconds;
+  private final Closeable checkpointRegistration;
   private IopsController iopsController;
   private long permissibleWritesPerSecond;
   private Reporter reporter;
 
   private int batchSize = 0;
-  private long intervalBeginTime = 0;
+  private long intervalBeginNano;
   private long nextPrintCount = PRINT_COUNT_INCREMENT;
   private long totalItemsWritten = 0;
-  private double totalIOPSConsumed = 0;
   private long writesPerSecond = 0;
   private boolean deletionMode;
 
   public AbstractDynamoDBRecordWriter(JobConf jobConf, Progressable progressable) {
+    this(jobConf, progressable, new DynamoDBClient(jobConf), null, new TimeSource());
+  }
+
+  /**
+   * @param iopsCalculator calculator of the write rate, or null to share the write capacity of the
+   *                       table with the other tasks of the job
+   */
+  AbstractDynamoDBRecordWriter(JobConf jobConf, Progressable progressable, DynamoDBClient client,
+      IopsCalculator iopsCalculator, AbstractTimeSource time) {
     this.progressable = progressable;
+    this.client = client;
+    this.time = time;
 
-    client = new DynamoDBClient(jobConf);
     tableName = jobConf.get(DynamoDBConstants.OUTPUT_TABLE_NAME);
     if (tableName == null) {
       throw ResourceNotFoundException.builder()
@@ -84,18 +109,65 @@ public abstract class AbstractDynamoDBRecordWriter<K, V> implements RecordWriter
     deletionMode = jobConf.getBoolean(DynamoDBConstants.DELETION_MODE,
         DynamoDBConstants.DEFAULT_DELETION_MODE);
 
-    IopsCalculator iopsCalculator = new WriteIopsCalculator(createJobClient(jobConf), client,
-        tableName);
-    iopsController = new IopsController(iopsCalculator, DEFAULT_AVERAGE_ITEM_SIZE_IN_BYTES,
-        DynamoDBOperationType.WRITE);
+    if (iopsCalculator == null) {
+      capacityBroker = CapacityBroker.create(jobConf, "write-" + tableName, 1);
+      iopsCalculator = new WriteIopsCalculator(createJobClient(jobConf), client, tableName,
+          capacityBroker, capacityTracker);
+    } else {
+      capacityBroker = null;
+    }
+    if (capacityBroker == null) {
+      iopsController = new IopsController(iopsCalculator, DEFAULT_AVERAGE_ITEM_SIZE_IN_BYTES,
+          DynamoDBOperationType.WRITE);
+    } else {
+      // Follow the share of the running tasks as closely as the leases are renewed
+      iopsController = new IopsController(iopsCalculator, DEFAULT_AVERAGE_ITEM_SIZE_IN_BYTES,
+          DynamoDBOperationType.WRITE, Duration.millis(jobConf.getLong(
+              DynamoDBConstants.CAPACITY_LEASE_INTERVAL_MS,
+              DynamoDBConstants.DEFAULT_CAPACITY_LEASE_INTERVAL_MS)));
+    }
     permissibleWritesPerSecond = iopsController.getTargetItemsPerSecond();
     log.info("Number of allocated item writes per second: " + permissibleWritesPerSecond);
 
+    burstSeconds = jobConf.getDouble(DynamoDBConstants.WRITE_BURST_SECONDS,
+        DynamoDBConstants.DEFAULT_WRITE_BURST_SECONDS);
+    writeTokens = new TokenBucket(permissibleWritesPerSecond, getBurstCapacity(), time);
+    intervalBeginNano = time.getNanoTime();
+
     // Hive may not have a valid Reporter and pass in null progressable
     // TODO Check whether this would happen when excluding Hive
     if (progressable instanceof Reporter) {
       reporter = (Reporter) progressable;
     }
+
+    if (jobConf.getBoolean(DynamoDBConstants.WRITE_PIPELINE_ENABLED,
+        DynamoDBConstants.DEFAULT_WRITE_PIPELINE_ENABLED)) {
+      pipelinedWriter = new PipelinedBatchWriter(client, jobConf, tableName,
+          getKeyNames(jobConf), deletionMode, reporter, capacityTracker);
+    } else {
+      pipelinedWriter = null;
+      // Batches wait for the write capacity of all their items when they are sent, resent
+      // unprocessed items included
+      client.setBatchWritePacer(this::awaitWriteTokens);
+    }
+    // Read checkpoints of the task flush the writer, so that they only cover items whose output
+    // is in DynamoDB
+    checkpointRegistration = SegmentCheckpointer.registerOutput(jobConf, this::flush);
+  }
+
+  /**
+   * Sends the items written so far and waits until DynamoDB has them.
+   */
+  public void flush() throws IOException {
+    if (pipelinedWriter != null) {
+      pipelinedWriter.flush();
+      return;
+    }
+    for (BatchWriteItemResponse response : client.flushWriteBatch(reporter)) {
+      capacityTracker.record(response.consumedCapacity());
+    }
+    writesPerSecond += batchSize;
+    batchSize = 0;
   }
 
   @Override
@@ -105,31 +177,31 @@ public abstract class AbstractDynamoDBRecordWriter<K, V> implements RecordWriter
           + "specified.");
     }
 
-    verifyInterval();
+    updateRate();
     if (progressable != null) {
       progressable.progress();
     }
 
     DynamoDBItemWritable item = convertValueToDynamoDBItem(key, value);
+    if (pipelinedWriter != null) {
+      acquireWriteToken();
+      // Items are counted when queued; completed batches only feed back consumed capacity
+      pipelinedWriter.write(item.getItem(), permissibleWritesPerSecond);
+      writesPerSecond++;
+      totalItemsWritten++;
+      return;
+    }
+
+    // Small batches at low rates, so that the items of a second are not sent all at once
+    long maxItemsPerBatch = Math.max((long) (permissibleWritesPerSecond * MAX_BATCH_SECONDS), 1);
     BatchWriteItemResponse response = client.putBatch(tableName, item.getItem(),
-        permissibleWritesPerSecond - writesPerSecond, reporter, deletionMode);
+        maxItemsPerBatch, reporter, deletionMode);
 
     batchSize++;
     totalItemsWritten++;
 
     if (response != null) {
-      if (response.consumedCapacity() != null) {
-        for (ConsumedCapacity consumedCapacity : response.consumedCapacity()) {
-          double consumedUnits = consumedCapacity.table().capacityUnits();
-          if (consumedCapacity.localSecondaryIndexes() != null) {
-            for (Capacity lsiConsumedCapacity :
-                consumedCapacity.localSecondaryIndexes().values()) {
-              consumedUnits += lsiConsumedCapacity.capacityUnits();
-            }
-          }
-          totalIOPSConsumed += consumedUnits;
-        }
-      }
+      capacityTracker.record(response.consumedCapacity());
 
       int unprocessedItems = 0;
       for (List<WriteRequest> requests : response.unprocessedItems().values()) {
@@ -142,8 +214,20 @@ public abstract class AbstractDynamoDBRecordWriter<K, V> implements RecordWriter
 
   @Override
   public void close(Reporter reporter) throws IOException {
-    client.close();
+    checkpointRegistration.close();
+    try {
+      if (pipelinedWriter != null) {
+        pipelinedWriter.close();
+      }
+      if (capacityBroker != null) {
+        capacityBroker.close();
+      }
+    } finally {
+      client.close();
+    }
     log.info(totalItemsWritten + " total items written");
+    log.info("Write capacity consumed by the table: " + capacityTracker.getTotalTableUnits()
+        + ", by global secondary indexes: " + capacityTracker.getTotalIndexUnits());
   }
 
   /**
@@ -154,23 +238,66 @@ public abstract class AbstractDynamoDBRecordWriter<K, V> implements RecordWriter
    */
   protected abstract DynamoDBItemWritable convertValueToDynamoDBItem(K key, V value);
 
-  private void verifyInterval() {
-    if (writesPerSecond >= permissibleWritesPerSecond) {
-      if (writesPerSecond > 0) {
-        iopsController.update(writesPerSecond, totalIOPSConsumed);
-      }
-      permissibleWritesPerSecond = iopsController.getTargetItemsPerSecond();
+  private List<String> getKeyNames(JobConf jobConf) {
+    String keyNames = jobConf.get(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES);
+    if (keyNames != null && !keyNames.isEmpty()) {
+      return Arrays.asList(keyNames.split(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES_SEPARATOR));
+    }
+    List<String> names = new ArrayList<>();
+    for (KeySchemaElement element : client.describeTableSchema(tableName).keySchema()) {
+      names.add(element.attributeName());
+    }
+    return names;
+  }
 
-      if (totalItemsWritten > nextPrintCount) {
-        log.info("Total items written: " + totalItemsWritten);
-        log.info("New writes per second: " + permissibleWritesPerSecond);
-        nextPrintCount += PRINT_COUNT_INCREMENT;
-      }
+  /**
+   * Waits until the token bucket allows one more item. Items are spread evenly over each second,
+   * with up to {@link DynamoDBConstants#WRITE_BURST_SECONDS} of unused rate written at once.
+   */
+  private void acquireWriteToken() throws IOException {
+    try {
+      awaitWriteTokens(1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for write capacity");
+    }
+  }
 
-      DynamoDBUtil.verifyInterval(intervalBeginTime, 1000L);
-      intervalBeginTime = new DateTime(DateTimeZone.UTC).getMillis();
-      totalIOPSConsumed = 0;
-      writesPerSecond = 0;
+  /**
+   * Waits until the token bucket allows the given number of items, or as many as it holds.
+   */
+  private void awaitWriteTokens(int itemCount) throws InterruptedException {
+    double requiredTokens = Math.min(itemCount, getBurstCapacity());
+    long waitMs;
+    while ((waitMs = writeTokens.tryAcquire(requiredTokens)) > 0) {
+      Thread.sleep(waitMs);
     }
   }
+
+  private void updateRate() {
+    if (time.getTimeSinceMs(intervalBeginNano) < RATE_UPDATE_INTERVAL_MS) {
+      return;
+    }
+
+    // Consumption of the table or global secondary index closest to its share of the budget
+    double consumedUnits = capacityTracker.drain();
+    if (writesPerSecond > 0) {
+      iopsController.update(writesPerSecond, consumedUnits);
+    }
+    permissibleWritesPerSecond = iopsController.getTargetItemsPerSecond();
+    writeTokens.setRate(permissibleWritesPerSecond, getBurstCapacity());
+
+    if (totalItemsWritten > nextPrintCount) {
+      log.info("Total items written: " + totalItemsWritten);
+      log.info("New writes per second: " + permissibleWritesPerSecond);
+      nextPrintCount += PRINT_COUNT_INCREMENT;
+    }
+
+    intervalBeginNano = time.getNanoTime();
+    writesPerSecond = 0;
+  }
+
+  private double getBurstCapacity() {
+    return Math.max(permissibleWritesPerSecond * burstSeconds, 1);
+  }
 }
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.write;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.DynamoDBUtil;
+import org.apache.hadoop.mapred.Reporter;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Duration;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * Writes items to a single table with several BatchWriteItem requests in flight, so that building
+ * the next batch overlaps with the network round-trip of the previous ones.
+ *
+ * <p>Items are partitioned into lanes by the hash of their primary key. Each lane sends its batches
+ * one at a time and in order, so writes to the same key are applied in the order they were
+ * given. Unprocessed items go back to the head of their lane and are resent, after a backoff,
+ * before any later batch of that lane, until they have been resent for the retry period of
+ * {@link DynamoDBClient}. Each lane holds a bounded number of pending batches; once
+ * they are full, {@link #write} blocks. A write to a key that already has a write in the batch
+ * being built replaces it, as BatchWriteItem rejects two operations on one key.
+ */
+public class PipelinedBatchWriter {
+
+  private static final Log log = LogFactory.getLog(PipelinedBatchWriter.class);
+  private static final List<WriteRequest> END_OF_LANE = Collections.emptyList();
+  private static final AtomicInteger writerId = new AtomicInteger();
+
+  private final DynamoDBClient client;
+  private final Configuration conf;
+  private final String tableName;
+  private final List<String> keyNames;
+  private final boolean deletionMode;
+  private final Reporter reporter;
+  private final long maxItemByteSize;
+  private final long maxBatchSize;
+  private final Lane[] lanes;
+  private final AtomicLong itemsWritten = new AtomicLong();
+  private final WriteCapacityTracker capacityTracker;
+  private final Duration retryPeriod;
+  // Sealed batches not written yet, guarded by itself
+  private final Object outstandingLock = new Object();
+  private int outstandingBatches;
+  private volatile Exception failure;
+  private boolean closed;
+
+  public PipelinedBatchWriter(DynamoDBClient client, Configuration conf, String tableName,
+      List<String> keyNames, boolean deletionMode, Reporter reporter) {
+    this(client, conf, tableName, keyNames, deletionMode, reporter, new WriteCapacityTracker());
+  }
+
+  /**
+   * @param capacityTracker tracker the consumed capacity of completed batches is added to
+   */
+  public PipelinedBatchWriter(DynamoDBClient client, Configuration conf, String tableName,
+      List<String> keyNames, boolean deletionMode, Reporter reporter,
+      WriteCapacityTracker capacityTracker) {
+    this(client, conf, tableName, keyNames, deletionMode, reporter, capacityTracker,
+        Duration.standardMinutes(DynamoDBConstants.DEFAULT_RETRY_DURATION_MINUTES));
+  }
+
+  PipelinedBatchWriter(DynamoDBClient client, Configuration conf, String tableName,
+      List<String> keyNames, boolean deletionMode, Reporter reporter,
+      WriteCapacityTracker capacityTracker, Duration retryPeriod) {
+    this.client = client;
+    this.conf = conf;
+    this.tableName = tableName;
+    this.keyNames = keyNames;
+    this.deletionMode = deletionMode;
+    this.reporter = reporter;
+    this.capacityTracker = capacityTracker;
+    this.retryPeriod = retryPeriod;
+    this.maxItemByteSize = conf.getLong(DynamoDBConstants.MAX_ITEM_SIZE,
+        DynamoDBConstants.DEFAULT_MAX_ITEM_SIZE);
+    this.maxBatchSize = conf.getLong(DynamoDBConstants.MAX_BATCH_SIZE,
+        DynamoDBConstants.DEFAULT_MAX_BATCH_SIZE);
+
+    int maxInFlight = conf.getInt(DynamoDBConstants.WRITE_PIPELINE_MAX_IN_FLIGHT,
+        DynamoDBConstants.DEFAULT_WRITE_PIPELINE_MAX_IN_FLIGHT);
+    int queueSize = conf.getInt(DynamoDBConstants.WRITE_PIPELINE_QUEUE_SIZE,
+        DynamoDBConstants.DEFAULT_WRITE_PIPELINE_QUEUE_SIZE);
+    if (maxInFlight <= 0 || queueSize <= 0) {
+      throw new IllegalArgumentException("Write pipeline needs at least one batch in flight and "
+          + "one pending batch, got " + maxInFlight + " and " + queueSize);
+    }
+
+    int id = writerId.incrementAndGet();
+    lanes = new Lane[maxInFlight];
+    for (int i = 0; i < maxInFlight; i++) {
+      lanes[i] = new Lane("BatchWriter-" + id + "-" + i, queueSize);
+      lanes[i].start();
+    }
+    log.info("Pipelined batch writer started with " + maxInFlight + " lanes for " + tableName);
+  }
+
+  /**
+   * Adds an item to the batch of its lane, sending the batch first if the item does not fit.
+   *
+   * @param item             item to put, or whose key to delete in deletion mode
+   * @param maxItemsPerBatch upper bound of items in a batch, further bounded by the configuration
+   */
+  public void write(Map<String, AttributeValue> item, long maxItemsPerBatch) throws IOException {
+    checkFailure();
+
+    int itemSizeBytes = DynamoDBUtil.getItemSizeBytes(item);
+    if (itemSizeBytes > maxItemByteSize) {
+      throw new RuntimeException("Cannot pass items with size greater than " + maxItemByteSize
+          + ". Item with size of " + itemSizeBytes + " was given.");
+    }
+
+    Lane lane = lanes[Math.floorMod(getKeyHash(item), lanes.length)];
+    lane.add(client.buildWriteRequest(item, deletionMode), DynamoDBUtil.getPrimaryKey(item,
+        keyNames), itemSizeBytes, DynamoDBUtil.getBoundedBatchLimit(conf, maxItemsPerBatch));
+  }
+
+  public long getItemsWritten() {
+    return itemsWritten.get();
+  }
+
+  /**
+   * Sends the partial batches and waits until every item given so far has been written.
+   */
+  public void flush() throws IOException {
+    checkFailure();
+    try {
+      for (Lane lane : lanes) {
+        lane.seal();
+      }
+      synchronized (outstandingLock) {
+        while (outstandingBatches > 0 && failure == null) {
+          outstandingLock.wait(1000);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while flushing pending batches");
+    }
+    checkFailure();
+  }
+
+  /**
+   * Sends the remaining partial batches and waits until every item has been written.
+   */
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      for (Lane lane : lanes) {
+        lane.seal();
+        lane.pending.put(END_OF_LANE);
+      }
+      for (Lane lane : lanes) {
+        lane.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      for (Lane lane : lanes) {
+        lane.interrupt();
+      }
+      throw new InterruptedIOException("Interrupted while flushing pending batches");
+    }
+    checkFailure();
+  }
+
+  private int getKeyHash(Map<String, AttributeValue> item) {
+    if (keyNames == null || keyNames.isEmpty()) {
+      // Without the key schema every item has to go through the same lane to stay ordered
+      return 0;
+    }
+    int hash = 1;
+    for (String keyName : keyNames) {
+      hash = 31 * hash + Objects.hashCode(item.get(keyName));
+    }
+    return hash;
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Writing to " + tableName + " failed", failure);
+    }
+  }
+
+  private void batchDone() {
+    synchronized (outstandingLock) {
+      outstandingBatches--;
+      outstandingLock.notifyAll();
+    }
+  }
+
+  private void recordResponse(int attempted, BatchWriteItemResponse response,
+      List<WriteRequest> unprocessed) {
+    itemsWritten.addAndGet(attempted - unprocessed.size());
+    capacityTracker.record(response.consumedCapacity());
+  }
+
+  private class Lane extends Thread {
+
+    private final BlockingQueue<List<WriteRequest>> pending;
+
+    // Only touched by the thread calling write()
+    private List<WriteRequest> openBatch = new ArrayList<>();
+    private final List<Integer> openBatchItemBytes = new ArrayList<>();
+    private final Map<Map<String, AttributeValue>, Integer> openBatchPositions = new HashMap<>();
+    private long openBatchBytes;
+
+    Lane(String name, int queueSize) {
+      super(name);
+      setDaemon(true);
+      pending = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    /**
+     * @param key primary key of the item, or null if unknown
+     */
+    void add(WriteRequest request, Map<String, AttributeValue> key, int itemSizeBytes,
+        long maxItemsPerBatch) throws IOException {
+      Integer position = key == null ? null : openBatchPositions.get(key);
+      if (position != null
+          && openBatchBytes - openBatchItemBytes.get(position) + itemSizeBytes <= maxBatchSize) {
+        // The last write wins, as it would have if both had been sent
+        openBatchBytes += itemSizeBytes - openBatchItemBytes.get(position);
+        openBatch.set(position, request);
+        openBatchItemBytes.set(position, itemSizeBytes);
+        return;
+      }
+
+      if (openBatch.size() >= maxItemsPerBatch || openBatchBytes + itemSizeBytes > maxBatchSize) {
+        try {
+          seal();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for a pending batch slot");
+        }
+      }
+      if (key != null) {
+        openBatchPositions.put(key, openBatch.size());
+      }
+      openBatch.add(request);
+      openBatchItemBytes.add(itemSizeBytes);
+      openBatchBytes += itemSizeBytes;
+    }
+
+    void seal() throws InterruptedException {
+      if (openBatch.isEmpty()) {
+        return;
+      }
+      synchronized (outstandingLock) {
+        outstandingBatches++;
+      }
+      pending.put(openBatch);
+      openBatch = new ArrayList<>();
+      openBatchItemBytes.clear();
+      openBatchPositions.clear();
+      openBatchBytes = 0;
+    }
+
+    @Override
+    public void run() {
+      List<WriteRequest> batch = null;
+      int retries = 0;
+      DateTime retryEndTime = null;
+      try {
+        while (true) {
+          if (batch == null) {
+            batch = pending.take();
+          }
+          if (batch == END_OF_LANE) {
+            break;
+          }
+          if (failure != null) {
+            // Keep draining so that the writer never blocks on a dead lane
+            batch = null;
+            batchDone();
+            continue;
+          }
+
+          DynamoDBUtil.pauseExponentially(retries);
+          BatchWriteItemResponse response = client.batchWriteItem(tableName, batch, reporter);
+          List<WriteRequest> unprocessed = response.hasUnprocessedItems()
+              ? response.unprocessedItems().getOrDefault(tableName, Collections.emptyList())
+              : Collections.emptyList();
+          recordResponse(batch.size(), response, unprocessed);
+
+          if (unprocessed.isEmpty()) {
+            batch = null;
+            retries = 0;
+            batchDone();
+          } else {
+            DateTime currentTime = new DateTime(DateTimeZone.UTC);
+            if (retries == 0) {
+              retryEndTime = currentTime.plus(retryPeriod);
+            } else if (!currentTime.isBefore(retryEndTime)) {
+              throw new IOException(unprocessed.size() + " items still unprocessed after "
+                  + retries + " retries");
+            }
+            log.debug(getName() + " left " + unprocessed.size() + " of " + batch.size()
+                + " items unprocessed, now at " + (retries + 1) + " retries");
+            batch = new ArrayList<>(unprocessed);
+            retries++;
+          }
+        }
+      } catch (InterruptedException e) {
+        log.warn(getName() + " interrupted with pending batches");
+      } catch (Exception e) {
+        log.error(getName() + " failed to write batch", e);
+        failure = e;
+        if (batch != null) {
+          batchDone();
+        }
+        drain();
+      }
+    }
+
+    private void drain() {
+      try {
+        while (pending.take() != END_OF_LANE) {
+          // Discard, the writer reports the failure
+          batchDone();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
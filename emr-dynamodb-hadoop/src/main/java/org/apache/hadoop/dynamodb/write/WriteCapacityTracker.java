@@ -0,0 +1,139 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.write;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import software.amazon.awssdk.services.dynamodb.model.Capacity;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+
+/**
+ * Tracks the write capacity consumed by the table and by each of its global secondary indexes.
+ *
+ * <p>Local secondary indexes share the capacity of the table, so their consumption is added to
+ * the table's. Global secondary indexes have their own capacity, and a write throttled by one of
+ * them throttles the table as well. The write budget is therefore computed against the most
+ * constrained of the table and its global secondary indexes, and {@link #drain} reports the
+ * consumption of the resource closest to its share of that budget: the consumption of a resource
+ * with twice the bottleneck's capacity counts for half. Without known capacities, every resource
+ * counts as having the same capacity.
+ */
+public class WriteCapacityTracker {
+
+  // Units consumed since the last drain
+  private final DoubleAdder tableUnits = new DoubleAdder();
+  private final Map<String, DoubleAdder> indexUnits = new ConcurrentHashMap<>();
+  // Units consumed since the tracker was created
+  private final DoubleAdder totalTableUnits = new DoubleAdder();
+  private final Map<String, DoubleAdder> totalIndexUnits = new ConcurrentHashMap<>();
+
+  // Capacity of the bottleneck over the capacity of each resource
+  private volatile double tableScale = 1.0;
+  private volatile Map<String, Double> indexScales = Collections.emptyMap();
+
+  /**
+   * @param tableCapacity   provisioned write capacity of the table
+   * @param indexCapacities provisioned write capacity of the global secondary indexes, by name
+   * @return the capacity of the most constrained of the table and its global secondary indexes
+   */
+  public double setProvisionedCapacity(double tableCapacity, Map<String, Double> indexCapacities) {
+    double bottleneck = tableCapacity;
+    for (double indexCapacity : indexCapacities.values()) {
+      bottleneck = Math.min(bottleneck, indexCapacity);
+    }
+
+    Map<String, Double> scales = new HashMap<>();
+    for (Map.Entry<String, Double> index : indexCapacities.entrySet()) {
+      scales.put(index.getKey(), bottleneck / index.getValue());
+    }
+    indexScales = scales;
+    tableScale = bottleneck / tableCapacity;
+    return bottleneck;
+  }
+
+  /**
+   * Adds the capacity consumed by a request, as returned with ReturnConsumedCapacity.INDEXES.
+   */
+  public void record(Iterable<ConsumedCapacity> consumedCapacities) {
+    if (consumedCapacities == null) {
+      return;
+    }
+    for (ConsumedCapacity consumedCapacity : consumedCapacities) {
+      double consumedUnits = getTableUnits(consumedCapacity);
+      tableUnits.add(consumedUnits);
+      totalTableUnits.add(consumedUnits);
+
+      if (consumedCapacity.globalSecondaryIndexes() != null) {
+        for (Map.Entry<String, Capacity> index
+            : consumedCapacity.globalSecondaryIndexes().entrySet()) {
+          double indexConsumedUnits = getUnits(index.getValue());
+          indexUnits.computeIfAbsent(index.getKey(), k -> new DoubleAdder())
+              .add(indexConsumedUnits);
+          totalIndexUnits.computeIfAbsent(index.getKey(), k -> new DoubleAdder())
+              .add(indexConsumedUnits);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return units consumed since the last call by the resource closest to its share of the
+   *     budget, in units of the most constrained resource
+   */
+  public double drain() {
+    double consumedUnits = tableUnits.sumThenReset() * tableScale;
+    Map<String, Double> scales = indexScales;
+    for (Map.Entry<String, DoubleAdder> index : indexUnits.entrySet()) {
+      consumedUnits = Math.max(consumedUnits,
+          index.getValue().sumThenReset() * scales.getOrDefault(index.getKey(), 1.0));
+    }
+    return consumedUnits;
+  }
+
+  public double getTotalTableUnits() {
+    return totalTableUnits.sum();
+  }
+
+  /**
+   * @return units consumed by each global secondary index since the tracker was created
+   */
+  public Map<String, Double> getTotalIndexUnits() {
+    Map<String, Double> totals = new TreeMap<>();
+    for (Map.Entry<String, DoubleAdder> index : totalIndexUnits.entrySet()) {
+      totals.put(index.getKey(), index.getValue().sum());
+    }
+    return totals;
+  }
+
+  /**
+   * @return units consumed by the table and its local secondary indexes
+   */
+  public static double getTableUnits(ConsumedCapacity consumedCapacity) {
+    double consumedUnits = getUnits(consumedCapacity.table());
+    if (consumedCapacity.localSecondaryIndexes() != null) {
+      for (Capacity lsiConsumedCapacity : consumedCapacity.localSecondaryIndexes().values()) {
+        consumedUnits += getUnits(lsiConsumedCapacity);
+      }
+    }
+    return consumedUnits;
+  }
+
+  private static double getUnits(Capacity capacity) {
+    return capacity == null || capacity.capacityUnits() == null ? 0 : capacity.capacityUnits();
+  }
+}
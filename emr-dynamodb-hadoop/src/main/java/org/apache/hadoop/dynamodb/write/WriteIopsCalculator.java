@@ -12,21 +12,26 @@ package org.apache.hadoop.dynamodb.write;
 
 import com.google.common.base.Strings;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.DynamoDBUtil;
 import org.apache.hadoop.dynamodb.IopsCalculator;
+import org.apache.hadoop.dynamodb.capacity.CapacityBroker;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
 import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputDescription;
 import software.amazon.awssdk.services.dynamodb.model.TableDescription;
 
 public class WriteIopsCalculator implements IopsCalculator {
 
   private static final Log log = LogFactory.getLog(WriteIopsCalculator.class);
+  private static final long THROUGHPUT_REFRESH_MS = 5 * 60 * 1000;
 
   private final DynamoDBClient dynamoDBClient;
   private final JobClient jobClient;
@@ -35,13 +40,37 @@ public class WriteIopsCalculator implements IopsCalculator {
 
   private final int maxParallelTasks;
   private final double throughputPercent;
+  private final CapacityBroker capacityBroker;
+  private final WriteCapacityTracker capacityTracker;
+  private double cachedThroughput;
+  private long throughputFetchTimeMs;
 
   public WriteIopsCalculator(JobClient jobClient, DynamoDBClient dynamoDBClient, String tableName) {
+    this(jobClient, dynamoDBClient, tableName, null);
+  }
+
+  /**
+   * @param capacityBroker broker sharing the write capacity between the running tasks, or null
+   *                       to give this task a fixed share of the maximum parallel tasks
+   */
+  public WriteIopsCalculator(JobClient jobClient, DynamoDBClient dynamoDBClient, String tableName,
+      CapacityBroker capacityBroker) {
+    this(jobClient, dynamoDBClient, tableName, capacityBroker, null);
+  }
+
+  /**
+   * @param capacityTracker tracker to weigh the consumption of the table and its global
+   *                        secondary indexes by their provisioned capacity, or null
+   */
+  public WriteIopsCalculator(JobClient jobClient, DynamoDBClient dynamoDBClient, String tableName,
+      CapacityBroker capacityBroker, WriteCapacityTracker capacityTracker) {
     this.jobConf = (JobConf) jobClient.getConf();
     this.jobClient = jobClient;
 
     this.dynamoDBClient = dynamoDBClient;
     this.tableName = tableName;
+    this.capacityBroker = capacityBroker;
+    this.capacityTracker = capacityTracker;
     this.throughputPercent = Double.parseDouble(jobConf
         .get(DynamoDBConstants.THROUGHPUT_WRITE_PERCENT,
             DynamoDBConstants.DEFAULT_THROUGHPUT_PERCENTAGE));
@@ -70,6 +99,28 @@ public class WriteIopsCalculator implements IopsCalculator {
   }
 
   public long calculateTargetIops() {
+    double calculatedThroughput = Math.floor(getConfiguredThroughput() * throughputPercent);
+    long throughputPerTask;
+    if (capacityBroker == null) {
+      throughputPerTask = Math.max((long) (calculatedThroughput / maxParallelTasks), 1);
+    } else {
+      throughputPerTask = Math.max((long) (calculatedThroughput
+          * capacityBroker.getShareFraction(1.0 / maxParallelTasks)), 1);
+    }
+
+    log.info("Throughput per task for table " + tableName + " : " + throughputPerTask);
+    return throughputPerTask;
+  }
+
+  private double getConfiguredThroughput() {
+    // With a broker the share is recalculated on every lease renewal, but the provisioned
+    // throughput of the table rarely changes
+    long now = System.currentTimeMillis();
+    if (capacityBroker != null && throughputFetchTimeMs > 0
+        && now - throughputFetchTimeMs < THROUGHPUT_REFRESH_MS) {
+      return cachedThroughput;
+    }
+
     double configuredThroughput;
     // Always fetch throughput from DDB if auto-scaling is enabled
     if (Boolean.parseBoolean(jobConf.get(DynamoDBConstants.WRITE_THROUGHPUT_AUTOSCALING))
@@ -78,11 +129,9 @@ public class WriteIopsCalculator implements IopsCalculator {
     } else {
       configuredThroughput = Double.parseDouble(jobConf.get(DynamoDBConstants.WRITE_THROUGHPUT));
     }
-    double calculatedThroughput = Math.floor(configuredThroughput * throughputPercent);
-    long throughputPerTask = Math.max((long) (calculatedThroughput / maxParallelTasks), 1);
-
-    log.info("Throughput per task for table " + tableName + " : " + throughputPerTask);
-    return throughputPerTask;
+    cachedThroughput = configuredThroughput;
+    throughputFetchTimeMs = now;
+    return configuredThroughput;
   }
 
   int calculateMaxMapTasks(int totalMapTasks) {
@@ -94,13 +143,42 @@ public class WriteIopsCalculator implements IopsCalculator {
     return totalMapTasks;
   }
 
+  /**
+   * @return the provisioned write capacity of the most constrained of the table and its global
+   *     secondary indexes, as every write to the table also writes to each of them
+   */
   protected double getThroughput() {
     TableDescription tableDescription = dynamoDBClient.describeTable(tableName);
     if (tableDescription.billingModeSummary() == null
             || tableDescription.billingModeSummary().billingMode() == BillingMode.PROVISIONED) {
       ProvisionedThroughputDescription provisionedThroughput =
           tableDescription.provisionedThroughput();
-      return provisionedThroughput.writeCapacityUnits();
+      double tableThroughput = provisionedThroughput.writeCapacityUnits();
+
+      Map<String, Double> indexThroughputs = new HashMap<>();
+      for (GlobalSecondaryIndexDescription index : tableDescription.globalSecondaryIndexes()) {
+        if (index.provisionedThroughput() != null
+            && index.provisionedThroughput().writeCapacityUnits() != null
+            && index.provisionedThroughput().writeCapacityUnits() > 0) {
+          indexThroughputs.put(index.indexName(),
+              (double) index.provisionedThroughput().writeCapacityUnits());
+        }
+      }
+
+      double throughput = tableThroughput;
+      if (capacityTracker != null) {
+        throughput = capacityTracker.setProvisionedCapacity(tableThroughput, indexThroughputs);
+      } else {
+        for (double indexThroughput : indexThroughputs.values()) {
+          throughput = Math.min(throughput, indexThroughput);
+        }
+      }
+      if (throughput < tableThroughput) {
+        log.info("Write throughput limited by a global secondary index to " + throughput
+            + ", table throughput: " + tableThroughput + ", index throughput: "
+            + indexThroughputs);
+      }
+      return throughput;
     }
     return DynamoDBConstants.DEFAULT_CAPACITY_FOR_ON_DEMAND;
   }
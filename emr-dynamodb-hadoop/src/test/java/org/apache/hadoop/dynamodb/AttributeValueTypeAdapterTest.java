@@ -0,0 +1,107 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+public class AttributeValueTypeAdapterTest {
+
+  private final Gson gson = DynamoDBUtil.getGson();
+
+  @Test
+  public void testExportFormatIsUnchanged() {
+    Map<String, AttributeValue> nested = new LinkedHashMap<>();
+    nested.put("bool", AttributeValue.fromBool(false));
+    nested.put("nul", AttributeValue.fromNul(true));
+    nested.put("gone", null);
+    nested.put("list", AttributeValue.fromL(Arrays.asList(AttributeValue.fromN("-1.5e3"), null,
+        AttributeValue.builder().build())));
+
+    Map<String, AttributeValue> item = new LinkedHashMap<>();
+    item.put("s", AttributeValue.fromS("quote\" <tag> & \u00e9\u0001\n"));
+    item.put("n", AttributeValue.fromN("123"));
+    item.put("b", AttributeValue.fromB(SdkBytes.fromByteArray(new byte[]{0, -1, 16, 32, 64})));
+    item.put("ss", AttributeValue.fromSs(Arrays.asList("a", "b")));
+    item.put("ns", AttributeValue.fromNs(Arrays.asList("1", "2.5")));
+    item.put("bs", AttributeValue.fromBs(Arrays.asList(SdkBytes.fromByteArray(new byte[]{1}),
+        SdkBytes.fromByteArray(new byte[0]))));
+    item.put("m", AttributeValue.fromM(nested));
+    item.put("emptySs", AttributeValue.fromSs(Collections.emptyList()));
+    item.put("empty", AttributeValue.builder().build());
+    item.put("missing", null);
+
+    // Output of the former tree model serializers
+    String expected = "{\"s\":{\"s\":\"quote\\\" <tag> & \u00e9\\u0001\\n\"},\"n\":{\"n\":\"123\"},"
+        + "\"b\":{\"b\":\"AP8QIEA=\"},\"ss\":{\"sS\":[\"a\",\"b\"]},"
+        + "\"ns\":{\"nS\":[\"1\",\"2.5\"]},\"bs\":{\"bS\":[\"AQ==\",\"\"]},"
+        + "\"m\":{\"m\":{\"bool\":{\"bOOL\":false},\"nul\":{\"nULL\":true},"
+        + "\"list\":{\"l\":[{\"n\":\"-1.5e3\"},null,{}]}}},\"emptySs\":{\"sS\":[]},\"empty\":{}}";
+    assertEquals(expected, gson.toJson(item, DynamoDBItemWritable.type));
+    assertEquals(expected, DynamoDBUtil.toJson(item, DynamoDBItemWritable.type));
+    assertEquals("\"AQID\"", gson.toJson(ByteBuffer.wrap(new byte[]{1, 2, 3}), ByteBuffer.class));
+  }
+
+  @Test
+  public void testLenientRead() {
+    Map<String, AttributeValue> item = gson.fromJson("{\"a\":{\"SS\":[],\"S\":\"x\"},"
+        + "\"b\":{\"n\":5},\"c\":{\"bool\":\"true\"},\"d\":\"str\","
+        + "\"e\":{\"foo\":1,\"L\":[null,{\"s\":\"y\"}]},\"f\":{\"m\":{}},\"g\":null}",
+        DynamoDBItemWritable.type);
+
+    assertEquals(AttributeValue.fromS("x"), item.get("a"));
+    assertEquals(AttributeValue.fromN("5"), item.get("b"));
+    assertEquals(AttributeValue.fromBool(true), item.get("c"));
+    assertEquals(AttributeValue.builder().build(), item.get("d"));
+    assertEquals(AttributeValue.fromL(Arrays.asList(null, AttributeValue.fromS("y"))),
+        item.get("e"));
+    assertEquals(AttributeValue.builder().build(), item.get("f"));
+    assertTrue(item.containsKey("g"));
+    assertNull(item.get("g"));
+  }
+
+  @Test
+  public void testBinaryRoundTrip() {
+    AttributeValue value = AttributeValue.fromBs(Arrays.asList(
+        SdkBytes.fromByteArray(new byte[]{(byte) 0xfb, (byte) 0xff}),
+        SdkBytes.fromByteArray(new byte[]{42})));
+
+    assertEquals(value, gson.fromJson(gson.toJson(value, AttributeValue.class),
+        AttributeValue.class));
+  }
+
+  @Test
+  public void testStreamedBinaryMatchesEncodedString() {
+    byte[] bytes = new byte[10000];
+    new Random(7).nextBytes(bytes);
+    AttributeValue value = AttributeValue.fromBs(Arrays.asList(SdkBytes.fromByteArray(bytes),
+        SdkBytes.fromByteArray(new byte[]{1, 2})));
+
+    String json = DynamoDBUtil.toJson(value, AttributeValue.class);
+    assertEquals(gson.toJson(value, AttributeValue.class), json);
+    assertEquals(value, gson.fromJson(json, AttributeValue.class));
+  }
+}
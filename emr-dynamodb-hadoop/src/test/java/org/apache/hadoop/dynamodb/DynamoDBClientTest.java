@@ -21,15 +21,18 @@ import com.google.common.collect.ImmutableMap;
 
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
 import org.hamcrest.core.Is;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -42,10 +45,21 @@ import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.http.apache.ProxyConfiguration;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.Capacity;
 import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputDescription;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.Select;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
 import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 public class DynamoDBClientTest {
@@ -65,6 +79,7 @@ public class DynamoDBClientTest {
   @Before
   public void setup() {
     conf.clear();
+    TableDescriptionCache.invalidateAll();
     client = new DynamoDBClient(mockClient, conf);
   }
 
@@ -311,6 +326,9 @@ public class DynamoDBClientTest {
     );
 
     conf.set(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES, "a");
+    client = new DynamoDBClient(mockClient, conf);
+
+    client = new DynamoDBClient(mockClient, conf);
 
     client.putBatch("dummyTable", item, 1, null, true);
 
@@ -324,6 +342,95 @@ public class DynamoDBClientTest {
     }
   }
 
+  @Test
+  public void testPutBatchCoalescesWritesToSameKey() throws Exception {
+    conf.set(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES, "a");
+    client = new DynamoDBClient(mockClient, conf);
+    Mockito.when(mockClient.batchWriteItem(Mockito.<BatchWriteItemRequest>any()))
+        .thenAnswer(i -> BatchWriteItemResponse.builder()
+            .unprocessedItems(((BatchWriteItemRequest) i.getArguments()[0]).requestItems())
+            .consumedCapacity(ConsumedCapacity.builder().capacityUnits(1.0).build())
+            .build());
+
+    client.putBatch("dummyTable", keyedItem("1", "v1"), 2, null, false);
+    client.putBatch("dummyTable", keyedItem("2", "v1"), 2, null, false);
+    client.putBatch("dummyTable", keyedItem("2", "v2"), 2, null, false);
+    List<WriteRequest> batch = client.getWriteBatchMap().get("dummyTable");
+    Assert.assertEquals(2, batch.size());
+    Assert.assertEquals("v2", batch.get(1).putRequest().item().get("b").s());
+
+    // Sends the batch, which is left unprocessed and put back ahead of the new item
+    client.putBatch("dummyTable", keyedItem("3", "v1"), 2, null, false);
+    client.putBatch("dummyTable", keyedItem("1", "v2"), 25, null, false);
+    batch = client.getWriteBatchMap().get("dummyTable");
+    Assert.assertEquals(3, batch.size());
+    Assert.assertEquals("v2", batch.get(0).putRequest().item().get("b").s());
+    Assert.assertEquals("3", batch.get(2).putRequest().item().get("a").s());
+  }
+
+  @Test
+  public void testPutBatchCoalescesUnprocessedWritesAfterItemsWithoutKey() throws Exception {
+    conf.set(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES, "a");
+    client = new DynamoDBClient(mockClient, conf);
+    Mockito.when(mockClient.batchWriteItem(Mockito.<BatchWriteItemRequest>any()))
+        .thenAnswer(i -> BatchWriteItemResponse.builder()
+            .unprocessedItems(((BatchWriteItemRequest) i.getArguments()[0]).requestItems())
+            .consumedCapacity(ConsumedCapacity.builder().capacityUnits(1.0).build())
+            .build());
+
+    client.putBatch("dummyTable", ImmutableMap.of("b", AttributeValue.fromS("v1")), 2, null,
+        false);
+    client.putBatch("dummyTable", keyedItem("1", "v1"), 2, null, false);
+    // Sends the batch, which is left unprocessed and put back ahead of the new item
+    client.putBatch("dummyTable", keyedItem("2", "v1"), 2, null, false);
+
+    client.putBatch("dummyTable", keyedItem("1", "v2"), 25, null, false);
+    List<WriteRequest> batch = client.getWriteBatchMap().get("dummyTable");
+    Assert.assertEquals(3, batch.size());
+    Assert.assertNull(batch.get(0).putRequest().item().get("a"));
+    Assert.assertEquals("v2", batch.get(1).putRequest().item().get("b").s());
+  }
+
+  @Test
+  public void testPutBatchSendsUnprocessedWriteToSameKeyWhenItCannotBeReplaced()
+      throws Exception {
+    conf.set(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES, "a");
+    conf.setLong(DynamoDBConstants.MAX_BATCH_SIZE, 1200);
+    client = new DynamoDBClient(mockClient, conf);
+    // The first request leaves everything unprocessed
+    Mockito.when(mockClient.batchWriteItem(Mockito.<BatchWriteItemRequest>any()))
+        .thenAnswer(i -> BatchWriteItemResponse.builder()
+            .unprocessedItems(((BatchWriteItemRequest) i.getArguments()[0]).requestItems())
+            .build())
+        .thenReturn(BatchWriteItemResponse.builder().build());
+    setMaxBatchSize(client, 1200);
+
+    client.putBatch("dummyTable", keyedItem("1", Strings.repeat("x", 100)), 25, null, false);
+    client.putBatch("otherTable", keyedItem("2", Strings.repeat("x", 400)), 25, null, false);
+    client.putBatch("thirdTable", keyedItem("3", Strings.repeat("x", 400)), 25, null, false);
+    // The unprocessed items leave no room for the new item in place of the queued one, so they
+    // are sent again before it is added
+    client.putBatch("dummyTable", keyedItem("1", Strings.repeat("y", 700)), 25, null, false);
+
+    Mockito.verify(mockClient, Mockito.times(2)).batchWriteItem(
+        Mockito.<BatchWriteItemRequest>any());
+    Assert.assertEquals(Collections.singleton("dummyTable"), client.getWriteBatchMap().keySet());
+    List<WriteRequest> batch = client.getWriteBatchMap().get("dummyTable");
+    Assert.assertEquals(1, batch.size());
+    Assert.assertTrue(batch.get(0).putRequest().item().get("b").s().startsWith("y"));
+  }
+
+  private static void setMaxBatchSize(DynamoDBClient client, long maxBatchSize)
+      throws Exception {
+    Field field = DynamoDBClient.class.getDeclaredField("maxBatchSize");
+    field.setAccessible(true);
+    field.setLong(client, maxBatchSize);
+  }
+
+  private static Map<String, AttributeValue> keyedItem(String key, String value) {
+    return ImmutableMap.of("a", AttributeValue.fromS(key), "b", AttributeValue.fromS(value));
+  }
+
   @Test
   public void testPutBatchDeletionFailsAsGivenItemDoesNotContainAnyKey() throws Exception {
     Map<String, AttributeValue> item = ImmutableMap.of(
@@ -332,11 +439,109 @@ public class DynamoDBClientTest {
     );
 
     conf.set(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES, "a,b");
+    client = new DynamoDBClient(mockClient, conf);
+
+    client = new DynamoDBClient(mockClient, conf);
 
     Assert.assertThrows(IllegalArgumentException.class, () ->
         client.putBatch("dummyTable", item, 1, null, true));
   }
 
+  @Test
+  public void testDescribeTableIsCachedInProcess() {
+    Mockito.when(mockClient.describeTable(Mockito.any(DescribeTableRequest.class)))
+        .thenReturn(describeTableResponse(100L));
+
+    Assert.assertEquals(100L, (long) client.describeTable("cachedTable").itemCount());
+    // Another client of the same endpoint and credentials shares the cache
+    DynamoDBClient other = new DynamoDBClient(mockClient, conf);
+    Assert.assertEquals(100L, (long) other.describeTableSchema("cachedTable").itemCount());
+    Mockito.verify(mockClient, Mockito.times(1))
+        .describeTable(Mockito.any(DescribeTableRequest.class));
+
+    Mockito.when(mockClient.describeTable(Mockito.any(DescribeTableRequest.class)))
+        .thenReturn(describeTableResponse(200L));
+    other.invalidateTableDescription("cachedTable");
+    Assert.assertEquals(200L, (long) client.describeTable("cachedTable").itemCount());
+
+    // No caching when the TTL is zero
+    conf.setLong(DynamoDBConstants.DESCRIBE_TABLE_CACHE_TTL_MS, 0);
+    client.describeTable("cachedTable");
+    Mockito.verify(mockClient, Mockito.times(3))
+        .describeTable(Mockito.any(DescribeTableRequest.class));
+  }
+
+  @Test
+  public void testDescribeTableFromJobConf() {
+    TableDescription description = describeTableResponse(42L).table();
+    Configuration plannerConf = new Configuration();
+    TableDescriptionCache.writeToConf(plannerConf, "jobTable", description);
+    conf.set(DynamoDBConstants.TABLE_DESCRIPTION_PREFIX + "jobTable",
+        plannerConf.get(DynamoDBConstants.TABLE_DESCRIPTION_PREFIX + "jobTable"));
+
+    Assert.assertEquals(description, client.describeTable("jobTable"));
+    Mockito.verifyNoInteractions(mockClient);
+
+    // Capacity lookups need a description younger than the TTL, schema lookups take any
+    conf.setLong(DynamoDBConstants.DESCRIBE_TABLE_CACHE_TTL_MS, 1);
+    Mockito.when(mockClient.describeTable(Mockito.any(DescribeTableRequest.class)))
+        .thenReturn(describeTableResponse(43L));
+    Assert.assertEquals(description, client.describeTableSchema("jobTable"));
+    Mockito.verifyNoInteractions(mockClient);
+    Assert.assertEquals(43L, (long) client.describeTable("jobTable").itemCount());
+  }
+
+  @Test
+  public void testCountOnlyScanSelectsCount() {
+    Mockito.when(mockClient.scan(Mockito.any(ScanRequest.class)))
+        .thenReturn(ScanResponse.builder().count(3).build());
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.setProjection(Collections.singletonList("id"));
+    filter.setCountOnly(true);
+
+    client.scanTable("table", filter, 0, 1, null, 100, null);
+
+    ArgumentCaptor<ScanRequest> request = ArgumentCaptor.forClass(ScanRequest.class);
+    Mockito.verify(mockClient).scan(request.capture());
+    Assert.assertEquals(Select.COUNT, request.getValue().select());
+    Assert.assertNull(request.getValue().projectionExpression());
+  }
+
+  @Test
+  public void testConsistentReadScanAndBatchGet() {
+    Mockito.when(mockClient.scan(Mockito.any(ScanRequest.class)))
+        .thenReturn(ScanResponse.builder().build());
+    Mockito.when(mockClient.batchGetItem(Mockito.any(BatchGetItemRequest.class)))
+        .thenReturn(BatchGetItemResponse.builder().build());
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.setConsistentRead(true);
+
+    client.scanTable("table", filter, 0, 1, null, 100, null);
+    client.batchGetItems("table", Collections.singletonList(
+        Collections.singletonMap("id", AttributeValue.fromS("a"))), filter, null);
+
+    ArgumentCaptor<ScanRequest> scan = ArgumentCaptor.forClass(ScanRequest.class);
+    Mockito.verify(mockClient).scan(scan.capture());
+    Assert.assertTrue(scan.getValue().consistentRead());
+    ArgumentCaptor<BatchGetItemRequest> batchGet =
+        ArgumentCaptor.forClass(BatchGetItemRequest.class);
+    Mockito.verify(mockClient).batchGetItem(batchGet.capture());
+    Assert.assertTrue(batchGet.getValue().requestItems().get("table").consistentRead());
+  }
+
+  private static DescribeTableResponse describeTableResponse(long itemCount) {
+    return DescribeTableResponse.builder()
+        .table(TableDescription.builder()
+            .tableName("table")
+            .itemCount(itemCount)
+            .keySchema(KeySchemaElement.builder().attributeName("id").keyType(KeyType.HASH)
+                .build())
+            .provisionedThroughput(ProvisionedThroughputDescription.builder()
+                .readCapacityUnits(10L).writeCapacityUnits(5L).build())
+            .build())
+        .build();
+  }
+
   private void setTestProxyHostAndPort(Configuration conf) {
     setProxyHostAndPort(conf, TEST_PROXY_HOST, TEST_PROXY_PORT);
   }
@@ -17,6 +17,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -95,6 +96,57 @@ public class DynamoDBItemWritableTest {
     assertEquals(item.getItem(), new HashMap<String, AttributeValue>());
   }
 
+  @Test
+  public void testReadLegacyChunkedFormat() throws IOException {
+    setTestData();
+    String json = item.writeStream();
+
+    ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(outStream);
+    out.writeChar(0x0001);
+    out.writeByte(0x00);
+    out.writeInt(2);
+    out.writeUTF(json.substring(0, json.length() / 2));
+    out.writeUTF(json.substring(json.length() / 2));
+    out.close();
+
+    item.setItem(null);
+    item.readFields(new DataInputStream(new ByteArrayInputStream(outStream.toByteArray())));
+    checkReturnedItem();
+  }
+
+  @Test
+  public void testBinaryFormatRoundTripsAllTypes() throws IOException {
+    Map<String, AttributeValue> nested = new HashMap<>();
+    nested.put("bool", AttributeValue.fromBool(true));
+    nested.put("nul", AttributeValue.fromNul(true));
+    nested.put("list", AttributeValue.fromL(Arrays.asList(AttributeValue.fromN("-1.5e3"),
+        AttributeValue.fromS("\u00e9\u4e2d\ud83d\ude00"), AttributeValue.builder().build())));
+
+    byte[] largeBinary = new byte[70000];
+    new Random(7).nextBytes(largeBinary);
+
+    Map<String, AttributeValue> sampleData = new HashMap<>();
+    sampleData.put("s", AttributeValue.fromS(""));
+    sampleData.put("n", AttributeValue.fromN("12345678901234567890"));
+    sampleData.put("b", AttributeValue.fromB(SdkBytes.fromByteArray(largeBinary)));
+    sampleData.put("ss", AttributeValue.fromSs(Arrays.asList("a", "b")));
+    sampleData.put("ns", AttributeValue.fromNs(Arrays.asList("1", "2")));
+    sampleData.put("bs", AttributeValue.fromBs(Arrays.asList(
+        SdkBytes.fromByteArray(new byte[]{0, 1, 2}), SdkBytes.fromByteArray(new byte[0]))));
+    sampleData.put("m", AttributeValue.fromM(nested));
+    sampleData.put("emptyMap", AttributeValue.fromM(new HashMap<>()));
+    item.setItem(sampleData);
+
+    ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    item.write(new DataOutputStream(outStream));
+
+    DynamoDBItemWritable copy = new DynamoDBItemWritable();
+    copy.readFields(new DataInputStream(new ByteArrayInputStream(outStream.toByteArray())));
+    assertEquals(sampleData, copy.getItem());
+    assertTrue(outStream.size() < item.writeStream().length());
+  }
+
   private void checkReturnedItem() {
     assertNotNull(item.getItem());
     Map<String, AttributeValue> returnedData = item.getItem();
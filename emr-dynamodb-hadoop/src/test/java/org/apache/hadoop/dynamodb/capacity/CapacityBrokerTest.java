@@ -0,0 +1,93 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.capacity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.util.MockTimeSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CapacityBrokerTest {
+
+  private static final String JOB_ID = "job_1_0001";
+  private static final String POOL = "read-table";
+  private static final long LEASE_INTERVAL_MS = 30 * 1000;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final MockTimeSource time = new MockTimeSource();
+  private Configuration conf;
+
+  @Before
+  public void setup() {
+    conf = new Configuration();
+    conf.set(DynamoDBConstants.CAPACITY_COORDINATOR_DIR, tempFolder.getRoot().toURI().toString());
+    conf.setLong(DynamoDBConstants.CAPACITY_LEASE_INTERVAL_MS, LEASE_INTERVAL_MS);
+  }
+
+  @Test
+  public void testCapacityOfFinishedTasksIsRedistributed() throws IOException {
+    CapacityBroker first = broker("attempt_1_0001_m_000000_0", 1);
+    CapacityBroker second = broker("attempt_1_0001_m_000001_0", 3);
+
+    // Fixed share until the lease has been held for one interval
+    assertEquals(0.1, first.getShareFraction(0.1), 0.0);
+
+    time.advanceByMillis(LEASE_INTERVAL_MS);
+    assertEquals(0.25, first.getShareFraction(0.1), 0.0);
+    assertEquals(0.75, second.getShareFraction(0.1), 0.0);
+    // Never below the fixed share
+    assertEquals(0.5, first.getShareFraction(0.5), 0.0);
+
+    second.close();
+    File poolDir = new File(new File(tempFolder.getRoot(), JOB_ID), POOL);
+    assertTrue(poolDir.exists());
+    // Not renewed before the lease interval has passed
+    assertEquals(0.25, first.getShareFraction(0.1), 0.0);
+    time.advanceByMillis(LEASE_INTERVAL_MS);
+    assertEquals(1.0, first.getShareFraction(0.1), 0.0);
+
+    // The last task removes the leases of the job
+    first.close();
+    assertFalse(poolDir.getParentFile().exists());
+  }
+
+  @Test
+  public void testDisabledWithoutTaskAttempt() {
+    conf.setBoolean(DynamoDBConstants.CAPACITY_BROKER_ENABLED, true);
+    conf.set("mapreduce.job.id", JOB_ID);
+    assertNull(CapacityBroker.create(conf, POOL, 1));
+
+    conf.setBoolean(DynamoDBConstants.CAPACITY_BROKER_ENABLED, false);
+    conf.set("mapreduce.task.attempt.id", "attempt_1_0001_m_000000_0");
+    assertNull(CapacityBroker.create(conf, POOL, 1));
+  }
+
+  private CapacityBroker broker(String taskId, double weight) throws IOException {
+    HdfsCapacityCoordinator coordinator = new HdfsCapacityCoordinator();
+    coordinator.initialize(conf, JOB_ID, POOL, taskId, weight);
+    return new CapacityBroker(coordinator, weight, LEASE_INTERVAL_MS, time);
+  }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.dynamodb.DynamoDBFibonacciRetryer.RetryResult;
+import org.apache.hadoop.dynamodb.split.DynamoDBSegmentsSplit;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ComparisonOperator;
+import software.amazon.awssdk.services.dynamodb.model.Condition;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.Projection;
+import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+
+public class DynamoDBQueryFilterTest {
+
+  private static final List<KeySchemaElement> KEY_SCHEMA = Arrays.asList(
+      KeySchemaElement.builder().attributeName("hk").keyType(KeyType.HASH).build(),
+      KeySchemaElement.builder().attributeName("rk").keyType(KeyType.RANGE).build());
+  private static final List<AttributeDefinition> ATTRIBUTE_DEFINITIONS = Arrays.asList(
+      AttributeDefinition.builder().attributeName("hk").attributeType(ScalarAttributeType.S)
+          .build(),
+      AttributeDefinition.builder().attributeName("rk").attributeType(ScalarAttributeType.N)
+          .build());
+
+  @Test
+  public void testWriteReadRoundTrip() throws IOException {
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getKeyConditions().put("hk", condition(ComparisonOperator.EQ,
+        AttributeValue.fromS("hash")));
+    filter.getScanFilter().put("num", condition(ComparisonOperator.BETWEEN,
+        AttributeValue.fromN("1"), AttributeValue.fromN("10")));
+    filter.getScanFilter().put("bin", condition(ComparisonOperator.IN,
+        AttributeValue.fromB(SdkBytes.fromUtf8String("a")),
+        AttributeValue.fromB(SdkBytes.fromUtf8String("b"))));
+    filter.getScanFilter().put("present", condition(ComparisonOperator.NOT_NULL));
+    filter.setIndex(new DynamoDBIndexInfo("gsi",
+        Arrays.asList(
+            KeySchemaElement.builder().attributeName("hk").keyType(KeyType.HASH).build(),
+            KeySchemaElement.builder().attributeName("rk").keyType(KeyType.RANGE).build()),
+        Projection.builder()
+            .projectionType(ProjectionType.INCLUDE)
+            .nonKeyAttributes("num", "bin")
+            .build(),
+        true /* global */));
+    filter.setProjection(Arrays.asList("hk", "num"));
+    filter.setLimit(10);
+    filter.setScanIndexForward(false);
+    filter.setConsistentRead(true);
+
+    DynamoDBQueryFilter copy = roundTrip(filter, new DynamoDBQueryFilter());
+
+    assertEquals(filter.getKeyConditions(), copy.getKeyConditions());
+    assertEquals(filter.getScanFilter(), copy.getScanFilter());
+    assertEquals("gsi", copy.getIndex().getIndexName());
+    assertEquals(filter.getIndex().getIndexSchema(), copy.getIndex().getIndexSchema());
+    assertEquals(filter.getIndex().getIndexProjection(), copy.getIndex().getIndexProjection());
+    assertTrue(copy.getIndex().isGlobal());
+    assertEquals(Arrays.asList("hk", "num"), copy.getProjection());
+    assertEquals(10, copy.getLimit());
+    assertFalse(copy.isScanIndexForward());
+    assertTrue(copy.isConsistentRead());
+  }
+
+  @Test
+  public void testHashKeyInListTakesOneQueryPerValue() {
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getKeyConditions().put("hk", condition(ComparisonOperator.IN,
+        AttributeValue.fromS("a"), AttributeValue.fromS("b"), AttributeValue.fromS("a")));
+    filter.getKeyConditions().put("rk", condition(ComparisonOperator.GT,
+        AttributeValue.fromN("5")));
+    filter.setProjection(Collections.singletonList("hk"));
+
+    assertEquals(2, filter.getQueryCount());
+    DynamoDBQueryFilter second = filter.getFilterForQuery(1);
+    assertEquals(condition(ComparisonOperator.EQ, AttributeValue.fromS("b")),
+        second.getKeyConditions().get("hk"));
+    assertEquals(filter.getKeyConditions().get("rk"), second.getKeyConditions().get("rk"));
+    assertEquals(Collections.singletonList("hk"), second.getProjection());
+
+    DynamoDBQueryFilter single = new DynamoDBQueryFilter();
+    single.getKeyConditions().put("hk", condition(ComparisonOperator.EQ,
+        AttributeValue.fromS("a")));
+    assertEquals(1, single.getQueryCount());
+    assertEquals(single, single.getFilterForQuery(0));
+  }
+
+  @Test
+  public void testConvertToScanKeepsConditionsAFilterTakes() {
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getKeyConditions().put("hk", condition(ComparisonOperator.IN,
+        AttributeValue.fromS("a"), AttributeValue.fromS("b"), AttributeValue.fromS("a")));
+    filter.getKeyConditions().put("rk", condition(ComparisonOperator.GT,
+        AttributeValue.fromN("5")));
+    filter.getScanFilter().put("other", condition(ComparisonOperator.EQ,
+        AttributeValue.fromS("x")));
+    assertEquals(2, filter.getHashKeyCount());
+    assertTrue(filter.isExact());
+
+    filter.convertToScan();
+
+    // The reader of the items applies the IN list
+    assertFalse(filter.isExact());
+    assertTrue(filter.getKeyConditions().isEmpty());
+    assertEquals(1, filter.getHashKeyCount());
+    assertEquals(2, filter.getScanFilter().size());
+    assertEquals(condition(ComparisonOperator.GT, AttributeValue.fromN("5")),
+        filter.getScanFilter().get("rk"));
+  }
+
+  @Test
+  public void testKeyLookupIsBatched() throws IOException {
+    AttributeValue[] hashKeys = new AttributeValue[250];
+    for (int i = 0; i < hashKeys.length; i++) {
+      hashKeys[i] = AttributeValue.fromN(Integer.toString(i));
+    }
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getKeyConditions().put("hk", condition(ComparisonOperator.IN, hashKeys));
+    filter.getKeyConditions().put("rk", condition(ComparisonOperator.EQ,
+        AttributeValue.fromS("r")));
+    filter.setKeyLookup(true);
+
+    DynamoDBQueryFilter copy = roundTrip(filter, new DynamoDBQueryFilter());
+
+    assertEquals(3, copy.getQueryCount());
+    List<Map<String, AttributeValue>> keys = copy.getLookupKeys(2);
+    assertEquals(50, keys.size());
+    assertEquals(AttributeValue.fromN("200"), keys.get(0).get("hk"));
+    assertEquals(AttributeValue.fromS("r"), keys.get(0).get("rk"));
+  }
+
+  @Test
+  public void testRangeKeySplitUsesConditionBounds() throws IOException {
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getKeyConditions().put("hk", condition(ComparisonOperator.EQ,
+        AttributeValue.fromS("a")));
+    filter.getKeyConditions().put("rk", condition(ComparisonOperator.BETWEEN,
+        AttributeValue.fromN("0"), AttributeValue.fromN("100")));
+    DynamoDBClient client = mock(DynamoDBClient.class);
+
+    DynamoDBRangeKeySplitter.split(client, "table", KEY_SCHEMA, ATTRIBUTE_DEFINITIONS, filter, 4,
+        null);
+    verifyNoInteractions(client);
+
+    DynamoDBQueryFilter copy = roundTrip(filter, new DynamoDBQueryFilter());
+    assertEquals(4, copy.getQueryCount());
+    assertEquals(condition(ComparisonOperator.BETWEEN, AttributeValue.fromN("0"),
+        AttributeValue.fromN("24.999999999999999999999999999999999999")),
+        copy.getFilterForQuery(0).getKeyConditions().get("rk"));
+    assertEquals(condition(ComparisonOperator.BETWEEN, AttributeValue.fromN("75"),
+        AttributeValue.fromN("100")), copy.getFilterForQuery(3).getKeyConditions().get("rk"));
+    assertEquals(AttributeValue.fromS("a"),
+        copy.getFilterForQuery(3).getKeyConditions().get("hk").attributeValueList().get(0));
+  }
+
+  @Test
+  public void testRangeKeySplitSamplesOpenBounds() {
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getKeyConditions().put("hk", condition(ComparisonOperator.EQ,
+        AttributeValue.fromS("a")));
+    DynamoDBClient client = mock(DynamoDBClient.class);
+    when(client.queryTable(eq("table"), any(DynamoDBQueryFilter.class), isNull(), eq(1L),
+        isNull())).thenAnswer(invocation -> {
+          DynamoDBQueryFilter sampleFilter = invocation.getArgument(1);
+          String rangeKey = sampleFilter.isScanIndexForward() ? "10" : "30";
+          return new RetryResult<>(QueryResponse.builder()
+              .items(Collections.singletonMap("rk", AttributeValue.fromN(rangeKey)))
+              .build(), 0);
+        });
+
+    DynamoDBRangeKeySplitter.split(client, "table", KEY_SCHEMA, ATTRIBUTE_DEFINITIONS, filter, 2,
+        null);
+
+    assertEquals(Arrays.asList(
+        condition(ComparisonOperator.LT, AttributeValue.fromN("20")),
+        condition(ComparisonOperator.GE, AttributeValue.fromN("20"))),
+        filter.getRangeKeySubRanges());
+    assertEquals(2, filter.getQueryCount());
+  }
+
+  @Test
+  public void testPredecessor() {
+    assertEquals(new BigDecimal("99.999999999999999999999999999999999999"),
+        DynamoDBRangeKeySplitter.predecessor(new BigDecimal("100")));
+    assertEquals(new BigDecimal("-100.00000000000000000000000000000000001"),
+        DynamoDBRangeKeySplitter.predecessor(new BigDecimal("-100")));
+    assertEquals(new BigDecimal("-1E-130"),
+        DynamoDBRangeKeySplitter.predecessor(BigDecimal.ZERO));
+  }
+
+  @Test
+  public void testSplitCarriesFilter() throws IOException {
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getScanFilter().put("col", condition(ComparisonOperator.GT,
+        AttributeValue.fromN("5")));
+    DynamoDBSegmentsSplit split = new DynamoDBSegmentsSplit(null, 100, 1, Arrays.asList(1, 3),
+        4, 1000, filter);
+
+    DynamoDBSegmentsSplit copy = roundTrip(split, new DynamoDBSegmentsSplit());
+
+    assertEquals(Arrays.asList(1, 3), copy.getSegments());
+    assertEquals(4, copy.getTotalSegments());
+    assertEquals(1000, copy.getLength());
+    assertEquals(filter.getScanFilter(), copy.getFilterPushdown().getScanFilter());
+    assertNull(copy.getFilterPushdown().getIndex());
+  }
+
+  @Test
+  public void testSplitWithoutFilter() throws IOException {
+    DynamoDBSegmentsSplit split = new DynamoDBSegmentsSplit(null, 100, 1,
+        Collections.singletonList(0), 1, 1000, null);
+
+    DynamoDBSegmentsSplit copy = roundTrip(split, new DynamoDBSegmentsSplit());
+
+    assertEquals(0, copy.getFilterPushdown().getKeyConditions().size());
+    assertEquals(0, copy.getFilterPushdown().getScanFilter().size());
+  }
+
+  @Test
+  public void testConditionExpression() {
+    Map<String, Condition> conditions = new HashMap<>();
+    conditions.put("year", condition(ComparisonOperator.GE, AttributeValue.fromN("2000")));
+    conditions.put("name", condition(ComparisonOperator.IN, AttributeValue.fromS("a"),
+        AttributeValue.fromS("b")));
+    conditions.put("deleted", condition(ComparisonOperator.NULL));
+
+    DynamoDBExpressionBuilder builder = new DynamoDBExpressionBuilder();
+    String expression = builder.buildConditionExpression(conditions);
+
+    assertEquals("attribute_not_exists(#n0) AND #n1 IN (:v0, :v1) AND #n2 >= :v2", expression);
+    assertEquals("deleted", builder.getExpressionAttributeNames().get("#n0"));
+    assertEquals("name", builder.getExpressionAttributeNames().get("#n1"));
+    assertEquals("year", builder.getExpressionAttributeNames().get("#n2"));
+    assertEquals(AttributeValue.fromS("b"), builder.getExpressionAttributeValues().get(":v1"));
+    assertEquals(AttributeValue.fromN("2000"),
+        builder.getExpressionAttributeValues().get(":v2"));
+  }
+
+  @Test
+  public void testProjectionSharesNamePlaceholders() {
+    DynamoDBExpressionBuilder builder = new DynamoDBExpressionBuilder();
+    String filterExpression = builder.buildConditionExpression(Collections.singletonMap("ts",
+        condition(ComparisonOperator.GT, AttributeValue.fromN("0"))));
+    String projectionExpression = builder.buildProjectionExpression(
+        Arrays.asList("id", "ts", "id"));
+
+    assertEquals("#n0 > :v0", filterExpression);
+    assertEquals("#n1, #n0", projectionExpression);
+    assertEquals("ts", builder.getExpressionAttributeNames().get("#n0"));
+    assertEquals("id", builder.getExpressionAttributeNames().get("#n1"));
+    assertNull(builder.buildProjectionExpression(Collections.emptyList()));
+  }
+
+  @Test
+  public void testEmptyConditionExpression() {
+    DynamoDBExpressionBuilder builder = new DynamoDBExpressionBuilder();
+    assertNull(builder.buildConditionExpression(Collections.emptyMap()));
+    assertEquals(0, builder.getExpressionAttributeNames().size());
+    assertEquals(0, builder.getExpressionAttributeValues().size());
+  }
+
+  private static Condition condition(ComparisonOperator op, AttributeValue... values) {
+    return Condition.builder().comparisonOperator(op).attributeValueList(values).build();
+  }
+
+  private static <T extends Writable> T roundTrip(T source, T target) throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    source.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    target.readFields(in);
+    return target;
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.preader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.split.DynamoDBSegmentsSplit;
+import org.apache.hadoop.dynamodb.util.TimeSource;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+public class AsyncReadWorkerTest {
+
+  private static final Map<String, AttributeValue> PAGE_KEY =
+      Collections.singletonMap("id", AttributeValue.fromS("b"));
+
+  @Test(timeout = 30000)
+  public void testScanSegmentsWithoutBlocking() throws Exception {
+    DynamoDBClient client = mock(DynamoDBClient.class);
+    when(client.scanTableAsync(anyString(), any(), eq(0), eq(2), isNull(), anyLong()))
+        .thenReturn(CompletableFuture.completedFuture(page(PAGE_KEY, "a", "b")));
+    when(client.scanTableAsync(anyString(), any(), eq(0), eq(2), eq(PAGE_KEY), anyLong()))
+        .thenReturn(CompletableFuture.completedFuture(page(null, "c")));
+    when(client.scanTableAsync(anyString(), any(), eq(1), eq(2), isNull(), anyLong()))
+        .thenReturn(CompletableFuture.supplyAsync(() -> page(null, "d", "e")));
+
+    PageResultMultiplexer<Map<String, AttributeValue>> pageMux = new PageResultMultiplexer<>(1,
+        10);
+    ScanReadManager readManager = new ScanReadManager(new RateController(new TimeSource(),
+        1000, 1, 100), new TimeSource(), buildContext(client, pageMux, Arrays.asList(0, 1)));
+
+    List<String> ids = readAll(pageMux);
+
+    assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d", "e")), new HashSet<>(ids));
+    assertEquals(5, ids.size());
+    assertTrue(readManager.workers.isEmpty());
+    verify(client, never()).scanTable(anyString(), any(), anyInt(), anyInt(), any(), anyLong(),
+        any());
+  }
+
+  @Test(timeout = 30000)
+  public void testFailedRequestSurfacesInMultiplexer() throws Exception {
+    DynamoDBClient client = mock(DynamoDBClient.class);
+    CompletableFuture<ScanResponse> failed = new CompletableFuture<>();
+    failed.completeExceptionally(ProvisionedThroughputExceededException.builder()
+        .message("throttled").build());
+    when(client.scanTableAsync(anyString(), any(), eq(0), eq(1), isNull(), anyLong()))
+        .thenReturn(failed);
+
+    PageResultMultiplexer<Map<String, AttributeValue>> pageMux = new PageResultMultiplexer<>(1,
+        10);
+    new ScanReadManager(new RateController(new TimeSource(), 1000, 1, 100), new TimeSource(),
+        buildContext(client, pageMux, Collections.singletonList(0)));
+
+    try {
+      pageMux.next();
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof ProvisionedThroughputExceededException);
+      return;
+    }
+    throw new AssertionError("Expected the failed page to surface");
+  }
+
+  private static DynamoDBRecordReaderContext buildContext(DynamoDBClient client,
+      PageResultMultiplexer<Map<String, AttributeValue>> pageMux, List<Integer> segments) {
+    JobConf conf = new JobConf();
+    conf.set(DynamoDBConstants.INPUT_TABLE_NAME, "table");
+    conf.setBoolean(DynamoDBConstants.ASYNC_READ_ENABLED, true);
+    conf.setInt(DynamoDBConstants.ASYNC_READ_MAX_CONCURRENCY, 4);
+
+    DynamoDBRecordReaderContext context = new DynamoDBRecordReaderContext();
+    context.setConf(conf);
+    context.setClient(client);
+    context.setReporter(mock(Reporter.class));
+    context.setPageResultMultiplexer(pageMux);
+    context.setSplit(new DynamoDBSegmentsSplit(null, 5, 0, segments, segments.size(), 0, null));
+    return context;
+  }
+
+  private static List<String> readAll(PageResultMultiplexer<Map<String, AttributeValue>> pageMux)
+      throws Exception {
+    List<String> ids = new ArrayList<>();
+    Map<String, AttributeValue> item;
+    while ((item = pageMux.next()) != null) {
+      ids.add(item.get("id").s());
+    }
+    assertNull(pageMux.next());
+    return ids;
+  }
+
+  private static ScanResponse page(Map<String, AttributeValue> lastEvaluatedKey, String... ids) {
+    List<Map<String, AttributeValue>> items = new ArrayList<>();
+    for (String id : ids) {
+      items.add(Collections.singletonMap("id", AttributeValue.fromS(id)));
+    }
+    return ScanResponse.builder()
+        .items(items)
+        .lastEvaluatedKey(lastEvaluatedKey)
+        .consumedCapacity(ConsumedCapacity.builder().capacityUnits(1.0).build())
+        .build();
+  }
+}
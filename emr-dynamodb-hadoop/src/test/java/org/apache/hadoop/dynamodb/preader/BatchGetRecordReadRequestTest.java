@@ -0,0 +1,149 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.preader;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.DynamoDBFibonacciRetryer.RetryResult;
+import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
+import org.apache.hadoop.dynamodb.split.DynamoDBSegmentsSplit;
+import org.apache.hadoop.dynamodb.util.TimeSource;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ComparisonOperator;
+import software.amazon.awssdk.services.dynamodb.model.Condition;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+public class BatchGetRecordReadRequestTest {
+
+  private static final String TABLE_NAME = "table";
+
+  @Test(timeout = 30000)
+  public void testUnprocessedKeysAreRetried() throws Exception {
+    AtomicBoolean first = new AtomicBoolean(true);
+    DynamoDBClient client = mock(DynamoDBClient.class);
+    when(client.batchGetItems(anyString(), anyList(), any(), any())).thenAnswer(invocation -> {
+      List<Map<String, AttributeValue>> keys = invocation.getArgument(1);
+      // The first call leaves its last key unprocessed
+      int processed = first.getAndSet(false) ? keys.size() - 1 : keys.size();
+      return new RetryResult<>(response(keys.subList(0, processed),
+          keys.subList(processed, keys.size())), 0);
+    });
+
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getKeyConditions().put("id", Condition.builder()
+        .comparisonOperator(ComparisonOperator.IN)
+        .attributeValueList(AttributeValue.fromS("a"), AttributeValue.fromS("b"),
+            AttributeValue.fromS("c"))
+        .build());
+    filter.setKeyLookup(true);
+
+    PageResultMultiplexer<Map<String, AttributeValue>> pageMux = new PageResultMultiplexer<>(1,
+        10);
+    new QueryReadManager(new RateController(new TimeSource(), 1000, 1, 100), new TimeSource(),
+        buildContext(client, pageMux, filter));
+
+    List<String> ids = new ArrayList<>();
+    Map<String, AttributeValue> item;
+    while ((item = pageMux.next()) != null) {
+      ids.add(item.get("id").s());
+    }
+
+    assertEquals(3, ids.size());
+    assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), new HashSet<>(ids));
+    verify(client, atLeast(2)).batchGetItems(anyString(), anyList(), any(), any());
+    verify(client, never()).queryTable(anyString(), any(), any(), any(Long.class), any());
+  }
+
+  @Test(timeout = 30000)
+  public void testStopsAtReadLimit() throws Exception {
+    List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    DynamoDBClient client = mock(DynamoDBClient.class);
+    when(client.batchGetItems(anyString(), anyList(), any(), any())).thenAnswer(invocation -> {
+      List<Map<String, AttributeValue>> keys = invocation.getArgument(1);
+      batchSizes.add(keys.size());
+      return new RetryResult<>(response(keys, Collections.emptyList()), 0);
+    });
+
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getKeyConditions().put("id", Condition.builder()
+        .comparisonOperator(ComparisonOperator.IN)
+        .attributeValueList(AttributeValue.fromS("a"), AttributeValue.fromS("b"),
+            AttributeValue.fromS("c"))
+        .build());
+    filter.setKeyLookup(true);
+    filter.setLimit(2);
+
+    PageResultMultiplexer<Map<String, AttributeValue>> pageMux = new PageResultMultiplexer<>(1,
+        10);
+    new QueryReadManager(new RateController(new TimeSource(), 1000, 1, 100), new TimeSource(),
+        buildContext(client, pageMux, filter));
+
+    int itemCount = 0;
+    while (pageMux.next() != null) {
+      itemCount++;
+    }
+
+    assertEquals(2, itemCount);
+    assertEquals(Collections.singletonList(2), batchSizes);
+  }
+
+  private static DynamoDBRecordReaderContext buildContext(DynamoDBClient client,
+      PageResultMultiplexer<Map<String, AttributeValue>> pageMux, DynamoDBQueryFilter filter) {
+    JobConf conf = new JobConf();
+    conf.set(DynamoDBConstants.INPUT_TABLE_NAME, TABLE_NAME);
+
+    DynamoDBRecordReaderContext context = new DynamoDBRecordReaderContext();
+    context.setConf(conf);
+    context.setClient(client);
+    context.setReporter(mock(Reporter.class));
+    context.setPageResultMultiplexer(pageMux);
+    context.setSplit(new DynamoDBSegmentsSplit(null, 3, 0, Collections.singletonList(0), 1, 0,
+        filter));
+    return context;
+  }
+
+  private static BatchGetItemResponse response(List<Map<String, AttributeValue>> items,
+      List<Map<String, AttributeValue>> unprocessedKeys) {
+    BatchGetItemResponse.Builder response = BatchGetItemResponse.builder()
+        .responses(Collections.singletonMap(TABLE_NAME, new ArrayList<>(items)))
+        .consumedCapacity(ConsumedCapacity.builder().capacityUnits(1.0).build());
+    if (!unprocessedKeys.isEmpty()) {
+      response.unprocessedKeys(Collections.singletonMap(TABLE_NAME,
+          KeysAndAttributes.builder().keys(new ArrayList<>(unprocessedKeys)).build()));
+    }
+    return response.build();
+  }
+}
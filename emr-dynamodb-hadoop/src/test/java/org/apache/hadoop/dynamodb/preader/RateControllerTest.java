@@ -144,4 +144,60 @@ public class RateControllerTest {
     }
     assertEquals(1, ctrl.getAvgItemSize(), 0.01);
   }
+
+  @Test
+  public void smallTablesKeepSmallPages() {
+    RateController ctrl = new RateController(time, 10, 1, 100.0);
+    assertEquals(RateController.DEFAULT_MAX_RCU_PER_REQ, ctrl.getMaxRcuPerRequest(), 0.01);
+
+    ctrl.updateMaxRequestSize(50_000_000L, 10, 0);
+    assertEquals(RateController.DEFAULT_MAX_RCU_PER_REQ, ctrl.getMaxRcuPerRequest(), 0.01);
+  }
+
+  @Test
+  public void pagesGrowWithRateUpToOneMegabyte() {
+    RateController ctrl = new RateController(time, 400, 1, 100.0);
+    assertEquals(100, ctrl.getMaxRcuPerRequest(), 0.01);
+
+    ctrl.setTargetRate(100000);
+    assertEquals(RateController.MAX_RCU_PER_PAGE, ctrl.getMaxRcuPerRequest(), 0.01);
+    RateController.RequestLimit lim = ctrl.getNextRequestLimit();
+    assertEquals(RateController.MAX_RCU_PER_PAGE, lim.readCapacityUnits, 0.01);
+  }
+
+  @Test
+  public void pagesGrowWhenLatencyLimitsWorkers() {
+    RateController ctrl = new RateController(time, 200, 1, 100.0);
+    assertEquals(50, ctrl.getMaxRcuPerRequest(), 0.01);
+
+    // 200 RCU/s at 2 s per request with 4 requests in flight needs 100 RCU per request
+    ctrl.updateMaxRequestSize(2_000_000_000L, 4, 0);
+    assertEquals(100, ctrl.getMaxRcuPerRequest(), 0.01);
+  }
+
+  @Test
+  public void pagesShrinkWhileBufferIsBackedUp() {
+    RateController ctrl = new RateController(time, 100000, 1, 100.0);
+    ctrl.updateMaxRequestSize(0, 10, 0.9);
+    assertEquals(RateController.DEFAULT_MAX_RCU_PER_REQ, ctrl.getMaxRcuPerRequest(), 0.01);
+
+    ctrl.updateMaxRequestSize(0, 10, 0.1);
+    assertEquals(RateController.MAX_RCU_PER_PAGE, ctrl.getMaxRcuPerRequest(), 0.01);
+  }
+
+  @Test
+  public void consistentReadsGetHalfTheBytesPerUnit() {
+    RateController eventual = new RateController(time, 100000, 1, 4096.0);
+    RateController consistent = new RateController(time, 100000, 1, 4096.0, true);
+
+    RateController.RequestLimit eventualLimit = eventual.getNextRequestLimit();
+    RateController.RequestLimit consistentLimit = consistent.getNextRequestLimit();
+    // A full 1 MB page either way, which takes twice the read capacity when consistent
+    assertEquals(2 * eventualLimit.readCapacityUnits, consistentLimit.readCapacityUnits, 0.01);
+    assertEquals(eventualLimit.items, consistentLimit.items);
+
+    // One read unit per 4 KB item
+    consistent.adjust(10, 10, 10);
+    assertEquals(4096, consistent.getAvgItemSize(), 0.01);
+  }
 }
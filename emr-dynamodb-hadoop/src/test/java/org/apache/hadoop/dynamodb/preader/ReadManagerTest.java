@@ -15,14 +15,27 @@ package org.apache.hadoop.dynamodb.preader;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
-
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.DynamoDBFibonacciRetryer.RetryResult;
 import org.apache.hadoop.dynamodb.preader.RateController.RequestLimit;
 import org.apache.hadoop.dynamodb.split.DynamoDBSegmentsSplit;
 import org.apache.hadoop.dynamodb.split.DynamoDBSplit;
+import org.apache.hadoop.dynamodb.split.SegmentClaimer;
 import org.apache.hadoop.dynamodb.util.AbstractTimeSource;
 import org.apache.hadoop.dynamodb.util.MockTimeSource;
+import org.apache.hadoop.dynamodb.util.TimeSource;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
 import org.junit.Before;
+import org.junit.Test;
 import org.junit.experimental.theories.DataPoints;
 import org.junit.experimental.theories.FromDataPoints;
 import org.junit.experimental.theories.Theories;
@@ -30,10 +43,17 @@ import org.junit.experimental.theories.Theory;
 import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
 
 @RunWith(Theories.class)
 public class ReadManagerTest {
@@ -93,6 +113,146 @@ public class ReadManagerTest {
         "itemSize=" + itemSize + ", windowSize=" + windowSize, 0, delta, 0.15);
   }
 
+  @Test
+  public void testReachesTargetRateWithinSeconds() {
+    final int ADVANCE_BY_MILLIS = 50;
+    final double rate = 6000.0;
+
+    MockTimeSource time = new MockTimeSource();
+    RateController rateCtr = new RateController(time, rate, 5, 4000);
+    MockReadManager mgr = new MockReadManager(rateCtr, time, dummyContext);
+    mgr.reportLatency = true;
+
+    // Two evaluations: one to size the worker pool, one to measure the rate it achieves
+    while (mgr.evalAvgRps.size() < 2) {
+      mgr.tick();
+      time.advanceByMillis(ADVANCE_BY_MILLIS);
+    }
+
+    // A single worker reads about a quarter of the target rate, even with full 1 MB pages.
+    // Adding one worker per evaluation would still be far below the target at this point.
+    assertTrue("workers=" + mgr.workers.size(), mgr.workers.size() > 2);
+    assertTrue("target=" + rate + ", actual=" + mgr.evalAvgRps.peek(),
+        mgr.evalAvgRps.peek() >= rate * 0.85);
+  }
+
+  @Test
+  public void testProgressFromSegments() {
+    DynamoDBRecordReaderContext context = new DynamoDBRecordReaderContext();
+    context.setSplit(new DynamoDBSegmentsSplit(null /* path */, 100 /* approxItemCount */, 1
+        /* splitId */, Arrays.asList(0, 1), 2 /* totalSegments */, 0, null /* filterPushdown */));
+    MockTimeSource time = new MockTimeSource();
+    MockReadManager mgr = new MockReadManager(new RateController(time, 100, 5, 100), time,
+        context);
+    mgr.segmentsRemaining.set(2);
+    assertEquals(0.0, mgr.getProgress(), 0.001);
+
+    // Half of the items expected in a segment
+    mgr.reportSegmentProgress(0, 25);
+    assertEquals(0.25, mgr.getProgress(), 0.001);
+
+    // More items than expected, while the segment is still being read
+    mgr.reportSegmentProgress(0, 100);
+    assertEquals(0.45, mgr.getProgress(), 0.001);
+
+    mgr.markSegmentComplete(0);
+    assertEquals(0.5, mgr.getProgress(), 0.001);
+    mgr.reportSegmentProgress(1, 5);
+    assertEquals(0.55, mgr.getProgress(), 0.001);
+  }
+
+  @Test
+  public void testProgressFromClaimedSegments() {
+    DynamoDBRecordReaderContext context = new DynamoDBRecordReaderContext();
+    context.setSplit(new DynamoDBSegmentsSplit(null /* path */, 100 /* approxItemCount */, 1
+        /* splitId */, Arrays.asList(0, 1), 8 /* totalSegments */, 0, null /* filterPushdown */));
+    MockTimeSource time = new MockTimeSource();
+    MockReadManager mgr = new MockReadManager(new RateController(time, 100, 5, 100), time,
+        context);
+    mgr.segmentsRemaining.set(2);
+
+    // Two segments of other splits claimed, the task now owns four
+    mgr.segmentsRemaining.addAndGet(2);
+    mgr.markSegmentComplete(0);
+    assertEquals(0.25, mgr.getProgress(), 0.001);
+    mgr.markSegmentComplete(1);
+    mgr.markSegmentComplete(5);
+    mgr.reportSegmentProgress(7, 25);
+    assertEquals(0.875, mgr.getProgress(), 0.001);
+  }
+
+  @Test
+  public void testWorkersStoppedBeforePagesDrain() {
+    AtomicReference<MockReadManager> mgrRef = new AtomicReference<>();
+    List<Integer> workersWhenDraining = new ArrayList<>();
+    DynamoDBRecordReaderContext context = new DynamoDBRecordReaderContext();
+    context.setSplit(dummyContext.getSplit());
+    context.setPageResultMultiplexer(new PageResultMultiplexer<Map<String, AttributeValue>>(1,
+        10) {
+      @Override
+      public void setDraining(boolean draining) {
+        workersWhenDraining.add(mgrRef.get().workers.size());
+        super.setDraining(draining);
+      }
+    });
+    MockTimeSource time = new MockTimeSource();
+    MockReadManager mgr = new MockReadManager(new RateController(time, 100, 5, 100), time,
+        context);
+    mgrRef.set(mgr);
+    assertTrue(mgr.workers.size() > 0);
+
+    // Once the consumer sees the end of the pages no worker may be left to read
+    mgr.segmentsRemaining.set(1);
+    mgr.markSegmentComplete(1);
+    assertEquals(Collections.singletonList(0), workersWhenDraining);
+  }
+
+  @Test(timeout = 30000)
+  public void testSegmentsClaimedOffReadWorkers() throws Exception {
+    Queue<Integer> unclaimed = new ConcurrentLinkedQueue<>(Arrays.asList(0, 1, 2, 3));
+    List<String> claimingThreads = Collections.synchronizedList(new ArrayList<>());
+    SegmentClaimer claimer = mock(SegmentClaimer.class);
+    when(claimer.getSegmentsOfEarlierAttempts()).thenReturn(new ArrayList<>());
+    when(claimer.claimNext()).thenAnswer(invocation -> {
+      claimingThreads.add(Thread.currentThread().getName());
+      return unclaimed.poll();
+    });
+
+    DynamoDBClient client = mock(DynamoDBClient.class);
+    when(client.scanTable(anyString(), any(), anyInt(), anyInt(), any(), anyLong(), any()))
+        .thenAnswer(invocation -> new RetryResult<>(ScanResponse.builder()
+            .items(Collections.singletonMap("id", AttributeValue.fromN("1")))
+            .build(), 0));
+
+    JobConf conf = new JobConf();
+    conf.set(DynamoDBConstants.INPUT_TABLE_NAME, "table");
+    PageResultMultiplexer<Map<String, AttributeValue>> pageMux = new PageResultMultiplexer<>(1,
+        10);
+    DynamoDBRecordReaderContext context = new DynamoDBRecordReaderContext();
+    context.setConf(conf);
+    context.setClient(client);
+    context.setReporter(mock(Reporter.class));
+    context.setPageResultMultiplexer(pageMux);
+    context.setSegmentClaimer(claimer);
+    context.setSplit(new DynamoDBSegmentsSplit(null /* path */, 4 /* approxItemCount */, 0
+        /* splitId */, Arrays.asList(0, 1), 4 /* totalSegments */, 0, null /* filterPushdown */));
+    new ScanReadManager(new RateController(new TimeSource(), 1000, 1, 100), new TimeSource(),
+        context);
+
+    int itemCount = 0;
+    while (pageMux.next() != null) {
+      itemCount++;
+    }
+    assertEquals(4, itemCount);
+
+    // As many segments as the split has are claimed up front, the others on a thread of their own
+    String readerThread = Thread.currentThread().getName();
+    assertEquals(Arrays.asList(readerThread, readerThread), claimingThreads.subList(0, 2));
+    for (String thread : claimingThreads.subList(2, claimingThreads.size())) {
+      assertEquals("SegmentClaimer", thread);
+    }
+  }
+
   /**
    * Implement a dummy worker, it's states are IDLE, READING, SLEEPING.
    */
@@ -105,6 +265,7 @@ public class ReadManagerTest {
     private static final int READ_FUZZ = 20;
     private STATE state = STATE.IDLE;
     private long nextActTime = 0;
+    private long readStartTime;
     private RateController.RequestLimit lastReadLimit;
 
     public MockReadWorker(AbstractReadManager mgr) {
@@ -149,6 +310,7 @@ public class ReadManagerTest {
 
     private void read(RequestLimit lim) {
       state = STATE.READING;
+      readStartTime = nextActTime;
       nextActTime += (READ_TIME_MS + (int) (READ_FUZZ * rnd.nextDouble())) * MockTimeSource
           .NANOSECONDS_IN_MILLISECOND;
       lastReadLimit = lim;
@@ -168,7 +330,12 @@ public class ReadManagerTest {
       int bytes = (int) (lastReadLimit.items * readMgr.rateController.getAvgItemSize());
       double consumedRcu = Math.ceil(bytes / DynamoDBConstants.BYTES_PER_READ_CAPACITY_UNIT /
           DynamoDBConstants.READ_EVENTUALLY_TO_STRONGLY_CONSISTENT_FACTOR);
-      readMgr.report(lastReadLimit.readCapacityUnits, consumedRcu, lastReadLimit.items, retries);
+      if (((MockReadManager) readMgr).reportLatency) {
+        readMgr.report(lastReadLimit.readCapacityUnits, consumedRcu, lastReadLimit.items, retries,
+            nextActTime - readStartTime);
+      } else {
+        readMgr.report(lastReadLimit.readCapacityUnits, consumedRcu, lastReadLimit.items, retries);
+      }
 
     }
 
@@ -184,6 +351,7 @@ public class ReadManagerTest {
      * Hook into the ReadManager, override worker add/removal and reporting
      */
     private final LinkedList<Double> evalAvgRps = new LinkedList<>();
+    private boolean reportLatency;
 
     public MockReadManager(RateController rateController, AbstractTimeSource time,
         DynamoDBRecordReaderContext context) {
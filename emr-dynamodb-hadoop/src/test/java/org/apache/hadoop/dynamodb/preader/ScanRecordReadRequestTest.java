@@ -1,6 +1,7 @@
 package org.apache.hadoop.dynamodb.preader;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -11,8 +12,10 @@ import static org.mockito.Mockito.when;
 import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.DynamoDBFibonacciRetryer.RetryResult;
+import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
 import org.apache.hadoop.dynamodb.preader.RateController.RequestLimit;
 import org.apache.hadoop.dynamodb.split.DynamoDBSegmentsSplit;
+import org.apache.hadoop.dynamodb.util.TimeSource;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
 import org.junit.Test;
@@ -21,9 +24,13 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ComparisonOperator;
+import software.amazon.awssdk.services.dynamodb.model.Condition;
 import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
 
@@ -70,4 +77,127 @@ public final class ScanRecordReadRequestTest {
         readRequest.fetchPage(new RequestLimit(0, 0));
     assertEquals(0.0, pageResults.consumedRcu, 0.0);
   }
+
+  @Test
+  public void fetchPageReportsScannedItems() {
+    RetryResult<ScanResponse> stubbedResult = new RetryResult<>(
+        ScanResponse.builder()
+            .consumedCapacity(ConsumedCapacity.builder().capacityUnits(12.5).build())
+            .items(Collections.singletonMap("id", AttributeValue.fromN("1")))
+            .count(1)
+            .scannedCount(100)
+            .build(),
+        0);
+
+    JobConf jobConf = new JobConf();
+    jobConf.set(DynamoDBConstants.INPUT_TABLE_NAME, "test-table");
+
+    when(context.getClient()).thenReturn(client);
+    when(context.getConf()).thenReturn(jobConf);
+    when(context.getSplit()).thenReturn(new DynamoDBSegmentsSplit());
+    when(client.scanTable(anyString(), isNull(), anyInt(), anyInt(), isNull(), anyLong(), any()))
+        .thenReturn(stubbedResult);
+
+    ScanRecordReadRequest readRequest = new ScanRecordReadRequest(
+        Mockito.mock(ScanReadManager.class), context, 0, null);
+    PageResults<Map<String, AttributeValue>> pageResults =
+        readRequest.fetchPage(new RequestLimit(100, 12.5));
+    assertEquals(1, pageResults.items.size());
+    assertEquals(100, pageResults.scannedCount);
+  }
+
+  @Test(timeout = 30000)
+  public void segmentStopsAtReadLimit() throws Exception {
+    List<Long> requestLimits = Collections.synchronizedList(new ArrayList<>());
+    when(client.scanTable(anyString(), any(), anyInt(), anyInt(), any(), anyLong(), any()))
+        .thenAnswer(invocation -> {
+          long limit = invocation.getArgument(5);
+          requestLimits.add(limit);
+          List<Map<String, AttributeValue>> items = new ArrayList<>();
+          for (int i = 0; i < limit; i++) {
+            items.add(Collections.singletonMap("id", AttributeValue.fromN(Integer.toString(i))));
+          }
+          // The table has more items than the limit
+          return new RetryResult<>(ScanResponse.builder()
+              .items(items)
+              .lastEvaluatedKey(Collections.singletonMap("id", AttributeValue.fromN("0")))
+              .build(), 0);
+        });
+
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.setLimit(3);
+    JobConf jobConf = new JobConf();
+    jobConf.set(DynamoDBConstants.INPUT_TABLE_NAME, "test-table");
+    PageResultMultiplexer<Map<String, AttributeValue>> pageMux = new PageResultMultiplexer<>(1,
+        10);
+    DynamoDBRecordReaderContext readerContext = new DynamoDBRecordReaderContext();
+    readerContext.setConf(jobConf);
+    readerContext.setClient(client);
+    readerContext.setReporter(reporter);
+    readerContext.setPageResultMultiplexer(pageMux);
+    readerContext.setSplit(new DynamoDBSegmentsSplit(null, 100, 0, Collections.singletonList(0),
+        1, 0, filter));
+    new ScanReadManager(new RateController(new TimeSource(), 1000, 1, 100), new TimeSource(),
+        readerContext);
+
+    int itemCount = 0;
+    while (pageMux.next() != null) {
+      itemCount++;
+    }
+
+    assertEquals(3, itemCount);
+    long requested = 0;
+    for (long limit : requestLimits) {
+      requested += limit;
+    }
+    assertEquals(3, requested);
+  }
+
+  @Test(timeout = 30000)
+  public void filteredSegmentAsksForFullPagesAndDropsItemsPastReadLimit() throws Exception {
+    List<Long> requestLimits = Collections.synchronizedList(new ArrayList<>());
+    when(client.scanTable(anyString(), any(), anyInt(), anyInt(), any(), anyLong(), any()))
+        .thenAnswer(invocation -> {
+          long limit = invocation.getArgument(5);
+          requestLimits.add(limit);
+          // The filter expression matches a single item of the page
+          return new RetryResult<>(ScanResponse.builder()
+              .items(Collections.singletonMap("id", AttributeValue.fromN("1")),
+                  Collections.singletonMap("id", AttributeValue.fromN("2")))
+              .scannedCount((int) limit)
+              .lastEvaluatedKey(Collections.singletonMap("id", AttributeValue.fromN("0")))
+              .build(), 0);
+        });
+
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.setLimit(3);
+    filter.getScanFilter().put("value", Condition.builder()
+        .comparisonOperator(ComparisonOperator.EQ)
+        .attributeValueList(AttributeValue.fromS("x"))
+        .build());
+    JobConf jobConf = new JobConf();
+    jobConf.set(DynamoDBConstants.INPUT_TABLE_NAME, "test-table");
+    PageResultMultiplexer<Map<String, AttributeValue>> pageMux = new PageResultMultiplexer<>(1,
+        10);
+    DynamoDBRecordReaderContext readerContext = new DynamoDBRecordReaderContext();
+    readerContext.setConf(jobConf);
+    readerContext.setClient(client);
+    readerContext.setReporter(reporter);
+    readerContext.setPageResultMultiplexer(pageMux);
+    readerContext.setSplit(new DynamoDBSegmentsSplit(null, 100, 0, Collections.singletonList(0),
+        1, 0, filter));
+    new ScanReadManager(new RateController(new TimeSource(), 1000, 1, 100), new TimeSource(),
+        readerContext);
+
+    int itemCount = 0;
+    while (pageMux.next() != null) {
+      itemCount++;
+    }
+
+    assertEquals(3, itemCount);
+    assertEquals(2, requestLimits.size());
+    for (long limit : requestLimits) {
+      assertTrue(limit > 3);
+    }
+  }
 }
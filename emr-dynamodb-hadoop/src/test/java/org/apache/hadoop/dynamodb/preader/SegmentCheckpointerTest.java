@@ -0,0 +1,218 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.preader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.util.MockTimeSource;
+import org.apache.hadoop.dynamodb.write.DynamoDBOutputFormat;
+import org.apache.hadoop.mapred.lib.NullOutputFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+public class SegmentCheckpointerTest {
+
+  private static final String JOB_ID = "job_1_0001";
+  private static final String FIRST_ATTEMPT = "attempt_1_0001_m_000003_0";
+  private static final String SECOND_ATTEMPT = "attempt_1_0001_m_000003_1";
+  private static final int TOTAL_SEGMENTS = 8;
+  private static final long INTERVAL_MS = 60 * 1000;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final MockTimeSource time = new MockTimeSource();
+  private Configuration conf;
+  private int flushCount;
+  private final List<Closeable> registrations = new ArrayList<>();
+
+  @Before
+  public void setup() {
+    conf = new Configuration();
+    conf.setBoolean(DynamoDBConstants.READ_CHECKPOINT_ENABLED, true);
+    conf.set(DynamoDBConstants.READ_CHECKPOINT_DIR, tempFolder.getRoot().toURI().toString());
+    conf.setLong(DynamoDBConstants.READ_CHECKPOINT_INTERVAL_MS, INTERVAL_MS);
+    conf.set("mapreduce.job.id", JOB_ID);
+    conf.set("mapred.output.format.class", DynamoDBOutputFormat.class.getName());
+    conf.setInt("mapreduce.job.reduces", 0);
+    conf.setBoolean("mapreduce.map.speculative", false);
+    time.setNanoTime(0);
+  }
+
+  @After
+  public void unregisterOutputs() throws IOException {
+    for (Closeable registration : registrations) {
+      registration.close();
+    }
+  }
+
+  @Test
+  public void testNewAttemptResumesFromCheckpoint() {
+    SegmentCheckpointer first = create(FIRST_ATTEMPT);
+    first.pageRead(1, 0, key("a"));
+    first.pageRead(1, 1, key("b"));
+    first.pageRead(2, 0, null);
+    // Read ahead of page 0 of segment 3, which has not been read yet
+    first.pageRead(3, 1, key("d"));
+
+    // Not written before the interval has passed
+    first.maybeSave();
+    assertEquals(0, flushCount);
+    assertFalse(create(SECOND_ATTEMPT).isComplete(2));
+
+    // The output is flushed before the checkpoint is written
+    time.advanceByMillis(INTERVAL_MS);
+    first.maybeSave();
+    assertEquals(1, flushCount);
+    first.pageRead(1, 2, key("c"));
+
+    SegmentCheckpointer second = create(SECOND_ATTEMPT);
+    assertEquals(key("b"), second.getResumeKey(1));
+    assertTrue(second.isComplete(2));
+    assertFalse(second.isComplete(1));
+    assertNull(second.getResumeKey(3));
+    assertNull(second.getResumeKey(4));
+  }
+
+  @Test
+  public void testNotWrittenWithoutRegisteredOutput() throws IOException {
+    Configuration attemptConf = withAttempt(FIRST_ATTEMPT);
+    SegmentCheckpointer first = SegmentCheckpointer.create(attemptConf, TOTAL_SEGMENTS, time);
+    first.pageRead(2, 0, null);
+    time.advanceByMillis(INTERVAL_MS);
+    first.maybeSave();
+    assertFalse(create(SECOND_ATTEMPT).isComplete(2));
+
+    // Nor once the output is closed
+    SegmentCheckpointer.registerOutput(attemptConf, () -> flushCount++).close();
+    time.advanceByMillis(INTERVAL_MS);
+    first.maybeSave();
+    assertEquals(0, flushCount);
+    assertFalse(create(SECOND_ATTEMPT).isComplete(2));
+  }
+
+  @Test
+  public void testPagesAreCountedInScanOrder() {
+    SegmentCheckpointer checkpointer = create(FIRST_ATTEMPT);
+    checkpointer.pageRead(5, 2, null);
+    checkpointer.pageRead(5, 1, key("b"));
+    assertNull(checkpointer.getResumeKey(5));
+    assertFalse(checkpointer.isComplete(5));
+
+    checkpointer.pageRead(5, 0, key("a"));
+    assertTrue(checkpointer.isComplete(5));
+    assertNull(checkpointer.getResumeKey(5));
+  }
+
+  @Test
+  public void testCheckpointOfOtherSegmentCountIsIgnored() {
+    SegmentCheckpointer first = create(FIRST_ATTEMPT);
+    first.pageRead(2, 0, null);
+    time.advanceByMillis(INTERVAL_MS);
+    first.maybeSave();
+
+    SegmentCheckpointer second = SegmentCheckpointer.create(withAttempt(SECOND_ATTEMPT),
+        TOTAL_SEGMENTS * 2, time);
+    assertNotNull(second);
+    assertFalse(second.isComplete(2));
+  }
+
+  @Test
+  public void testDisabled() {
+    assertNull(SegmentCheckpointer.create(conf, TOTAL_SEGMENTS, time));
+
+    conf.setBoolean(DynamoDBConstants.READ_CHECKPOINT_ENABLED, false);
+    assertNull(SegmentCheckpointer.create(withAttempt(FIRST_ATTEMPT), TOTAL_SEGMENTS, time));
+  }
+
+  @Test
+  public void testOnlyUsedWhenOutputSurvivesFailedAttempts() {
+    // File output of a failed attempt is discarded
+    conf.set("mapred.output.format.class", NullOutputFormat.class.getName());
+    assertNull(SegmentCheckpointer.create(withAttempt(FIRST_ATTEMPT), TOTAL_SEGMENTS, time));
+
+    // So is map output of a job with reducers
+    conf.set("mapred.output.format.class", DynamoDBOutputFormat.class.getName());
+    conf.setInt("mapreduce.job.reduces", 1);
+    assertNull(SegmentCheckpointer.create(withAttempt(FIRST_ATTEMPT), TOTAL_SEGMENTS, time));
+  }
+
+  @Test
+  public void testNotUsedWithSpeculativeExecution() {
+    Configuration speculative = withAttempt(FIRST_ATTEMPT);
+    speculative.unset("mapreduce.map.speculative");
+    speculative.setBoolean("mapred.map.tasks.speculative.execution", true);
+    assertNull(SegmentCheckpointer.create(speculative, TOTAL_SEGMENTS, time));
+
+    Configuration tez = withAttempt(FIRST_ATTEMPT);
+    tez.set("hive.execution.engine", "tez");
+    assertNull(SegmentCheckpointer.create(tez, TOTAL_SEGMENTS, time));
+  }
+
+  @Test
+  public void testDeleteRemovesJobDirectoryWithLastTask() {
+    SegmentCheckpointer first = create(FIRST_ATTEMPT);
+    first.pageRead(2, 0, null);
+    time.advanceByMillis(INTERVAL_MS);
+    first.maybeSave();
+    SegmentCheckpointer other = create("attempt_1_0001_m_000004_0");
+    other.pageRead(3, 0, null);
+    time.advanceByMillis(INTERVAL_MS);
+    other.maybeSave();
+
+    File jobDir = new File(tempFolder.getRoot(), JOB_ID);
+    first.delete();
+    assertFalse(new File(jobDir, "task_1_0001_m_000003").exists());
+    assertTrue(jobDir.exists());
+
+    other.delete();
+    assertFalse(jobDir.exists());
+  }
+
+  private SegmentCheckpointer create(String attemptId) {
+    Configuration attemptConf = withAttempt(attemptId);
+    registrations.add(SegmentCheckpointer.registerOutput(attemptConf, () -> flushCount++));
+    SegmentCheckpointer checkpointer = SegmentCheckpointer.create(attemptConf, TOTAL_SEGMENTS,
+        time);
+    assertNotNull(checkpointer);
+    return checkpointer;
+  }
+
+  private Configuration withAttempt(String attemptId) {
+    Configuration attemptConf = new Configuration(conf);
+    attemptConf.set("mapreduce.task.attempt.id", attemptId);
+    return attemptConf;
+  }
+
+  private static Map<String, AttributeValue> key(String hashKey) {
+    return Collections.singletonMap("id", AttributeValue.builder().s(hashKey).build());
+  }
+}
@@ -131,6 +131,38 @@ public class PageResultMultiplexerTest {
     Assert.assertNull(mux.next());
   }
 
+  /*
+   * Test that addPageResults() blocks once the estimated bytes are used up, and that next() does
+   * not wait for a full batch while a producer is blocked.
+   */
+  @Test(timeout = 2000)
+  public void testMaximumBufferedBytes() throws InterruptedException, IOException {
+    final int BATCH_SIZE = 10;
+    final int MAX_BYTES = 3;
+    final int PAGE_COUNT = 8;
+
+    PageResultMultiplexer<Integer> mux = new PageResultMultiplexer<>(BATCH_SIZE,
+        DEFAULT_CAPACITY, MAX_BYTES, page -> page.items.size());
+    MuxProducer producer = new MuxProducer(mux, PAGE_COUNT);
+
+    // Only MAX_BYTES single item pages fit
+    producer.jobTrackLatch = new CountDownLatch(MAX_BYTES);
+    producer.start();
+    producer.jobTrackLatch.await();
+    Thread.sleep(100);
+    Assert.assertEquals(MAX_BYTES, producer.idx);
+
+    // Fewer than BATCH_SIZE pages are buffered, but the blocked producer lets us read
+    List<Integer> out = new ArrayList<>();
+    for (int i = 0; i < PAGE_COUNT - MAX_BYTES; i++) {
+      out.add(mux.next());
+    }
+    producer.jobFinishLatch.await();
+    mux.setDraining(true);
+    out.addAll(muxToList(mux));
+    Assert.assertArrayEquals(new Integer[]{0, 1, 2, 3, 4, 5, 6, 7}, out.toArray());
+  }
+
   @Test(timeout = 100000)
   public void testWithMultipleThreads() throws InterruptedException, IOException {
     final int BATCH_SIZE = 10;
@@ -70,6 +70,7 @@ public class DynamoDBSplitGeneratorTest {
     for (InputSplit split1 : splits) {
       DynamoDBSplit split = (DynamoDBSplit) split1;
       assertEquals(segments.length, split.getTotalSegments());
+      assertEquals(numMappers, split.getNumSplits());
       for (Integer segment : split.getSegments()) {
         assertFalse(segments[segment]);
         segments[segment] = true;
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package org.apache.hadoop.dynamodb.split;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ComparisonOperator;
+import software.amazon.awssdk.services.dynamodb.model.Condition;
+
+public class SegmentClaimerTest {
+
+  private static final String JOB_ID = "job_1_0001";
+  private static final String POOL = "scan-table";
+  private static final int TOTAL_SEGMENTS = 6;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Configuration conf;
+
+  @Before
+  public void setup() {
+    conf = new Configuration();
+    conf.setBoolean(DynamoDBConstants.SCAN_SEGMENT_CLAIMS_ENABLED, true);
+    conf.setBoolean("mapreduce.map.speculative", false);
+    conf.set(DynamoDBConstants.SCAN_SEGMENT_QUEUE_DIR, tempFolder.getRoot().toURI().toString());
+    conf.set("mapreduce.job.id", JOB_ID);
+  }
+
+  @Test
+  public void testTasksTakeOverUnclaimedSegments() throws IOException {
+    SegmentClaimer fast = create("attempt_1_0001_m_000000_0", Arrays.asList(0, 2, 4));
+    SegmentClaimer slow = create("attempt_1_0001_m_000001_0", Arrays.asList(1, 3, 5));
+
+    assertEquals(Integer.valueOf(0), fast.claimNext());
+    assertEquals(Integer.valueOf(1), slow.claimNext());
+    assertEquals(Integer.valueOf(2), fast.claimNext());
+    assertEquals(Integer.valueOf(4), fast.claimNext());
+
+    // Out of its own segments, the fast task claims those the slow one has not got to yet
+    assertEquals(Integer.valueOf(3), fast.claimNext());
+    assertEquals(Integer.valueOf(5), slow.claimNext());
+    assertNull(fast.claimNext());
+    assertNull(slow.claimNext());
+  }
+
+  @Test
+  public void testNewAttemptReadsSegmentsOfEarlierAttempts() throws IOException {
+    SegmentClaimer first = create("attempt_1_0001_m_000000_0", Arrays.asList(0, 2, 4));
+    SegmentClaimer other = create("attempt_1_0001_m_000001_0", Arrays.asList(1, 3, 5));
+    first.claimNext();
+    other.claimNext();
+    first.claimNext();
+
+    SegmentClaimer retry = create("attempt_1_0001_m_000000_1", Arrays.asList(0, 2, 4));
+    List<Integer> recovered = retry.getSegmentsOfEarlierAttempts();
+    Collections.sort(recovered);
+    assertEquals(Arrays.asList(0, 2), recovered);
+    assertEquals(Integer.valueOf(4), retry.claimNext());
+
+    Set<Integer> rest = new HashSet<>();
+    Integer segment;
+    while ((segment = retry.claimNext()) != null) {
+      rest.add(segment);
+    }
+    assertEquals(new HashSet<>(Arrays.asList(3, 5)), rest);
+  }
+
+  @Test
+  public void testClaimsRemovedOnceEveryTaskIsDone() throws IOException {
+    SegmentClaimer fast = create("attempt_1_0001_m_000000_0", Arrays.asList(0, 2, 4));
+    SegmentClaimer slow = create("attempt_1_0001_m_000001_0", Arrays.asList(1, 3, 5));
+    while (fast.claimNext() != null) {
+      // Claims every segment
+    }
+    assertNull(slow.claimNext());
+
+    File jobDir = new File(tempFolder.getRoot(), JOB_ID);
+    fast.complete();
+    assertTrue(new File(jobDir, POOL).exists());
+
+    slow.complete();
+    assertFalse(jobDir.exists());
+  }
+
+  @Test
+  public void testPoolPerInput() {
+    DynamoDBQueryFilter filter = new DynamoDBQueryFilter();
+    filter.getScanFilter().put("value", Condition.builder()
+        .comparisonOperator(ComparisonOperator.EQ)
+        .attributeValueList(AttributeValue.fromS("x"))
+        .build());
+    DynamoDBSplit filtered = new DynamoDBSegmentsSplit(null, 0, 1, Collections.singletonList(1),
+        TOTAL_SEGMENTS, 0, filter);
+    DynamoDBSplit unfiltered = split(Collections.singletonList(0));
+
+    // Splits of the same input share a pool
+    assertEquals(SegmentClaimer.getPoolName("table", unfiltered),
+        SegmentClaimer.getPoolName("table", split(Collections.singletonList(1))));
+    assertNotEquals(SegmentClaimer.getPoolName("table", unfiltered),
+        SegmentClaimer.getPoolName("table", filtered));
+    assertNotEquals(SegmentClaimer.getPoolName("table", unfiltered),
+        SegmentClaimer.getPoolName("other", unfiltered));
+  }
+
+  @Test
+  public void testDisabled() {
+    conf.setBoolean("mapreduce.map.speculative", true);
+    assertNull(SegmentClaimer.create(withAttempt("attempt_1_0001_m_000000_0"),
+        split(Collections.singletonList(0)), POOL));
+
+    // Speculation enabled with the deprecated key
+    conf.unset("mapreduce.map.speculative");
+    conf.setBoolean("mapred.map.tasks.speculative.execution", true);
+    assertNull(SegmentClaimer.create(withAttempt("attempt_1_0001_m_000000_0"),
+        split(Collections.singletonList(0)), POOL));
+
+    conf.setBoolean("mapreduce.map.speculative", false);
+    conf.set("hive.execution.engine", "tez");
+    assertNull(SegmentClaimer.create(withAttempt("attempt_1_0001_m_000000_0"),
+        split(Collections.singletonList(0)), POOL));
+
+    conf.unset("hive.execution.engine");
+    assertNull(SegmentClaimer.create(conf, split(Collections.singletonList(0)), POOL));
+
+    conf.setBoolean(DynamoDBConstants.SCAN_SEGMENT_CLAIMS_ENABLED, false);
+    assertNull(SegmentClaimer.create(withAttempt("attempt_1_0001_m_000000_0"),
+        split(Collections.singletonList(0)), POOL));
+  }
+
+  private SegmentClaimer create(String attemptId, List<Integer> segments) {
+    SegmentClaimer claimer = SegmentClaimer.create(withAttempt(attemptId), split(segments), POOL);
+    assertNotNull(claimer);
+    return claimer;
+  }
+
+  private Configuration withAttempt(String attemptId) {
+    Configuration attemptConf = new Configuration(conf);
+    attemptConf.set("mapreduce.task.attempt.id", attemptId);
+    return attemptConf;
+  }
+
+  private static DynamoDBSplit split(List<Integer> segments) {
+    DynamoDBSplit split = new DynamoDBSegmentsSplit(null /* path */, 0 /* approxItemCount */,
+        0 /* splitId */, new ArrayList<>(segments), TOTAL_SEGMENTS, 0, null /* filterPushdown */);
+    split.setNumSplits(2);
+    return split;
+  }
+}
@@ -11,11 +11,10 @@
  * License for the specific language governing permissions and limitations under the License.
  */
 
-package org.apache.hadoop.dynamodb.preader;
+package org.apache.hadoop.dynamodb.util;
 
 import static org.junit.Assert.assertEquals;
 
-import org.apache.hadoop.dynamodb.util.MockTimeSource;
 import org.junit.Test;
 
 public class TokenBucketTest {
@@ -57,4 +56,34 @@ public class TokenBucketTest {
     assertEquals(CAPACITY, tokens, EPSILON);
   }
 
+  @Test
+  public void testTryAcquireReportsWait() {
+    MockTimeSource time = new MockTimeSource();
+    TokenBucket bucket = new TokenBucket(100.0, 2.0, time);
+
+    assertEquals(0, bucket.tryAcquire(1));
+    assertEquals(0, bucket.tryAcquire(1));
+    // One token per 10 ms
+    assertEquals(10, bucket.tryAcquire(1));
+
+    time.advanceByMillis(4);
+    assertEquals(6, bucket.tryAcquire(1));
+    time.advanceByMillis(6);
+    assertEquals(0, bucket.tryAcquire(1));
+  }
+
+  @Test
+  public void testRefillKeepsFractionsOfMilliseconds() {
+    MockTimeSource time = new MockTimeSource();
+    TokenBucket bucket = new TokenBucket(1000.0, 1.0, time);
+    assertEquals(0, bucket.tryAcquire(1));
+
+    // Refilling every quarter of a millisecond adds up to a token per millisecond
+    for (int i = 0; i < 3; i++) {
+      time.setNanoTime(time.getNanoTime() + AbstractTimeSource.NANOSECONDS_IN_MILLISECOND / 4);
+      assertEquals(0, bucket.acquire(MIN, MIN), EPSILON);
+    }
+    time.setNanoTime(time.getNanoTime() + AbstractTimeSource.NANOSECONDS_IN_MILLISECOND / 4);
+    assertEquals(0, bucket.tryAcquire(1));
+  }
 }
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.write;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.DynamoDBItemWritable;
+import org.apache.hadoop.dynamodb.util.TimeSource;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+
+public class AbstractDynamoDBRecordWriterTest {
+
+  private static final String TABLE_NAME = "table";
+  private static final long ITEMS_PER_SECOND = 50;
+  private static final int ITEM_COUNT = 30;
+  // Tokens the bucket holds, written without waiting
+  private static final int BURST_ITEMS = 5;
+  // Tolerance for the clock and the scheduler
+  private static final long SLACK_MS = 50;
+
+  private final DynamoDbClient mockClient = mock(DynamoDbClient.class);
+  // Milliseconds since the first write and item count of each batch sent
+  private final List<long[]> batches = Collections.synchronizedList(new ArrayList<>());
+  private JobConf conf;
+  private long startNano;
+
+  @Before
+  public void setup() {
+    conf = new JobConf();
+    conf.set(DynamoDBConstants.OUTPUT_TABLE_NAME, TABLE_NAME);
+    conf.set(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES, "id");
+    conf.setDouble(DynamoDBConstants.WRITE_BURST_SECONDS,
+        (double) BURST_ITEMS / ITEMS_PER_SECOND);
+    when(mockClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+      int itemCount = ((BatchWriteItemRequest) invocation.getArgument(0)).requestItems()
+          .get(TABLE_NAME).size();
+      batches.add(new long[] {
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNano), itemCount});
+      return BatchWriteItemResponse.builder().build();
+    });
+  }
+
+  @Test(timeout = 30000)
+  public void testBatchesAreSentAtTheWriteRate() throws IOException {
+    writeItems();
+
+    int itemsSent = 0;
+    for (long[] batch : batches) {
+      // A tenth of a second of the rate at most
+      assertTrue(batch[1] <= ITEMS_PER_SECOND / 10);
+      itemsSent += batch[1];
+      assertSentAtRate(batch[0], itemsSent);
+    }
+    assertEquals(ITEM_COUNT, itemsSent);
+  }
+
+  @Test(timeout = 30000)
+  public void testPipelinedItemsAreQueuedAtTheWriteRate() throws IOException {
+    conf.setBoolean(DynamoDBConstants.WRITE_PIPELINE_ENABLED, true);
+
+    long elapsedMs = writeItems();
+
+    assertSentAtRate(elapsedMs, ITEM_COUNT);
+    int itemsSent = 0;
+    for (long[] batch : batches) {
+      itemsSent += batch[1];
+    }
+    assertEquals(ITEM_COUNT, itemsSent);
+  }
+
+  /**
+   * Writes the items and closes the writer, returning the milliseconds it took.
+   */
+  private long writeItems() throws IOException {
+    AbstractDynamoDBRecordWriter<Integer, DynamoDBItemWritable> writer =
+        new AbstractDynamoDBRecordWriter<Integer, DynamoDBItemWritable>(conf, Reporter.NULL,
+            new DynamoDBClient(mockClient, conf), () -> ITEMS_PER_SECOND, new TimeSource()) {
+          @Override
+          protected DynamoDBItemWritable convertValueToDynamoDBItem(Integer key,
+              DynamoDBItemWritable value) {
+            return value;
+          }
+        };
+
+    startNano = System.nanoTime();
+    for (int id = 0; id < ITEM_COUNT; id++) {
+      writer.write(id, new DynamoDBItemWritable(
+          Collections.singletonMap("id", AttributeValue.fromN(Integer.toString(id)))));
+    }
+    writer.close(Reporter.NULL);
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNano);
+  }
+
+  private static void assertSentAtRate(long elapsedMs, int itemCount) {
+    long expectedMs = (itemCount - BURST_ITEMS) * 1000 / ITEMS_PER_SECOND;
+    assertTrue(itemCount + " items after " + elapsedMs + " ms",
+        elapsedMs >= expectedMs - SLACK_MS);
+  }
+}
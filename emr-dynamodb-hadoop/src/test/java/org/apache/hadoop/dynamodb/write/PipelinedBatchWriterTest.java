@@ -0,0 +1,190 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.write;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.mapred.Reporter;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+public class PipelinedBatchWriterTest {
+
+  private static final String TABLE_NAME = "table";
+
+  private final DynamoDbClient mockClient = mock(DynamoDbClient.class);
+  private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+  private Configuration conf;
+  private DynamoDBClient client;
+
+  @Before
+  public void setup() {
+    conf = new Configuration();
+    conf.setInt(DynamoDBConstants.WRITE_PIPELINE_MAX_IN_FLIGHT, 3);
+    conf.setInt(DynamoDBConstants.WRITE_PIPELINE_QUEUE_SIZE, 1);
+    client = new DynamoDBClient(mockClient, conf);
+  }
+
+  @Test(timeout = 30000)
+  public void testUnprocessedItemsAreResentInKeyOrder() throws IOException {
+    AtomicBoolean throttled = new AtomicBoolean();
+    when(mockClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+      List<WriteRequest> requests = ((BatchWriteItemRequest) invocation.getArgument(0))
+          .requestItems().get(TABLE_NAME);
+      // Leave the first item unprocessed once, the rest of the batch goes through
+      List<WriteRequest> unprocessed = new ArrayList<>();
+      for (WriteRequest request : requests) {
+        if (unprocessed.isEmpty() && throttled.compareAndSet(false, true)) {
+          unprocessed.add(request);
+        } else {
+          written.add(describe(request));
+        }
+      }
+      return response(requests.size() - unprocessed.size(), unprocessed);
+    });
+
+    WriteCapacityTracker tracker = new WriteCapacityTracker();
+    PipelinedBatchWriter writer = new PipelinedBatchWriter(client, conf, TABLE_NAME,
+        Collections.singletonList("id"), false, Reporter.NULL, tracker);
+    for (int version = 0; version < 5; version++) {
+      for (int id = 0; id < 10; id++) {
+        writer.write(item(id, version), 4);
+      }
+    }
+    writer.close();
+
+    // Versions still in the open batch of their lane are replaced by later ones
+    assertTrue(written.size() <= 50);
+    assertEquals(written.size(), writer.getItemsWritten());
+    assertEquals(written.size(), tracker.drain(), 0.0);
+    Map<String, Integer> lastVersion = new HashMap<>();
+    for (String entry : written) {
+      String[] parts = entry.split(":");
+      int version = Integer.parseInt(parts[1]);
+      assertTrue("Out of order write " + entry, lastVersion.getOrDefault(parts[0], -1) < version);
+      lastVersion.put(parts[0], version);
+    }
+    assertEquals(10, lastVersion.size());
+    for (int version : lastVersion.values()) {
+      assertEquals(4, version);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testWritesToSameKeyAreCoalesced() throws IOException {
+    List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    when(mockClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+      List<WriteRequest> requests = ((BatchWriteItemRequest) invocation.getArgument(0))
+          .requestItems().get(TABLE_NAME);
+      batchSizes.add(requests.size());
+      for (WriteRequest request : requests) {
+        written.add(describe(request));
+      }
+      return response(requests.size(), Collections.emptyList());
+    });
+
+    PipelinedBatchWriter writer = new PipelinedBatchWriter(client, conf, TABLE_NAME,
+        Collections.singletonList("id"), false, Reporter.NULL);
+    for (int version = 0; version < 5; version++) {
+      writer.write(item(7, version), 25);
+    }
+    writer.close();
+
+    assertEquals(Collections.singletonList(1), batchSizes);
+    assertEquals(Collections.singletonList("7:4"), written);
+  }
+
+  @Test(timeout = 30000)
+  public void testFailureIsReportedOnClose() {
+    when(mockClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenThrow(new IllegalStateException("boom"));
+
+    PipelinedBatchWriter writer = new PipelinedBatchWriter(client, conf, TABLE_NAME,
+        Collections.singletonList("id"), false, Reporter.NULL);
+    try {
+      for (int id = 0; id < 100; id++) {
+        writer.write(item(id, 0), 25);
+      }
+      writer.close();
+      fail("Expected the failed batch to be reported");
+    } catch (IOException e) {
+      assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testUnprocessedItemsGiveUpAfterRetryPeriod() throws IOException {
+    when(mockClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+      List<WriteRequest> requests = ((BatchWriteItemRequest) invocation.getArgument(0))
+          .requestItems().get(TABLE_NAME);
+      return response(0, requests);
+    });
+
+    PipelinedBatchWriter writer = new PipelinedBatchWriter(client, conf, TABLE_NAME,
+        Collections.singletonList("id"), false, Reporter.NULL, new WriteCapacityTracker(),
+        Duration.millis(200));
+    writer.write(item(1, 0), 25);
+    try {
+      writer.close();
+      fail("Expected the unprocessed item to be reported");
+    } catch (IOException e) {
+      assertTrue(e.getCause().getMessage().contains("unprocessed"));
+    }
+  }
+
+  private static Map<String, AttributeValue> item(int id, int version) {
+    Map<String, AttributeValue> item = new HashMap<>();
+    item.put("id", AttributeValue.fromN(Integer.toString(id)));
+    item.put("version", AttributeValue.fromN(Integer.toString(version)));
+    return item;
+  }
+
+  private static String describe(WriteRequest request) {
+    Map<String, AttributeValue> item = request.putRequest().item();
+    return item.get("id").n() + ":" + item.get("version").n();
+  }
+
+  private static BatchWriteItemResponse response(int processed, List<WriteRequest> unprocessed) {
+    return BatchWriteItemResponse.builder()
+        .unprocessedItems(unprocessed.isEmpty() ? Collections.emptyMap()
+            : Collections.singletonMap(TABLE_NAME, unprocessed))
+        .consumedCapacity(ConsumedCapacity.builder().tableName(TABLE_NAME)
+            .capacityUnits((double) processed)
+            .table(t -> t.capacityUnits((double) processed))
+            .build())
+        .build();
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.write;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.Capacity;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+
+public class WriteCapacityTrackerTest {
+
+  @Test
+  public void testMostLoadedIndexIsReported() {
+    WriteCapacityTracker tracker = new WriteCapacityTracker();
+    tracker.record(Collections.singletonList(consumed(10, 2, 12, 4)));
+    tracker.record(Collections.singletonList(consumed(10, 2, 12, 4)));
+
+    // Table and local index share 24 units, the first global index consumed 24 as well
+    assertEquals(24.0, tracker.drain(), 0.0);
+    assertEquals(0.0, tracker.drain(), 0.0);
+    assertEquals(24.0, tracker.getTotalTableUnits(), 0.0);
+    assertEquals(24.0, tracker.getTotalIndexUnits().get("gsi0"), 0.0);
+    assertEquals(8.0, tracker.getTotalIndexUnits().get("gsi1"), 0.0);
+  }
+
+  @Test
+  public void testConsumptionIsWeighedByProvisionedCapacity() {
+    WriteCapacityTracker tracker = new WriteCapacityTracker();
+    Map<String, Double> indexCapacities = new HashMap<>();
+    indexCapacities.put("gsi0", 400.0);
+    indexCapacities.put("gsi1", 100.0);
+    assertEquals(100.0, tracker.setProvisionedCapacity(1000, indexCapacities), 0.0);
+
+    // gsi1 is both the bottleneck and the closest to its capacity
+    tracker.record(Collections.singletonList(consumed(50, 0, 20, 10)));
+    assertEquals(10.0, tracker.drain(), 0.0);
+
+    // The table consumed 30% of its capacity, more than gsi1's 20%
+    tracker.record(Collections.singletonList(consumed(300, 0, 40, 20)));
+    assertEquals(30.0, tracker.drain(), 0.0);
+  }
+
+  private static ConsumedCapacity consumed(double table, double lsi, double gsi0, double gsi1) {
+    Map<String, Capacity> gsis = new HashMap<>();
+    gsis.put("gsi0", Capacity.builder().capacityUnits(gsi0).build());
+    gsis.put("gsi1", Capacity.builder().capacityUnits(gsi1).build());
+    return ConsumedCapacity.builder()
+        .table(Capacity.builder().capacityUnits(table).build())
+        .localSecondaryIndexes(Collections.singletonMap("lsi",
+            Capacity.builder().capacityUnits(lsi).build()))
+        .globalSecondaryIndexes(gsis)
+        .build();
+  }
+}
@@ -30,6 +30,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import software.amazon.awssdk.services.dynamodb.model.BillingMode;
 import software.amazon.awssdk.services.dynamodb.model.BillingModeSummary;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
 import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputDescription;
 import software.amazon.awssdk.services.dynamodb.model.TableDescription;
 
@@ -83,6 +84,33 @@ public class WriteIopsCalculatorTest {
     verify(spyIopsCalculator, times(1)).getThroughput();
   }
 
+  @Test
+  public void testThroughputLimitedByGlobalSecondaryIndex() {
+    JobConf jobConf = new JobConf();
+    writeIopsCalculator = getWriteIopsCalculator(jobConf);
+    when(dynamoDBClient.describeTable(TABLE_NAME)).thenReturn(TableDescription.builder()
+        .provisionedThroughput(ProvisionedThroughputDescription.builder()
+            .writeCapacityUnits(WRITE_CAPACITY_UNITS)
+            .build())
+        .globalSecondaryIndexes(index("byDate", WRITE_CAPACITY_UNITS * 2),
+            index("byOwner", WRITE_CAPACITY_UNITS / 4))
+        .build());
+
+    long writeIops = writeIopsCalculator.calculateTargetIops();
+    long expectedWriteIops = (long) (WRITE_CAPACITY_UNITS / 4 * THROUGHPUT_WRITE_PERCENT / Math.min
+        (MAX_CONCURRENT_MAP_TASKS, TOTAL_MAP_TASKS));
+    assertEquals(expectedWriteIops, writeIops);
+  }
+
+  private static GlobalSecondaryIndexDescription index(String indexName, long writeCapacityUnits) {
+    return GlobalSecondaryIndexDescription.builder()
+        .indexName(indexName)
+        .provisionedThroughput(ProvisionedThroughputDescription.builder()
+            .writeCapacityUnits(writeCapacityUnits)
+            .build())
+        .build();
+  }
+
   private WriteIopsCalculator getWriteIopsCalculator(JobConf jobConf) {
     when(dynamoDBClient.describeTable(TABLE_NAME)).thenReturn(TableDescription.builder()
         .billingModeSummary(BillingModeSummary.builder()
@@ -48,6 +48,7 @@ import org.apache.hadoop.mapred.JobConf;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.BillingMode;
 import software.amazon.awssdk.services.dynamodb.model.BillingModeSummary;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
 
 public class DynamoDBSerDe extends AbstractSerDe {
 
@@ -194,8 +195,13 @@ public class DynamoDBSerDe extends AbstractSerDe {
 
     log.info("Table Properties:" + tbl);
     DynamoDBClient client = new DynamoDBClient(conf, tbl.getProperty(DynamoDBConstants.REGION));
-    long writesPerSecond = client.describeTable(dynamoDBTableName).provisionedThroughput()
-        .writeCapacityUnits();
+    TableDescription description;
+    try {
+      description = client.describeTable(dynamoDBTableName);
+    } finally {
+      client.close();
+    }
+    long writesPerSecond = description.provisionedThroughput().writeCapacityUnits();
 
     // skip verification when current resource manager is not Yarn
     if (!DynamoDBUtil.isYarnEnabled(conf)) {
@@ -211,8 +217,7 @@ public class DynamoDBSerDe extends AbstractSerDe {
       throw new RuntimeException("Could not get cluster capacity.", e);
     }
 
-    BillingModeSummary billingModeSummary =
-        client.describeTable(dynamoDBTableName).billingModeSummary();
+    BillingModeSummary billingModeSummary = description.billingModeSummary();
     if (maxMapTasks > writesPerSecond
         && (billingModeSummary == null
         || billingModeSummary.billingMode() == BillingMode.PROVISIONED)) {
@@ -26,6 +26,7 @@ import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.DynamoDBItemWritable;
 import org.apache.hadoop.dynamodb.DynamoDBUtil;
+import org.apache.hadoop.dynamodb.TableDescriptionCache;
 import org.apache.hadoop.hive.dynamodb.filter.DynamoDBFilterPushdown;
 import org.apache.hadoop.hive.dynamodb.read.HiveDynamoDBInputFormat;
 import org.apache.hadoop.hive.dynamodb.type.HiveDynamoDBType;
@@ -41,6 +42,7 @@ import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.metadata.HiveStorageHandler;
 import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
 import org.apache.hadoop.hive.ql.security.authorization.DefaultHiveAuthorizationProvider;
 import org.apache.hadoop.hive.ql.security.authorization.HiveAuthorizationProvider;
@@ -84,6 +86,8 @@ public class DynamoDBStorageHandler
 
       String tableName = HiveDynamoDBUtil.getDynamoDBTableName(table.getParameters()
           .get(DynamoDBConstants.TABLE_NAME), table.getTableName());
+      // The table may have just been created or changed, don't trust a cached description
+      client.invalidateTableDescription(tableName);
       TableDescription tableDescription = client.describeTable(tableName);
 
       checkTableStatus(tableDescription);
@@ -109,12 +113,19 @@ public class DynamoDBStorageHandler
   @Override
   public DecomposedPredicate decomposePredicate(JobConf jobConf, Deserializer deserializer,
       ExprNodeDesc predicate) {
+    DecomposedPredicate decomposedPredicate = null;
     if (jobConf.getBoolean(DynamoDBConstants.DYNAMODB_FILTER_PUSHDOWN, true)) {
-      return new DynamoDBFilterPushdown()
+      decomposedPredicate = new DynamoDBFilterPushdown()
           .pushPredicate(HiveDynamoDBUtil.extractHiveTypeMapping(jobConf), predicate);
-    } else {
-      return null;
     }
+    if (decomposedPredicate == null) {
+      // Leaves the predicate on the table scan, as Hive does for storage handlers that don't
+      // decompose predicates, so that the input format knows that Hive filters the items read
+      decomposedPredicate = new DecomposedPredicate();
+      decomposedPredicate.pushedPredicate = (ExprNodeGenericFuncDesc) predicate;
+      decomposedPredicate.residualPredicate = (ExprNodeGenericFuncDesc) predicate;
+    }
+    return decomposedPredicate;
   }
 
   @Override
@@ -125,6 +136,8 @@ public class DynamoDBStorageHandler
       String tableName = HiveDynamoDBUtil.getDynamoDBTableName(tableDesc.getProperties()
           .getProperty(DynamoDBConstants.TABLE_NAME), tableDesc.getTableName());
       TableDescription description = client.describeTable(tableName);
+      // Tasks read the description from the job instead of calling DescribeTable
+      TableDescriptionCache.writeToJobProperties(jobProperties, tableName, description);
       Double averageItemSize = DynamoDBUtil.calculateAverageItemSize(description);
       log.info("Average item size: " + averageItemSize);
 
@@ -182,6 +195,10 @@ public class DynamoDBStorageHandler
             .getProperty(DynamoDBConstants.THROUGHPUT_READ_PERCENT));
       }
 
+      // Read options such as dynamodb.read.consistent, dynamodb.read.limit and
+      // dynamodb.query.scan.index.forward are not table properties. They are set for the session,
+      // and apply to every DynamoDB table the query reads.
+
       if (tableDesc.getProperties().getProperty(DynamoDBConstants.THROUGHPUT_WRITE_PERCENT)
           != null) {
         jobProperties.put(DynamoDBConstants.THROUGHPUT_WRITE_PERCENT, tableDesc.getProperties()
@@ -27,12 +27,19 @@ import org.apache.hadoop.dynamodb.filter.DynamoDBFilter;
 import org.apache.hadoop.dynamodb.filter.DynamoDBFilterOperator;
 import org.apache.hadoop.dynamodb.filter.DynamoDBIndexInfo;
 import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
+import org.apache.hadoop.hive.dynamodb.shims.ShimsLoader;
+import org.apache.hadoop.hive.ql.exec.FunctionRegistry;
 import org.apache.hadoop.hive.ql.index.IndexPredicateAnalyzer;
 import org.apache.hadoop.hive.ql.index.IndexSearchCondition;
 import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIn;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
 import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
 import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
 import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
 import software.amazon.awssdk.services.dynamodb.model.KeyType;
@@ -51,6 +58,8 @@ public class DynamoDBFilterPushdown {
   private static final int HASH_KEY_INDEX = 0;
   private static final int RANGE_KEY_INDEX = 1;
   private static final String DYNAMODB_KEY_TYPE_HASH = "HASH";
+  // Largest IN list DynamoDB accepts in a filter expression
+  private static final int MAX_FILTER_IN_LIST_SIZE = 100;
 
   public DynamoDBFilterPushdown() {
     eligibleHiveTypes.add(serdeConstants.DOUBLE_TYPE_NAME);
@@ -82,10 +91,38 @@ public class DynamoDBFilterPushdown {
       decomposedPredicate.pushedPredicate =
           analyzer.translateSearchConditions(finalSearchCondition);
       decomposedPredicate.residualPredicate = (ExprNodeGenericFuncDesc) predicate;
+      if (isWholePredicate(predicate, finalSearchCondition)) {
+        // Tells the input format that DynamoDB applies the whole predicate. It holds the pushed
+        // predicate, as Hive doesn't clear it between the table scans of a job.
+        decomposedPredicate.pushedPredicateObject =
+            decomposedPredicate.pushedPredicate.getExprString();
+      }
       return decomposedPredicate;
     }
   }
 
+  /*
+   * Whether every conjunct of the predicate is one of the search conditions, so that the items
+   * DynamoDB returns are exactly the items the predicate accepts.
+   */
+  private boolean isWholePredicate(ExprNodeDesc predicate,
+      List<IndexSearchCondition> searchConditions) {
+    if (FunctionRegistry.isOpAnd(predicate)) {
+      for (ExprNodeDesc child : predicate.getChildren()) {
+        if (!isWholePredicate(child, searchConditions)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    for (IndexSearchCondition condition : searchConditions) {
+      if (ShimsLoader.getHiveShims().getIndexExpression(condition).isSame(predicate)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public DynamoDBQueryFilter predicateToDynamoDBFilter(List<KeySchemaElement> schema,
       List<LocalSecondaryIndexDescription> localSecondaryIndexes,
       List<GlobalSecondaryIndexDescription> globalSecondaryIndexes,
@@ -176,9 +213,107 @@ public class DynamoDBFilterPushdown {
 
     List<IndexSearchCondition> searchConditions = new ArrayList<>();
     analyzer.analyzePredicate(predicate, searchConditions);
+    addInListConditions(predicate, hiveTypeMapping, searchConditions);
     return searchConditions;
   }
 
+  /*
+   * The analyzer only understands comparisons. Adds the conjuncts that are IN lists on a column,
+   * or ORs of equalities on one column, e.g. "id = 1 OR id = 2", which are the same IN list. A
+   * hash key IN list turns into one Query per value.
+   */
+  private void addInListConditions(ExprNodeDesc predicate, Map<String, String> hiveTypeMapping,
+      List<IndexSearchCondition> searchConditions) {
+    if (!(predicate instanceof ExprNodeGenericFuncDesc)) {
+      return;
+    }
+
+    ExprNodeGenericFuncDesc function = (ExprNodeGenericFuncDesc) predicate;
+    if (FunctionRegistry.isOpAnd(function)) {
+      for (ExprNodeDesc child : function.getChildren()) {
+        addInListConditions(child, hiveTypeMapping, searchConditions);
+      }
+      return;
+    }
+
+    List<ExprNodeDesc> inChildren = new ArrayList<>();
+    if (function.getGenericUDF() instanceof GenericUDFIn) {
+      if (!collectInList(function, inChildren)) {
+        return;
+      }
+    } else if (!FunctionRegistry.isOpOr(function) || !collectEqualities(function, inChildren)) {
+      return;
+    }
+
+    ExprNodeColumnDesc column = (ExprNodeColumnDesc) inChildren.get(0);
+    if (eligibleHiveTypes.contains(hiveTypeMapping.get(column.getColumn()))) {
+      searchConditions.add(new IndexSearchCondition(column,
+          DynamoDBFilterOperator.IN.getHiveClass(), (ExprNodeConstantDesc) inChildren.get(1),
+          new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, new GenericUDFIn(),
+              inChildren)));
+    }
+  }
+
+  private boolean collectInList(ExprNodeGenericFuncDesc function, List<ExprNodeDesc> inChildren) {
+    List<ExprNodeDesc> children = function.getChildren();
+    if (children.size() < 2 || !(children.get(0) instanceof ExprNodeColumnDesc)) {
+      return false;
+    }
+    for (ExprNodeDesc value : children.subList(1, children.size())) {
+      if (!(value instanceof ExprNodeConstantDesc)) {
+        return false;
+      }
+    }
+    inChildren.addAll(children);
+    return true;
+  }
+
+  /*
+   * Collects the column and then the constants of a disjunction of equalities into inChildren.
+   * Returns false if some part of the disjunction is not an equality on the same column.
+   */
+  private boolean collectEqualities(ExprNodeDesc predicate, List<ExprNodeDesc> inChildren) {
+    if (!(predicate instanceof ExprNodeGenericFuncDesc)) {
+      return false;
+    }
+
+    ExprNodeGenericFuncDesc function = (ExprNodeGenericFuncDesc) predicate;
+    if (FunctionRegistry.isOpOr(function)) {
+      for (ExprNodeDesc child : function.getChildren()) {
+        if (!collectEqualities(child, inChildren)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (!(function.getGenericUDF() instanceof GenericUDFOPEqual)
+        || function.getChildren().size() != 2) {
+      return false;
+    }
+
+    ExprNodeDesc left = function.getChildren().get(0);
+    ExprNodeDesc right = function.getChildren().get(1);
+    ExprNodeColumnDesc column;
+    ExprNodeConstantDesc constant;
+    if (left instanceof ExprNodeColumnDesc && right instanceof ExprNodeConstantDesc) {
+      column = (ExprNodeColumnDesc) left;
+      constant = (ExprNodeConstantDesc) right;
+    } else if (right instanceof ExprNodeColumnDesc && left instanceof ExprNodeConstantDesc) {
+      column = (ExprNodeColumnDesc) right;
+      constant = (ExprNodeConstantDesc) left;
+    } else {
+      return false;
+    }
+
+    if (inChildren.isEmpty()) {
+      inChildren.add(column);
+    } else if (!((ExprNodeColumnDesc) inChildren.get(0)).getColumn().equals(column.getColumn())) {
+      return false;
+    }
+    inChildren.add(constant);
+    return true;
+  }
+
   private List<IndexSearchCondition> prioritizeSearchConditions(List<IndexSearchCondition>
       searchConditions) {
     Map<String, IndexSearchCondition> priorityFilterMap = new HashMap<>();
@@ -258,7 +393,7 @@ public class DynamoDBFilterPushdown {
             schema,
             globalSecondaryIndexes.stream()
                 .map(index -> new DynamoDBIndexInfo(index.indexName(),
-                    index.keySchema(), index.projection()))
+                    index.keySchema(), index.projection(), true /* global */))
                 .collect(Collectors.toList()),
             hiveDynamoDBMapping,
             filterMap,
@@ -292,10 +427,23 @@ public class DynamoDBFilterPushdown {
     for (DynamoDBFilter f : keyFiltersUseForQuery) {
       filter.addKeyCondition(f);
     }
+    if (indexUseForQuery == null && isFullPrimaryKey(schema, keyFiltersUseForQuery)) {
+      log.info("Key conditions pin the full primary key, reading items with BatchGetItem");
+      filter.setKeyLookup(true);
+    }
     for (DynamoDBFilter f : filterMap.values()) {
-      if (!filter.getKeyConditions().containsKey(f.getColumnName())) {
-        filter.addScanFilter(f);
+      if (filter.getKeyConditions().containsKey(f.getColumnName())) {
+        continue;
+      }
+      // Longer lists are left to Hive, which applies the whole predicate to the items read
+      if (DynamoDBFilterOperator.IN.equals(f.getOperator())
+          && f.getDynamoDBCondition().attributeValueList().size() > MAX_FILTER_IN_LIST_SIZE) {
+        log.info("Not pushing down IN list on " + f.getColumnName() + " with more than "
+            + MAX_FILTER_IN_LIST_SIZE + " values");
+        filter.setExact(false);
+        continue;
       }
+      filter.addScanFilter(f);
     }
     return filter;
   }
@@ -358,6 +506,19 @@ public class DynamoDBFilterPushdown {
     return true;
   }
 
+  /*
+   * Whether the key filters give the value of every key attribute, so that the primary keys of the
+   * matching items are known. Only the hash key may take several values.
+   */
+  private boolean isFullPrimaryKey(List<KeySchemaElement> schema,
+      List<DynamoDBFilter> keyFilters) {
+    if (keyFilters.isEmpty() || keyFilters.size() != schema.size()) {
+      return false;
+    }
+    return keyFilters.size() == 1
+        || DynamoDBFilterOperator.EQ.equals(keyFilters.get(RANGE_KEY_INDEX).getOperator());
+  }
+
   private List<DynamoDBFilter> getDynamoDBFiltersFromSchema(List<KeySchemaElement> schema,
       Map<String, DynamoDBFilter> filterMap) {
     List<DynamoDBFilter> dynamoDBFilters = new ArrayList<>();
@@ -368,7 +529,9 @@ public class DynamoDBFilterPushdown {
       String hashKeyName = schema.get(HASH_KEY_INDEX).attributeName();
       if (filterMap.containsKey(hashKeyName)) {
         DynamoDBFilter hashKeyFilter = filterMap.get(hashKeyName);
-        if (DynamoDBFilterOperator.EQ.equals(hashKeyFilter.getOperator())) {
+        // An IN list on the hash key is read with one Query per value
+        if (DynamoDBFilterOperator.EQ.equals(hashKeyFilter.getOperator())
+            || DynamoDBFilterOperator.IN.equals(hashKeyFilter.getOperator())) {
           dynamoDBFilters.add(hashKeyFilter);
           hashKeyFilterExists = true;
         }
@@ -23,6 +23,7 @@ import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.DynamoDBItemWritable;
 import org.apache.hadoop.dynamodb.filter.DynamoDBQueryFilter;
+import org.apache.hadoop.dynamodb.filter.DynamoDBRangeKeySplitter;
 import org.apache.hadoop.dynamodb.preader.DynamoDBRecordReaderContext;
 import org.apache.hadoop.dynamodb.read.DefaultDynamoDBRecordReader;
 import org.apache.hadoop.dynamodb.read.DynamoDBInputFormat;
@@ -75,39 +76,23 @@ public class HiveDynamoDBInputFormat extends DynamoDBInputFormat {
     Map<String, String> columnMapping =
         HiveDynamoDBUtil.fromJsonString(conf.get(DynamoDBConstants.DYNAMODB_COLUMN_MAPPING));
     Map<String, String> hiveTypeMapping = HiveDynamoDBUtil.extractHiveTypeMapping(conf);
-    DynamoDBQueryFilter queryFilter = getQueryFilter(conf, columnMapping, hiveTypeMapping);
+    // The filter was computed when planning the job and comes with the split
     DynamoDBSplit bbSplit = (DynamoDBSplit) split;
-    bbSplit.setDynamoDBFilterPushdown(queryFilter);
 
-    Collection<String> attributes = (columnMapping == null ? null : columnMapping.values());
+    // Only fetch the attributes backing the columns this task reads
+    List<String> attributes =
+        HiveDynamoDBUtil.getProjectedAttributeNames(conf, columnMapping, hiveTypeMapping);
+    log.info("Projected attributes: " + (attributes == null ? "all" : attributes));
+    bbSplit.getFilterPushdown().setProjection(attributes);
+    // Nothing to read, e.g. for count(*), so let DynamoDB count the items
+    bbSplit.getFilterPushdown().setCountOnly(
+        HiveDynamoDBUtil.isCountOnly(conf, columnMapping, hiveTypeMapping));
+
     DynamoDBRecordReaderContext context = buildHiveDynamoDBRecordReaderContext(bbSplit, conf,
         reporter, attributes);
     return new DefaultDynamoDBRecordReader(context);
   }
 
-  @Override
-  protected int getNumSegments(int tableNormalizedReadThroughput, int
-      tableNormalizedWriteThroughput, long currentTableSizeBytes, JobConf conf) throws IOException {
-    if (isQuery(conf)) {
-      log.info("Defaulting to 1 segment because there are key conditions");
-      return 1;
-    } else {
-      return super.getNumSegments(tableNormalizedReadThroughput, tableNormalizedWriteThroughput,
-          currentTableSizeBytes, conf);
-    }
-  }
-
-  @Override
-  protected int getNumMappers(int configuredReadThroughput, JobConf conf)
-      throws IOException {
-    if (isQuery(conf)) {
-      log.info("Defaulting to 1 mapper because there are key conditions");
-      return 1;
-    } else {
-      return super.getNumMappers(configuredReadThroughput, conf);
-    }
-  }
-
   @Override
   protected DynamoDBSplitGenerator getSplitGenerator() {
     return new HiveDynamoDBSplitGenerator();
@@ -121,42 +106,70 @@ public class HiveDynamoDBInputFormat extends DynamoDBInputFormat {
     return context;
   }
 
-  private boolean isQuery(JobConf conf) throws IOException {
+  @Override
+  protected DynamoDBQueryFilter getQueryFilter(JobConf conf) throws IOException {
+    String filterExprSerialized = conf.get(TableScanDesc.FILTER_EXPR_CONF_STR);
+    if (filterExprSerialized == null) {
+      return new DynamoDBQueryFilter();
+    }
+
     Map<String, String> hiveDynamoDBMapping =
         HiveDynamoDBUtil.fromJsonString(conf.get(DynamoDBConstants.DYNAMODB_COLUMN_MAPPING));
-    Map<String, String> hiveTypeMapping = HiveDynamoDBUtil.extractHiveTypeMapping(conf);
-    DynamoDBQueryFilter filter = getQueryFilter(conf, hiveDynamoDBMapping, hiveTypeMapping);
-
-    return filter.getKeyConditions().size() >= 1;
-  }
-
-  private DynamoDBQueryFilter getQueryFilter(JobConf conf, Map<String, String>
-      hiveDynamoDBMapping, Map<String, String> hiveTypeMapping) throws IOException {
-    if (hiveDynamoDBMapping == null) {
+    if (hiveDynamoDBMapping == null
+        || !conf.getBoolean(DynamoDBConstants.DYNAMODB_FILTER_PUSHDOWN, true)) {
       /*
        * Column mapping may be null when user has mapped a DynamoDB item
-       * onto a single hive map<string, string> column.
+       * onto a single hive map<string, string> column. Hive applies the filter.
        */
-      return new DynamoDBQueryFilter();
+      DynamoDBQueryFilter queryFilter = new DynamoDBQueryFilter();
+      queryFilter.setExact(false);
+      return queryFilter;
     }
+    ExprNodeDesc filterExpr =
+        ShimsLoader.getHiveShims().deserializeExpression(filterExprSerialized);
+    boolean pushedWhole = isWholePredicatePushed(conf, filterExpr);
 
+    String tableName = conf.get(DynamoDBConstants.TABLE_NAME);
     DynamoDBClient client = new DynamoDBClient(conf);
-    String filterExprSerialized = conf.get(TableScanDesc.FILTER_EXPR_CONF_STR);
-    if (filterExprSerialized == null) {
-      return new DynamoDBQueryFilter();
+    try {
+      TableDescription tableDescription = client.describeTableSchema(tableName);
+
+      DynamoDBFilterPushdown pushdown = new DynamoDBFilterPushdown();
+      DynamoDBQueryFilter queryFilter = pushdown.predicateToDynamoDBFilter(
+          tableDescription.keySchema(),
+          tableDescription.localSecondaryIndexes(),
+          tableDescription.globalSecondaryIndexes(),
+          hiveDynamoDBMapping, HiveDynamoDBUtil.extractHiveTypeMapping(conf), filterExpr);
+      if (queryFilter == null) {
+        // No pushable search conditions
+        queryFilter = new DynamoDBQueryFilter();
+        queryFilter.setExact(false);
+        return queryFilter;
+      }
+      if (!pushedWhole) {
+        queryFilter.setExact(false);
+      }
+
+      if (!queryFilter.getKeyConditions().isEmpty()) {
+        DynamoDBRangeKeySplitter.split(client, tableName, tableDescription.keySchema(),
+            tableDescription.attributeDefinitions(), queryFilter,
+            conf.getInt(DynamoDBConstants.QUERY_RANGE_SPLITS,
+                DynamoDBConstants.DEFAULT_QUERY_RANGE_SPLITS), Reporter.NULL);
+      }
+      return queryFilter;
+    } finally {
+      client.close();
     }
-    ExprNodeDesc filterExpr =
-        ShimsLoader.getHiveShims().deserializeExpression(filterExprSerialized);
+  }
 
-    DynamoDBFilterPushdown pushdown = new DynamoDBFilterPushdown();
-    TableDescription tableDescription =
-        client.describeTable(conf.get(DynamoDBConstants.TABLE_NAME));
-    DynamoDBQueryFilter queryFilter = pushdown.predicateToDynamoDBFilter(
-        tableDescription.keySchema(),
-        tableDescription.localSecondaryIndexes(),
-        tableDescription.globalSecondaryIndexes(),
-        hiveDynamoDBMapping, hiveTypeMapping, filterExpr);
-    return queryFilter;
+  /*
+   * Whether the filter expression is the whole predicate on the table, rather than the part of it
+   * DynamoDB can apply, see DynamoDBFilterPushdown#pushPredicate.
+   */
+  private boolean isWholePredicatePushed(JobConf conf, ExprNodeDesc filterExpr) {
+    String filterObjectSerialized = conf.get(TableScanDesc.FILTER_OBJECT_CONF_STR);
+    return filterObjectSerialized != null && filterExpr.getExprString().equals(
+        ShimsLoader.getHiveShims().deserializeObject(filterObjectSerialized, String.class));
   }
 
 }
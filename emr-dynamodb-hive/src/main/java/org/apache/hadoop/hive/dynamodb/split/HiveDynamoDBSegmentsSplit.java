@@ -41,6 +41,7 @@ public class HiveDynamoDBSegmentsSplit extends FileSplit implements DynamoDBSpli
   private int splitId;
   private List<Integer> segments;
   private int totalSegments;
+  private int numSplits;
   private long estimateLength;
   private DynamoDBQueryFilter filterPushdown;
 
@@ -72,8 +73,12 @@ public class HiveDynamoDBSegmentsSplit extends FileSplit implements DynamoDBSpli
       segments.add(in.readInt());
     }
     totalSegments = in.readInt();
-    filterPushdown = new DynamoDBQueryFilter();
+    numSplits = in.readInt();
     estimateLength = in.readLong();
+    filterPushdown = new DynamoDBQueryFilter();
+    if (in.readBoolean()) {
+      filterPushdown.readFields(in);
+    }
   }
 
   @Override
@@ -87,7 +92,12 @@ public class HiveDynamoDBSegmentsSplit extends FileSplit implements DynamoDBSpli
       out.writeInt(segment);
     }
     out.writeInt(totalSegments);
+    out.writeInt(numSplits);
     out.writeLong(estimateLength);
+    out.writeBoolean(filterPushdown != null);
+    if (filterPushdown != null) {
+      filterPushdown.write(out);
+    }
   }
 
   @Override
@@ -116,6 +126,14 @@ public class HiveDynamoDBSegmentsSplit extends FileSplit implements DynamoDBSpli
     return totalSegments;
   }
 
+  public int getNumSplits() {
+    return numSplits;
+  }
+
+  public void setNumSplits(int numSplits) {
+    this.numSplits = numSplits;
+  }
+
   public DynamoDBQueryFilter getFilterPushdown() {
     return filterPushdown;
   }
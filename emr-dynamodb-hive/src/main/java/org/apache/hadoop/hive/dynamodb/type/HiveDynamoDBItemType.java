@@ -159,8 +159,7 @@ public class HiveDynamoDBItemType implements DynamoDBItemType, HiveDynamoDBType
   }
 
   private static String serializeAttributeValue(AttributeValue value) {
-    Gson gson = DynamoDBUtil.getGson();
-    return gson.toJson(value, TYPE);
+    return DynamoDBUtil.toJson(value, TYPE);
   }
 
   public static AttributeValue deserializeAttributeValue(String value) {
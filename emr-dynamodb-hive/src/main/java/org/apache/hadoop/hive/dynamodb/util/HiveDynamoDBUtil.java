@@ -19,16 +19,20 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.hive.dynamodb.type.HiveDynamoDBType;
 import org.apache.hadoop.hive.dynamodb.type.HiveDynamoDBTypeFactory;
 import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.mapred.JobConf;
 
@@ -146,6 +150,70 @@ public final class HiveDynamoDBUtil {
     return map;
   }
 
+  /**
+   * Maps the columns Hive needs to read onto DynamoDB attribute names, so that the reader can
+   * fetch only those attributes. When Hive reads no columns at all (e.g. count(*)), the table key
+   * attributes are projected so that each item is still returned.
+   *
+   * @param jobConf a job configuration
+   * @param hiveDynamoDBMapping mapping between Hive column names and DynamoDB attribute names
+   * @param hiveTypeMapping mapping between Hive column names and Hive column types
+   * @return attribute names to project, or null if whole items have to be read
+   */
+  public static List<String> getProjectedAttributeNames(JobConf jobConf,
+      Map<String, String> hiveDynamoDBMapping, Map<String, String> hiveTypeMapping) {
+    Set<String> attributeNames = getReadAttributeNames(jobConf, hiveDynamoDBMapping,
+        hiveTypeMapping);
+    if (attributeNames == null) {
+      return null;
+    }
+
+    if (attributeNames.isEmpty()) {
+      String tableKeyNames = jobConf.get(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES);
+      if (tableKeyNames == null || tableKeyNames.isEmpty()) {
+        return null;
+      }
+      attributeNames.addAll(
+          Arrays.asList(tableKeyNames.split(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES_SEPARATOR)));
+    }
+    return new ArrayList<>(attributeNames);
+  }
+
+  /**
+   * Whether Hive reads no attribute of the items, e.g. for {@code SELECT count(*)}, so that they
+   * only have to be counted by DynamoDB.
+   *
+   * @param jobConf a job configuration
+   * @param hiveDynamoDBMapping mapping between Hive column names and DynamoDB attribute names
+   * @param hiveTypeMapping mapping between Hive column names and Hive column types
+   */
+  public static boolean isCountOnly(JobConf jobConf, Map<String, String> hiveDynamoDBMapping,
+      Map<String, String> hiveTypeMapping) {
+    Set<String> attributeNames = getReadAttributeNames(jobConf, hiveDynamoDBMapping,
+        hiveTypeMapping);
+    return attributeNames != null && attributeNames.isEmpty();
+  }
+
+  private static Set<String> getReadAttributeNames(JobConf jobConf,
+      Map<String, String> hiveDynamoDBMapping, Map<String, String> hiveTypeMapping) {
+    if (hiveDynamoDBMapping == null || ColumnProjectionUtils.isReadAllColumns(jobConf)) {
+      return null;
+    }
+
+    Set<String> attributeNames = new LinkedHashSet<>();
+    for (String columnName : ColumnProjectionUtils.getReadColumnNames(jobConf)) {
+      String attributeName = hiveDynamoDBMapping.get(columnName.toLowerCase());
+      if (attributeName != null) {
+        attributeNames.add(attributeName);
+      } else if (hiveTypeMapping.containsKey(columnName)) {
+        // Unmapped table column, e.g. a map of the whole item
+        return null;
+      }
+      // Anything else is a virtual column, which is not backed by an attribute
+    }
+    return attributeNames;
+  }
+
   private static String[] splitStructs(String str, char separator) {
     if (str == null) {
       return null;
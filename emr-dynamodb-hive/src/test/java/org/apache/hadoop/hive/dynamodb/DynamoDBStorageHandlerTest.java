@@ -20,7 +20,14 @@ import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.MetaException;
 import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
 import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.mapred.JobConf;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -45,6 +52,8 @@ import software.amazon.awssdk.services.dynamodb.model.TableDescription;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
@@ -401,6 +410,45 @@ public class DynamoDBStorageHandlerTest {
     assertFalse(Boolean.parseBoolean(jobProperties2.get(DynamoDBConstants.WRITE_THROUGHPUT_AUTOSCALING)));
   }
 
+  @Test
+  public void testReadOptionsNotTakenFromTableProperties() {
+    DynamoDBClient mockDynamoClient = Mockito.mock(DynamoDBClient.class);
+    doReturn(getHashRangeTable()).when(mockDynamoClient).describeTable(any());
+
+    DynamoDBStorageHandler spyDynamoStorageHandler = Mockito.spy(storageHandler);
+    doReturn(mockDynamoClient).when(spyDynamoStorageHandler).createDynamoDBClient((TableDesc) any());
+
+    TableDesc testTableDesc = new TableDesc();
+    Properties properties = new Properties();
+    properties.setProperty(DynamoDBConstants.REGION, "us-east-1");
+    properties.setProperty(DynamoDBConstants.TABLE_NAME, "test-table");
+    properties.setProperty(DynamoDBConstants.READ_LIMIT, "10");
+    properties.setProperty(DynamoDBConstants.READ_CONSISTENT, "true");
+    testTableDesc.setProperties(properties);
+
+    // They are set for the query, so that the job's settings aren't overridden for one table
+    Map<String, String> jobProperties = new HashMap<>();
+    spyDynamoStorageHandler.configureTableJobProperties(testTableDesc, jobProperties);
+    assertNull(jobProperties.get(DynamoDBConstants.READ_LIMIT));
+    assertNull(jobProperties.get(DynamoDBConstants.READ_CONSISTENT));
+  }
+
+  @Test
+  public void testUnpushablePredicateLeftOnTableScan() {
+    JobConf jobConf = new JobConf();
+    jobConf.setBoolean(DynamoDBConstants.DYNAMODB_FILTER_PUSHDOWN, false);
+    ExprNodeGenericFuncDesc predicate = new ExprNodeGenericFuncDesc(
+        TypeInfoFactory.booleanTypeInfo, new GenericUDFOPEqual(), Lists.newArrayList(
+        new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "column", null, false),
+        new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo, "value")));
+
+    DecomposedPredicate decomposedPredicate =
+        storageHandler.decomposePredicate(jobConf, null, predicate);
+    assertSame(predicate, decomposedPredicate.pushedPredicate);
+    assertSame(predicate, decomposedPredicate.residualPredicate);
+    // Not marked as applied by DynamoDB
+    assertNull(decomposedPredicate.pushedPredicateObject);
+  }
 
   private TableDescription getHashRangeTable() {
     return getHashRangeTableByBillingMode(BillingMode.PROVISIONED);
@@ -13,7 +13,9 @@ import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIn;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPOr;
 import org.apache.hadoop.hive.serde.serdeConstants;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
 import org.junit.Assert;
@@ -145,6 +147,26 @@ public class DynamoDBFilterPushdownTest {
     Assert.assertNull(decomposedPredicate);
   }
 
+  @Test
+  public void testPushPredicateMarksWholePredicatePushed() {
+    DecomposedPredicate decomposedPredicate = dynamoDBFilterPushdown.pushPredicate(
+        hiveTypeMapping, buildPredicate(Lists.newArrayList(hashKeyPredicate, column1Predicate)));
+    Assert.assertEquals(decomposedPredicate.pushedPredicate.getExprString(),
+        decomposedPredicate.pushedPredicateObject);
+
+    // Hive applies the condition on the column DynamoDB can't filter on
+    ExprNodeDesc unpushablePredicate = new ExprNodeGenericFuncDesc(
+        TypeInfoFactory.booleanTypeInfo,
+        new GenericUDFOPEqual(), Lists.newArrayList(
+        new ExprNodeColumnDesc(TypeInfoFactory.booleanTypeInfo, "column5", null, false),
+        new ExprNodeConstantDesc(TypeInfoFactory.booleanTypeInfo, true)
+    ));
+    decomposedPredicate = dynamoDBFilterPushdown.pushPredicate(hiveTypeMapping,
+        buildPredicate(Lists.newArrayList(hashKeyPredicate, unpushablePredicate)));
+    Assert.assertNotNull(decomposedPredicate.pushedPredicate);
+    Assert.assertNull(decomposedPredicate.pushedPredicateObject);
+  }
+
   @Test
   public void testPredicateToDynamoDBFilterWithNoIndexesAndNoHashKey() {
     ExprNodeDesc combinedPredicate = buildPredicate(Lists.newArrayList(
@@ -425,6 +447,60 @@ public class DynamoDBFilterPushdownTest {
     Assert.assertEquals(0, dynamoDBQueryFilter.getKeyConditions().size());
   }
 
+  @Test
+  public void testPredicateToDynamoDBFilterWithHashKeyInList() {
+    ExprNodeDesc inPredicate = new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo,
+        new GenericUDFIn(), Lists.newArrayList(
+        new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, HASH_KEY_NAME, null, false),
+        new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo, "a"),
+        new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo, "b"),
+        new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo, "c")
+    ));
+
+    DynamoDBQueryFilter dynamoDBQueryFilter = dynamoDBFilterPushdown.predicateToDynamoDBFilter(
+        tableKeySchema, null, null, hiveDynamoDBMapping, hiveTypeMapping,
+        buildPredicate(Lists.newArrayList(inPredicate, rangeKeyPredicate)));
+
+    Assert.assertEquals(2, dynamoDBQueryFilter.getKeyConditions().size());
+    // Both keys are pinned, the three items are read with a single BatchGetItem
+    Assert.assertTrue(dynamoDBQueryFilter.isKeyLookup());
+    Assert.assertEquals(1, dynamoDBQueryFilter.getQueryCount());
+    Assert.assertEquals(3, dynamoDBQueryFilter.getLookupKeys(0).size());
+    Assert.assertEquals(AttributeValue.fromS(RANGE_KEY_VALUE),
+        dynamoDBQueryFilter.getLookupKeys(0).get(2).get(RANGE_KEY_NAME));
+  }
+
+  @Test
+  public void testPredicateToDynamoDBFilterWithHashKeyDisjunction() {
+    ExprNodeDesc orPredicate = new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo,
+        new GenericUDFOPOr(), Lists.newArrayList(hashKeyEquals("a"), hashKeyEquals("b")));
+
+    DynamoDBQueryFilter dynamoDBQueryFilter = dynamoDBFilterPushdown.predicateToDynamoDBFilter(
+        tableKeySchema, null, null, hiveDynamoDBMapping, hiveTypeMapping,
+        buildPredicate(Lists.newArrayList(orPredicate, column1Predicate)));
+
+    Assert.assertEquals(1, dynamoDBQueryFilter.getKeyConditions().size());
+    Assert.assertFalse(dynamoDBQueryFilter.isKeyLookup());
+    Assert.assertEquals(2, dynamoDBQueryFilter.getQueryCount());
+    assertKeyCondition(HASH_KEY_NAME, "a", dynamoDBQueryFilter.getFilterForQuery(0));
+    assertKeyCondition(HASH_KEY_NAME, "b", dynamoDBQueryFilter.getFilterForQuery(1));
+    Assert.assertTrue(dynamoDBQueryFilter.getScanFilter().containsKey(COLUMN1_NAME));
+
+    // Disjunctions over several columns can't be pushed down
+    ExprNodeDesc mixedPredicate = new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo,
+        new GenericUDFOPOr(), Lists.newArrayList(hashKeyEquals("a"), column1Predicate));
+    Assert.assertNull(dynamoDBFilterPushdown.predicateToDynamoDBFilter(tableKeySchema, null, null,
+        hiveDynamoDBMapping, hiveTypeMapping, mixedPredicate));
+  }
+
+  private ExprNodeDesc hashKeyEquals(String value) {
+    return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo,
+        new GenericUDFOPEqual(), Lists.newArrayList(
+        new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, HASH_KEY_NAME, null, false),
+        new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo, value)
+    ));
+  }
+
   private ExprNodeDesc buildPredicate(List<ExprNodeDesc> predicates) {
     ExprNodeDesc combinedPredicate = null;
     for (ExprNodeDesc predicate : predicates) {
@@ -13,14 +13,20 @@
 
 package org.apache.hadoop.hive.dynamodb.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.mapred.JobConf;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -100,4 +106,55 @@ public class HiveDynamoDBUtilTest {
 
     assertTrue(map.isEmpty());
   }
+
+  @Test
+  public void testProjectedAttributeNames() {
+    Map<String, String> columnMapping = ImmutableMap.of("id", "Id", "ts", "timestamp", "payload",
+        "Payload");
+    Map<String, String> typeMapping = ImmutableMap.of("id", "string", "ts", "bigint", "payload",
+        "string");
+    setReadColumnNames("id,ts,BLOCK__OFFSET__INSIDE__FILE");
+
+    assertEquals(Arrays.asList("Id", "timestamp"),
+        HiveDynamoDBUtil.getProjectedAttributeNames(conf, columnMapping, typeMapping));
+  }
+
+  @Test
+  public void testProjectedAttributeNamesWithUnmappedColumn() {
+    Map<String, String> columnMapping = ImmutableMap.of("id", "Id");
+    Map<String, String> typeMapping = ImmutableMap.of("id", "string", "item",
+        "map<string,string>");
+    setReadColumnNames("id,item");
+
+    assertNull(HiveDynamoDBUtil.getProjectedAttributeNames(conf, columnMapping, typeMapping));
+  }
+
+  @Test
+  public void testProjectedAttributeNamesWithoutReadColumns() {
+    Map<String, String> columnMapping = ImmutableMap.of("id", "Id", "ts", "timestamp");
+    Map<String, String> typeMapping = ImmutableMap.of("id", "string", "ts", "bigint");
+    setReadColumnNames("");
+    conf.set(DynamoDBConstants.DYNAMODB_TABLE_KEY_NAMES, "Id,timestamp");
+
+    assertEquals(Arrays.asList("Id", "timestamp"),
+        HiveDynamoDBUtil.getProjectedAttributeNames(conf, columnMapping, typeMapping));
+    assertTrue(HiveDynamoDBUtil.isCountOnly(conf, columnMapping, typeMapping));
+
+    setReadColumnNames("ts");
+    assertFalse(HiveDynamoDBUtil.isCountOnly(conf, columnMapping, typeMapping));
+  }
+
+  @Test
+  public void testProjectedAttributeNamesWhenReadingAllColumns() {
+    Map<String, String> columnMapping = ImmutableMap.of("id", "Id");
+    Map<String, String> typeMapping = ImmutableMap.of("id", "string");
+    ColumnProjectionUtils.setReadAllColumns(conf);
+
+    assertNull(HiveDynamoDBUtil.getProjectedAttributeNames(conf, columnMapping, typeMapping));
+  }
+
+  private void setReadColumnNames(String columnNames) {
+    conf.setBoolean(ColumnProjectionUtils.READ_ALL_COLUMNS, false);
+    conf.set(ColumnProjectionUtils.READ_COLUMN_NAMES_CONF_STR, columnNames);
+  }
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.tools;
+
+import java.util.Date;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.read.DynamoDBInputFormat;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapred.lib.NullOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Counts the items of a table with a parallel scan. The scan uses Select=COUNT, so it consumes as
+ * much read capacity as an export but transfers no item.
+ */
+public class DynamoDBCount extends Configured implements Tool {
+
+  public static final Log log = LogFactory.getLog(DynamoDBCount.class);
+
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new DynamoDBCount(), args);
+    System.exit(res);
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 1) {
+      printUsage("Not enough parameters");
+      return -1;
+    }
+
+    JobConf jobConf = new JobConf(getConf(), DynamoDBCount.class);
+
+    jobConf.setJobName("dynamodb-count");
+    jobConf.setOutputKeyClass(NullWritable.class);
+    jobConf.setOutputValueClass(NullWritable.class);
+    jobConf.setMapperClass(CountMapper.class);
+    jobConf.setInputFormat(DynamoDBInputFormat.class);
+    jobConf.setOutputFormat(NullOutputFormat.class);
+    jobConf.setNumReduceTasks(0);
+    jobConf.setBoolean(DynamoDBConstants.READ_COUNT_ONLY, true);
+
+    String tableName = args[0];
+    Double readRatio = null;
+    if (args.length >= 2) {
+      String val = args[1];
+      try {
+        readRatio = Double.parseDouble(val);
+      } catch (Exception e) {
+        printUsage("Could not parse read ratio (value: " + val + ")");
+        return -1;
+      }
+    }
+    Integer totalSegments = null;
+    if (args.length >= 3) {
+      String val = args[2];
+      try {
+        totalSegments = Integer.parseInt(val);
+      } catch (Exception e) {
+        printUsage("Could not parse segment count (value: " + val + ")");
+        return -1;
+      }
+    }
+    ScanJobProperties.set(jobConf, tableName, readRatio, totalSegments);
+
+    Date startTime = new Date();
+    System.out.println("Job started: " + startTime);
+    RunningJob job = JobClient.runJob(jobConf);
+    Date endTime = new Date();
+    System.out.println("Job ended: " + endTime);
+    System.out.println("The job took " + (endTime.getTime() - startTime.getTime()) / 1000 + " "
+        + "seconds.");
+    System.out.println("Item count: "
+        + job.getCounters().getCounter(CountMapper.Counters.DYNAMODB_ITEMS_COUNTED));
+
+    return 0;
+  }
+
+  private void printUsage(String error) {
+    if (error != null) {
+      System.out.println("Error: " + error);
+    }
+
+    System.out.println("Usage: Count <table-name> [<read-ratio>] [<total-segment-count>]");
+    ToolRunner.printGenericCommandUsage(System.out);
+  }
+}
@@ -18,9 +18,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
-import org.apache.hadoop.dynamodb.DynamoDBUtil;
 import org.apache.hadoop.dynamodb.exportformat.ExportManifestOutputFormat;
 import org.apache.hadoop.dynamodb.read.DynamoDBInputFormat;
 import org.apache.hadoop.fs.Path;
@@ -31,8 +29,6 @@ import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.lib.IdentityReducer;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
-import software.amazon.awssdk.services.dynamodb.model.BillingMode;
-import software.amazon.awssdk.services.dynamodb.model.TableDescription;
 
 public class DynamoDBExport extends Configured implements Tool {
 
@@ -84,7 +80,8 @@ public class DynamoDBExport extends Configured implements Tool {
         return -1;
       }
     }
-    setTableProperties(jobConf, tableName, readRatio, totalSegments);
+    jobConf.set(DynamoDBConstants.OUTPUT_TABLE_NAME, tableName);
+    ScanJobProperties.set(jobConf, tableName, readRatio, totalSegments);
 
     Date startTime = new Date();
     System.out.println("Job started: " + startTime);
@@ -98,62 +95,6 @@ public class DynamoDBExport extends Configured implements Tool {
     return 0;
   }
 
-  private void setTableProperties(JobConf jobConf, String tableName, Double readRatio, Integer
-      totalSegments) {
-    jobConf.set(DynamoDBConstants.TABLE_NAME, tableName);
-    jobConf.set(DynamoDBConstants.INPUT_TABLE_NAME, tableName);
-    jobConf.set(DynamoDBConstants.OUTPUT_TABLE_NAME, tableName);
-
-    DynamoDBClient client = new DynamoDBClient(jobConf);
-    TableDescription description = client.describeTable(tableName);
-
-    Long itemCount = description.itemCount();
-    Long tableSizeBytes = description.tableSizeBytes();
-
-    if (description.billingModeSummary() == null
-            || description.billingModeSummary().billingMode()
-        .equals(BillingMode.PROVISIONED)) {
-      jobConf.set(DynamoDBConstants.READ_THROUGHPUT,
-          description.provisionedThroughput().readCapacityUnits().toString());
-      jobConf.set(DynamoDBConstants.WRITE_THROUGHPUT,
-          description.provisionedThroughput().writeCapacityUnits().toString());
-      // Assume auto-scaling enabled for PROVISIONED tables
-      jobConf.set(DynamoDBConstants.READ_THROUGHPUT_AUTOSCALING,
-          DynamoDBConstants.DEFAULT_THROUGHPUT_AUTOSCALING);
-      jobConf.set(DynamoDBConstants.WRITE_THROUGHPUT_AUTOSCALING,
-          DynamoDBConstants.DEFAULT_THROUGHPUT_AUTOSCALING);
-    } else {
-      // If not specified at the table level, set a hard coded value of 40,000
-      jobConf.set(DynamoDBConstants.READ_THROUGHPUT,
-          DynamoDBConstants.DEFAULT_CAPACITY_FOR_ON_DEMAND.toString());
-      jobConf.set(DynamoDBConstants.WRITE_THROUGHPUT,
-          DynamoDBConstants.DEFAULT_CAPACITY_FOR_ON_DEMAND.toString());
-    }
-
-    jobConf.set(DynamoDBConstants.ITEM_COUNT, itemCount.toString());
-    jobConf.set(DynamoDBConstants.TABLE_SIZE_BYTES, tableSizeBytes.toString());
-
-    Double averageItemSize = DynamoDBUtil.calculateAverageItemSize(description);
-    jobConf.set(DynamoDBConstants.AVG_ITEM_SIZE, averageItemSize.toString());
-
-    log.info("Read throughput:       " + jobConf.get(DynamoDBConstants.READ_THROUGHPUT));
-    log.info("Write throughput:      " + jobConf.get(DynamoDBConstants.WRITE_THROUGHPUT));
-    log.info("Item count:            " + itemCount);
-    log.info("Table size:            " + tableSizeBytes);
-    log.info("Average item size:     " + averageItemSize);
-
-    // Optional properties
-    if (readRatio != null) {
-      jobConf.set(DynamoDBConstants.THROUGHPUT_READ_PERCENT, readRatio.toString());
-      log.info("Throughput read ratio: " + readRatio);
-    }
-
-    if (totalSegments != null) {
-      jobConf.set(DynamoDBConstants.SCAN_SEGMENTS, totalSegments.toString());
-      log.info("Total segment count:   " + totalSegments);
-    }
-  }
-
   private void printUsage(String error) {
     if (error != null) {
       System.out.println("Error: " + error);
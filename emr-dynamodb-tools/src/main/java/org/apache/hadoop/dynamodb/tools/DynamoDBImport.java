@@ -21,6 +21,7 @@ import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.dynamodb.DynamoDBClient;
 import org.apache.hadoop.dynamodb.DynamoDBConstants;
 import org.apache.hadoop.dynamodb.DynamoDBItemWritable;
+import org.apache.hadoop.dynamodb.TableDescriptionCache;
 import org.apache.hadoop.dynamodb.importformat.ImportInputFormat;
 import org.apache.hadoop.dynamodb.write.DynamoDBOutputFormat;
 import org.apache.hadoop.fs.Path;
@@ -93,6 +94,7 @@ public class DynamoDBImport extends Configured implements Tool {
 
     DynamoDBClient client = new DynamoDBClient(jobConf);
     TableDescription description = client.describeTable(tableName);
+    TableDescriptionCache.writeToConf(jobConf, tableName, description);
 
     if (description.billingModeSummary() == null
         || description.billingModeSummary().billingMode() == BillingMode.PROVISIONED) {
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "LICENSE.TXT" file accompanying this file. This file is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.hadoop.dynamodb.tools;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.dynamodb.DynamoDBClient;
+import org.apache.hadoop.dynamodb.DynamoDBConstants;
+import org.apache.hadoop.dynamodb.DynamoDBUtil;
+import org.apache.hadoop.dynamodb.TableDescriptionCache;
+import org.apache.hadoop.mapred.JobConf;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
+
+/**
+ * Sets the properties of a job scanning a whole table from the description of the table.
+ */
+final class ScanJobProperties {
+
+  private static final Log log = LogFactory.getLog(ScanJobProperties.class);
+
+  private ScanJobProperties() {
+  }
+
+  /**
+   * @param readRatio     share of the read throughput to use, or null for the default
+   * @param totalSegments number of scan segments, or null to size them from the table
+   */
+  static void set(JobConf jobConf, String tableName, Double readRatio, Integer totalSegments) {
+    jobConf.set(DynamoDBConstants.TABLE_NAME, tableName);
+    jobConf.set(DynamoDBConstants.INPUT_TABLE_NAME, tableName);
+
+    DynamoDBClient client = new DynamoDBClient(jobConf);
+    TableDescription description;
+    try {
+      description = client.describeTable(tableName);
+    } finally {
+      client.close();
+    }
+    TableDescriptionCache.writeToConf(jobConf, tableName, description);
+
+    Long itemCount = description.itemCount();
+    Long tableSizeBytes = description.tableSizeBytes();
+
+    if (description.billingModeSummary() == null
+        || description.billingModeSummary().billingMode() == BillingMode.PROVISIONED) {
+      jobConf.set(DynamoDBConstants.READ_THROUGHPUT,
+          description.provisionedThroughput().readCapacityUnits().toString());
+      jobConf.set(DynamoDBConstants.WRITE_THROUGHPUT,
+          description.provisionedThroughput().writeCapacityUnits().toString());
+      // Assume auto-scaling enabled for PROVISIONED tables
+      jobConf.set(DynamoDBConstants.READ_THROUGHPUT_AUTOSCALING,
+          DynamoDBConstants.DEFAULT_THROUGHPUT_AUTOSCALING);
+      jobConf.set(DynamoDBConstants.WRITE_THROUGHPUT_AUTOSCALING,
+          DynamoDBConstants.DEFAULT_THROUGHPUT_AUTOSCALING);
+    } else {
+      // If not specified at the table level, set a hard coded value of 40,000
+      jobConf.set(DynamoDBConstants.READ_THROUGHPUT,
+          DynamoDBConstants.DEFAULT_CAPACITY_FOR_ON_DEMAND.toString());
+      jobConf.set(DynamoDBConstants.WRITE_THROUGHPUT,
+          DynamoDBConstants.DEFAULT_CAPACITY_FOR_ON_DEMAND.toString());
+    }
+
+    jobConf.set(DynamoDBConstants.ITEM_COUNT, itemCount.toString());
+    jobConf.set(DynamoDBConstants.TABLE_SIZE_BYTES, tableSizeBytes.toString());
+
+    Double averageItemSize = DynamoDBUtil.calculateAverageItemSize(description);
+    jobConf.set(DynamoDBConstants.AVG_ITEM_SIZE, averageItemSize.toString());
+
+    log.info("Read throughput:       " + jobConf.get(DynamoDBConstants.READ_THROUGHPUT));
+    log.info("Write throughput:      " + jobConf.get(DynamoDBConstants.WRITE_THROUGHPUT));
+    log.info("Item count:            " + itemCount);
+    log.info("Table size:            " + tableSizeBytes);
+    log.info("Average item size:     " + averageItemSize);
+
+    // Optional properties
+    if (readRatio != null) {
+      jobConf.set(DynamoDBConstants.THROUGHPUT_READ_PERCENT, readRatio.toString());
+      log.info("Throughput read ratio: " + readRatio);
+    }
+
+    if (totalSegments != null) {
+      jobConf.set(DynamoDBConstants.SCAN_SEGMENTS, totalSegments.toString());
+      log.info("Total segment count:   " + totalSegments);
+    }
+  }
+}
@@ -13,6 +13,7 @@
 
 package org.apache.hadoop.hive.dynamodb.shims;
 
+import java.io.Serializable;
 import java.util.Properties;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.ql.index.IndexSearchCondition;
@@ -24,6 +25,8 @@ public interface DynamoDbHiveShims {
 
   ExprNodeDesc deserializeExpression(String serializedFilterExpr);
 
+  <T extends Serializable> T deserializeObject(String serializedObject, Class<T> clazz);
+
   ExprNodeGenericFuncDesc getIndexExpression(IndexSearchCondition condition);
 
   SerDeParametersShim getSerDeParametersShim(Configuration configuration,
@@ -13,6 +13,7 @@
 
 package org.apache.hadoop.hive.dynamodb.shims;
 
+import java.io.Serializable;
 import java.util.Properties;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.ql.exec.SerializationUtilities;
@@ -34,6 +35,11 @@ final class DynamoDbHive2Shims implements DynamoDbHiveShims {
     return SerializationUtilities.deserializeExpression(serializedFilterExpr);
   }
 
+  @Override
+  public <T extends Serializable> T deserializeObject(String serializedObject, Class<T> clazz) {
+    return SerializationUtilities.deserializeObject(serializedObject, clazz);
+  }
+
   @Override
   public ExprNodeGenericFuncDesc getIndexExpression(IndexSearchCondition condition) {
     return condition.getIndexExpr();
@@ -20,6 +20,7 @@ import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hadoop.hive.serde2.SerDeException;
 
+import java.io.Serializable;
 import java.util.Properties;
 
 final class DynamoDbHive3Shims implements DynamoDbHiveShims {
@@ -35,6 +36,11 @@ final class DynamoDbHive3Shims implements DynamoDbHiveShims {
     return SerializationUtilities.deserializeExpression(serializedFilterExpr);
   }
 
+  @Override
+  public <T extends Serializable> T deserializeObject(String serializedObject, Class<T> clazz) {
+    return SerializationUtilities.deserializeObject(serializedObject, clazz);
+  }
+
   @Override
   public ExprNodeGenericFuncDesc getIndexExpression(IndexSearchCondition condition) {
     return condition.getIndexExpr();